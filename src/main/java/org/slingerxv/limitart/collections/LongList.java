@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.collections;
+
+import java.util.Arrays;
+
+/**
+ * 不装箱的long列表
+ * <p>
+ * 可作为MessageMeta的字段，编解码时整块读写，不逐个装箱拆箱
+ *
+ * @author hank
+ *
+ */
+public class LongList {
+	private static final long[] EMPTY = new long[0];
+	private long[] elements;
+	private int size;
+
+	public LongList() {
+		this.elements = EMPTY;
+	}
+
+	public LongList(int initialCapacity) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("initialCapacity:" + initialCapacity);
+		}
+		this.elements = initialCapacity == 0 ? EMPTY : new long[initialCapacity];
+	}
+
+	/**
+	 * 直接使用传入的数组作为存储(不拷贝)
+	 * 
+	 * @param array
+	 * @return
+	 */
+	public static LongList wrap(long... array) {
+		LongList list = new LongList();
+		list.elements = array;
+		list.size = array.length;
+		return list;
+	}
+
+	public void add(long value) {
+		if (size == elements.length) {
+			grow(size + 1);
+		}
+		elements[size++] = value;
+	}
+
+	public void addAll(long[] values) {
+		addAll(values, 0, values.length);
+	}
+
+	public void addAll(long[] values, int offset, int length) {
+		ensureCapacity(size + length);
+		System.arraycopy(values, offset, elements, size, length);
+		size += length;
+	}
+
+	public void addAll(LongList other) {
+		addAll(other.elements, 0, other.size);
+	}
+
+	public long get(int index) {
+		checkIndex(index);
+		return elements[index];
+	}
+
+	/**
+	 * 设置元素
+	 * 
+	 * @param index
+	 * @param value
+	 * @return 原来的值
+	 */
+	public long set(int index, long value) {
+		checkIndex(index);
+		long old = elements[index];
+		elements[index] = value;
+		return old;
+	}
+
+	/**
+	 * 移除元素，后面的元素前移
+	 * 
+	 * @param index
+	 * @return 被移除的值
+	 */
+	public long removeAt(int index) {
+		checkIndex(index);
+		long old = elements[index];
+		int move = size - index - 1;
+		if (move > 0) {
+			System.arraycopy(elements, index + 1, elements, index, move);
+		}
+		--size;
+		return old;
+	}
+
+	public int indexOf(long value) {
+		for (int i = 0; i < size; ++i) {
+			if (elements[i] == value) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public boolean contains(long value) {
+		return indexOf(value) >= 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	public void ensureCapacity(int capacity) {
+		if (capacity > elements.length) {
+			grow(capacity);
+		}
+	}
+
+	/**
+	 * 底层数组，有效元素为[0,size)
+	 * 
+	 * @return
+	 */
+	public long[] array() {
+		return elements;
+	}
+
+	public long[] toArray() {
+		return Arrays.copyOf(elements, size);
+	}
+
+	private void grow(int minCapacity) {
+		int capacity = Math.max(elements.length + (elements.length >> 1), Math.max(minCapacity, 8));
+		elements = Arrays.copyOf(elements, capacity);
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index:" + index + ",size:" + size);
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		int result = 1;
+		for (int i = 0; i < size; ++i) {
+			result = 31 * result + (int) (elements[i] ^ (elements[i] >>> 32));
+		}
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		LongList other = (LongList) obj;
+		if (size != other.size)
+			return false;
+		for (int i = 0; i < size; ++i) {
+			long value = other.elements[i];
+			if (!(elements[i] == value)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < size; ++i) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(elements[i]);
+		}
+		return sb.append(']').toString();
+	}
+}
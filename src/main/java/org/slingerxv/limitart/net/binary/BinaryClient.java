@@ -15,22 +15,32 @@
  */
 package org.slingerxv.limitart.net.binary;
 
+import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.util.Objects;
 import java.util.TimerTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slingerxv.limitart.funcs.Func3;
 import org.slingerxv.limitart.funcs.Proc1;
 import org.slingerxv.limitart.funcs.Proc2;
 import org.slingerxv.limitart.funcs.Proc3;
 import org.slingerxv.limitart.funcs.Procs;
+import org.slingerxv.limitart.net.binary.arq.ArqChannel;
+import org.slingerxv.limitart.net.binary.arq.ArqConfig;
+import org.slingerxv.limitart.net.binary.arq.ArqDatagramHandler;
 import org.slingerxv.limitart.net.binary.codec.AbstractBinaryDecoder;
 import org.slingerxv.limitart.net.binary.codec.AbstractBinaryEncoder;
 import org.slingerxv.limitart.net.binary.handler.IHandler;
 import org.slingerxv.limitart.net.binary.message.Message;
 import org.slingerxv.limitart.net.binary.message.MessageFactory;
+import org.slingerxv.limitart.net.binary.message.MessageSlot;
+import org.slingerxv.limitart.net.binary.message.StringDictionary;
 import org.slingerxv.limitart.net.binary.message.constant.InnerMessageEnum;
 import org.slingerxv.limitart.net.binary.message.exception.MessageCodecException;
 import org.slingerxv.limitart.net.binary.message.impl.validate.ConnectionValidateClientMessage;
@@ -38,7 +48,13 @@ import org.slingerxv.limitart.net.binary.message.impl.validate.ConnectionValidat
 import org.slingerxv.limitart.net.binary.message.impl.validate.ConnectionValidateSuccessServerMessage;
 import org.slingerxv.limitart.net.binary.message.impl.validate.HeartClientMessage;
 import org.slingerxv.limitart.net.binary.message.impl.validate.HeartServerMessage;
+import org.slingerxv.limitart.net.binary.message.impl.validate.SessionResumeClientMessage;
+import org.slingerxv.limitart.net.binary.message.impl.validate.SessionResumeServerMessage;
+import org.slingerxv.limitart.net.binary.util.ConnectGate;
+import org.slingerxv.limitart.net.binary.util.FlushCoalescingHandler;
+import org.slingerxv.limitart.net.binary.util.FlushCounter;
 import org.slingerxv.limitart.net.binary.util.SendMessageUtil;
+import org.slingerxv.limitart.net.define.EventLoopGroups;
 import org.slingerxv.limitart.net.struct.AddressPair;
 import org.slingerxv.limitart.util.SymmetricEncryptionUtil;
 import org.slingerxv.limitart.util.TimerUtil;
@@ -47,15 +63,14 @@ import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 
 /**
@@ -66,54 +81,102 @@ import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
  */
 public class BinaryClient {
 	private static Logger log = LoggerFactory.getLogger(BinaryClient.class);
-	private static EventLoopGroup group = new NioEventLoopGroup();
+	private static EventLoopGroup sharedGroup = EventLoopGroups.newEventLoopGroup("Binary-Client", 0);
+	private EventLoopGroup group;
 	private Bootstrap bootstrap;
+	private Bootstrap udpBootstrap;
 	private Channel channel;
 	private SymmetricEncryptionUtil decodeUtil;
 	// private long serverStartTime;
 	private long serverTime;
 	private TimerTask hearTask;
+	// 重连状态：是否已主动断开、连续失败次数、是否占用连接名额
+	private volatile boolean stopped;
+	private volatile int reconnectAttempts;
+	private ScheduledFuture<?> reconnectFuture;
+	// 当前连接是否已通过服务器验证
+	private volatile boolean validated;
+	private final AtomicBoolean connecting = new AtomicBoolean();
+	// 会话恢复凭证和本会话收到的业务帧数(恢复应答之后才计数)
+	private volatile long sessionId;
+	private long sessionToken;
+	volatile long receivedFrames;
+	private boolean counting;
 	// ----config
 	private String clientName;
 	private AddressPair remoteAddress;
 	private int autoReconnect;
+	private int reconnectMaxDelaySec;
 	private AbstractBinaryDecoder decoder;
 	private AbstractBinaryEncoder encoder;
 	private MessageFactory factory;
 	private int heartIntervalSec;
+	private int stringDictionaryCapacity;
+	private int flushBatchSize;
+	private int flushWindowMills;
+	private FlushCounter flushCounter = new FlushCounter();
+	private boolean sessionResume;
+	private ArqConfig arqConfig;
 	// ----listener
 	private Proc2<BinaryClient, Boolean> onChannelStateChanged;
 	private Proc2<BinaryClient, Throwable> onExceptionCaught;
 	private Proc1<BinaryClient> onConnectionEffective;
+	private Proc1<BinaryClient> onSessionResumed;
 	private Proc2<Message, IHandler<Message>> dispatchMessage;
+	private Func3<Channel, Short, ByteBuf, Boolean> forwardFrame;
 
 	private BinaryClient(BinaryClientBuilder builder) throws Exception {
 		this.clientName = builder.clientName;
 		this.remoteAddress = Objects.requireNonNull(builder.remoteAddress, "remoteAddress");
 		this.autoReconnect = builder.autoReconnect;
+		this.reconnectMaxDelaySec = Math.max(builder.autoReconnect, builder.reconnectMaxDelaySec);
 		this.decoder = Objects.requireNonNull(builder.decoder, "decoder");
 		this.encoder = Objects.requireNonNull(builder.encoder, "encoder");
 		this.factory = Objects.requireNonNull(builder.factory, "factory");
 		this.onChannelStateChanged = builder.onChannelStateChanged;
 		this.onExceptionCaught = builder.onExceptionCaught;
 		this.onConnectionEffective = builder.onConnectionEffective;
+		this.onSessionResumed = builder.onSessionResumed;
+		this.sessionResume = builder.sessionResume;
+		this.arqConfig = builder.arqConfig;
 		this.dispatchMessage = builder.dispatchMessage;
+		this.forwardFrame = builder.forwardFrame;
 		this.heartIntervalSec = builder.heartIntervalSec;
+		this.stringDictionaryCapacity = builder.stringDictionaryCapacity;
+		this.flushBatchSize = builder.flushBatchSize;
+		this.flushWindowMills = builder.flushWindowMills;
+		this.group = builder.eventLoopGroup == null ? sharedGroup : builder.eventLoopGroup;
 		// 内部消息注册
 		factory.registerMsg(new ConnectionValidateServerHandler())
-				.registerMsg(new ConnectionValidateSuccessServerHandler()).registerMsg(new HeartServerHandler());
+				.registerMsg(new ConnectionValidateSuccessServerHandler()).registerMsg(new HeartServerHandler())
+				.registerMsg(new SessionResumeServerHandler());
 		decodeUtil = SymmetricEncryptionUtil.getDecodeInstance(remoteAddress.getPass());
 		bootstrap = new Bootstrap();
-		bootstrap.channel(NioSocketChannel.class);
-		log.info(clientName + " nio init");
+		bootstrap.channel(EventLoopGroups.socketChannelClass(group));
+		log.info(clientName + (group instanceof EpollEventLoopGroup ? " epoll init" : " nio init"));
 		bootstrap.group(group).option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
 				.handler(new ChannelInitializerImpl());
+		if (arqConfig != null) {
+			udpBootstrap = new Bootstrap();
+			udpBootstrap.group(group).channel(EventLoopGroups.datagramChannelClass(group))
+					.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+					.handler(new ChannelInitializer<Channel>() {
+
+						@Override
+						protected void initChannel(Channel ch) throws Exception {
+							ch.pipeline().addLast(new ArqDatagramHandler(arqConfig, decoder, null));
+						}
+					});
+		}
 	}
 
-	private class ChannelInitializerImpl extends ChannelInitializer<SocketChannel> {
+	private class ChannelInitializerImpl extends ChannelInitializer<Channel> {
 
 		@Override
-		protected void initChannel(SocketChannel ch) throws Exception {
+		protected void initChannel(Channel ch) throws Exception {
+			if (flushBatchSize > 0) {
+				ch.pipeline().addLast(new FlushCoalescingHandler(flushBatchSize, flushWindowMills, flushCounter));
+			}
 			ch.pipeline()
 					.addLast(new LengthFieldBasedFrameDecoder(decoder.getMaxFrameLength(),
 							decoder.getLengthFieldOffset(), decoder.getLengthFieldLength(),
@@ -132,19 +195,26 @@ public class BinaryClient {
 				@Override
 				public void channelInactive(ChannelHandlerContext ctx) throws Exception {
 					log.info(clientName + " disconnected!");
+					counting = false;
+					validated = false;
+					// 验证通过前断开也算一次失败
+					finishConnect();
 					if (heartIntervalSec > 0 && hearTask != null) {
 						TimerUtil.unScheduleGlobal(hearTask);
 					}
 					Procs.invoke(onChannelStateChanged, BinaryClient.this, false);
-					if (autoReconnect > 0) {
-						tryReconnect(autoReconnect);
-					}
+					scheduleReconnect();
 				}
 
 				@Override
 				public void channelActive(ChannelHandlerContext ctx) throws Exception {
 					log.info(clientName + " connected!");
 					channel = ctx.channel();
+					validated = false;
+					if (stringDictionaryCapacity > 0) {
+						channel.attr(SendMessageUtil.STRING_DICTIONARY)
+								.set(new StringDictionary(stringDictionaryCapacity));
+					}
 					Procs.invoke(onChannelStateChanged, BinaryClient.this, true);
 				}
 
@@ -170,7 +240,31 @@ public class BinaryClient {
 		}
 	}
 
+	/**
+	 * 不解码直接转发消息体到服务器
+	 * <p>
+	 * 收发两端的连接都不能开启字符串字典
+	 * 
+	 * @param messageId
+	 * @param body
+	 * @param listener
+	 * @see SendMessageUtil#forward(AbstractBinaryEncoder, Channel, short, ByteBuf, Proc3)
+	 */
+	public void forward(short messageId, ByteBuf body, Proc3<Boolean, Throwable, Channel> listener) {
+		SendMessageUtil.forward(encoder, channel, messageId, body, listener);
+	}
+
 	public BinaryClient disConnect() {
+		// 主动断开不再重连，也不再恢复会话
+		stopped = true;
+		validated = false;
+		ScheduledFuture<?> future = reconnectFuture;
+		if (future != null) {
+			future.cancel(false);
+		}
+		sessionId = 0;
+		sessionToken = 0;
+		receivedFrames = 0;
 		if (channel != null) {
 			channel.close();
 			channel = null;
@@ -178,43 +272,117 @@ public class BinaryClient {
 		return this;
 	}
 
+	/**
+	 * 发起连接(不阻塞)，连接结果通过监听通知
+	 * 
+	 * @return
+	 */
 	public BinaryClient connect() {
-		tryReconnect(0);
+		stopped = false;
+		reconnectAttempts = 0;
+		connect0();
 		return this;
 	}
 
 	private void connect0() {
-		if (channel != null && channel.isWritable()) {
+		if (stopped || (channel != null && channel.isActive())) {
+			return;
+		}
+		// 同一客户端同时只有一次连接尝试
+		if (!connecting.compareAndSet(false, true)) {
+			return;
+		}
+		ConnectGate.acquire(this::doConnect);
+	}
+
+	private void doConnect() {
+		if (stopped) {
+			finishConnect();
 			return;
 		}
 		log.info(clientName + " start connect server：" + remoteAddress.getIp() + ":" + remoteAddress.getPort() + "...");
+		if (udpBootstrap != null) {
+			connectUdp();
+			return;
+		}
+		ChannelFuture future;
 		try {
-			bootstrap.connect(remoteAddress.getIp(), remoteAddress.getPort()).sync()
-					.addListener((ChannelFutureListener) channelFuture -> {
-						log.info(clientName + " connect server：" + remoteAddress.getIp() + ":" + remoteAddress.getPort()
-								+ " success！");
-					});
+			future = bootstrap.connect(remoteAddress.getIp(), remoteAddress.getPort());
 		} catch (Exception e) {
 			log.error(e.getMessage(), e);
-			if (autoReconnect > 0) {
-				tryReconnect(autoReconnect);
+			finishConnect();
+			scheduleReconnect();
+			return;
+		}
+		future.addListener((ChannelFutureListener) channelFuture -> {
+			if (channelFuture.isSuccess()) {
+				log.info(clientName + " connect server：" + remoteAddress.getIp() + ":" + remoteAddress.getPort()
+						+ " success！");
+				return;
 			}
+			log.error(clientName + " connect server：" + remoteAddress.getIp() + ":" + remoteAddress.getPort()
+					+ " fail！", channelFuture.cause());
+			finishConnect();
+			scheduleReconnect();
+		});
+	}
+
+	/**
+	 * 绑定本地UDP端口后建立可靠UDP连接，连接关闭时一起关闭UDP通道
+	 */
+	private void connectUdp() {
+		InetSocketAddress remote = new InetSocketAddress(remoteAddress.getIp(), remoteAddress.getPort());
+		udpBootstrap.bind(0).addListener((ChannelFutureListener) channelFuture -> {
+			if (!channelFuture.isSuccess()) {
+				log.error(clientName + " bind udp fail！", channelFuture.cause());
+				finishConnect();
+				scheduleReconnect();
+				return;
+			}
+			Channel datagram = channelFuture.channel();
+			ArqChannel child = datagram.pipeline().get(ArqDatagramHandler.class).connect(remote, ch -> {
+				ch.pipeline().addLast(new ChannelInitializerImpl());
+			});
+			child.closeFuture().addListener((ChannelFutureListener) closeFuture -> {
+				datagram.close();
+			});
+		});
+	}
+
+	/**
+	 * 连接尝试结束(验证通过、连接失败或验证前断开)，释放连接名额
+	 */
+	private void finishConnect() {
+		if (connecting.compareAndSet(true, false)) {
+			ConnectGate.release();
 		}
 	}
 
-	private void tryReconnect(int waitSeconds) {
-		if (channel != null) {
-			channel.close();
-			channel = null;
+	private void scheduleReconnect() {
+		if (stopped || autoReconnect <= 0) {
+			return;
 		}
-		log.info(clientName + " try connect server：" + remoteAddress.getIp() + " after " + waitSeconds + " seconds");
-		if (waitSeconds > 0) {
-			group.schedule(() -> {
-				connect0();
-			}, waitSeconds, TimeUnit.SECONDS);
-		} else {
+		int attempt = reconnectAttempts++;
+		long delay = reconnectDelayMills(autoReconnect * 1000L, reconnectMaxDelaySec * 1000L, attempt);
+		log.info(clientName + " try connect server：" + remoteAddress.getIp() + " after " + delay + " mills,attempt:"
+				+ attempt);
+		reconnectFuture = group.schedule(() -> {
 			connect0();
-		}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 指数退避加全抖动：在0到min(最大间隔, 初始间隔*2^attempt)之间随机，避免大量客户端同时重连
+	 * 
+	 * @param baseMills
+	 * @param maxMills
+	 * @param attempt
+	 *            连续失败次数，从0开始
+	 * @return
+	 */
+	static long reconnectDelayMills(long baseMills, long maxMills, int attempt) {
+		long ceiling = Math.min(maxMills, baseMills << Math.min(attempt, 30));
+		return ThreadLocalRandom.current().nextLong(ceiling + 1);
 	}
 
 	private void decodeConnectionValidateData(String validateStr) {
@@ -232,6 +400,9 @@ public class BinaryClient {
 
 	private void onConnectionValidateSeccuss(String remote) {
 		log.info("server validate success,remote:" + remote);
+		reconnectAttempts = 0;
+		validated = true;
+		finishConnect();
 		if (heartIntervalSec > 0) {
 			hearTask = new TimerTask() {
 
@@ -246,6 +417,37 @@ public class BinaryClient {
 			};
 			TimerUtil.scheduleGlobal(0, heartIntervalSec * 1000, hearTask);
 		}
+		if (!sessionResume) {
+			Procs.invoke(onConnectionEffective, this);
+			return;
+		}
+		// 请求恢复上次的会话，第一次连接时sessionId为0
+		SessionResumeClientMessage msg = new SessionResumeClientMessage();
+		msg.sessionId = sessionId;
+		msg.token = sessionToken;
+		msg.received = receivedFrames;
+		try {
+			sendMessage(msg);
+		} catch (Exception e) {
+			log.error(e.getMessage(), e);
+		}
+	}
+
+	private void onSessionResume(SessionResumeServerMessage msg) {
+		if (msg.sessionId == 0) {
+			// 服务器未开启会话恢复
+			Procs.invoke(onConnectionEffective, this);
+			return;
+		}
+		counting = true;
+		if (msg.resumed) {
+			log.info(clientName + " resume session " + sessionId + " from frame " + receivedFrames);
+			Procs.invoke(onSessionResumed, this);
+			return;
+		}
+		sessionId = msg.sessionId;
+		sessionToken = msg.token;
+		receivedFrames = 0;
 		Procs.invoke(onConnectionEffective, this);
 	}
 
@@ -262,6 +464,10 @@ public class BinaryClient {
 		return this.channel;
 	}
 
+	public EventLoopGroup eventLoopGroup() {
+		return this.group;
+	}
+
 	public SocketAddress remoteAddress() {
 		return this.channel.remoteAddress();
 	}
@@ -278,6 +484,29 @@ public class BinaryClient {
 		return autoReconnect;
 	}
 
+	public int getReconnectMaxDelaySec() {
+		return reconnectMaxDelaySec;
+	}
+
+	/**
+	 * 连续重连失败的次数
+	 * 
+	 * @return
+	 */
+	public int getReconnectAttempts() {
+		return reconnectAttempts;
+	}
+
+	/**
+	 * 当前连接是否可用且已通过服务器验证
+	 * 
+	 * @return
+	 */
+	public boolean isValidated() {
+		Channel channel = this.channel;
+		return validated && channel != null && channel.isActive();
+	}
+
 	public AbstractBinaryDecoder getDecoder() {
 		return decoder;
 	}
@@ -302,25 +531,69 @@ public class BinaryClient {
 		return heartIntervalSec;
 	}
 
+	public int getStringDictionaryCapacity() {
+		return stringDictionaryCapacity;
+	}
+
+	/**
+	 * 当前会话编号
+	 * 
+	 * @return 未开启会话恢复或还未建立时为0
+	 */
+	public long getSessionId() {
+		return sessionId;
+	}
+
+	/**
+	 * 当前会话收到的业务帧数(包括重连后补发的)
+	 * 
+	 * @return
+	 */
+	public long getReceivedFrames() {
+		return receivedFrames;
+	}
+
+	/**
+	 * flush合并统计(未开启合并时为0)
+	 * 
+	 * @return
+	 */
+	public FlushCounter getFlushCounter() {
+		return flushCounter;
+	}
+
 	private void channelRead0(ChannelHandlerContext ctx, Object arg)
 			throws MessageCodecException, ReflectiveOperationException {
 		ByteBuf buffer = (ByteBuf) arg;
+		Message msg = null;
 		try {
 			// 消息id
 			short messageId = decoder.readMessageId(ctx.channel(), buffer);
-			Message msg = factory.getMessage(messageId);
-			if (msg == null) {
+			boolean inner = InnerMessageEnum.getTypeByValue(messageId) != null;
+			if (counting && !inner) {
+				++receivedFrames;
+			}
+			// 需要转发的消息不解码
+			if (forwardFrame != null && !inner && forwardFrame.run(ctx.channel(), messageId, buffer)) {
+				return;
+			}
+			MessageSlot slot = factory.getSlot(messageId);
+			if (slot == null) {
 				throw new MessageCodecException(clientName + " message empty,id:" + Integer.toHexString(messageId));
 			}
+			msg = slot.newMessage();
 			msg.buffer(buffer);
+			msg.dictionary(ctx.channel().attr(SendMessageUtil.STRING_DICTIONARY).get());
 			try {
-				msg.decode();
+				slot.decode(msg);
 			} catch (Exception e) {
 				throw new MessageCodecException(e);
+			} finally {
+				msg.buffer(null);
+				msg.dictionary(null);
 			}
-			msg.buffer(null);
 			@SuppressWarnings("unchecked")
-			IHandler<Message> handler = (IHandler<Message>) factory.getHandler(messageId);
+			IHandler<Message> handler = (IHandler<Message>) slot.getHandler();
 			if (handler == null) {
 				throw new MessageCodecException(
 						clientName + " can not find handler for message,id:" + Integer.toHexString(messageId));
@@ -328,7 +601,7 @@ public class BinaryClient {
 			msg.setChannel(ctx.channel());
 			msg.setClient(this);
 			// 如果是内部消息，则自己消化
-			if (InnerMessageEnum.getTypeByValue(messageId) != null) {
+			if (inner) {
 				handler.handle(msg);
 			} else {
 				if (dispatchMessage != null) {
@@ -344,6 +617,10 @@ public class BinaryClient {
 			}
 		} finally {
 			buffer.release();
+			// 池化消息在处理完后归还
+			if (msg != null) {
+				msg.release();
+			}
 		}
 	}
 
@@ -372,24 +649,42 @@ public class BinaryClient {
 		}
 	}
 
+	private class SessionResumeServerHandler implements IHandler<SessionResumeServerMessage> {
+
+		@Override
+		public void handle(SessionResumeServerMessage msg) {
+			msg.getClient().onSessionResume(msg);
+		}
+	}
+
 	public static class BinaryClientBuilder {
 		private String clientName;
 		private AddressPair remoteAddress;
 		private int autoReconnect;
+		private int reconnectMaxDelaySec;
 		private AbstractBinaryDecoder decoder;
 		private AbstractBinaryEncoder encoder;
 		private MessageFactory factory;
 		private int heartIntervalSec;
+		private int stringDictionaryCapacity;
+		private int flushBatchSize;
+		private int flushWindowMills;
+		private EventLoopGroup eventLoopGroup;
+		private boolean sessionResume;
+		private ArqConfig arqConfig;
 		// ----listener
 		private Proc2<BinaryClient, Boolean> onChannelStateChanged;
 		private Proc2<BinaryClient, Throwable> onExceptionCaught;
 		private Proc1<BinaryClient> onConnectionEffective;
+		private Proc1<BinaryClient> onSessionResumed;
 		private Proc2<Message, IHandler<Message>> dispatchMessage;
+		private Func3<Channel, Short, ByteBuf, Boolean> forwardFrame;
 
 		public BinaryClientBuilder() {
 			this.clientName = "Binary-Client";
 			this.remoteAddress = new AddressPair("127.0.0.1", 8888);
 			this.autoReconnect = 0;
+			this.reconnectMaxDelaySec = 60;
 			this.decoder = AbstractBinaryDecoder.DEFAULT_DECODER;
 			this.encoder = AbstractBinaryEncoder.DEFAULT_ENCODER;
 			this.factory = new MessageFactory();
@@ -409,6 +704,31 @@ public class BinaryClient {
 			return new BinaryClient(this);
 		}
 
+		/**
+		 * 构建连接池，多个逻辑客户端共用connections条到同一服务器的连接
+		 * 
+		 * @param connections
+		 *            物理连接数
+		 * @return
+		 * @throws Exception
+		 */
+		public BinaryClientPool buildPool(int connections) throws Exception {
+			if (connections <= 0) {
+				throw new IllegalArgumentException("connections must greater than 0");
+			}
+			String name = this.clientName;
+			BinaryClient[] clients = new BinaryClient[connections];
+			try {
+				for (int i = 0; i < connections; ++i) {
+					this.clientName = name + "-" + i;
+					clients[i] = new BinaryClient(this);
+				}
+			} finally {
+				this.clientName = name;
+			}
+			return new BinaryClientPool(name, clients);
+		}
+
 		public BinaryClientBuilder decoder(AbstractBinaryDecoder decoder) {
 			this.decoder = decoder;
 			return this;
@@ -436,7 +756,7 @@ public class BinaryClient {
 		}
 
 		/**
-		 * 自动重连尝试间隔(秒)
+		 * 自动重连的初始间隔(秒)，0为不重连。连续失败时间隔按指数增长并随机抖动，验证通过后重置
 		 * 
 		 * @param autoReconnect
 		 * @return
@@ -446,6 +766,18 @@ public class BinaryClient {
 			return this;
 		}
 
+		/**
+		 * 自动重连的最大间隔(秒)，不小于初始间隔
+		 * 
+		 * @param reconnectMaxDelaySec
+		 * @return
+		 * @see ConnectGate 进程内同时连接数量限制
+		 */
+		public BinaryClientBuilder reconnectMaxDelaySec(int reconnectMaxDelaySec) {
+			this.reconnectMaxDelaySec = reconnectMaxDelaySec;
+			return this;
+		}
+
 		public BinaryClientBuilder factory(MessageFactory factory) {
 			this.factory = factory;
 			return this;
@@ -466,14 +798,105 @@ public class BinaryClient {
 			return this;
 		}
 
+		/**
+		 * 重连后恢复了原会话的监听，恢复时不再触发{@link #onConnectionEffective(Proc1)}
+		 * 
+		 * @param onSessionResumed
+		 * @return
+		 */
+		public BinaryClientBuilder onSessionResumed(Proc1<BinaryClient> onSessionResumed) {
+			this.onSessionResumed = onSessionResumed;
+			return this;
+		}
+
 		public BinaryClientBuilder dispatchMessage(Proc2<Message, IHandler<Message>> dispatchMessage) {
 			this.dispatchMessage = dispatchMessage;
 			return this;
 		}
 
+		/**
+		 * 消息转发监听(网关)，在解码前按消息id调用，返回true表示已经转发(可以通过{@link BinaryServer#forward}或
+		 * {@link SendMessageUtil#forward}零拷贝转发消息体)，不再解码和分发。buffer在返回后释放，异步使用时需要自行retain
+		 * 
+		 * @param forwardFrame
+		 *            连接，消息id，消息体
+		 * @return
+		 */
+		public BinaryClientBuilder forwardFrame(Func3<Channel, Short, ByteBuf, Boolean> forwardFrame) {
+			this.forwardFrame = forwardFrame;
+			return this;
+		}
+
 		public BinaryClientBuilder heartIntervalSec(int heartIntervalSec) {
 			this.heartIntervalSec = heartIntervalSec;
 			return this;
 		}
+
+		/**
+		 * 连接的字符串字典容量，0为不开启(服务器需要同样开启)
+		 * 
+		 * @param stringDictionaryCapacity
+		 * @return
+		 */
+		public BinaryClientBuilder stringDictionaryCapacity(int stringDictionaryCapacity) {
+			this.stringDictionaryCapacity = stringDictionaryCapacity;
+			return this;
+		}
+
+		/**
+		 * 使用可靠UDP代替TCP(服务器需要同样开启)
+		 * 
+		 * @param arqConfig
+		 * @return
+		 */
+		public BinaryClientBuilder udp(ArqConfig arqConfig) {
+			this.arqConfig = arqConfig;
+			return this;
+		}
+
+		/**
+		 * 开启会话恢复：重连时带上会话凭证和已收到的帧数，服务器只补发没收到的帧(服务器需要同样开启)
+		 * 
+		 * @param sessionResume
+		 * @return
+		 */
+		public BinaryClientBuilder sessionResume(boolean sessionResume) {
+			this.sessionResume = sessionResume;
+			return this;
+		}
+
+		/**
+		 * 合并flush：处理消息期间只write，读完成后(其他线程发送时在EventLoop本轮任务后或时间窗口后)统一flush，
+		 * 最多合并多少次flush，0为不开启
+		 * 
+		 * @param flushBatchSize
+		 * @return
+		 */
+		public BinaryClientBuilder flushBatchSize(int flushBatchSize) {
+			this.flushBatchSize = flushBatchSize;
+			return this;
+		}
+
+		/**
+		 * 合并flush的时间窗口，0为EventLoop本轮任务执行完后立即flush
+		 * 
+		 * @param flushWindowMills
+		 * @return
+		 */
+		public BinaryClientBuilder flushWindowMills(int flushWindowMills) {
+			this.flushWindowMills = flushWindowMills;
+			return this;
+		}
+
+		/**
+		 * 指定线程组(如与服务器共用worker线程组)，不指定则使用所有客户端共享的线程组，通道类型随线程组选择epoll或nio
+		 * 
+		 * @param eventLoopGroup
+		 * @return
+		 */
+		public BinaryClientBuilder eventLoopGroup(EventLoopGroup eventLoopGroup) {
+			this.eventLoopGroup = eventLoopGroup;
+			return this;
+		}
 	}
 }
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slingerxv.limitart.funcs.Proc3;
+import org.slingerxv.limitart.net.binary.message.Message;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+
+/**
+ * 客户端连接池，多个逻辑客户端复用少量到同一服务器的物理连接
+ * 
+ * @author hank
+ *
+ */
+public class BinaryClientPool {
+	private String poolName;
+	private BinaryClient[] clients;
+	private AtomicInteger[] leaseCounts;
+
+	BinaryClientPool(String poolName, BinaryClient[] clients) {
+		this.poolName = poolName;
+		this.clients = clients;
+		this.leaseCounts = new AtomicInteger[clients.length];
+		for (int i = 0; i < clients.length; ++i) {
+			leaseCounts[i] = new AtomicInteger(0);
+		}
+	}
+
+	public BinaryClientPool connect() {
+		for (BinaryClient client : clients) {
+			client.connect();
+		}
+		return this;
+	}
+
+	public BinaryClientPool disConnect() {
+		for (BinaryClient client : clients) {
+			client.disConnect();
+		}
+		return this;
+	}
+
+	/**
+	 * 创建逻辑客户端，绑定到当前使用者最少的连接上，同一逻辑客户端的消息按顺序发送(切换连接前后的消息不保证顺序)
+	 * 
+	 * @return
+	 */
+	public LogicalClient lease() {
+		int index = 0;
+		for (int i = 1; i < leaseCounts.length; ++i) {
+			if (leaseCounts[i].get() < leaseCounts[index].get()) {
+				index = i;
+			}
+		}
+		leaseCounts[index].incrementAndGet();
+		return new LogicalClient(index);
+	}
+
+	public String getPoolName() {
+		return poolName;
+	}
+
+	public int size() {
+		return clients.length;
+	}
+
+	public BinaryClient getClient(int index) {
+		return clients[index];
+	}
+
+	/**
+	 * 每条连接上的逻辑客户端数量
+	 * 
+	 * @return
+	 */
+	public int[] getLeaseCounts() {
+		int[] counts = new int[leaseCounts.length];
+		for (int i = 0; i < counts.length; ++i) {
+			counts[i] = leaseCounts[i].get();
+		}
+		return counts;
+	}
+
+	/**
+	 * 逻辑客户端，绑定的连接不可用时临时改用其他已通过验证的连接
+	 * <p>
+	 * 切换到其他连接后，消息与原连接上尚未送达的消息之间不保证顺序
+	 * 
+	 * @author hank
+	 *
+	 */
+	public class LogicalClient {
+		private int index;
+		private volatile boolean released;
+
+		private LogicalClient(int index) {
+			this.index = index;
+		}
+
+		/**
+		 * 当前用于发送的物理连接
+		 * 
+		 * @return
+		 */
+		public BinaryClient physical() {
+			BinaryClient client = clients[index];
+			if (client.isValidated()) {
+				return client;
+			}
+			for (int i = 1; i < clients.length; ++i) {
+				BinaryClient other = clients[(index + i) % clients.length];
+				if (other.isValidated()) {
+					return other;
+				}
+			}
+			return client;
+		}
+
+		public void sendMessage(Message msg) throws Exception {
+			sendMessage(msg, null);
+		}
+
+		public void sendMessage(Message msg, Proc3<Boolean, Throwable, Channel> listener) throws Exception {
+			physical().sendMessage(msg, listener);
+		}
+
+		public void forward(short messageId, ByteBuf body, Proc3<Boolean, Throwable, Channel> listener) {
+			physical().forward(messageId, body, listener);
+		}
+
+		/**
+		 * 归还到连接池，不关闭物理连接
+		 */
+		public void release() {
+			if (released) {
+				return;
+			}
+			released = true;
+			leaseCounts[index].decrementAndGet();
+		}
+
+		public int getIndex() {
+			return index;
+		}
+	}
+}
@@ -16,54 +16,81 @@
 package org.slingerxv.limitart.net.binary;
 
 import java.net.InetSocketAddress;
+import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 import java.util.TimeZone;
-import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.slingerxv.limitart.collections.ConcurrentHashSet;
+import org.slingerxv.limitart.funcs.Func3;
 import org.slingerxv.limitart.funcs.Proc1;
 import org.slingerxv.limitart.funcs.Proc2;
 import org.slingerxv.limitart.funcs.Proc3;
 import org.slingerxv.limitart.funcs.Procs;
+import org.slingerxv.limitart.net.binary.arq.ArqConfig;
+import org.slingerxv.limitart.net.binary.arq.ArqDatagramHandler;
 import org.slingerxv.limitart.net.binary.codec.AbstractBinaryDecoder;
 import org.slingerxv.limitart.net.binary.codec.AbstractBinaryEncoder;
 import org.slingerxv.limitart.net.binary.handler.IHandler;
 import org.slingerxv.limitart.net.binary.handler.annotation.Controller;
 import org.slingerxv.limitart.net.binary.message.Message;
 import org.slingerxv.limitart.net.binary.message.MessageFactory;
+import org.slingerxv.limitart.net.binary.message.MessageSlot;
+import org.slingerxv.limitart.net.binary.message.StringDictionary;
 import org.slingerxv.limitart.net.binary.message.constant.InnerMessageEnum;
 import org.slingerxv.limitart.net.binary.message.exception.HeartNotAnswerException;
 import org.slingerxv.limitart.net.binary.message.exception.HeartTooQuickException;
 import org.slingerxv.limitart.net.binary.message.exception.MessageCodecException;
+import org.slingerxv.limitart.net.binary.message.exception.RateLimitException;
 import org.slingerxv.limitart.net.binary.message.exception.SendMessageTooFastException;
 import org.slingerxv.limitart.net.binary.message.impl.validate.ConnectionValidateClientMessage;
 import org.slingerxv.limitart.net.binary.message.impl.validate.ConnectionValidateServerMessage;
 import org.slingerxv.limitart.net.binary.message.impl.validate.ConnectionValidateSuccessServerMessage;
 import org.slingerxv.limitart.net.binary.message.impl.validate.HeartClientMessage;
 import org.slingerxv.limitart.net.binary.message.impl.validate.HeartServerMessage;
+import org.slingerxv.limitart.net.binary.message.impl.validate.SessionResumeClientMessage;
+import org.slingerxv.limitart.net.binary.message.impl.validate.SessionResumeServerMessage;
+import org.slingerxv.limitart.net.binary.util.BinaryWebSocketCodec;
+import org.slingerxv.limitart.net.binary.util.FlushCoalescingHandler;
+import org.slingerxv.limitart.net.binary.util.FlushCounter;
+import org.slingerxv.limitart.net.binary.util.OutboundQueue;
+import org.slingerxv.limitart.net.binary.util.OutboundQueue.OverflowPolicy;
+import org.slingerxv.limitart.net.binary.util.RateLimiter;
+import org.slingerxv.limitart.net.binary.util.RateLimiter.Rule;
 import org.slingerxv.limitart.net.binary.util.SendMessageUtil;
+import org.slingerxv.limitart.net.binary.util.WebSocketSniffer;
 import org.slingerxv.limitart.net.define.AbstractNettyServer;
+import org.slingerxv.limitart.net.define.EventLoopGroups;
 import org.slingerxv.limitart.net.define.IServer;
 import org.slingerxv.limitart.net.struct.AddressPair;
 import org.slingerxv.limitart.util.RandomUtil;
 import org.slingerxv.limitart.util.StringUtil;
 import org.slingerxv.limitart.util.SymmetricEncryptionUtil;
-import org.slingerxv.limitart.util.TimerUtil;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
 import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
-import io.netty.util.AttributeKey;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.websocketx.WebSocketFrameAggregator;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketServerCompressionHandler;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import io.netty.util.concurrent.DefaultThreadFactory;
 
 /**
  * 二进制通信服务器
@@ -74,16 +101,18 @@ import io.netty.util.AttributeKey;
 @Controller
 public class BinaryServer extends AbstractNettyServer implements IServer {
 	private static Logger log = LoggerFactory.getLogger(BinaryServer.class);
-	private static AttributeKey<Long> LAST_HEART_TIME = AttributeKey.newInstance("LAST_HEART_TIME");
-	private static AttributeKey<Long> FIRST_HEART_TIME = AttributeKey.newInstance("FIRST_HEART_TIME");
-	private static AttributeKey<Long> LAST_RECEIVE_MSG_TIME = AttributeKey.newInstance("LAST_RECEIVE_MSG_TIME");
-	private static AttributeKey<Integer> HEART_COUNT = AttributeKey.newInstance("HEART_COUNT");
-	private ConcurrentHashMap<String, SessionValidateData> unvalidatedChannels = new ConcurrentHashMap<>();
-	private ConcurrentHashSet<Channel> validatedChannels = new ConcurrentHashSet<>();
+	// 连续多少个心跳周期没有心跳则断开
+	private static final int HEART_MISS_LIMIT = 3;
+	private static final SecureRandom TOKEN_RANDOM = new SecureRandom();
+	// 同端口时等待首包区分WebSocket的时间
+	private static final int WEB_SOCKET_SNIFF_MILLS = 100;
+	private static final int WEB_SOCKET_HANDSHAKE_MAX = 8192;
 	private SymmetricEncryptionUtil encrypUtil;
-	private TimerTask clearTask;
-	private TimerTask heartTask;
-	private AtomicInteger connectionCount = new AtomicInteger(0);
+	private HashedWheelTimer heartTimer;
+	// 断线后等待恢复的会话
+	private ConcurrentHashMap<Long, Session> resumableSessions = new ConcurrentHashMap<>();
+	private AtomicLong sessionIdCreator = new AtomicLong();
+	private ReplayRecorder replayRecorder;
 	private long startTime;
 
 	// --config
@@ -95,19 +124,43 @@ public class BinaryServer extends AbstractNettyServer implements IServer {
 	private HashSet<String> whiteList;
 	private MessageFactory factory;
 	private int maxConnection;
+	private int acceptorCount;
 	private int heartIntervalSec;
 	private int checkHeartWhenConnectionCount;
 	private int receiveIntervalMills;
+	private RateLimiter rateLimiter;
+	private int stringDictionaryCapacity;
+	private int flushBatchSize;
+	private int flushWindowMills;
+	private FlushCounter flushCounter = new FlushCounter();
+	private int outboundQueueBytes;
+	private OverflowPolicy outboundOverflowPolicy;
+	private int writeBufferLowWaterMark;
+	private int writeBufferHighWaterMark;
+	private int sessionResumeWindowSec;
+	private int replayFrames;
+	private int replayBytes;
+	private ArqConfig arqConfig;
+	private int webSocketPort;
+	private String webSocketPath;
+	private boolean webSocketDeflate;
 
 	// ---listener
 	private Proc2<Channel, Boolean> onChannelStateChanged;
 	private Proc2<Channel, Throwable> onExceptionCaught;
 	private Proc1<Channel> onServerBind;
 	private Proc1<Channel> onConnectionEffective;
+	private Proc2<Channel, Channel> onSessionResumed;
 	private Proc2<Message, IHandler<Message>> dispatchMessage;
+	private Func3<Channel, Short, ByteBuf, Boolean> forwardFrame;
 
 	private BinaryServer(BinaryServerBuilder builder) throws Exception {
-		super(builder.serverName);
+		super(builder.serverName,
+				builder.dedicatedBossThreads > 0
+						? EventLoopGroups.dedicated(builder.serverName,
+								Math.max(builder.dedicatedBossThreads, builder.acceptorCount),
+								builder.dedicatedWorkerThreads)
+						: builder.eventLoopGroups);
 		this.serverName = builder.serverName;
 		this.addressPair = Objects.requireNonNull(builder.addressPair, "addressPair");
 		this.connectionValidateTimeInSec = builder.connectionValidateTimeInSec;
@@ -119,39 +172,64 @@ public class BinaryServer extends AbstractNettyServer implements IServer {
 		this.onExceptionCaught = builder.onExceptionCaught;
 		this.onServerBind = builder.onServerBind;
 		this.onConnectionEffective = builder.onConnectionEffective;
+		this.onSessionResumed = builder.onSessionResumed;
 		this.dispatchMessage = builder.dispatchMessage;
+		this.forwardFrame = builder.forwardFrame;
 		this.maxConnection = builder.maxConnection;
+		this.acceptorCount = builder.acceptorCount;
 		this.heartIntervalSec = builder.heartIntervalSec;
 		this.checkHeartWhenConnectionCount = builder.checkHeartWhenConnectionCount;
 		this.receiveIntervalMills = builder.receiveIntervalMills;
+		this.rateLimiter = builder.rateLimiter;
+		this.stringDictionaryCapacity = builder.stringDictionaryCapacity;
+		this.flushBatchSize = builder.flushBatchSize;
+		this.flushWindowMills = builder.flushWindowMills;
+		this.outboundQueueBytes = builder.outboundQueueBytes;
+		this.outboundOverflowPolicy = builder.outboundOverflowPolicy;
+		this.writeBufferLowWaterMark = builder.writeBufferLowWaterMark;
+		this.writeBufferHighWaterMark = builder.writeBufferHighWaterMark;
+		this.sessionResumeWindowSec = builder.sessionResumeWindowSec;
+		this.replayFrames = builder.replayFrames;
+		this.replayBytes = builder.replayBytes;
+		this.arqConfig = builder.arqConfig;
+		this.webSocketPort = builder.webSocketPort;
+		this.webSocketPath = builder.webSocketPath;
+		this.webSocketDeflate = builder.webSocketDeflate;
+		if (sessionResumeWindowSec > 0) {
+			// 重发的帧是按旧连接的字典编码的
+			if (stringDictionaryCapacity > 0) {
+				throw new IllegalArgumentException("session resume can not work with string dictionary");
+			}
+			replayRecorder = new ReplayRecorder();
+		}
 		// 初始化内部消息
-		this.factory.registerMsg(new ConnectionValidateClientHandler()).registerMsg(new HeartClientHandler());
+		this.factory.registerMsg(new ConnectionValidateClientHandler()).registerMsg(new HeartClientHandler())
+				.registerMsg(new SessionResumeClientHandler());
 		if (needPass()) {
 			// 初始化加密工具
 			encrypUtil = SymmetricEncryptionUtil.getEncodeInstance(addressPair.getPass(), "20170106");
-			clearTask = new TimerTask() {
-
-				@Override
-				public void run() {
-					clearUnvalidatedConnection();
-				}
-			};
-			TimerUtil.scheduleGlobal(1000, 1000, clearTask);
 		}
 		if (heartIntervalSec > 0) {
-			heartTask = new TimerTask() {
-
-				@Override
-				public void run() {
-					clearUnheart();
-				}
-			};
-			TimerUtil.scheduleGlobal(5000, 5000, heartTask);
+			heartTimer = new HashedWheelTimer(new DefaultThreadFactory(serverName + "-Heart"), 100,
+					TimeUnit.MILLISECONDS, 512);
 		}
 	}
 
 	@Override
 	protected void initPipeline(ChannelPipeline pipeline) {
+		if (isWebSocketOnSamePort()) {
+			pipeline.addLast(new WebSocketSniffer(WEB_SOCKET_SNIFF_MILLS, this::webSocketHandlers));
+		}
+		if (replayRecorder != null) {
+			pipeline.addLast(replayRecorder);
+		}
+		if (flushBatchSize > 0) {
+			pipeline.addLast(new FlushCoalescingHandler(flushBatchSize, flushWindowMills, flushCounter));
+		}
+		if (outboundQueueBytes > 0) {
+			pipeline.addLast(new OutboundQueue(outboundQueueBytes, outboundOverflowPolicy, writeBufferLowWaterMark,
+					writeBufferHighWaterMark));
+		}
 		pipeline.addLast(new LengthFieldBasedFrameDecoder(decoder.getMaxFrameLength(), decoder.getLengthFieldOffset(),
 				decoder.getLengthFieldLength(), decoder.getLengthAdjustment(), decoder.getInitialBytesToStrip()))
 				.addLast(new ChannelInboundHandlerAdapter() {
@@ -168,7 +246,7 @@ public class BinaryServer extends AbstractNettyServer implements IServer {
 
 					@Override
 					public void channelActive(ChannelHandlerContext ctx) throws Exception {
-						if (maxConnection > 0 && connectionCount.get() >= maxConnection) {
+						if (maxConnection > 0 && getConnectionCount() >= maxConnection) {
 							log.error("connection count is greater than " + maxConnection + " close channel:"
 									+ ctx.channel());
 							ctx.channel().close();
@@ -184,27 +262,46 @@ public class BinaryServer extends AbstractNettyServer implements IServer {
 								return;
 							}
 						}
-						connectionCount.incrementAndGet();
+						increaseConnection(ctx.channel());
+						Session session = Session.attach(ctx.channel(), System.currentTimeMillis());
+						if (rateLimiter != null) {
+							session.rateStates = new long[rateLimiter.size()];
+						}
+						if (stringDictionaryCapacity > 0) {
+							session.dictionary = new StringDictionary(stringDictionaryCapacity);
+							ctx.channel().attr(SendMessageUtil.STRING_DICTIONARY).set(session.dictionary);
+						}
 						Procs.invoke(onChannelStateChanged, ctx.channel(), true);
 						if (needPass()) {
-							startConnectionValidate(ctx.channel());
+							startConnectionValidate(session);
 						} else {
+							session.validated = true;
 							// 通知客户端成功
 							try {
-								sendMessage(channel(), new ConnectionValidateSuccessServerMessage(), null);
+								sendMessage(ctx.channel(), new ConnectionValidateSuccessServerMessage(), null);
 							} catch (Exception e) {
 								log.error("error", e);
 							}
-							validatedChannels.add(ctx.channel());
-							Procs.invoke(onConnectionEffective, channel());
+							startHeartCheck(session);
+							if (sessionResumeWindowSec <= 0) {
+								Procs.invoke(onConnectionEffective, ctx.channel());
+							}
 						}
 					}
 
 					@Override
 					public void channelInactive(ChannelHandlerContext ctx) throws Exception {
 						log.info(ctx.channel().remoteAddress() + " disconnected！");
-						connectionCount.decrementAndGet();
-						validatedChannels.remove(ctx.channel());
+						decreaseConnection(ctx.channel());
+						Session session = Session.get(ctx.channel());
+						if (session != null) {
+							session.cancelTimeouts();
+							if (session.replay != null) {
+								session.expireFuture = ctx.channel().eventLoop().schedule(() -> {
+									expireSession(session);
+								}, sessionResumeWindowSec, TimeUnit.SECONDS);
+							}
+						}
 						Procs.invoke(onChannelStateChanged, ctx.channel(), false);
 					}
 
@@ -215,17 +312,60 @@ public class BinaryServer extends AbstractNettyServer implements IServer {
 				});
 	}
 
+	/**
+	 * WebSocket连接的handler：握手后一个二进制消息对应一个完整的帧，之后与TCP连接的pipeline相同
+	 * 
+	 * @return
+	 */
+	private ChannelHandler[] webSocketHandlers() {
+		List<ChannelHandler> handlers = new ArrayList<>();
+		handlers.add(new HttpServerCodec());
+		handlers.add(new HttpObjectAggregator(WEB_SOCKET_HANDSHAKE_MAX));
+		if (webSocketDeflate) {
+			handlers.add(new WebSocketServerCompressionHandler());
+		}
+		handlers.add(new WebSocketServerProtocolHandler(webSocketPath, null, webSocketDeflate,
+				decoder.getMaxFrameLength()));
+		handlers.add(new WebSocketFrameAggregator(decoder.getMaxFrameLength()));
+		handlers.add(new BinaryWebSocketCodec());
+		return handlers.toArray(new ChannelHandler[handlers.size()]);
+	}
+
+	private boolean isWebSocketOnSamePort() {
+		return webSocketPath != null && arqConfig == null && webSocketPort == addressPair.getPort();
+	}
+
 	@Override
 	public void startServer() {
 		startTime = System.currentTimeMillis();
-		bind(addressPair.getPort(), onServerBind);
+		Proc1<Channel> bindListener = onServerBind;
+		if (webSocketPath != null && !isWebSocketOnSamePort()) {
+			// 主端口绑定后再绑定WebSocket端口
+			bindListener = channel -> bind(webSocketPort, acceptorCount, pipeline -> {
+				pipeline.addLast(webSocketHandlers());
+				initPipeline(pipeline);
+			}, onServerBind);
+		}
+		if (arqConfig != null) {
+			bindDatagram(addressPair.getPort(), acceptorCount, channel -> {
+				channel.pipeline().addLast(new ArqDatagramHandler(arqConfig, decoder, child -> {
+					initPipeline(child.pipeline());
+				}));
+			}, bindListener);
+			return;
+		}
+		bind(addressPair.getPort(), acceptorCount, bindListener);
 	}
 
 	@Override
 	public void stopServer() {
 		unbind();
-		TimerUtil.unScheduleGlobal(clearTask);
-		TimerUtil.unScheduleGlobal(heartTask);
+		if (heartTimer != null) {
+			heartTimer.stop();
+		}
+		for (Session session : resumableSessions.values()) {
+			expireSession(session);
+		}
 	}
 
 	public void sendMessage(Channel channel, Message msg) throws MessageCodecException {
@@ -237,6 +377,21 @@ public class BinaryServer extends AbstractNettyServer implements IServer {
 		SendMessageUtil.sendMessage(encoder, channel, msg, listener);
 	}
 
+	/**
+	 * 不解码直接转发消息体
+	 * <p>
+	 * 收发两端的连接都不能开启字符串字典
+	 * 
+	 * @param channel
+	 * @param messageId
+	 * @param body
+	 * @param listener
+	 * @see SendMessageUtil#forward(AbstractBinaryEncoder, Channel, short, ByteBuf, Proc3)
+	 */
+	public void forward(Channel channel, short messageId, ByteBuf body, Proc3<Boolean, Throwable, Channel> listener) {
+		SendMessageUtil.forward(encoder, channel, messageId, body, listener);
+	}
+
 	public void sendMessage(List<Channel> channels, Message msg) throws MessageCodecException {
 		sendMessage(channels, msg, null);
 	}
@@ -247,24 +402,41 @@ public class BinaryServer extends AbstractNettyServer implements IServer {
 	}
 
 	/**
-	 * 开始验证链接
+	 * 发给多个连接(如{@link io.netty.channel.group.ChannelGroup})，只编码一次
+	 * 
+	 * @param channels
+	 * @param msg
+	 * @param listener
+	 * @throws MessageCodecException
+	 */
+	public void sendMessage(Iterable<Channel> channels, Message msg, Proc3<Boolean, Throwable, Channel> listener)
+			throws MessageCodecException {
+		SendMessageUtil.sendMessage(encoder, channels, msg, listener);
+	}
+
+	/**
+	 * 开始验证链接，超时未通过验证则断开
 	 * 
-	 * @param context
+	 * @param session
 	 */
-	private void startConnectionValidate(Channel channel) {
-		SessionValidateData data = new SessionValidateData(channel, System.currentTimeMillis(),
-				RandomUtil.randomInt(0, 10000));
-		// 增加到临时会话集合
-		unvalidatedChannels.put(data.channel.id().asLongText(), data);
+	private void startConnectionValidate(Session session) {
+		Channel channel = session.getChannel();
+		session.validateRandom = RandomUtil.randomInt(0, 10000);
+		session.validateTimeout = channel.eventLoop().schedule(() -> {
+			if (!session.validated && channel.isActive()) {
+				channel.close();
+				log.error(serverName + " connection " + channel.remoteAddress() + " discarded，validate time out");
+			}
+		}, connectionValidateTimeInSec, TimeUnit.SECONDS);
 		// 通知客户端
 		ConnectionValidateServerMessage msg = new ConnectionValidateServerMessage();
 		String encode;
 		try {
-			encode = encrypUtil.encode(data.validateRandom + "");
+			encode = encrypUtil.encode(session.validateRandom + "");
 		} catch (Exception e) {
 			log.error("encode link validate code error", e);
 			channel.close();
-			log.info(serverName + " remote connection " + data.channel.remoteAddress()
+			log.info(serverName + " remote connection " + channel.remoteAddress()
 					+ " discarded，server encryp util error！");
 			return;
 		}
@@ -285,77 +457,120 @@ public class BinaryServer extends AbstractNettyServer implements IServer {
 	}
 
 	/**
-	 * 清理没通过验证的链接
+	 * 连接验证通过后开始心跳超时检查
+	 * 
+	 * @param session
 	 */
-	private void clearUnvalidatedConnection() {
-		if (unvalidatedChannels.isEmpty()) {
+	private void startHeartCheck(Session session) {
+		if (heartTimer == null) {
 			return;
 		}
-		long now = System.currentTimeMillis();
-		Iterator<SessionValidateData> iterator = unvalidatedChannels.values().iterator();
-		for (; iterator.hasNext();) {
-			SessionValidateData data = iterator.next();
-			long startValidateTime = data.startValidateTime;
-			if (now - startValidateTime > connectionValidateTimeInSec * 1000) {
-				iterator.remove();
-				data.channel.close();
-				// 移除链接
-				log.error(serverName + " connection " + data.channel.remoteAddress()
-						+ " discarded，validate time out,wait validate size:" + unvalidatedChannels.size());
+		session.lastHeartTime = System.currentTimeMillis();
+		session.heartTimeout = heartTimer.newTimeout(new HeartCheckTask(session), heartTimeoutMills(),
+				TimeUnit.MILLISECONDS);
+	}
+
+	private long heartTimeoutMills() {
+		return heartIntervalSec * 1000L * HEART_MISS_LIMIT;
+	}
+
+	/**
+	 * 检查连接是否已验证、是否超出限流并记录消息接收时间
+	 * 
+	 * @param session
+	 * @param messageId
+	 * @return 未通过验证或被限流丢弃时返回false，不接受消息
+	 */
+	private boolean checkReceive(Session session, short messageId) {
+		if (!session.validated) {
+			log.error("channel " + session.getChannel() + " has not validate yet!");
+			return false;
+		}
+		// 记录消息接收时间
+		if (receiveIntervalMills > 0) {
+			long now = System.currentTimeMillis();
+			long lastReceiveTime = session.lastReceiveTime;
+			if (lastReceiveTime > 0 && (now - lastReceiveTime) < receiveIntervalMills) {
+				Channel channel = session.getChannel();
+				channel.pipeline().fireExceptionCaught(
+						new SendMessageTooFastException(channel, receiveIntervalMills, (int) (now - lastReceiveTime)));
+				channel.close();
 			}
+			session.lastReceiveTime = now;
 		}
+		return rateLimiter == null || checkRate(session, messageId);
 	}
 
-	private void clearUnheart() {
-		if (checkHeartWhenConnectionCount > connectionCount.get()) {
-			return;
+	private boolean checkRate(Session session, short messageId) {
+		int index = rateLimiter.ruleIndex(messageId);
+		if (index < 0) {
+			return true;
 		}
-		long now = System.currentTimeMillis();
-		for (Channel channel : validatedChannels) {
-			long last = 0;
-			long first = 0;
-			int count = 0;
-			if (channel.hasAttr(LAST_HEART_TIME)) {
-				last = channel.attr(LAST_HEART_TIME).get();
-			}
-			if (channel.hasAttr(FIRST_HEART_TIME)) {
-				first = channel.attr(FIRST_HEART_TIME).get();
-			}
-			if (channel.hasAttr(HEART_COUNT)) {
-				count = channel.attr(HEART_COUNT).get();
-			}
-			int allow = (int) ((now - first) / (heartIntervalSec * 1000));
-			if (count - 2 > allow) {
-				log.error(channel + " heart too quick,might be Game Accelerator,please check!");
-				channel.pipeline().fireExceptionCaught(new HeartTooQuickException(channel, first, now, count, allow));
-				channel.attr(FIRST_HEART_TIME).set(now);
-				channel.attr(HEART_COUNT).set(0);
-			}
-			if (count < allow - 2) {
-				channel.pipeline().fireExceptionCaught(new HeartNotAnswerException(channel, first, last, count));
-				channel.close();
+		long wait = rateLimiter.acquire(session.rateStates, index, System.nanoTime());
+		if (wait <= 0) {
+			return true;
+		}
+		Channel channel = session.getChannel();
+		Rule rule = rateLimiter.getRule(index);
+		switch (rule.getAction()) {
+		case DELAY:
+			if (!session.readPaused) {
+				session.readPaused = true;
+				channel.config().setAutoRead(false);
+				channel.eventLoop().schedule(() -> {
+					session.readPaused = false;
+					channel.config().setAutoRead(true);
+				}, wait, TimeUnit.NANOSECONDS);
 			}
+			return true;
+		case DISCONNECT:
+			channel.pipeline().fireExceptionCaught(
+					new RateLimitException(channel, messageId, rule.getRate(), rule.getBurst()));
+			channel.close();
+			return false;
+		default:
+			return false;
 		}
 	}
 
 	private void channelRead0(ChannelHandlerContext ctx, Object arg) {
 		ByteBuf buffer = (ByteBuf) arg;
+		Message msg = null;
 		try {
+			Session session = Session.get(ctx.channel());
+			if (session == null) {
+				return;
+			}
+			++session.receivedMessages;
+			session.receivedBytes += buffer.readableBytes();
 			// 消息id
 			short messageId = decoder.readMessageId(ctx.channel(), buffer);
-			Message msg = factory.getMessage(messageId);
-			if (msg == null) {
+			// 需要转发的消息不解码
+			if (forwardFrame != null && InnerMessageEnum.getTypeByValue(messageId) == null) {
+				if (!checkReceive(session, messageId)) {
+					return;
+				}
+				if (forwardFrame.run(ctx.channel(), messageId, buffer)) {
+					return;
+				}
+			}
+			MessageSlot slot = factory.getSlot(messageId);
+			if (slot == null) {
 				throw new MessageCodecException(serverName + " message empty,id:" + Integer.toHexString(messageId));
 			}
+			msg = slot.newMessage();
 			msg.buffer(buffer);
+			msg.dictionary(session.dictionary);
 			try {
-				msg.decode();
+				slot.decode(msg);
 			} catch (Exception e) {
 				throw new MessageCodecException(e);
+			} finally {
+				msg.buffer(null);
+				msg.dictionary(null);
 			}
-			msg.buffer(null);
 			@SuppressWarnings("unchecked")
-			IHandler<Message> handler = (IHandler<Message>) factory.getHandler(messageId);
+			IHandler<Message> handler = (IHandler<Message>) slot.getHandler();
 			if (handler == null) {
 				throw new MessageCodecException(
 						serverName + " can not find handler for message,id:" + Integer.toHexString(messageId));
@@ -366,24 +581,9 @@ public class BinaryServer extends AbstractNettyServer implements IServer {
 			if (InnerMessageEnum.getTypeByValue(messageId) != null) {
 				handler.handle(msg);
 			} else {
-				// 如果没通过验证，不接受消息
-				if (unvalidatedChannels.containsKey(ctx.channel().id().asLongText())) {
-					log.error("channel " + ctx.channel() + " has not validate yet!");
+				if (forwardFrame == null && !checkReceive(session, messageId)) {
 					return;
 				}
-				long now = System.currentTimeMillis();
-				// 记录消息接收时间
-				if (receiveIntervalMills > 0) {
-					if (ctx.channel().hasAttr(LAST_RECEIVE_MSG_TIME)) {
-						Long lastReceiveTime = ctx.channel().attr(LAST_RECEIVE_MSG_TIME).get();
-						if (lastReceiveTime != null && (now - lastReceiveTime) < receiveIntervalMills) {
-							ctx.channel().pipeline().fireExceptionCaught(new SendMessageTooFastException(ctx.channel(),
-									receiveIntervalMills, (int) (now - lastReceiveTime)));
-							ctx.channel().close();
-						}
-					}
-					ctx.channel().attr(LAST_RECEIVE_MSG_TIME).set(now);
-				}
 				if (dispatchMessage != null) {
 					try {
 						dispatchMessage.run(msg, handler);
@@ -400,14 +600,16 @@ public class BinaryServer extends AbstractNettyServer implements IServer {
 			log.error("close session:" + ctx.channel(), e);
 		} finally {
 			buffer.release();
+			// 池化消息在处理完后归还
+			if (msg != null) {
+				msg.release();
+			}
 		}
 	}
 
 	private void connectionValidateClient(ConnectionValidateClientMessage msg) {
-		// 查找临时缓存
-		String asLongText = msg.getChannel().id().asLongText();
-		SessionValidateData sessionValidateData = unvalidatedChannels.get(asLongText);
-		if (sessionValidateData == null) {
+		Session session = Session.get(msg.getChannel());
+		if (session == null || session.validateTimeout == null || session.validated) {
 			msg.getChannel().close();
 			// 移除链接
 			log.info(serverName + " remote connection " + msg.getChannel().remoteAddress()
@@ -415,13 +617,14 @@ public class BinaryServer extends AbstractNettyServer implements IServer {
 			return;
 		}
 		// 对比结果
-		if (sessionValidateData.validateRandom != msg.validateRandom) {
+		if (session.validateRandom != msg.validateRandom) {
 			// 移除链接
 			log.info(serverName + " remote connection " + msg.getChannel().remoteAddress()
 					+ " discarded，validate wrong！");
 			return;
 		}
-		unvalidatedChannels.remove(asLongText);
+		session.validated = true;
+		session.validateTimeout.cancel(false);
 		log.info(serverName + " remote connection " + msg.getChannel().remoteAddress() + " validate success!");
 		// 通知客户端成功
 		try {
@@ -429,34 +632,153 @@ public class BinaryServer extends AbstractNettyServer implements IServer {
 		} catch (Exception e) {
 			msg.getChannel().pipeline().fireExceptionCaught(e);
 		}
-		validatedChannels.add(msg.getChannel());
-		Procs.invoke(onConnectionEffective, msg.getChannel());
+		startHeartCheck(session);
+		// 开启会话恢复时等客户端请求恢复后再生效
+		if (sessionResumeWindowSec <= 0) {
+			Procs.invoke(onConnectionEffective, msg.getChannel());
+		}
+	}
+
+	/**
+	 * 恢复断线前的会话：令牌正确且缓存还包含客户端没收到的帧时接管原会话并补发，否则建立新会话
+	 * 
+	 * @param msg
+	 */
+	private void sessionResume(SessionResumeClientMessage msg) {
+		Channel channel = msg.getChannel();
+		Session session = Session.get(channel);
+		if (session == null || !session.validated || session.sessionId != 0) {
+			log.error(serverName + " remote connection " + channel.remoteAddress() + " session resume refused!");
+			channel.close();
+			return;
+		}
+		SessionResumeServerMessage reply = new SessionResumeServerMessage();
+		if (sessionResumeWindowSec <= 0) {
+			// 未开启会话恢复，连接已经生效
+			try {
+				sendMessage(channel, reply);
+			} catch (Exception e) {
+				channel.pipeline().fireExceptionCaught(e);
+			}
+			return;
+		}
+		Session old = msg.sessionId == 0 ? null : resumableSessions.get(msg.sessionId);
+		ReplayRing ring = old == null || old.token != msg.token ? null : old.replay;
+		if (ring != null && ring.adopt(old, session, msg.received)) {
+			old.replay = null;
+			if (old.expireFuture != null) {
+				old.expireFuture.cancel(false);
+			}
+			session.sessionId = old.sessionId;
+			session.token = old.token;
+			session.replay = ring;
+			session.resumeFrom = msg.received;
+			session.bindUser(old.getUserId());
+			resumableSessions.put(session.sessionId, session);
+			// 半开的旧连接
+			if (old.getChannel().isActive()) {
+				old.getChannel().close();
+			}
+			reply.resumed = true;
+			log.info(serverName + " remote connection " + channel.remoteAddress() + " resume session "
+					+ session.sessionId + " from frame " + msg.received);
+		} else {
+			session.sessionId = sessionIdCreator.incrementAndGet();
+			session.token = TOKEN_RANDOM.nextLong();
+			session.replay = new ReplayRing(session, replayFrames, replayBytes);
+			resumableSessions.put(session.sessionId, session);
+		}
+		reply.sessionId = session.sessionId;
+		reply.token = session.token;
+		try {
+			sendMessage(channel, reply);
+		} catch (Exception e) {
+			channel.pipeline().fireExceptionCaught(e);
+		}
+		if (reply.resumed) {
+			Procs.invoke(onSessionResumed, old.getChannel(), channel);
+		} else {
+			Procs.invoke(onConnectionEffective, channel);
+		}
+	}
+
+	private void expireSession(Session session) {
+		ReplayRing ring = session.replay;
+		if (ring != null && ring.expire(session)) {
+			session.replay = null;
+			resumableSessions.remove(session.sessionId, session);
+		}
 	}
 
 	private void heartClient(HeartClientMessage msg) {
 		long now = System.currentTimeMillis();
+		Channel channel = msg.getChannel();
+		Session session = Session.get(channel);
 		// 设置上次心跳时间
-		msg.getChannel().attr(LAST_HEART_TIME).set(now);
-
+		session.lastHeartTime = now;
 		// 是否包含首次心跳
-		if (!msg.getChannel().hasAttr(FIRST_HEART_TIME)) {
-			msg.getChannel().attr(FIRST_HEART_TIME).set(now);
-			msg.getChannel().attr(HEART_COUNT).set(0);
+		if (session.firstHeartTime == 0) {
+			session.firstHeartTime = now;
+			session.heartCount = 0;
 			return;
 		}
-		int times = msg.getChannel().attr(HEART_COUNT).get();
-		msg.getChannel().attr(HEART_COUNT).set(++times);
+		int count = ++session.heartCount;
+		if (heartIntervalSec > 0 && checkHeartWhenConnectionCount <= getConnectionCount()) {
+			int allow = (int) ((now - session.firstHeartTime) / (heartIntervalSec * 1000L));
+			if (count - 2 > allow) {
+				log.error(channel + " heart too quick,might be Game Accelerator,please check!");
+				channel.pipeline().fireExceptionCaught(
+						new HeartTooQuickException(channel, session.firstHeartTime, now, count, allow));
+				session.firstHeartTime = now;
+				session.heartCount = 0;
+			}
+		}
 		HeartServerMessage message = new HeartServerMessage();
 		// message.serverStartTime = startTime;
 		message.serverTime = now;
 		message.timeLocale = TimeZone.getDefault().getOffset(now);
 		try {
-			sendMessage(msg.getChannel(), message);
+			sendMessage(channel, message);
 		} catch (Exception e) {
 			log.error("send heart error", e);
 		}
 	}
 
+	/**
+	 * 心跳超时检查，挂在时间轮上，到期时若期间收到过心跳则按最后心跳时间重新挂上
+	 * 
+	 * @author hank
+	 *
+	 */
+	private class HeartCheckTask implements TimerTask {
+		private Session session;
+
+		private HeartCheckTask(Session session) {
+			this.session = session;
+		}
+
+		@Override
+		public void run(Timeout timeout) throws Exception {
+			Channel channel = session.getChannel();
+			if (timeout.isCancelled() || !channel.isActive()) {
+				return;
+			}
+			long limit = heartTimeoutMills();
+			long idle = System.currentTimeMillis() - session.lastHeartTime;
+			if (idle < limit) {
+				session.heartTimeout = heartTimer.newTimeout(this, limit - idle, TimeUnit.MILLISECONDS);
+				return;
+			}
+			if (checkHeartWhenConnectionCount > getConnectionCount()) {
+				session.heartTimeout = heartTimer.newTimeout(this, limit, TimeUnit.MILLISECONDS);
+				return;
+			}
+			channel.pipeline().fireExceptionCaught(new HeartNotAnswerException(channel, session.firstHeartTime,
+					session.lastHeartTime, session.heartCount));
+			channel.close();
+		}
+	}
+
 	public String getServerName() {
 		return serverName;
 	}
@@ -485,12 +807,21 @@ public class BinaryServer extends AbstractNettyServer implements IServer {
 		return factory;
 	}
 
+	/**
+	 * 限流配置，各规则的触发次数见{@link Rule#getHits()}
+	 * 
+	 * @return 未开启时返回null
+	 */
+	public RateLimiter getRateLimiter() {
+		return rateLimiter;
+	}
+
 	public int getMaxConnection() {
 		return maxConnection;
 	}
 
-	public int getConnectionCount() {
-		return connectionCount.get();
+	public int getAcceptorCount() {
+		return acceptorCount;
 	}
 
 	public long getStartTime() {
@@ -509,20 +840,66 @@ public class BinaryServer extends AbstractNettyServer implements IServer {
 		return receiveIntervalMills;
 	}
 
-	private boolean needPass() {
-		return addressPair.getPass() != null;
+	public int getStringDictionaryCapacity() {
+		return stringDictionaryCapacity;
 	}
 
-	private class SessionValidateData {
-		private Channel channel;
-		private long startValidateTime;
-		private int validateRandom;
+	/**
+	 * 可靠UDP配置
+	 * 
+	 * @return 使用TCP时返回null
+	 */
+	public ArqConfig getArqConfig() {
+		return arqConfig;
+	}
 
-		private SessionValidateData(Channel channel, long startValidateTime, int validateRandom) {
-			this.channel = channel;
-			this.startValidateTime = startValidateTime;
-			this.validateRandom = validateRandom;
+	/**
+	 * WebSocket端口，与主端口相同时在同一端口上区分
+	 * 
+	 * @return 未开启WebSocket时返回0
+	 */
+	public int getWebSocketPort() {
+		return webSocketPath == null ? 0 : webSocketPort;
+	}
+
+	public String getWebSocketPath() {
+		return webSocketPath;
+	}
+
+	public boolean isWebSocketDeflate() {
+		return webSocketDeflate;
+	}
+
+	public int getSessionResumeWindowSec() {
+		return sessionResumeWindowSec;
+	}
+
+	/**
+	 * 断线后还在等待恢复的会话数
+	 * 
+	 * @return
+	 */
+	public int getResumableSessionCount() {
+		int count = 0;
+		for (Session session : resumableSessions.values()) {
+			if (!session.getChannel().isActive()) {
+				++count;
+			}
 		}
+		return count;
+	}
+
+	/**
+	 * flush合并统计(未开启合并时为0)
+	 * 
+	 * @return
+	 */
+	public FlushCounter getFlushCounter() {
+		return flushCounter;
+	}
+
+	private boolean needPass() {
+		return addressPair.getPass() != null;
 	}
 
 	private class ConnectionValidateClientHandler implements IHandler<ConnectionValidateClientMessage> {
@@ -541,8 +918,65 @@ public class BinaryServer extends AbstractNettyServer implements IServer {
 		}
 	}
 
+	private class SessionResumeClientHandler implements IHandler<SessionResumeClientMessage> {
+
+		@Override
+		public void handle(SessionResumeClientMessage msg) {
+			msg.getServer().sessionResume(msg);
+		}
+	}
+
+	/**
+	 * 在最靠近socket的位置记录会话发出的业务帧(经过发送队列之后，被丢弃的帧不记录)。恢复应答经过时先补发客户端没收到的帧，之后开始记录
+	 * <p>
+	 * 消息id按解码器的格式从帧头读取，编解码器需要配套
+	 * 
+	 * @author hank
+	 *
+	 */
+	private class ReplayRecorder extends ChannelOutboundHandlerAdapter {
+
+		@Override
+		public boolean isSharable() {
+			return true;
+		}
+
+		@Override
+		public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+			Session session = Session.get(ctx.channel());
+			if (!(msg instanceof ByteBuf) || session == null || session.replay == null) {
+				ctx.write(msg, promise);
+				return;
+			}
+			ByteBuf frame = (ByteBuf) msg;
+			ByteBuf header = frame.duplicate();
+			header.skipBytes(decoder.getInitialBytesToStrip());
+			short messageId = decoder.readMessageId(ctx.channel(), header);
+			if (session.recording) {
+				if (InnerMessageEnum.getTypeByValue(messageId) == null) {
+					session.replay.add(session, frame);
+				}
+				ctx.write(msg, promise);
+				return;
+			}
+			ctx.write(msg, promise);
+			if (messageId != InnerMessageEnum.SessionResumeServerMessage.getValue()) {
+				return;
+			}
+			if (session.resumeFrom >= 0) {
+				session.replay.replay(session.resumeFrom, replay -> {
+					ctx.write(replay, ctx.voidPromise());
+				});
+			}
+			session.recording = true;
+		}
+	}
+
 	public static class BinaryServerBuilder {
 		private String serverName;
+		private EventLoopGroups eventLoopGroups;
+		private int dedicatedBossThreads;
+		private int dedicatedWorkerThreads;
 		private AddressPair addressPair;
 		private int connectionValidateTimeInSec;
 		private AbstractBinaryDecoder decoder;
@@ -550,15 +984,33 @@ public class BinaryServer extends AbstractNettyServer implements IServer {
 		private HashSet<String> whiteList = new HashSet<>();
 		private MessageFactory factory;
 		private int maxConnection;
+		private int acceptorCount;
 		private int heartIntervalSec;
 		private int checkHeartWhenConnectionCount;
 		private int receiveIntervalMills;
+		private RateLimiter rateLimiter;
+		private int stringDictionaryCapacity;
+		private int flushBatchSize;
+		private int flushWindowMills;
+		private int outboundQueueBytes;
+		private OverflowPolicy outboundOverflowPolicy;
+		private int writeBufferLowWaterMark;
+		private int writeBufferHighWaterMark;
+		private int sessionResumeWindowSec;
+		private int replayFrames;
+		private int replayBytes;
+		private ArqConfig arqConfig;
+		private int webSocketPort;
+		private String webSocketPath;
+		private boolean webSocketDeflate;
 		// ---listener
 		private Proc2<Channel, Boolean> onChannelStateChanged;
 		private Proc2<Channel, Throwable> onExceptionCaught;
 		private Proc1<Channel> onServerBind;
 		private Proc1<Channel> onConnectionEffective;
+		private Proc2<Channel, Channel> onSessionResumed;
 		private Proc2<Message, IHandler<Message>> dispatchMessage;
+		private Func3<Channel, Short, ByteBuf, Boolean> forwardFrame;
 
 		public BinaryServerBuilder() {
 			this.serverName = "Binary-Server";
@@ -570,9 +1022,12 @@ public class BinaryServer extends AbstractNettyServer implements IServer {
 				t2.handle(t1);
 			};
 			this.maxConnection = 20000;
+			this.acceptorCount = 1;
 			this.heartIntervalSec = 0;
 			this.checkHeartWhenConnectionCount = 0;
 			this.receiveIntervalMills = 0;
+			this.stringDictionaryCapacity = 0;
+			this.outboundOverflowPolicy = OverflowPolicy.DROP_LOWEST_PRIORITY;
 		}
 
 		/**
@@ -710,6 +1165,17 @@ public class BinaryServer extends AbstractNettyServer implements IServer {
 			return this;
 		}
 
+		/**
+		 * 会话恢复监听(旧连接，新连接)，恢复的连接不再触发{@link #onConnectionEffective(Proc1)}
+		 * 
+		 * @param onSessionResumed
+		 * @return
+		 */
+		public BinaryServerBuilder onSessionResumed(Proc2<Channel, Channel> onSessionResumed) {
+			this.onSessionResumed = onSessionResumed;
+			return this;
+		}
+
 		/**
 		 * 分发消息监听
 		 * 
@@ -721,6 +1187,19 @@ public class BinaryServer extends AbstractNettyServer implements IServer {
 			return this;
 		}
 
+		/**
+		 * 消息转发监听(网关)，在解码前按消息id调用，返回true表示已经转发(可以通过{@link BinaryServer#forward}或
+		 * {@link SendMessageUtil#forward}零拷贝转发消息体)，不再解码和分发。buffer在返回后释放，异步使用时需要自行retain
+		 * 
+		 * @param forwardFrame
+		 *            连接，消息id，消息体
+		 * @return
+		 */
+		public BinaryServerBuilder forwardFrame(Func3<Channel, Short, ByteBuf, Boolean> forwardFrame) {
+			this.forwardFrame = forwardFrame;
+			return this;
+		}
+
 		/**
 		 * 最大链接数限制
 		 * 
@@ -732,6 +1211,17 @@ public class BinaryServer extends AbstractNettyServer implements IServer {
 			return this;
 		}
 
+		/**
+		 * 监听通道数量(epoll下使用SO_REUSEPORT)，独占线程组时boss线程数不少于此值
+		 * 
+		 * @param acceptorCount
+		 * @return
+		 */
+		public BinaryServerBuilder acceptorCount(int acceptorCount) {
+			this.acceptorCount = Math.max(1, acceptorCount);
+			return this;
+		}
+
 		/**
 		 * 心跳检测间隔
 		 * 
@@ -764,5 +1254,168 @@ public class BinaryServer extends AbstractNettyServer implements IServer {
 			this.receiveIntervalMills = receiveIntervalMills;
 			return this;
 		}
+
+		/**
+		 * 令牌桶限流(连接级和按消息id)，只限制验证后的业务消息
+		 * 
+		 * @param rateLimiter
+		 * @return
+		 */
+		public BinaryServerBuilder rateLimiter(RateLimiter rateLimiter) {
+			this.rateLimiter = rateLimiter;
+			return this;
+		}
+
+		/**
+		 * 每个连接的字符串字典容量，0为不开启(客户端需要同样开启)
+		 * 
+		 * @param stringDictionaryCapacity
+		 * @return
+		 */
+		public BinaryServerBuilder stringDictionaryCapacity(int stringDictionaryCapacity) {
+			this.stringDictionaryCapacity = stringDictionaryCapacity;
+			return this;
+		}
+
+		/**
+		 * 开启会话恢复：断线后windowSec秒内重连的客户端接管原会话，只补发没收到的帧(客户端需要同样开启，不能与字符串字典同时开启)
+		 * 
+		 * @param windowSec
+		 *            断线后保留会话的秒数
+		 * @param replayFrames
+		 *            每个会话最多缓存的帧数
+		 * @param replayBytes
+		 *            每个会话最多缓存的字节数
+		 * @return
+		 */
+		public BinaryServerBuilder sessionResume(int windowSec, int replayFrames, int replayBytes) {
+			if (windowSec > 0 && (replayFrames <= 0 || replayBytes <= 0)) {
+				throw new IllegalArgumentException("replayFrames and replayBytes must greater than 0");
+			}
+			this.sessionResumeWindowSec = windowSec;
+			this.replayFrames = replayFrames;
+			this.replayBytes = replayBytes;
+			return this;
+		}
+
+		/**
+		 * 合并flush：处理消息期间只write，读完成后(其他线程发送时在EventLoop本轮任务后或时间窗口后)统一flush，
+		 * 最多合并多少次flush，0为不开启
+		 * 
+		 * @param flushBatchSize
+		 * @return
+		 */
+		public BinaryServerBuilder flushBatchSize(int flushBatchSize) {
+			this.flushBatchSize = flushBatchSize;
+			return this;
+		}
+
+		/**
+		 * 合并flush的时间窗口，0为EventLoop本轮任务执行完后立即flush
+		 * 
+		 * @param flushWindowMills
+		 * @return
+		 */
+		public BinaryServerBuilder flushWindowMills(int flushWindowMills) {
+			this.flushWindowMills = flushWindowMills;
+			return this;
+		}
+
+		/**
+		 * 每个连接发送队列最多缓存的字节数，0为不开启(连接不可写时直接丢弃消息)
+		 * 
+		 * @param outboundQueueBytes
+		 * @return
+		 * @see OutboundQueue
+		 */
+		public BinaryServerBuilder outboundQueueBytes(int outboundQueueBytes) {
+			this.outboundQueueBytes = outboundQueueBytes;
+			return this;
+		}
+
+		/**
+		 * 发送队列溢出策略
+		 * 
+		 * @param outboundOverflowPolicy
+		 * @return
+		 */
+		public BinaryServerBuilder outboundOverflowPolicy(OverflowPolicy outboundOverflowPolicy) {
+			this.outboundOverflowPolicy = outboundOverflowPolicy;
+			return this;
+		}
+
+		/**
+		 * 连接写缓冲的高低水位，超过高水位后消息进入发送队列，回到低水位以下后继续写出
+		 * 
+		 * @param low
+		 * @param high
+		 * @return
+		 */
+		public BinaryServerBuilder writeBufferWaterMark(int low, int high) {
+			this.writeBufferLowWaterMark = low;
+			this.writeBufferHighWaterMark = high;
+			return this;
+		}
+
+		/**
+		 * 使用可靠UDP代替TCP(客户端需要同样开启)，监听通道数量对应UDP通道数量，连接挂在UDP通道所在的worker线程上
+		 * 
+		 * @param arqConfig
+		 * @return
+		 */
+		public BinaryServerBuilder udp(ArqConfig arqConfig) {
+			this.arqConfig = arqConfig;
+			return this;
+		}
+
+		/**
+		 * 接受WebSocket连接(浏览器客户端)，每个二进制消息是一个与TCP相同格式的完整帧(包括长度头)，与原生连接共用handler
+		 * <p>
+		 * 端口与主端口相同时按首包区分，原生连接的验证消息会延迟一小段时间
+		 * 
+		 * @param port
+		 * @param path
+		 *            握手的路径，如"/ws"
+		 * @param deflate
+		 *            是否支持permessage-deflate压缩
+		 * @return
+		 */
+		public BinaryServerBuilder webSocket(int port, String path, boolean deflate) {
+			if (port <= 0) {
+				throw new IllegalArgumentException("port:" + port);
+			}
+			this.webSocketPort = port;
+			this.webSocketPath = Objects.requireNonNull(path, "path");
+			this.webSocketDeflate = deflate;
+			return this;
+		}
+
+		/**
+		 * 指定线程组，可与其他服务器共享(不指定则使用全局共享线程组)
+		 * 
+		 * @param eventLoopGroups
+		 * @return
+		 */
+		public BinaryServerBuilder eventLoopGroups(EventLoopGroups eventLoopGroups) {
+			this.eventLoopGroups = eventLoopGroups;
+			return this;
+		}
+
+		/**
+		 * 使用独占线程组，线程以服务器名称命名，停止服务器时关闭
+		 * 
+		 * @param bossThreads
+		 * @param workerThreads
+		 *            0为Netty默认值
+		 * @return
+		 */
+		public BinaryServerBuilder dedicatedEventLoop(int bossThreads, int workerThreads) {
+			if (bossThreads <= 0) {
+				throw new IllegalArgumentException("bossThreads must greater than 0");
+			}
+			this.dedicatedBossThreads = bossThreads;
+			this.dedicatedWorkerThreads = Math.max(0, workerThreads);
+			return this;
+		}
 	}
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary;
+
+import java.util.ArrayDeque;
+
+import org.slingerxv.limitart.funcs.Proc1;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 会话最近发出的业务消息帧，按帧数和字节数限制大小。帧的序号是隐含的(会话发出的第几个业务帧)，不改变消息格式
+ * <p>
+ * 会话恢复时由新连接的会话接管，接管和过期互斥
+ * 
+ * @author hank
+ *
+ */
+final class ReplayRing {
+	private final int maxFrames;
+	private final int maxBytes;
+	private final ArrayDeque<ByteBuf> frames = new ArrayDeque<>();
+	private long nextSeq;
+	private int bytes;
+	// 当前持有的会话，过期后为null
+	private Session owner;
+
+	ReplayRing(Session owner, int maxFrames, int maxBytes) {
+		this.owner = owner;
+		this.maxFrames = maxFrames;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * 记录发出的帧
+	 * 
+	 * @param session
+	 * @param frame
+	 * @return 会话已不持有时返回false
+	 */
+	synchronized boolean add(Session session, ByteBuf frame) {
+		if (owner != session) {
+			return false;
+		}
+		frames.addLast(frame.retainedDuplicate());
+		bytes += frame.readableBytes();
+		++nextSeq;
+		while (!frames.isEmpty() && (frames.size() > maxFrames || bytes > maxBytes)) {
+			ByteBuf first = frames.pollFirst();
+			bytes -= first.readableBytes();
+			first.release();
+		}
+		return true;
+	}
+
+	/**
+	 * 新会话接管，客户端已收到的帧数必须还在缓存范围内
+	 * 
+	 * @param from
+	 * @param to
+	 * @param received
+	 * @return
+	 */
+	synchronized boolean adopt(Session from, Session to, long received) {
+		if (owner != from || received < firstSeq() || received > nextSeq) {
+			return false;
+		}
+		owner = to;
+		return true;
+	}
+
+	/**
+	 * 重发从序号from开始的帧，每个帧都已retain
+	 * 
+	 * @param from
+	 * @param consumer
+	 */
+	synchronized void replay(long from, Proc1<ByteBuf> consumer) {
+		long seq = firstSeq();
+		for (ByteBuf frame : frames) {
+			if (seq++ >= from) {
+				consumer.run(frame.retainedDuplicate());
+			}
+		}
+	}
+
+	/**
+	 * 过期并释放缓存
+	 * 
+	 * @param session
+	 * @return 已被其他会话接管时返回false
+	 */
+	synchronized boolean expire(Session session) {
+		if (owner != session) {
+			return false;
+		}
+		owner = null;
+		ByteBuf frame;
+		while ((frame = frames.pollFirst()) != null) {
+			frame.release();
+		}
+		bytes = 0;
+		return true;
+	}
+
+	private long firstSeq() {
+		return nextSeq - frames.size();
+	}
+
+	synchronized long getNextSeq() {
+		return nextSeq;
+	}
+
+	synchronized int getFrames() {
+		return frames.size();
+	}
+
+	synchronized int getBytes() {
+		return bytes;
+	}
+}
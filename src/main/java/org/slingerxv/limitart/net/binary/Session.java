@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary;
+
+import java.util.concurrent.ScheduledFuture;
+
+import org.slingerxv.limitart.net.binary.message.StringDictionary;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import io.netty.util.Timeout;
+
+/**
+ * 服务器端连接会话，连接建立时挂到通道上，验证、心跳、接收统计和用户绑定都用基本类型字段保存，读消息时只查找一次
+ * 
+ * @author hank
+ *
+ */
+public class Session {
+	private static final AttributeKey<Session> SESSION = AttributeKey.newInstance("SESSION");
+	private final Channel channel;
+	private final long createTime;
+	// 验证
+	volatile boolean validated;
+	int validateRandom;
+	ScheduledFuture<?> validateTimeout;
+	// 接收统计(只在EventLoop中读写)
+	long lastReceiveTime;
+	long receivedMessages;
+	long receivedBytes;
+	StringDictionary dictionary;
+	// 限流状态和是否因限流暂停读取
+	long[] rateStates;
+	boolean readPaused;
+	// 绑定的用户
+	private volatile long userId;
+	// 心跳(首次心跳时间和次数只在EventLoop中读写)
+	long firstHeartTime;
+	int heartCount;
+	volatile long lastHeartTime;
+	Timeout heartTimeout;
+	// 会话恢复(未开启时sessionId为0)
+	long sessionId;
+	long token;
+	volatile ReplayRing replay;
+	// 恢复应答之后才记录发出的帧
+	boolean recording;
+	long resumeFrom = -1;
+	ScheduledFuture<?> expireFuture;
+
+	Session(Channel channel, long now) {
+		this.channel = channel;
+		this.createTime = now;
+		this.lastHeartTime = now;
+	}
+
+	/**
+	 * 获取连接上的会话
+	 * 
+	 * @param channel
+	 * @return 不是服务器连接时返回null
+	 */
+	public static Session get(Channel channel) {
+		return channel.attr(SESSION).get();
+	}
+
+	static Session attach(Channel channel, long now) {
+		Session session = new Session(channel, now);
+		channel.attr(SESSION).set(session);
+		return session;
+	}
+
+	void cancelTimeouts() {
+		ScheduledFuture<?> future = validateTimeout;
+		if (future != null) {
+			future.cancel(false);
+		}
+		Timeout timeout = heartTimeout;
+		if (timeout != null) {
+			timeout.cancel();
+			heartTimeout = null;
+		}
+	}
+
+	/**
+	 * 绑定用户(如登录成功后)
+	 * 
+	 * @param userId
+	 */
+	public void bindUser(long userId) {
+		this.userId = userId;
+	}
+
+	public void unbindUser() {
+		this.userId = 0;
+	}
+
+	public boolean isUserBound() {
+		return userId != 0;
+	}
+
+	public long getUserId() {
+		return userId;
+	}
+
+	/**
+	 * 可恢复会话的编号，断线重连恢复后保持不变
+	 * 
+	 * @return 未开启会话恢复或还未建立时为0
+	 */
+	public long getSessionId() {
+		return sessionId;
+	}
+
+	/**
+	 * 重连时可以补发的帧数
+	 * 
+	 * @return
+	 */
+	public int getReplayFrames() {
+		ReplayRing ring = replay;
+		return ring == null ? 0 : ring.getFrames();
+	}
+
+	public Channel getChannel() {
+		return channel;
+	}
+
+	public long getCreateTime() {
+		return createTime;
+	}
+
+	public boolean isValidated() {
+		return validated;
+	}
+
+	public long getLastReceiveTime() {
+		return lastReceiveTime;
+	}
+
+	public long getReceivedMessages() {
+		return receivedMessages;
+	}
+
+	public long getReceivedBytes() {
+		return receivedBytes;
+	}
+
+	public long getFirstHeartTime() {
+		return firstHeartTime;
+	}
+
+	public long getLastHeartTime() {
+		return lastHeartTime;
+	}
+
+	public int getHeartCount() {
+		return heartCount;
+	}
+}
@@ -0,0 +1,461 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary.arq;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.slingerxv.limitart.funcs.Proc1;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+
+/**
+ * 可靠UDP协议(KCP式ARQ)：按消息分片，逐包确认(选择确认)加累计确认，超时重传按1.5倍退避，被跨过的包快速重传，收发窗口限制在途包数
+ * <p>
+ * 包头：会话号(int) 命令(byte) 分片(byte，剩余分片数) 窗口(short) 时间(int) 序号(int) 累计确认(int) 长度(short)
+ * <p>
+ * 非线程安全，只在连接的EventLoop中调用。时间为毫秒，允许回绕
+ * 
+ * @author hank
+ *
+ */
+class Arq {
+	static final int HEADER_SIZE = 22;
+	static final byte CMD_PUSH = 1;
+	static final byte CMD_ACK = 2;
+	static final byte CMD_UNRELIABLE = 3;
+	static final byte CMD_PING = 4;
+	static final byte CMD_CLOSE = 5;
+	private static final int RTO_DEFAULT = 200;
+	private static final int RTO_MAX = 60000;
+	// 快速重传的最大发送次数，之后只按超时重传，避免确认包频繁时一个RTT内把同一个包重发到断线
+	private static final int FAST_LIMIT = 5;
+	private final int conv;
+	private final ArqConfig config;
+	private final ByteBufAllocator allocator;
+	private final Proc1<ByteBuf> output;
+	private final int mss;
+	// 发送
+	private final ArrayDeque<Segment> sndQueue = new ArrayDeque<>();
+	private final ArrayDeque<Segment> sndBuf = new ArrayDeque<>();
+	private int sndUna;
+	private int sndNxt;
+	private int rmtWnd;
+	// 接收
+	private final Segment[] rcvBuf;
+	private int rcvNxt;
+	private int rcvBuffered;
+	private final ArrayList<ByteBuf> fragments = new ArrayList<>();
+	// 待发送的确认(序号，时间)
+	private int[] acks = new int[32];
+	private int ackCount;
+	// 往返时间
+	private int srtt;
+	private int rttval;
+	private int rto = RTO_DEFAULT;
+	// 正在拼装的UDP包
+	private ByteBuf pending;
+	private boolean dead;
+	private boolean peerClosed;
+	// 交付消息时连接可能被关闭
+	private boolean released;
+	private long retransmits;
+	private long fastRetransmits;
+
+	Arq(int conv, ArqConfig config, ByteBufAllocator allocator, Proc1<ByteBuf> output) {
+		this.conv = conv;
+		this.config = config;
+		this.allocator = allocator;
+		this.output = output;
+		this.mss = config.getMtu() - HEADER_SIZE;
+		this.rmtWnd = config.getRcvWnd();
+		this.rcvBuf = new Segment[config.getRcvWnd()];
+	}
+
+	/**
+	 * 可靠发送一条消息，按mss分片，分片引用原buffer(调用方仍按原来的方式释放)
+	 * 
+	 * @param frame
+	 */
+	void send(ByteBuf frame) {
+		if (released) {
+			return;
+		}
+		int length = frame.readableBytes();
+		int count = length <= mss ? 1 : (length + mss - 1) / mss;
+		if (count > 256 || count >= config.getRcvWnd()) {
+			throw new IllegalArgumentException("frame too large:" + length);
+		}
+		int offset = frame.readerIndex();
+		for (int i = 0; i < count; ++i) {
+			int size = Math.min(mss, length - i * mss);
+			Segment segment = new Segment();
+			segment.data = frame.retainedSlice(offset + i * mss, size);
+			segment.frg = count - i - 1;
+			sndQueue.addLast(segment);
+		}
+	}
+
+	/**
+	 * 不可靠发送，放入当前UDP包，超过一个包大小的改为可靠发送
+	 * 
+	 * @param frame
+	 */
+	void sendUnreliable(ByteBuf frame) {
+		if (released) {
+			return;
+		}
+		if (frame.readableBytes() > mss) {
+			send(frame);
+			return;
+		}
+		writeSegment(CMD_UNRELIABLE, 0, 0, 0, frame);
+	}
+
+	void ping() {
+		if (released) {
+			return;
+		}
+		writeSegment(CMD_PING, 0, 0, 0, null);
+	}
+
+	/**
+	 * 发出缓存的数据后通知对方关闭
+	 * 
+	 * @param now
+	 */
+	void close(int now) {
+		flush(now);
+		writeSegment(CMD_CLOSE, 0, 0, 0, null);
+		flushPending();
+	}
+
+	/**
+	 * 处理收到的UDP包
+	 * 
+	 * @param data
+	 * @param now
+	 * @param deliver
+	 *            按顺序交付的完整消息和收到的不可靠消息，由接收方释放
+	 */
+	void input(ByteBuf data, int now, Proc1<ByteBuf> deliver) {
+		boolean hasMaxAck = false;
+		int maxAck = 0;
+		while (!released && data.readableBytes() >= HEADER_SIZE) {
+			if (data.readInt() != conv) {
+				return;
+			}
+			byte cmd = data.readByte();
+			int frg = data.readUnsignedByte();
+			int wnd = data.readUnsignedShort();
+			int ts = data.readInt();
+			int sn = data.readInt();
+			int una = data.readInt();
+			int length = data.readUnsignedShort();
+			if (data.readableBytes() < length) {
+				return;
+			}
+			rmtWnd = wnd;
+			parseUna(una);
+			switch (cmd) {
+			case CMD_ACK:
+				if (now - ts >= 0) {
+					updateRtt(now - ts);
+				}
+				parseAck(sn);
+				if (!hasMaxAck || sn - maxAck > 0) {
+					hasMaxAck = true;
+					maxAck = sn;
+				}
+				break;
+			case CMD_PUSH:
+				if (sn - (rcvNxt + rcvBuf.length) < 0) {
+					addAck(sn, ts);
+					if (sn - rcvNxt >= 0) {
+						int slot = Math.floorMod(sn, rcvBuf.length);
+						if (rcvBuf[slot] == null) {
+							Segment segment = new Segment();
+							segment.sn = sn;
+							segment.frg = frg;
+							segment.data = data.retainedSlice(data.readerIndex(), length);
+							rcvBuf[slot] = segment;
+							++rcvBuffered;
+						}
+					}
+				}
+				break;
+			case CMD_UNRELIABLE:
+				deliver.run(data.retainedSlice(data.readerIndex(), length));
+				break;
+			case CMD_CLOSE:
+				peerClosed = true;
+				break;
+			default:
+				break;
+			}
+			data.skipBytes(length);
+		}
+		if (hasMaxAck) {
+			// 被后面的确认跨过的包
+			for (Segment segment : sndBuf) {
+				if (segment.sn - maxAck >= 0) {
+					break;
+				}
+				++segment.fastack;
+			}
+		}
+		moveReceived(deliver);
+	}
+
+	/**
+	 * 发出确认、窗口内的新包和需要重传的包
+	 * 
+	 * @param now
+	 */
+	void flush(int now) {
+		if (released) {
+			return;
+		}
+		int wnd = wnd();
+		for (int i = 0; i < ackCount; ++i) {
+			writeHeader(CMD_ACK, 0, wnd, acks[i * 2 + 1], acks[i * 2], 0);
+		}
+		ackCount = 0;
+		// 对方窗口为0时仍保留一个在途包用于探测
+		int cwnd = Math.max(1, Math.min(config.getSndWnd(), rmtWnd));
+		while (!sndQueue.isEmpty() && sndNxt - (sndUna + cwnd) < 0) {
+			Segment segment = sndQueue.pollFirst();
+			segment.sn = sndNxt++;
+			sndBuf.addLast(segment);
+		}
+		for (Segment segment : sndBuf) {
+			boolean send = false;
+			if (segment.xmit == 0) {
+				send = true;
+				segment.rto = rto;
+			} else if (now - segment.resendTs >= 0) {
+				send = true;
+				++retransmits;
+				segment.rto = Math.min(RTO_MAX, segment.rto + segment.rto / 2);
+			} else if (segment.fastack >= config.getFastResend() && segment.xmit <= FAST_LIMIT) {
+				send = true;
+				++fastRetransmits;
+			}
+			if (!send) {
+				continue;
+			}
+			++segment.xmit;
+			segment.fastack = 0;
+			segment.resendTs = now + segment.rto;
+			writeSegment(CMD_PUSH, segment.frg, now, segment.sn, segment.data);
+			if (segment.xmit >= config.getDeadLink()) {
+				dead = true;
+			}
+		}
+		flushPending();
+	}
+
+	void release() {
+		released = true;
+		for (Segment segment : sndQueue) {
+			segment.data.release();
+		}
+		sndQueue.clear();
+		for (Segment segment : sndBuf) {
+			segment.data.release();
+		}
+		sndBuf.clear();
+		for (int i = 0; i < rcvBuf.length; ++i) {
+			if (rcvBuf[i] != null) {
+				rcvBuf[i].data.release();
+				rcvBuf[i] = null;
+			}
+		}
+		rcvBuffered = 0;
+		for (ByteBuf fragment : fragments) {
+			fragment.release();
+		}
+		fragments.clear();
+		if (pending != null) {
+			pending.release();
+			pending = null;
+		}
+	}
+
+	private void moveReceived(Proc1<ByteBuf> deliver) {
+		while (!released) {
+			int slot = Math.floorMod(rcvNxt, rcvBuf.length);
+			Segment segment = rcvBuf[slot];
+			if (segment == null) {
+				return;
+			}
+			rcvBuf[slot] = null;
+			--rcvBuffered;
+			++rcvNxt;
+			fragments.add(segment.data);
+			if (segment.frg != 0) {
+				continue;
+			}
+			if (fragments.size() == 1) {
+				deliver.run(fragments.get(0));
+			} else {
+				CompositeByteBuf frame = allocator.compositeBuffer(fragments.size());
+				frame.addComponents(true, fragments);
+				deliver.run(frame);
+			}
+			fragments.clear();
+		}
+	}
+
+	private void parseUna(int una) {
+		Segment segment;
+		while ((segment = sndBuf.peekFirst()) != null && segment.sn - una < 0) {
+			sndBuf.pollFirst();
+			segment.data.release();
+		}
+		shrinkBuf();
+	}
+
+	private void parseAck(int sn) {
+		if (sn - sndUna < 0 || sn - sndNxt >= 0) {
+			return;
+		}
+		Iterator<Segment> iterator = sndBuf.iterator();
+		while (iterator.hasNext()) {
+			Segment segment = iterator.next();
+			if (segment.sn == sn) {
+				iterator.remove();
+				segment.data.release();
+				break;
+			}
+			if (segment.sn - sn > 0) {
+				break;
+			}
+		}
+		shrinkBuf();
+	}
+
+	private void shrinkBuf() {
+		Segment segment = sndBuf.peekFirst();
+		sndUna = segment == null ? sndNxt : segment.sn;
+	}
+
+	private void addAck(int sn, int ts) {
+		if ((ackCount + 1) * 2 > acks.length) {
+			int[] larger = new int[acks.length * 2];
+			System.arraycopy(acks, 0, larger, 0, acks.length);
+			acks = larger;
+		}
+		acks[ackCount * 2] = sn;
+		acks[ackCount * 2 + 1] = ts;
+		++ackCount;
+	}
+
+	private void updateRtt(int rtt) {
+		if (srtt == 0) {
+			srtt = Math.max(1, rtt);
+			rttval = rtt / 2;
+		} else {
+			int delta = Math.abs(rtt - srtt);
+			rttval = (3 * rttval + delta) / 4;
+			srtt = Math.max(1, (7 * srtt + rtt) / 8);
+		}
+		int value = srtt + Math.max(config.getIntervalMills(), 4 * rttval);
+		rto = Math.min(RTO_MAX, Math.max(config.getMinRtoMills(), value));
+	}
+
+	private int wnd() {
+		return Math.max(0, rcvBuf.length - rcvBuffered);
+	}
+
+	private void writeSegment(byte cmd, int frg, int ts, int sn, ByteBuf data) {
+		int length = data == null ? 0 : data.readableBytes();
+		writeHeader(cmd, frg, wnd(), ts, sn, length);
+		if (length > 0) {
+			pending.writeBytes(data, data.readerIndex(), length);
+		}
+	}
+
+	private void writeHeader(byte cmd, int frg, int wnd, int ts, int sn, int length) {
+		if (pending != null && pending.readableBytes() + HEADER_SIZE + length > config.getMtu()) {
+			flushPending();
+		}
+		if (pending == null) {
+			pending = allocator.ioBuffer(config.getMtu());
+		}
+		pending.writeInt(conv);
+		pending.writeByte(cmd);
+		pending.writeByte(frg);
+		pending.writeShort(wnd);
+		pending.writeInt(ts);
+		pending.writeInt(sn);
+		pending.writeInt(rcvNxt);
+		pending.writeShort(length);
+	}
+
+	private void flushPending() {
+		if (pending != null) {
+			ByteBuf datagram = pending;
+			pending = null;
+			output.run(datagram);
+		}
+	}
+
+	int getConv() {
+		return conv;
+	}
+
+	int waitSnd() {
+		return sndQueue.size() + sndBuf.size();
+	}
+
+	boolean isDead() {
+		return dead;
+	}
+
+	boolean isPeerClosed() {
+		return peerClosed;
+	}
+
+	int getSrtt() {
+		return srtt;
+	}
+
+	int getRto() {
+		return rto;
+	}
+
+	long getRetransmits() {
+		return retransmits;
+	}
+
+	long getFastRetransmits() {
+		return fastRetransmits;
+	}
+
+	private static class Segment {
+		private int sn;
+		private int frg;
+		private int resendTs;
+		private int rto;
+		private int fastack;
+		private int xmit;
+		private ByteBuf data;
+	}
+}
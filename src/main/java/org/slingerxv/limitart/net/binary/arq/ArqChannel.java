@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary.arq;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.slingerxv.limitart.funcs.Proc1;
+import org.slingerxv.limitart.funcs.Procs;
+import org.slingerxv.limitart.net.binary.codec.AbstractBinaryDecoder;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.AbstractChannel;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultChannelConfig;
+import io.netty.channel.EventLoop;
+import io.netty.channel.socket.DatagramPacket;
+
+/**
+ * 可靠UDP连接：UDP通道上一个远端地址对应的子通道，注册在UDP通道的EventLoop上，pipeline与TCP连接相同(按帧读写ByteBuf)
+ * <p>
+ * 每次write的ByteBuf作为一条消息发送，配置为不可靠的消息id(按解码器格式从帧头读取)不重传。
+ * 收到的数据直接交给pipeline，不支持关闭autoRead
+ * 
+ * @author hank
+ *
+ */
+public class ArqChannel extends AbstractChannel {
+	private static final ChannelMetadata METADATA = new ChannelMetadata(false);
+	private final DefaultChannelConfig channelConfig = new DefaultChannelConfig(this);
+	private final InetSocketAddress remote;
+	private final ArqConfig config;
+	private final AbstractBinaryDecoder decoder;
+	private final Proc1<ArqChannel> onClose;
+	private final Arq arq;
+	private volatile boolean open = true;
+	private ScheduledFuture<?> tick;
+	private int lastReceive;
+	private int lastSend;
+
+	ArqChannel(Channel parent, InetSocketAddress remote, int conv, ArqConfig config, AbstractBinaryDecoder decoder,
+			Proc1<ArqChannel> onClose) {
+		super(parent);
+		this.remote = remote;
+		this.config = config;
+		this.decoder = decoder;
+		this.onClose = onClose;
+		this.channelConfig.setAllocator(parent.config().getAllocator());
+		this.arq = new Arq(conv, config, parent.config().getAllocator(), this::output);
+	}
+
+	/**
+	 * 处理UDP通道收到的包
+	 * 
+	 * @param datagram
+	 */
+	void input(ByteBuf datagram) {
+		if (!open) {
+			return;
+		}
+		int now = now();
+		lastReceive = now;
+		arq.input(datagram, now, frame -> pipeline().fireChannelRead(frame));
+		pipeline().fireChannelReadComplete();
+		if (arq.isPeerClosed()) {
+			close();
+			return;
+		}
+		// 立即回复确认
+		arq.flush(now);
+		parent().flush();
+	}
+
+	private void output(ByteBuf datagram) {
+		lastSend = now();
+		double loss = config.getPacketLoss();
+		if (loss > 0 && ThreadLocalRandom.current().nextDouble() < loss) {
+			datagram.release();
+			return;
+		}
+		parent().write(new DatagramPacket(datagram, remote), parent().voidPromise());
+	}
+
+	private void tick() {
+		int now = now();
+		if (arq.isDead() || now - lastReceive >= config.getIdleTimeoutMills()) {
+			close();
+			return;
+		}
+		if (now - lastSend >= config.getPingIntervalMills()) {
+			arq.ping();
+		}
+		arq.flush(now);
+		parent().flush();
+		// 窗口空出后继续写出积压的消息
+		if (arq.waitSnd() < config.getSndWnd() * 2) {
+			((ArqUnsafe) unsafe()).resume();
+		}
+	}
+
+	private boolean isUnreliable(ByteBuf frame) {
+		if (decoder == null) {
+			return false;
+		}
+		ByteBuf header = frame.duplicate();
+		header.skipBytes(decoder.getInitialBytesToStrip());
+		return config.isUnreliable(decoder.readMessageId(this, header));
+	}
+
+	private static int now() {
+		return (int) TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+	}
+
+	@Override
+	protected void doRegister() throws Exception {
+		int now = now();
+		lastReceive = now;
+		// 客户端先发一个包让服务器建立连接
+		arq.ping();
+		arq.flush(now);
+		parent().flush();
+		tick = eventLoop().scheduleAtFixedRate(this::tick, config.getIntervalMills(), config.getIntervalMills(),
+				TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+		// 发送队列超过两倍窗口时消息留在outbound buffer中，由水位控制可写状态
+		while (arq.waitSnd() < config.getSndWnd() * 2) {
+			Object msg = in.current();
+			if (msg == null) {
+				break;
+			}
+			if (!(msg instanceof ByteBuf)) {
+				in.remove(new UnsupportedOperationException("unsupported message type:" + msg.getClass()));
+				continue;
+			}
+			ByteBuf frame = (ByteBuf) msg;
+			try {
+				if (isUnreliable(frame)) {
+					arq.sendUnreliable(frame);
+				} else {
+					arq.send(frame);
+				}
+				in.remove();
+			} catch (Exception e) {
+				in.remove(e);
+			}
+		}
+		arq.flush(now());
+		parent().flush();
+	}
+
+	@Override
+	protected void doClose() throws Exception {
+		if (!open) {
+			return;
+		}
+		open = false;
+		if (tick != null) {
+			tick.cancel(false);
+		}
+		if (!arq.isPeerClosed() && parent().isActive()) {
+			arq.close(now());
+			parent().flush();
+		}
+		arq.release();
+		Procs.invoke(onClose, this);
+	}
+
+	@Override
+	protected void doDisconnect() throws Exception {
+		doClose();
+	}
+
+	@Override
+	protected void doBeginRead() throws Exception {
+	}
+
+	@Override
+	protected void doBind(SocketAddress localAddress) throws Exception {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	protected boolean isCompatible(EventLoop loop) {
+		return true;
+	}
+
+	@Override
+	protected SocketAddress localAddress0() {
+		return parent().localAddress();
+	}
+
+	@Override
+	protected SocketAddress remoteAddress0() {
+		return remote;
+	}
+
+	@Override
+	protected AbstractUnsafe newUnsafe() {
+		return new ArqUnsafe();
+	}
+
+	@Override
+	public ChannelConfig config() {
+		return channelConfig;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+
+	@Override
+	public boolean isActive() {
+		return open;
+	}
+
+	@Override
+	public ChannelMetadata metadata() {
+		return METADATA;
+	}
+
+	@Override
+	public InetSocketAddress remoteAddress() {
+		return remote;
+	}
+
+	public int getConv() {
+		return arq.getConv();
+	}
+
+	/**
+	 * 平滑往返时间(毫秒)
+	 * 
+	 * @return
+	 */
+	public int getSrtt() {
+		return arq.getSrtt();
+	}
+
+	public int getRto() {
+		return arq.getRto();
+	}
+
+	/**
+	 * 超时重传次数
+	 * 
+	 * @return
+	 */
+	public long getRetransmits() {
+		return arq.getRetransmits();
+	}
+
+	/**
+	 * 快速重传次数
+	 * 
+	 * @return
+	 */
+	public long getFastRetransmits() {
+		return arq.getFastRetransmits();
+	}
+
+	/**
+	 * 未确认和等待发送的包数
+	 * 
+	 * @return
+	 */
+	public int getWaitSnd() {
+		return arq.waitSnd();
+	}
+
+	private class ArqUnsafe extends AbstractUnsafe {
+
+		@Override
+		public void connect(SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise) {
+			promise.setFailure(new UnsupportedOperationException());
+		}
+
+		private void resume() {
+			ChannelOutboundBuffer buffer = outboundBuffer();
+			if (buffer != null && buffer.size() > 0) {
+				flush0();
+			}
+		}
+	}
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary.arq;
+
+import java.util.HashSet;
+
+/**
+ * 可靠UDP配置，两端需要一致
+ * 
+ * @author hank
+ *
+ */
+public final class ArqConfig {
+	private final int mtu;
+	private final int sndWnd;
+	private final int rcvWnd;
+	private final int intervalMills;
+	private final int fastResend;
+	private final int minRtoMills;
+	private final int deadLink;
+	private final int pingIntervalMills;
+	private final int idleTimeoutMills;
+	private final double packetLoss;
+	private final HashSet<Short> unreliableMessages;
+
+	private ArqConfig(ArqConfigBuilder builder) {
+		this.mtu = builder.mtu;
+		this.sndWnd = builder.sndWnd;
+		this.rcvWnd = builder.rcvWnd;
+		this.intervalMills = builder.intervalMills;
+		this.fastResend = builder.fastResend;
+		this.minRtoMills = builder.minRtoMills;
+		this.deadLink = builder.deadLink;
+		this.pingIntervalMills = builder.pingIntervalMills;
+		this.idleTimeoutMills = builder.idleTimeoutMills;
+		this.packetLoss = builder.packetLoss;
+		this.unreliableMessages = builder.unreliableMessages;
+	}
+
+	public int getMtu() {
+		return mtu;
+	}
+
+	public int getSndWnd() {
+		return sndWnd;
+	}
+
+	public int getRcvWnd() {
+		return rcvWnd;
+	}
+
+	public int getIntervalMills() {
+		return intervalMills;
+	}
+
+	public int getFastResend() {
+		return fastResend;
+	}
+
+	public int getMinRtoMills() {
+		return minRtoMills;
+	}
+
+	public int getDeadLink() {
+		return deadLink;
+	}
+
+	public int getPingIntervalMills() {
+		return pingIntervalMills;
+	}
+
+	public int getIdleTimeoutMills() {
+		return idleTimeoutMills;
+	}
+
+	public double getPacketLoss() {
+		return packetLoss;
+	}
+
+	public boolean isUnreliable(short messageId) {
+		return !unreliableMessages.isEmpty() && unreliableMessages.contains(messageId);
+	}
+
+	public static class ArqConfigBuilder {
+		private int mtu;
+		private int sndWnd;
+		private int rcvWnd;
+		private int intervalMills;
+		private int fastResend;
+		private int minRtoMills;
+		private int deadLink;
+		private int pingIntervalMills;
+		private int idleTimeoutMills;
+		private double packetLoss;
+		private HashSet<Short> unreliableMessages = new HashSet<>();
+
+		public ArqConfigBuilder() {
+			this.mtu = 1200;
+			this.sndWnd = 128;
+			this.rcvWnd = 128;
+			this.intervalMills = 10;
+			this.fastResend = 2;
+			this.minRtoMills = 30;
+			this.deadLink = 20;
+			this.pingIntervalMills = 1000;
+			this.idleTimeoutMills = 10000;
+		}
+
+		public ArqConfig build() {
+			return new ArqConfig(this);
+		}
+
+		/**
+		 * 单个UDP包的最大字节数(包含包头)
+		 * 
+		 * @param mtu
+		 * @return
+		 */
+		public ArqConfigBuilder mtu(int mtu) {
+			if (mtu <= Arq.HEADER_SIZE || mtu > 65507) {
+				throw new IllegalArgumentException("mtu out of range");
+			}
+			this.mtu = mtu;
+			return this;
+		}
+
+		/**
+		 * 发送和接收窗口(包数)，一条消息分片后的包数要小于接收窗口
+		 * 
+		 * @param sndWnd
+		 * @param rcvWnd
+		 * @return
+		 */
+		public ArqConfigBuilder window(int sndWnd, int rcvWnd) {
+			if (sndWnd <= 0 || rcvWnd <= 1 || rcvWnd > 65535) {
+				throw new IllegalArgumentException("window out of range");
+			}
+			this.sndWnd = sndWnd;
+			this.rcvWnd = rcvWnd;
+			return this;
+		}
+
+		/**
+		 * 检查重传的间隔(毫秒)
+		 * 
+		 * @param intervalMills
+		 * @return
+		 */
+		public ArqConfigBuilder intervalMills(int intervalMills) {
+			this.intervalMills = Math.max(1, intervalMills);
+			return this;
+		}
+
+		/**
+		 * 被后面的包跨过多少次ACK后立即重传，0为不开启快速重传
+		 * 
+		 * @param fastResend
+		 * @return
+		 */
+		public ArqConfigBuilder fastResend(int fastResend) {
+			this.fastResend = fastResend <= 0 ? Integer.MAX_VALUE : fastResend;
+			return this;
+		}
+
+		/**
+		 * 最小重传超时(毫秒)
+		 * 
+		 * @param minRtoMills
+		 * @return
+		 */
+		public ArqConfigBuilder minRtoMills(int minRtoMills) {
+			this.minRtoMills = Math.max(1, minRtoMills);
+			return this;
+		}
+
+		/**
+		 * 同一个包重传多少次仍未确认则断开
+		 * 
+		 * @param deadLink
+		 * @return
+		 */
+		public ArqConfigBuilder deadLink(int deadLink) {
+			this.deadLink = Math.max(1, deadLink);
+			return this;
+		}
+
+		/**
+		 * 空闲时发送保活包的间隔(毫秒)
+		 * 
+		 * @param pingIntervalMills
+		 * @return
+		 */
+		public ArqConfigBuilder pingIntervalMills(int pingIntervalMills) {
+			this.pingIntervalMills = Math.max(1, pingIntervalMills);
+			return this;
+		}
+
+		/**
+		 * 多久收不到对方的包则断开(毫秒)
+		 * 
+		 * @param idleTimeoutMills
+		 * @return
+		 */
+		public ArqConfigBuilder idleTimeoutMills(int idleTimeoutMills) {
+			this.idleTimeoutMills = Math.max(1, idleTimeoutMills);
+			return this;
+		}
+
+		/**
+		 * 模拟丢包(0~1)，按比例随机丢弃发出的UDP包，只用于测试
+		 * 
+		 * @param packetLoss
+		 * @return
+		 */
+		public ArqConfigBuilder packetLoss(double packetLoss) {
+			this.packetLoss = packetLoss;
+			return this;
+		}
+
+		/**
+		 * 不可靠发送的消息(如位置同步)：不重传不排序，收到即处理。超过一个包大小的仍然可靠发送
+		 * 
+		 * @param messageIds
+		 * @return
+		 */
+		public ArqConfigBuilder unreliable(short... messageIds) {
+			for (short messageId : messageIds) {
+				this.unreliableMessages.add(messageId);
+			}
+			return this;
+		}
+	}
+}
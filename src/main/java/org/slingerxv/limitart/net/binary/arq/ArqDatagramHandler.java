@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary.arq;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slingerxv.limitart.funcs.Proc1;
+import org.slingerxv.limitart.net.binary.codec.AbstractBinaryDecoder;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.socket.DatagramPacket;
+
+/**
+ * UDP通道上的可靠UDP连接分发：按远端地址把包交给对应的{@link ArqChannel}，服务器端收到新地址的包时建立连接
+ * <p>
+ * 每个UDP通道一个实例，只在UDP通道的EventLoop中访问
+ * 
+ * @author hank
+ *
+ */
+public class ArqDatagramHandler extends ChannelInboundHandlerAdapter {
+	private static Logger log = LoggerFactory.getLogger(ArqDatagramHandler.class);
+	private final ArqConfig config;
+	private final AbstractBinaryDecoder decoder;
+	private final Proc1<Channel> initializer;
+	private final HashMap<InetSocketAddress, ArqChannel> children = new HashMap<>();
+	private Channel channel;
+
+	/**
+	 * @param config
+	 * @param decoder
+	 *            用于识别不可靠发送的消息，可以为null
+	 * @param initializer
+	 *            服务器端新连接的pipeline初始化，客户端为null(不接受新连接)
+	 */
+	public ArqDatagramHandler(ArqConfig config, AbstractBinaryDecoder decoder, Proc1<Channel> initializer) {
+		this.config = config;
+		this.decoder = decoder;
+		this.initializer = initializer;
+	}
+
+	/**
+	 * 客户端建立到远端的连接，需要在UDP通道的EventLoop中调用
+	 * 
+	 * @param remote
+	 * @param initializer
+	 *            连接的pipeline初始化
+	 * @return
+	 */
+	public ArqChannel connect(InetSocketAddress remote, Proc1<Channel> initializer) {
+		int conv;
+		do {
+			conv = ThreadLocalRandom.current().nextInt();
+		} while (conv == 0);
+		return newChild(remote, conv, initializer);
+	}
+
+	private ArqChannel newChild(InetSocketAddress remote, int conv, Proc1<Channel> initializer) {
+		ArqChannel child = new ArqChannel(channel, remote, conv, config, decoder, this::remove);
+		children.put(remote, child);
+		initializer.run(child);
+		channel.eventLoop().register(child);
+		return child;
+	}
+
+	private void remove(ArqChannel child) {
+		children.remove(child.remoteAddress(), child);
+	}
+
+	public int size() {
+		return children.size();
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+		this.channel = ctx.channel();
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		if (!(msg instanceof DatagramPacket)) {
+			ctx.fireChannelRead(msg);
+			return;
+		}
+		DatagramPacket packet = (DatagramPacket) msg;
+		try {
+			ByteBuf content = packet.content();
+			if (content.readableBytes() < Arq.HEADER_SIZE) {
+				return;
+			}
+			int conv = content.getInt(content.readerIndex());
+			byte cmd = content.getByte(content.readerIndex() + 4);
+			InetSocketAddress sender = packet.sender();
+			ArqChannel child = children.get(sender);
+			if (child != null && child.getConv() != conv) {
+				if (initializer == null) {
+					return;
+				}
+				// 对方重新建立了连接
+				child.close();
+				child = null;
+			}
+			if (child == null) {
+				if (initializer == null || conv == 0 || cmd == Arq.CMD_CLOSE) {
+					return;
+				}
+				child = newChild(sender, conv, initializer);
+			}
+			child.input(content);
+		} catch (Exception e) {
+			log.error(ctx.channel() + " cause:", e);
+		} finally {
+			packet.release();
+		}
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		for (ArqChannel child : new ArrayList<>(children.values())) {
+			child.close();
+		}
+		ctx.fireChannelInactive();
+	}
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary.broadcast;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.slingerxv.limitart.funcs.Proc3;
+import org.slingerxv.limitart.net.binary.codec.AbstractBinaryEncoder;
+import org.slingerxv.limitart.net.binary.message.Message;
+import org.slingerxv.limitart.net.binary.message.exception.MessageCodecException;
+import org.slingerxv.limitart.net.binary.util.Broadcast;
+import org.slingerxv.limitart.net.binary.util.SendMessageUtil;
+
+import io.netty.channel.Channel;
+
+/**
+ * 视野格子(九宫格)
+ * <p>
+ * 地图按格子大小切分，实体登记所在位置，广播时发给以某个位置所在格子为中心、视野半径内格子里的所有实体，只编码一次，
+ * 直接遍历格子不生成中间列表。视野半径为1时即九宫格。非线程安全，一般由地图所在的线程使用
+ * 
+ * @author hank
+ *
+ */
+public class AoiGrid {
+	private final AbstractBinaryEncoder encoder;
+	private final float cellSize;
+	private final int columns;
+	private final int rows;
+	private final int viewRange;
+	private final Cell[] cells;
+	private final HashMap<Long, Entity> entities = new HashMap<>();
+
+	/**
+	 * 构造
+	 * 
+	 * @param encoder
+	 * @param width
+	 *            地图宽
+	 * @param height
+	 *            地图高
+	 * @param cellSize
+	 *            格子边长
+	 * @param viewRange
+	 *            视野半径(格子数)，1为九宫格
+	 */
+	public AoiGrid(AbstractBinaryEncoder encoder, float width, float height, float cellSize, int viewRange) {
+		if (cellSize <= 0 || width <= 0 || height <= 0 || viewRange < 0) {
+			throw new IllegalArgumentException(
+					"width:" + width + ",height:" + height + ",cellSize:" + cellSize + ",viewRange:" + viewRange);
+		}
+		this.encoder = encoder;
+		this.cellSize = cellSize;
+		this.columns = (int) Math.ceil(width / cellSize);
+		this.rows = (int) Math.ceil(height / cellSize);
+		this.viewRange = viewRange;
+		this.cells = new Cell[columns * rows];
+	}
+
+	/**
+	 * 实体进入(已存在时等同于移动)
+	 * 
+	 * @param id
+	 * @param channel
+	 * @param x
+	 * @param y
+	 */
+	public void enter(long id, Channel channel, float x, float y) {
+		Entity entity = entities.get(id);
+		if (entity != null) {
+			entity.channel = channel;
+			move(id, x, y);
+			return;
+		}
+		entity = new Entity(id, channel);
+		entities.put(id, entity);
+		cell(cellIndex(x, y)).add(entity);
+	}
+
+	/**
+	 * 实体移动
+	 * 
+	 * @param id
+	 * @param x
+	 * @param y
+	 * @return 是否换了格子
+	 */
+	public boolean move(long id, float x, float y) {
+		Entity entity = entities.get(id);
+		if (entity == null) {
+			return false;
+		}
+		int index = cellIndex(x, y);
+		if (index == entity.cell) {
+			return false;
+		}
+		cells[entity.cell].remove(entity);
+		cell(index).add(entity);
+		return true;
+	}
+
+	/**
+	 * 实体离开
+	 * 
+	 * @param id
+	 * @return
+	 */
+	public boolean leave(long id) {
+		Entity entity = entities.remove(id);
+		if (entity == null) {
+			return false;
+		}
+		cells[entity.cell].remove(entity);
+		return true;
+	}
+
+	/**
+	 * 实体数量
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return entities.size();
+	}
+
+	/**
+	 * 能看到某个位置的实体数量
+	 * 
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public int countVisible(float x, float y) {
+		int center = cellIndex(x, y);
+		int cx = center % columns;
+		int cy = center / columns;
+		int count = 0;
+		for (int row = Math.max(0, cy - viewRange); row <= Math.min(rows - 1, cy + viewRange); ++row) {
+			for (int column = Math.max(0, cx - viewRange); column <= Math.min(columns - 1,
+					cx + viewRange); ++column) {
+				Cell cell = cells[row * columns + column];
+				if (cell != null) {
+					count += cell.size;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * 发给能看到某个位置的所有实体
+	 * 
+	 * @param x
+	 * @param y
+	 * @param msg
+	 * @param listener
+	 * @return 发送的实体数
+	 * @throws MessageCodecException
+	 */
+	public int broadcast(float x, float y, Message msg, Proc3<Boolean, Throwable, Channel> listener)
+			throws MessageCodecException {
+		return broadcast(cellIndex(x, y), -1, false, msg, listener);
+	}
+
+	/**
+	 * 发给能看到某个实体的所有实体
+	 * 
+	 * @param id
+	 * @param includeSelf
+	 *            是否也发给自己
+	 * @param msg
+	 * @param listener
+	 * @return 发送的实体数
+	 * @throws MessageCodecException
+	 */
+	public int broadcastAround(long id, boolean includeSelf, Message msg,
+			Proc3<Boolean, Throwable, Channel> listener) throws MessageCodecException {
+		Entity entity = entities.get(id);
+		if (entity == null) {
+			return 0;
+		}
+		return broadcast(entity.cell, id, !includeSelf, msg, listener);
+	}
+
+	private int broadcast(int center, long self, boolean excludeSelf, Message msg,
+			Proc3<Boolean, Throwable, Channel> listener) throws MessageCodecException {
+		int cx = center % columns;
+		int cy = center / columns;
+		Broadcast broadcast = null;
+		try {
+			for (int row = Math.max(0, cy - viewRange); row <= Math.min(rows - 1, cy + viewRange); ++row) {
+				for (int column = Math.max(0, cx - viewRange); column <= Math.min(columns - 1,
+						cx + viewRange); ++column) {
+					Cell cell = cells[row * columns + column];
+					if (cell == null) {
+						continue;
+					}
+					for (int i = 0; i < cell.size; ++i) {
+						Entity entity = cell.entities[i];
+						if (excludeSelf && entity.id == self) {
+							continue;
+						}
+						if (broadcast == null) {
+							// 有接收者时才编码
+							broadcast = SendMessageUtil.broadcast(encoder, entity.channel.alloc(), msg, listener);
+						}
+						broadcast.sendTo(entity.channel);
+					}
+				}
+			}
+		} finally {
+			if (broadcast != null) {
+				broadcast.release();
+			}
+		}
+		return broadcast == null ? 0 : broadcast.getSent();
+	}
+
+	private int cellIndex(float x, float y) {
+		int column = Math.min(columns - 1, Math.max(0, (int) (x / cellSize)));
+		int row = Math.min(rows - 1, Math.max(0, (int) (y / cellSize)));
+		return row * columns + column;
+	}
+
+	private Cell cell(int index) {
+		Cell cell = cells[index];
+		if (cell == null) {
+			cell = new Cell(index);
+			cells[index] = cell;
+		}
+		return cell;
+	}
+
+	private static class Cell {
+		private final int index;
+		private Entity[] entities = new Entity[4];
+		private int size;
+
+		private Cell(int index) {
+			this.index = index;
+		}
+
+		private void add(Entity entity) {
+			if (size == entities.length) {
+				entities = Arrays.copyOf(entities, size << 1);
+			}
+			entity.cell = index;
+			entity.index = size;
+			entities[size++] = entity;
+		}
+
+		private void remove(Entity entity) {
+			// 与最后一个交换
+			Entity last = entities[--size];
+			entities[entity.index] = last;
+			last.index = entity.index;
+			entities[size] = null;
+		}
+	}
+
+	private static class Entity {
+		private final long id;
+		private Channel channel;
+		private int cell;
+		private int index;
+
+		private Entity(long id, Channel channel) {
+			this.id = id;
+			this.channel = channel;
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary.broadcast;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slingerxv.limitart.funcs.Proc3;
+import org.slingerxv.limitart.net.binary.codec.AbstractBinaryEncoder;
+import org.slingerxv.limitart.net.binary.message.Message;
+import org.slingerxv.limitart.net.binary.message.exception.MessageCodecException;
+import org.slingerxv.limitart.net.binary.util.SendMessageUtil;
+
+import io.netty.channel.Channel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+/**
+ * 按名称管理的连接组(公会、频道、房间等)，连接关闭后自动移出所在的组，广播时只编码一次
+ * 
+ * @author hank
+ *
+ */
+public class ChannelGroups {
+	private final AbstractBinaryEncoder encoder;
+	private final ConcurrentHashMap<String, ChannelGroup> groups = new ConcurrentHashMap<>();
+
+	public ChannelGroups(AbstractBinaryEncoder encoder) {
+		this.encoder = encoder;
+	}
+
+	/**
+	 * 加入组，组不存在时创建
+	 * 
+	 * @param name
+	 * @param channel
+	 * @return 是否新加入
+	 */
+	public boolean join(String name, Channel channel) {
+		ChannelGroup group = groups.get(name);
+		if (group == null) {
+			group = new DefaultChannelGroup(name, GlobalEventExecutor.INSTANCE);
+			ChannelGroup put = groups.putIfAbsent(name, group);
+			if (put != null) {
+				group = put;
+			}
+		}
+		return group.add(channel);
+	}
+
+	/**
+	 * 离开组
+	 * 
+	 * @param name
+	 * @param channel
+	 * @return
+	 */
+	public boolean leave(String name, Channel channel) {
+		ChannelGroup group = groups.get(name);
+		return group != null && group.remove(channel);
+	}
+
+	/**
+	 * 获取组
+	 * 
+	 * @param name
+	 * @return 不存在返回null
+	 */
+	public ChannelGroup getGroup(String name) {
+		return groups.get(name);
+	}
+
+	/**
+	 * 删除组
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public ChannelGroup removeGroup(String name) {
+		return groups.remove(name);
+	}
+
+	/**
+	 * 组内连接数
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public int size(String name) {
+		ChannelGroup group = groups.get(name);
+		return group == null ? 0 : group.size();
+	}
+
+	/**
+	 * 发送给组内所有连接
+	 * 
+	 * @param name
+	 * @param msg
+	 * @param listener
+	 * @return 发送的连接数
+	 * @throws MessageCodecException
+	 */
+	public int broadcast(String name, Message msg, Proc3<Boolean, Throwable, Channel> listener)
+			throws MessageCodecException {
+		ChannelGroup group = groups.get(name);
+		if (group == null || group.isEmpty()) {
+			return 0;
+		}
+		int count = group.size();
+		SendMessageUtil.sendMessage(encoder, group, msg, listener);
+		return count;
+	}
+}
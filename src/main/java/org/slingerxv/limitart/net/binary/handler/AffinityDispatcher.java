@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary.handler;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slingerxv.limitart.funcs.Func1;
+import org.slingerxv.limitart.funcs.Proc2;
+import org.slingerxv.limitart.net.binary.Session;
+import org.slingerxv.limitart.net.binary.message.Message;
+import org.slingerxv.limitart.taskqueue.DisruptorTaskQueue;
+import org.slingerxv.limitart.taskqueue.define.ITaskQueue;
+import org.slingerxv.limitart.taskqueuegroup.AutoGrowthTaskQueueGroup;
+import org.slingerxv.limitart.taskqueuegroup.struct.AutoGrowthEntity;
+
+import io.netty.channel.Channel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+
+/**
+ * 按亲和键把消息分发到{@link AutoGrowthTaskQueueGroup}的分发器，可直接作为服务器的dispatchMessage。<br>
+ * 同一个键始终在同一个队列中按顺序执行，直到调用{@link #release(Object)}(以连接为键时连接关闭后自动释放)。<br>
+ * 连接的键改变时(如{@link #BY_USER}在绑定用户后)，等该连接在原来的键上的消息都执行完才切换，同一连接的消息不会乱序或并发执行；
+ * 原来的键是连接时切换后释放。一个连接只能由一个分发器分发
+ * 
+ * @author hank
+ *
+ */
+public class AffinityDispatcher implements Proc2<Message, IHandler<Message>> {
+	private static Logger log = LoggerFactory.getLogger(AffinityDispatcher.class);
+	private static final AttributeKey<Object> AFFINITY_KEY = AttributeKey.newInstance("AFFINITY_KEY");
+	/**
+	 * 以连接为键
+	 */
+	public static final Func1<Message, Object> BY_CHANNEL = Message::getChannel;
+	/**
+	 * 以会话绑定的用户为键，未绑定时以连接为键
+	 */
+	public static final Func1<Message, Object> BY_USER = msg -> {
+		Session session = Session.get(msg.getChannel());
+		if (session != null && session.isUserBound()) {
+			return session.getUserId();
+		}
+		return msg.getChannel();
+	};
+	private final AutoGrowthTaskQueueGroup<Runnable> group;
+	private final Func1<Message, Object> affinityKey;
+	private final ConcurrentHashMap<Object, AffinityEntity> entities = new ConcurrentHashMap<>();
+	// 统计
+	private final LongAdder dispatched = new LongAdder();
+	private final LongAdder executed = new LongAdder();
+	private final LongAdder latencyNanos = new LongAdder();
+	private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+	private AffinityDispatcher(AffinityDispatcherBuilder builder) throws Exception {
+		this.affinityKey = Objects.requireNonNull(builder.affinityKey, "affinityKey");
+		Func1<Integer, ITaskQueue<Runnable>> taskQueue = builder.taskQueue;
+		if (taskQueue == null) {
+			String threadName = builder.threadName;
+			taskQueue = id -> new DisruptorTaskQueue<Runnable>(threadName + "-" + id).handle(Runnable::run);
+		}
+		this.group = new AutoGrowthTaskQueueGroup<>(builder.entityCountPerThread, builder.coreThreadCount,
+				builder.initThreadCount, builder.maxThreadCount, taskQueue);
+	}
+
+	@Override
+	public void run(Message msg, IHandler<Message> handler) {
+		Channel channel = msg.getChannel();
+		Object key = affinityKey.run(msg);
+		if (key == null) {
+			key = channel;
+		}
+		if (channel != null) {
+			key = pin(channel, key);
+		}
+		AffinityEntity entity = entities.get(key);
+		if (entity == null) {
+			AffinityEntity created = new AffinityEntity(key);
+			entity = entities.putIfAbsent(key, created);
+			if (entity == null) {
+				entity = created;
+				if (key instanceof Channel) {
+					Object channelKey = key;
+					((Channel) key).closeFuture().addListener(future -> release(channelKey));
+				}
+			}
+		}
+		msg.retain();
+		try {
+			entity.register();
+			entity.pending.incrementAndGet();
+			dispatched.increment();
+			group.addCommand(entity, new DispatchTask(entity, msg, handler));
+		} catch (Exception e) {
+			entity.pending.decrementAndGet();
+			dispatched.decrement();
+			msg.release();
+			log.error("dispatch message " + msg.getClass().getName() + " of " + key + " error", e);
+		}
+	}
+
+	/**
+	 * 连接当前使用的键，键改变时原来的键上还有未执行完的消息则继续使用原来的键
+	 * 
+	 * @param channel
+	 * @param key
+	 * @return
+	 */
+	private Object pin(Channel channel, Object key) {
+		Attribute<Object> attr = channel.attr(AFFINITY_KEY);
+		Object current = attr.get();
+		if (current == null || current.equals(key)) {
+			attr.set(key);
+			return key;
+		}
+		AffinityEntity entity = entities.get(current);
+		if (entity != null && entity.pending.get() > 0) {
+			return current;
+		}
+		attr.set(key);
+		if (current instanceof Channel) {
+			release(current);
+		}
+		return key;
+	}
+
+	/**
+	 * 释放键与队列的绑定(如玩家下线)，之后的消息重新分配队列
+	 * 
+	 * @param key
+	 */
+	public void release(Object key) {
+		AffinityEntity entity = entities.remove(key);
+		if (entity == null) {
+			return;
+		}
+		try {
+			entity.unregister();
+		} catch (Exception e) {
+			log.error("release " + key + " error", e);
+		}
+	}
+
+	/**
+	 * 等待执行的消息数量
+	 * 
+	 * @return
+	 */
+	public long getQueueDepth() {
+		return dispatched.sum() - executed.sum();
+	}
+
+	/**
+	 * 某个键等待执行的消息数量
+	 * 
+	 * @param key
+	 * @return
+	 */
+	public int getQueueDepth(Object key) {
+		AffinityEntity entity = entities.get(key);
+		return entity == null ? 0 : entity.pending.get();
+	}
+
+	/**
+	 * 键当前所在的队列编号
+	 * 
+	 * @param key
+	 * @return 未分配时返回0
+	 */
+	public int getThreadIndex(Object key) {
+		AffinityEntity entity = entities.get(key);
+		return entity == null ? 0 : entity.getThreadIndex();
+	}
+
+	public long getDispatched() {
+		return dispatched.sum();
+	}
+
+	public long getExecuted() {
+		return executed.sum();
+	}
+
+	/**
+	 * 从分发到开始执行的平均延迟(纳秒)
+	 * 
+	 * @return
+	 */
+	public long getAverageLatencyNanos() {
+		long count = executed.sum();
+		return count == 0 ? 0 : latencyNanos.sum() / count;
+	}
+
+	/**
+	 * 从分发到开始执行的最大延迟(纳秒)
+	 * 
+	 * @return
+	 */
+	public long getMaxLatencyNanos() {
+		return maxLatencyNanos.get();
+	}
+
+	private void recordLatency(long latency) {
+		latencyNanos.add(latency);
+		long max;
+		while ((max = maxLatencyNanos.get()) < latency) {
+			if (maxLatencyNanos.compareAndSet(max, latency)) {
+				break;
+			}
+		}
+	}
+
+	private class AffinityEntity extends AutoGrowthEntity {
+		private final Object key;
+		private final AtomicInteger pending = new AtomicInteger();
+		private volatile boolean registered;
+		private boolean released;
+
+		private AffinityEntity(Object key) {
+			this.key = key;
+		}
+
+		private void register() throws Exception {
+			if (registered) {
+				return;
+			}
+			synchronized (this) {
+				if (!registered && !released) {
+					group.registerEntity(this);
+					registered = true;
+				}
+			}
+		}
+
+		private synchronized void unregister() throws Exception {
+			released = true;
+			if (registered) {
+				group.unregisterEntity(this);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "AffinityEntity[" + key + "]";
+		}
+	}
+
+	private class DispatchTask implements Runnable {
+		private final AffinityEntity entity;
+		private final Message msg;
+		private final IHandler<Message> handler;
+		private final long dispatchTime = System.nanoTime();
+
+		private DispatchTask(AffinityEntity entity, Message msg, IHandler<Message> handler) {
+			this.entity = entity;
+			this.msg = msg;
+			this.handler = handler;
+		}
+
+		@Override
+		public void run() {
+			recordLatency(System.nanoTime() - dispatchTime);
+			try {
+				handler.handle(msg);
+			} catch (Exception e) {
+				log.error("handle message " + msg.getClass().getName() + " of " + entity.key + " error", e);
+			} finally {
+				entity.pending.decrementAndGet();
+				executed.increment();
+				msg.release();
+			}
+		}
+	}
+
+	public static class AffinityDispatcherBuilder {
+		private String threadName;
+		private Func1<Message, Object> affinityKey;
+		private int entityCountPerThread;
+		private int coreThreadCount;
+		private int initThreadCount;
+		private int maxThreadCount;
+		private Func1<Integer, ITaskQueue<Runnable>> taskQueue;
+
+		public AffinityDispatcherBuilder() {
+			this.threadName = "Affinity-Dispatcher";
+			this.affinityKey = BY_CHANNEL;
+			this.entityCountPerThread = 1000;
+			this.coreThreadCount = 1;
+			this.initThreadCount = 1;
+			this.maxThreadCount = Runtime.getRuntime().availableProcessors();
+		}
+
+		public AffinityDispatcher build() throws Exception {
+			return new AffinityDispatcher(this);
+		}
+
+		public AffinityDispatcherBuilder threadName(String threadName) {
+			this.threadName = threadName;
+			return this;
+		}
+
+		/**
+		 * 亲和键(如{@link AffinityDispatcher#BY_CHANNEL}、{@link AffinityDispatcher#BY_USER}或场景id)，返回null时以连接为键
+		 * 
+		 * @param affinityKey
+		 * @return
+		 */
+		public AffinityDispatcherBuilder affinityKey(Func1<Message, Object> affinityKey) {
+			this.affinityKey = affinityKey;
+			return this;
+		}
+
+		/**
+		 * 每个队列容纳多少个键后增长新队列
+		 * 
+		 * @param entityCountPerThread
+		 * @return
+		 */
+		public AffinityDispatcherBuilder entityCountPerThread(int entityCountPerThread) {
+			this.entityCountPerThread = entityCountPerThread;
+			return this;
+		}
+
+		public AffinityDispatcherBuilder coreThreadCount(int coreThreadCount) {
+			this.coreThreadCount = coreThreadCount;
+			return this;
+		}
+
+		public AffinityDispatcherBuilder initThreadCount(int initThreadCount) {
+			this.initThreadCount = initThreadCount;
+			return this;
+		}
+
+		public AffinityDispatcherBuilder maxThreadCount(int maxThreadCount) {
+			this.maxThreadCount = maxThreadCount;
+			return this;
+		}
+
+		/**
+		 * 自定义队列，队列需要执行收到的Runnable，默认为{@link DisruptorTaskQueue}
+		 * 
+		 * @param taskQueue
+		 *            队列编号->队列
+		 * @return
+		 */
+		public AffinityDispatcherBuilder taskQueue(Func1<Integer, ITaskQueue<Runnable>> taskQueue) {
+			this.taskQueue = taskQueue;
+			return this;
+		}
+	}
+}
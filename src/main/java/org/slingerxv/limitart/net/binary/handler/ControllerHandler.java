@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary.handler;
+
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.POP2;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_5;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slingerxv.limitart.net.binary.message.Message;
+import org.slingerxv.limitart.reflectasm.AccessClassLoader;
+import org.slingerxv.limitart.reflectasm.MethodAccess;
+
+/**
+ * Controller中{@code @Handler}方法的调用器
+ * <p>
+ * 注册时为每个方法生成一个直接调用的handler类，调用开销与手写的{@link IHandler}一致。不满足生成条件(非public类或方法)时，
+ * 使用注册时解析好的方法下标通过{@link MethodAccess}调用
+ *
+ * @author hank
+ *
+ */
+public abstract class ControllerHandler implements IHandler<Message> {
+	private static Logger log = LoggerFactory.getLogger(ControllerHandler.class);
+	protected Object controller;
+
+	/**
+	 * Controller实例
+	 * 
+	 * @return
+	 */
+	public Object getController() {
+		return controller;
+	}
+
+	/**
+	 * 创建方法调用器
+	 * 
+	 * @param controller
+	 *            Controller实例
+	 * @param method
+	 *            只有一个消息参数的方法
+	 * @return
+	 */
+	public static ControllerHandler create(Object controller, Method method) {
+		ControllerHandler handler = generate(controller.getClass(), method);
+		if (handler == null) {
+			MethodAccess methodAccess = MethodAccess.get(controller.getClass());
+			handler = new IndexHandler(methodAccess,
+					methodAccess.getIndex(method.getName(), method.getParameterTypes()));
+		}
+		handler.controller = controller;
+		return handler;
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static ControllerHandler generate(Class<?> type, Method method) {
+		if (!isPublic(type) || !Modifier.isPublic(method.getModifiers())) {
+			log.debug("{}.{} is not public,use method index", type.getName(), method.getName());
+			return null;
+		}
+		Class<?> param = method.getParameterTypes()[0];
+		String className = type.getName();
+		String accessClassName = className + "ControllerHandler$" + method.getName() + "$"
+				+ param.getName().replace('.', '_');
+		Class accessClass;
+		AccessClassLoader loader = AccessClassLoader.get(type);
+		try {
+			accessClass = loader.loadClass(accessClassName);
+		} catch (ClassNotFoundException ignored) {
+			synchronized (loader) {
+				try {
+					accessClass = loader.loadClass(accessClassName);
+				} catch (ClassNotFoundException ignored2) {
+					String accessClassNameInternal = accessClassName.replace('.', '/');
+					String superClassNameInternal = Type.getInternalName(ControllerHandler.class);
+					ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+					cw.visit(V1_5, ACC_PUBLIC + ACC_SUPER, accessClassNameInternal, null, superClassNameInternal,
+							null);
+					insertConstructor(cw, superClassNameInternal);
+					insertHandle(cw, superClassNameInternal, Type.getInternalName(type), method);
+					cw.visitEnd();
+					try {
+						accessClass = loader.defineClass(accessClassName, cw.toByteArray());
+					} catch (Throwable e) {
+						log.warn("generate handler for " + className + "." + method.getName()
+								+ " failed,use method index", e);
+						return null;
+					}
+				}
+			}
+		}
+		try {
+			return (ControllerHandler) accessClass.newInstance();
+		} catch (Throwable e) {
+			log.warn("construct handler for " + className + "." + method.getName() + " failed,use method index", e);
+			return null;
+		}
+	}
+
+	private static boolean isPublic(Class<?> type) {
+		for (Class<?> next = type; next != null; next = next.getEnclosingClass()) {
+			if (!Modifier.isPublic(next.getModifiers())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void insertConstructor(ClassWriter cw, String superClassNameInternal) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, superClassNameInternal, "<init>", "()V", false);
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	private static void insertHandle(ClassWriter cw, String superClassNameInternal, String ownerInternal,
+			Method method) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "handle", "(" + Type.getDescriptor(Message.class) + ")V",
+				null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitFieldInsn(GETFIELD, superClassNameInternal, "controller", "Ljava/lang/Object;");
+		mv.visitTypeInsn(CHECKCAST, ownerInternal);
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitTypeInsn(CHECKCAST, Type.getInternalName(method.getParameterTypes()[0]));
+		mv.visitMethodInsn(INVOKEVIRTUAL, ownerInternal, method.getName(), Type.getMethodDescriptor(method), false);
+		Class<?> returnType = method.getReturnType();
+		if (returnType == long.class || returnType == double.class) {
+			mv.visitInsn(POP2);
+		} else if (returnType != void.class) {
+			mv.visitInsn(POP);
+		}
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	private static class IndexHandler extends ControllerHandler {
+		private final MethodAccess methodAccess;
+		private final int methodIndex;
+
+		private IndexHandler(MethodAccess methodAccess, int methodIndex) {
+			this.methodAccess = methodAccess;
+			this.methodIndex = methodIndex;
+		}
+
+		@Override
+		public void handle(Message msg) {
+			methodAccess.invoke(controller, methodIndex, msg);
+		}
+	}
+}
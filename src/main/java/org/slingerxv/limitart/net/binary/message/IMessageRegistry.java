@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary.message;
+
+import org.slingerxv.limitart.funcs.Func1;
+
+/**
+ * 消息注册表(一般由编译期注解处理器生成)
+ * 
+ * @author hank
+ *
+ */
+public interface IMessageRegistry {
+	/**
+	 * 注册所有编解码器、消息和handler
+	 * 
+	 * @param factory
+	 * @param confirmInstance
+	 *            Controller实例提供者
+	 * @throws Exception
+	 */
+	void register(MessageFactory factory, Func1<Class<?>, Object> confirmInstance) throws Exception;
+}
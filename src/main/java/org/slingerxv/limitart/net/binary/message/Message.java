@@ -15,11 +15,18 @@
  */
 package org.slingerxv.limitart.net.binary.message;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import org.slingerxv.limitart.net.binary.BinaryClient;
 import org.slingerxv.limitart.net.binary.BinaryServer;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
+import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.Recycler;
+import io.netty.util.ResourceLeakDetector;
+import io.netty.util.ResourceLeakDetectorFactory;
+import io.netty.util.ResourceLeakTracker;
 
 /**
  * 消息实体
@@ -28,6 +35,23 @@ import io.netty.channel.Channel;
  *
  */
 public abstract class Message extends MessageMeta {
+	/**
+	 * 池化消息调试模式：跟踪每个取出的消息，未归还时报告泄漏，归还后再访问通道等上下文时抛出异常。启动参数
+	 * -Dlimitart.message.poolDebug=true开启
+	 */
+	private static final boolean POOL_DEBUG = Boolean.getBoolean("limitart.message.poolDebug");
+	private static final ResourceLeakDetector<Message> LEAK_DETECTOR = ResourceLeakDetectorFactory.instance()
+			.newResourceLeakDetector(Message.class, 1);
+	private static final AtomicIntegerFieldUpdater<Message> REF_CNT_UPDATER = AtomicIntegerFieldUpdater
+			.newUpdater(Message.class, "refCnt");
+	private transient Recycler.Handle<Message> recyclerHandle;
+	private transient volatile int refCnt;
+	// 延迟解码的非池化消息也使用引用计数，引用归零后仍按计数消息检查
+	private transient volatile boolean refCounted;
+	private transient ResourceLeakTracker<Message> leak;
+	// 延迟解码时保留的未解码字节，已解码后的访问不加锁
+	private transient volatile ByteBuf undecoded;
+	private transient int undecodedFrom;
 	// 消息由什么通道过来
 	private transient Channel channel;
 	// 当前Message接受的客户端
@@ -41,6 +65,7 @@ public abstract class Message extends MessageMeta {
 	public abstract short getMessageId();
 
 	public BinaryClient getClient() {
+		checkAccessible();
 		return client;
 	}
 
@@ -49,6 +74,7 @@ public abstract class Message extends MessageMeta {
 	}
 
 	public BinaryServer getServer() {
+		checkAccessible();
 		return server;
 	}
 
@@ -57,6 +83,7 @@ public abstract class Message extends MessageMeta {
 	}
 
 	public Channel getChannel() {
+		checkAccessible();
 		return channel;
 	}
 
@@ -79,4 +106,185 @@ public abstract class Message extends MessageMeta {
 	public void setExtra1(Object extra1) {
 		this.extra1 = extra1;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * 是否为池化消息({@link org.slingerxv.limitart.net.binary.message.annotation.Poolable})
+	 * 
+	 * @return
+	 */
+	public final boolean isPooled() {
+		return recyclerHandle != null;
+	}
+
+	/**
+	 * 增加引用。把池化消息或未解码完的延迟解码消息交给其他线程处理时需要先retain，处理完后release
+	 * 
+	 * @return
+	 */
+	public final Message retain() {
+		if (!isRefCounted()) {
+			return this;
+		}
+		for (;;) {
+			int cnt = refCnt;
+			if (cnt <= 0) {
+				throw new IllegalReferenceCountException(cnt, 1);
+			}
+			if (REF_CNT_UPDATER.compareAndSet(this, cnt, cnt + 1)) {
+				return this;
+			}
+		}
+	}
+
+	/**
+	 * 释放引用，引用归零时释放未解码的字节，池化消息清理并归还到池中，其他消息无操作
+	 * 
+	 * @return 是否已归还
+	 */
+	public final boolean release() {
+		if (!isRefCounted()) {
+			return false;
+		}
+		for (;;) {
+			int cnt = refCnt;
+			if (cnt <= 0) {
+				throw new IllegalReferenceCountException(cnt, -1);
+			}
+			if (REF_CNT_UPDATER.compareAndSet(this, cnt, cnt - 1)) {
+				if (cnt > 1) {
+					return false;
+				}
+				releaseUndecoded();
+				if (recyclerHandle == null) {
+					return false;
+				}
+				recycle();
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * 解码延迟解码消息剩余的字段，已解码过时直接返回
+	 * 
+	 * @throws Exception
+	 * @see org.slingerxv.limitart.net.binary.message.annotation.Lazy
+	 */
+	public final void decodeLazy() throws Exception {
+		if (undecoded == null) {
+			checkAccessible();
+			return;
+		}
+		synchronized (this) {
+			ByteBuf body = undecoded;
+			if (body == null) {
+				checkAccessible();
+				return;
+			}
+			buffer(body);
+			try {
+				decode(undecodedFrom, Integer.MAX_VALUE);
+			} finally {
+				buffer(null);
+				// 字段写完后再发布，其他线程看到null时字段已可见
+				undecoded = null;
+				body.release();
+			}
+		}
+	}
+
+	/**
+	 * 延迟解码消息还未解码的字节(不包括已解码的头部字段)，可以直接转发。只在release前有效，需要长期持有时自行retain
+	 * 
+	 * @return 非延迟解码或已解码时返回null
+	 */
+	public final ByteBuf undecoded() {
+		return undecoded;
+	}
+
+	/**
+	 * 是否还有未解码的字段
+	 * 
+	 * @return
+	 */
+	public final boolean isDecoded() {
+		return undecoded == null;
+	}
+
+	/**
+	 * IO线程解码完头部后保留剩余字节
+	 * 
+	 * @param body
+	 *            已retain的剩余字节
+	 * @param from
+	 *            剩余字节对应的起始字段下标
+	 */
+	final void lazy(ByteBuf body, int from) {
+		this.undecodedFrom = from;
+		this.undecoded = body;
+		if (recyclerHandle == null) {
+			REF_CNT_UPDATER.set(this, 1);
+			refCounted = true;
+		}
+	}
+
+	private synchronized void releaseUndecoded() {
+		if (undecoded != null) {
+			undecoded.release();
+			undecoded = null;
+		}
+	}
+
+	private boolean isRefCounted() {
+		return recyclerHandle != null || refCounted;
+	}
+
+	/**
+	 * 归还到池中前清理子类自己的状态(编解码字段已由框架清空)
+	 */
+	protected void reset() {
+	}
+
+	/**
+	 * 池创建消息时绑定回收句柄
+	 */
+	final void pooled(Recycler.Handle<Message> handle) {
+		this.recyclerHandle = handle;
+	}
+
+	/**
+	 * 从池中取出时调用
+	 */
+	final void acquire() {
+		REF_CNT_UPDATER.set(this, 1);
+		if (POOL_DEBUG) {
+			leak = LEAK_DETECTOR.track(this);
+		}
+	}
+
+	private void recycle() {
+		reset();
+		try {
+			// 解码时null的包装类型数组保留原值，不清空会把上一个连接的数据带给下一个handler
+			clearFields();
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+		this.channel = null;
+		this.client = null;
+		this.server = null;
+		this.extra = null;
+		this.extra1 = null;
+		if (leak != null) {
+			leak.close(this);
+			leak = null;
+		}
+		recyclerHandle.recycle(this);
+	}
+
+	private void checkAccessible() {
+		if (POOL_DEBUG && recyclerHandle != null && refCnt <= 0) {
+			throw new IllegalReferenceCountException("message " + getClass().getName() + " used after release");
+		}
+	}
+}
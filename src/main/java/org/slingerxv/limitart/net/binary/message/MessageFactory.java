@@ -21,15 +21,18 @@ import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slingerxv.limitart.funcs.Func;
 import org.slingerxv.limitart.funcs.Func1;
+import org.slingerxv.limitart.net.binary.handler.ControllerHandler;
 import org.slingerxv.limitart.net.binary.handler.IHandler;
 import org.slingerxv.limitart.net.binary.handler.annotation.Controller;
 import org.slingerxv.limitart.net.binary.handler.annotation.Handler;
+import org.slingerxv.limitart.net.binary.message.annotation.Lazy;
+import org.slingerxv.limitart.net.binary.message.annotation.Poolable;
 import org.slingerxv.limitart.net.binary.message.exception.MessageCodecException;
 import org.slingerxv.limitart.net.binary.message.exception.MessageIDDuplicatedException;
 import org.slingerxv.limitart.reflectasm.ConstructorAccess;
@@ -39,6 +42,7 @@ import org.slingerxv.limitart.util.ReflectionUtil;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.util.Recycler;
 
 /**
  * 消息工厂 注意：这里的handler是单例，一定不能往里存成员变量
@@ -49,8 +53,10 @@ import io.netty.buffer.Unpooled;
 public class MessageFactory {
 	private static Logger log = LoggerFactory.getLogger(MessageFactory.class);
 	// !!这里的asm应用经测试在JAVA8下最优
-	private final HashMap<Short, ConstructorAccess<? extends Message>> msgs = new HashMap<>();
-	private final HashMap<Short, IHandler<? extends Message>> handlers = new HashMap<>();
+	private static final int PAGE_BITS = 8;
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+	// 按消息id分两级的分发表(高8位选页，低8位页内下标)，注册时复制后整体替换，读取无锁也不装箱
+	private volatile MessageSlot[][] slots = new MessageSlot[PAGE_SIZE][];
 
 	@Beta
 	public static MessageFactory createByPackage(String packageName, Func1<Class<?>, Object> confirmInstance)
@@ -92,6 +98,40 @@ public class MessageFactory {
 		return messageFactory;
 	}
 
+	/**
+	 * 通过编译期生成的注册表加载所有消息和handler(不扫描包，不在运行时生成字节码)
+	 * 
+	 * @param registry
+	 * @param confirmInstance
+	 *            Controller实例提供者
+	 * @return
+	 * @throws Exception
+	 * @see org.slingerxv.limitart.net.binary.message.processor.MessageCodecProcessor
+	 */
+	public static MessageFactory createByRegistry(IMessageRegistry registry, Func1<Class<?>, Object> confirmInstance)
+			throws Exception {
+		MessageFactory messageFactory = new MessageFactory();
+		registry.register(messageFactory, confirmInstance);
+		return messageFactory;
+	}
+
+	/**
+	 * 通过编译期生成的注册表加载所有消息和handler
+	 * 
+	 * @param registry
+	 * @return
+	 * @throws Exception
+	 */
+	public static MessageFactory createByRegistry(IMessageRegistry registry) throws Exception {
+		return createByRegistry(registry, (clzz) -> {
+			try {
+				return clzz.newInstance();
+			} catch (ReflectiveOperationException e) {
+			}
+			return null;
+		});
+	}
+
 	private static void checkMessageMeta(MessageMeta meta)
 			throws ReflectiveOperationException, IOException, MessageCodecException {
 		log.info("check message:" + meta.getClass().getName());
@@ -119,9 +159,22 @@ public class MessageFactory {
 		});
 	}
 
+	/**
+	 * 注册Controller中所有{@code @Handler}方法，实例在注册时获取一次，每个方法生成一个直接调用的handler
+	 * 
+	 * @param controllerClazz
+	 * @param confirmInstance
+	 *            Controller实例提供者
+	 * @return
+	 * @throws MessageIDDuplicatedException
+	 * @throws ReflectiveOperationException
+	 * @throws IOException
+	 * @throws MessageCodecException
+	 */
 	@Beta
 	public MessageFactory registerController(Class<?> controllerClazz, Func1<Class<?>, Object> confirmInstance)
 			throws MessageIDDuplicatedException, ReflectiveOperationException, IOException, MessageCodecException {
+		Object controller = null;
 		MethodAccess methodAccess = MethodAccess.get(controllerClazz);
 		ArrayList<Method> methods = methodAccess.getMethods();
 		for (Method method : methods) {
@@ -129,13 +182,19 @@ public class MessageFactory {
 			if (annotation == null) {
 				continue;
 			}
-			registerMsg(annotation.value(), new IHandler<Message>() {
-
-				@Override
-				public void handle(Message msg) {
-					methodAccess.invoke(confirmInstance.run(controllerClazz), method.getName(), msg);
+			if (method.getParameterCount() != 1
+					|| !method.getParameterTypes()[0].isAssignableFrom(annotation.value())) {
+				log.warn("handler method must have one param of " + annotation.value().getName()
+						+ ",will not be registerd:" + controllerClazz.getName() + "." + method.getName());
+				continue;
+			}
+			if (controller == null) {
+				controller = confirmInstance.run(controllerClazz);
+				if (controller == null) {
+					throw new InstantiationException("can not get instance of controller:" + controllerClazz.getName());
 				}
-			});
+			}
+			registerMsg(annotation.value(), ControllerHandler.create(controller, method));
 		}
 		return this;
 	}
@@ -162,12 +221,47 @@ public class MessageFactory {
 			}
 			msgClass = (Class<? extends Message>) handlerInterface.getActualTypeArguments()[0];
 		}
+		// 生成编解码器，不满足条件的继续使用反射
+		MessageMeta.registerCodec(msgClass);
 		// 这里先实例化一个出来获取其ID
 		Message newInstance = msgClass.newInstance();
 		checkMessageMeta(newInstance);
-		short id = newInstance.getMessageId();
-		if (msgs.containsKey(id)) {
-			Class<? extends Message> class1 = msgs.get(id).newInstance().getClass();
+		ConstructorAccess<? extends Message> constructorAccess = ConstructorAccess.get(msgClass);
+		return registerMsg0(msgClass, constructorAccess::newInstance, handler);
+	}
+
+	/**
+	 * 注册编译期生成的消息(不做编解码检查，不在运行时生成字节码)
+	 * 
+	 * @param msgClazz
+	 * @param constructor
+	 * @param handler
+	 * @return
+	 * @throws MessageIDDuplicatedException
+	 */
+	public synchronized <T extends Message> MessageFactory registerMsg(Class<T> msgClazz, Func<T> constructor,
+			IHandler<? extends Message> handler) throws MessageIDDuplicatedException {
+		return registerMsg0(msgClazz, constructor, handler);
+	}
+
+	/**
+	 * 注册编译期生成的编解码器
+	 * 
+	 * @param metaClazz
+	 * @param codec
+	 * @return
+	 */
+	public MessageFactory registerCodec(Class<? extends MessageMeta> metaClazz, MessageMetaCodec codec) {
+		MessageMeta.registerCodec(metaClazz, codec);
+		return this;
+	}
+
+	private MessageFactory registerMsg0(Class<? extends Message> msgClass, Func<? extends Message> constructor,
+			IHandler<? extends Message> handler) throws MessageIDDuplicatedException {
+		short id = constructor.run().getMessageId();
+		MessageSlot old = getSlot(id);
+		if (old != null) {
+			Class<? extends Message> class1 = old.getMessageClass();
 			if (!class1.getName().equals(msgClass.getName())) {
 				throw new MessageIDDuplicatedException("message id duplicated:" + id + ",class old:" + class1.getName()
 						+ ",class new:" + msgClass.getName());
@@ -175,16 +269,66 @@ public class MessageFactory {
 				return this;
 			}
 		}
-		if (handlers.containsKey(id)) {
-			throw new MessageIDDuplicatedException("handler id duplicated:" + id);
+		// 重写了decode的消息不能绕过
+		boolean customDecode = true;
+		try {
+			customDecode = msgClass.getMethod("decode").getDeclaringClass() != MessageMeta.class;
+		} catch (NoSuchMethodException e) {
 		}
-		ConstructorAccess<? extends Message> constructorAccess = ConstructorAccess.get(msgClass);
-		msgs.put(id, constructorAccess);
-		handlers.put(id, handler);
+		MessageMetaCodec codec = customDecode ? null : MessageMeta.getCodec(msgClass);
+		putSlot(new MessageSlot(id, msgClass, pooled(msgClass, constructor), codec, handler,
+				lazyHeader(msgClass, customDecode)));
 		log.info("regist msg: {}，handler:{}", msgClass.getSimpleName(), handler.getClass().getSimpleName());
 		return this;
 	}
 
+	/**
+	 * 标注了{@link Lazy}的消息在IO线程立即解码的字段数量
+	 * 
+	 * @return 不延迟解码返回-1
+	 */
+	private static int lazyHeader(Class<? extends Message> msgClass, boolean customDecode) {
+		Lazy lazy = msgClass.getAnnotation(Lazy.class);
+		if (lazy == null) {
+			return -1;
+		}
+		if (customDecode) {
+			log.warn("{} overrides decode,can not be lazy decoded", msgClass.getName());
+			return -1;
+		}
+		int header = Math.max(0, lazy.header());
+		if (MessageMeta.hasIntern(msgClass, header)) {
+			log.warn("{} has @Intern fields after header,can not be lazy decoded", msgClass.getName());
+			return -1;
+		}
+		return header;
+	}
+
+	/**
+	 * 标注了{@link Poolable}的消息从线程本地池中获取
+	 */
+	private static Func<? extends Message> pooled(Class<? extends Message> msgClass,
+			Func<? extends Message> constructor) {
+		Poolable poolable = msgClass.getAnnotation(Poolable.class);
+		if (poolable == null) {
+			return constructor;
+		}
+		Recycler<Message> recycler = new Recycler<Message>(poolable.maxCapacityPerThread()) {
+
+			@Override
+			protected Message newObject(Handle<Message> handle) {
+				Message message = constructor.run();
+				message.pooled(handle);
+				return message;
+			}
+		};
+		return () -> {
+			Message message = recycler.get();
+			message.acquire();
+			return message;
+		};
+	}
+
 	public <T extends IHandler<? extends Message>> MessageFactory registerMsg(Class<T> handlerClass)
 			throws InstantiationException, IllegalAccessException, MessageIDDuplicatedException,
 			ReflectiveOperationException, IOException, MessageCodecException {
@@ -196,16 +340,44 @@ public class MessageFactory {
 		return registerMsg(null, handler);
 	}
 
+	/**
+	 * 查找消息id对应的分发项
+	 * 
+	 * @param msgId
+	 * @return 未注册返回null
+	 */
+	public MessageSlot getSlot(short msgId) {
+		MessageSlot[] page = slots[(msgId >> PAGE_BITS) & (PAGE_SIZE - 1)];
+		if (page == null) {
+			return null;
+		}
+		return page[msgId & (PAGE_SIZE - 1)];
+	}
+
+	private void putSlot(MessageSlot slot) {
+		int pageIndex = (slot.getMessageId() >> PAGE_BITS) & (PAGE_SIZE - 1);
+		MessageSlot[][] newSlots = slots.clone();
+		MessageSlot[] page = newSlots[pageIndex];
+		page = page == null ? new MessageSlot[PAGE_SIZE] : page.clone();
+		page[slot.getMessageId() & (PAGE_SIZE - 1)] = slot;
+		newSlots[pageIndex] = page;
+		slots = newSlots;
+	}
+
 	public Message getMessage(short msgId) throws ReflectiveOperationException {
-		if (!msgs.containsKey(msgId)) {
+		MessageSlot slot = getSlot(msgId);
+		if (slot == null) {
 			return null;
 		}
-		ConstructorAccess<? extends Message> constructorAccess = msgs.get(msgId);
-		return constructorAccess.newInstance();
+		return slot.newMessage();
 	}
 
 	public IHandler<? extends Message> getHandler(short msgId) throws ReflectiveOperationException {
-		return handlers.get(msgId);
+		MessageSlot slot = getSlot(msgId);
+		if (slot == null) {
+			return null;
+		}
+		return slot.getHandler();
 	}
 
 }
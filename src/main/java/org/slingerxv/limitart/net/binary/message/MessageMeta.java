@@ -16,18 +16,30 @@
 package org.slingerxv.limitart.net.binary.message;
 
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.slingerxv.limitart.collections.DoubleList;
+import org.slingerxv.limitart.collections.FloatList;
+import org.slingerxv.limitart.collections.IntList;
+import org.slingerxv.limitart.collections.LongList;
+import org.slingerxv.limitart.collections.ShortList;
+import org.slingerxv.limitart.net.binary.message.annotation.Compact;
+import org.slingerxv.limitart.net.binary.message.annotation.Intern;
 import org.slingerxv.limitart.net.binary.message.exception.MessageIOException;
 import org.slingerxv.limitart.reflectasm.ConstructorAccess;
 import org.slingerxv.limitart.reflectasm.FieldAccess;
 import org.slingerxv.limitart.util.filter.FieldFilter;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.handler.codec.CorruptedFrameException;
 import io.netty.util.CharsetUtil;
 
@@ -39,16 +51,48 @@ import io.netty.util.CharsetUtil;
  */
 @SuppressWarnings({ "rawtypes", "unchecked" })
 public abstract class MessageMeta {
-	private static final boolean COMPRESS_INT = false;
 	private static ConcurrentHashMap<Class<? extends MessageMeta>, ConstructorAccess> messageMetaCache = new ConcurrentHashMap<>();
 	private static ConcurrentHashMap<Class<? extends MessageMeta>, FieldAccess> messageMetaFieldCache = new ConcurrentHashMap<>();
+	private static ConcurrentHashMap<Class<? extends MessageMeta>, MessageMetaCodec> messageMetaCodecCache = new ConcurrentHashMap<>();
+	private static ConcurrentHashMap<Class<? extends MessageMeta>, int[]> messageMetaOptionCache = new ConcurrentHashMap<>();
 	private ByteBuf buffer;
+	static final int OPTION_COMPACT = 1;
+	static final int OPTION_INTERN = 2;
+	// 当前读写的字段是否使用紧凑编码
+	private transient boolean compact;
+	// 当前读写的字段是否使用字符串字典
+	private transient boolean intern;
+	private transient StringDictionary dictionary;
 
 	public void encode() throws Exception {
-		FieldAccess fieldAccess = getFieldAccess();
+		MessageMetaCodec codec = messageMetaCodecCache.get(getClass());
+		if (codec != null) {
+			try {
+				codec.encode(this);
+			} finally {
+				options(0);
+			}
+		} else {
+			encodeByReflection();
+		}
+	}
+
+	/**
+	 * 反射方式编码(未生成编解码器时的后备方案)
+	 * 
+	 * @throws Exception
+	 */
+	final void encodeByReflection() throws Exception {
+		FieldAccess fieldAccess = getFieldAccess(getClass());
 		Field[] fields = fieldAccess.getFields();
-		for (Field temp : fields) {
-			writeField(temp);
+		int[] options = getFieldOptions(getClass());
+		try {
+			for (int i = 0; i < fields.length; ++i) {
+				options(options[i]);
+				writeField(fields[i]);
+			}
+		} finally {
+			options(0);
 		}
 	}
 
@@ -92,93 +136,21 @@ public abstract class MessageMeta {
 			} else if (component == boolean.class) {
 				putBooleanArray((boolean[]) object);
 			} else if (component == Byte.class) {
-				if (object == null) {
-					putByteArray(null);
-				} else {
-					Byte[] temp = (Byte[]) object;
-					byte[] temp1 = new byte[temp.length];
-					for (int i = 0; i < temp.length; ++i) {
-						temp1[i] = temp[i] == null ? 0 : temp[i];
-					}
-					putByteArray(temp1);
-				}
+				putByteBoxArray((Byte[]) object);
 			} else if (component == Short.class) {
-				if (object == null) {
-					putShortArray(null);
-				} else {
-					Short[] temp = (Short[]) object;
-					short[] temp1 = new short[temp.length];
-					for (int i = 0; i < temp.length; ++i) {
-						temp1[i] = temp[i] == null ? 0 : temp[i];
-					}
-					putShortArray(temp1);
-				}
+				putShortBoxArray((Short[]) object);
 			} else if (component == Integer.class) {
-				if (object == null) {
-					putIntArray(null);
-				} else {
-					Integer[] temp = (Integer[]) object;
-					int[] temp1 = new int[temp.length];
-					for (int i = 0; i < temp.length; ++i) {
-						temp1[i] = temp[i] == null ? 0 : temp[i];
-					}
-					putIntArray(temp1);
-				}
+				putIntBoxArray((Integer[]) object);
 			} else if (component == Long.class) {
-				if (object == null) {
-					putLongArray(null);
-				} else {
-					Long[] temp = (Long[]) object;
-					long[] temp1 = new long[temp.length];
-					for (int i = 0; i < temp.length; ++i) {
-						temp1[i] = temp[i] == null ? 0 : temp[i];
-					}
-					putLongArray(temp1);
-				}
+				putLongBoxArray((Long[]) object);
 			} else if (component == Float.class) {
-				if (object == null) {
-					putFloatArray(null);
-				} else {
-					Float[] temp = (Float[]) object;
-					float[] temp1 = new float[temp.length];
-					for (int i = 0; i < temp.length; ++i) {
-						temp1[i] = temp[i] == null ? 0 : temp[i];
-					}
-					putFloatArray(temp1);
-				}
+				putFloatBoxArray((Float[]) object);
 			} else if (component == Double.class) {
-				if (object == null) {
-					putDoubleArray(null);
-				} else {
-					Double[] temp = (Double[]) object;
-					double[] temp1 = new double[temp.length];
-					for (int i = 0; i < temp.length; ++i) {
-						temp1[i] = temp[i] == null ? 0 : temp[i];
-					}
-					putDoubleArray(temp1);
-				}
+				putDoubleBoxArray((Double[]) object);
 			} else if (component == Character.class) {
-				if (object == null) {
-					putCharArray(null);
-				} else {
-					Character[] temp = (Character[]) object;
-					char[] temp1 = new char[temp.length];
-					for (int i = 0; i < temp.length; ++i) {
-						temp1[i] = temp[i] == null ? 0 : temp[i];
-					}
-					putCharArray(temp1);
-				}
+				putCharBoxArray((Character[]) object);
 			} else if (component == Boolean.class) {
-				if (object == null) {
-					putBooleanArray(null);
-				} else {
-					Boolean[] temp = (Boolean[]) object;
-					boolean[] temp1 = new boolean[temp.length];
-					for (int i = 0; i < temp.length; ++i) {
-						temp1[i] = temp[i] == null ? false : temp[i];
-					}
-					putBooleanArray(temp1);
-				}
+				putBooleanBoxArray((Boolean[]) object);
 			} else if (component.getSuperclass() == MessageMeta.class) {
 				putMessageMetaArray((MessageMeta[]) object);
 			} else if (component == String.class) {
@@ -257,6 +229,16 @@ public abstract class MessageMeta {
 				} else {
 					putBoolean((boolean) object);
 				}
+			} else if (type == IntList.class) {
+				putInts((IntList) object);
+			} else if (type == LongList.class) {
+				putLongs((LongList) object);
+			} else if (type == ShortList.class) {
+				putShorts((ShortList) object);
+			} else if (type == FloatList.class) {
+				putFloats((FloatList) object);
+			} else if (type == DoubleList.class) {
+				putDoubles((DoubleList) object);
 			} else if (type.getSuperclass() == MessageMeta.class) {
 				MessageMeta next = (MessageMeta) object;
 				putMessageMeta(next);
@@ -272,10 +254,102 @@ public abstract class MessageMeta {
 	}
 
 	public void decode() throws Exception {
-		FieldAccess fieldAccess = getFieldAccess();
+		MessageMetaCodec codec = messageMetaCodecCache.get(getClass());
+		if (codec != null) {
+			decode(codec);
+		} else {
+			decodeByReflection();
+		}
+	}
+
+	/**
+	 * 使用已查找到的编解码器解码
+	 * 
+	 * @param codec
+	 * @throws Exception
+	 */
+	final void decode(MessageMetaCodec codec) throws Exception {
+		try {
+			codec.decode(this);
+		} finally {
+			options(0);
+		}
+	}
+
+	/**
+	 * 解码部分字段(延迟解码)，有编解码器时使用编解码器
+	 * 
+	 * @param from
+	 *            起始字段下标
+	 * @param to
+	 *            结束字段下标(不包含)，超出字段数量时解码到最后
+	 * @throws Exception
+	 */
+	final void decode(int from, int to) throws Exception {
+		MessageMetaCodec codec = messageMetaCodecCache.get(getClass());
+		if (codec != null) {
+			decode(codec, from, to);
+		} else {
+			decodeByReflection(from, to);
+		}
+	}
+
+	/**
+	 * 使用已查找到的编解码器解码部分字段
+	 * 
+	 * @param codec
+	 * @param from
+	 * @param to
+	 * @throws Exception
+	 */
+	final void decode(MessageMetaCodec codec, int from, int to) throws Exception {
+		try {
+			codec.decode(this, from, to);
+		} finally {
+			options(0);
+		}
+	}
+
+	/**
+	 * 已注册的编解码器
+	 * 
+	 * @param clazz
+	 * @return 没有则返回null
+	 */
+	static MessageMetaCodec getCodec(Class<? extends MessageMeta> clazz) {
+		return messageMetaCodecCache.get(clazz);
+	}
+
+	/**
+	 * 反射方式解码(未生成编解码器时的后备方案)
+	 * 
+	 * @throws Exception
+	 */
+	final void decodeByReflection() throws Exception {
+		decodeByReflection(0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * 反射方式解码部分字段(延迟解码)
+	 * 
+	 * @param from
+	 *            起始字段下标
+	 * @param to
+	 *            结束字段下标(不包含)，超出字段数量时解码到最后
+	 * @throws Exception
+	 */
+	final void decodeByReflection(int from, int to) throws Exception {
+		FieldAccess fieldAccess = getFieldAccess(getClass());
 		Field[] fields = fieldAccess.getFields();
-		for (Field temp : fields) {
-			readField(temp);
+		int[] options = getFieldOptions(getClass());
+		int end = Math.min(to, fields.length);
+		try {
+			for (int i = from; i < end; ++i) {
+				options(options[i]);
+				readField(fields[i]);
+			}
+		} finally {
+			options(0);
 		}
 	}
 
@@ -291,7 +365,6 @@ public abstract class MessageMeta {
 			} else if (type == long.class) {
 				field.setLong(this, getLong());
 			} else if (type == float.class) {
-				putFloat(field.getFloat(this));
 				field.setFloat(this, getFloat());
 			} else if (type == double.class) {
 				field.setDouble(this, getDouble());
@@ -319,76 +392,44 @@ public abstract class MessageMeta {
 			} else if (component == boolean.class) {
 				field.set(this, getBooleanArray());
 			} else if (component == Byte.class) {
-				byte[] temp = getByteArray();
+				Byte[] temp = getByteBoxArray();
 				if (temp != null) {
-					Byte[] temp1 = new Byte[temp.length];
-					for (int i = 0; i < temp.length; ++i) {
-						temp1[i] = temp[i];
-					}
-					field.set(this, temp1);
+					field.set(this, temp);
 				}
 			} else if (component == Short.class) {
-				short[] temp = getShortArray();
+				Short[] temp = getShortBoxArray();
 				if (temp != null) {
-					Short[] temp1 = new Short[temp.length];
-					for (int i = 0; i < temp.length; ++i) {
-						temp1[i] = temp[i];
-					}
-					field.set(this, temp1);
+					field.set(this, temp);
 				}
 			} else if (component == Integer.class) {
-				int[] temp = getIntArray();
+				Integer[] temp = getIntBoxArray();
 				if (temp != null) {
-					Integer[] temp1 = new Integer[temp.length];
-					for (int i = 0; i < temp.length; ++i) {
-						temp1[i] = temp[i];
-					}
-					field.set(this, temp1);
+					field.set(this, temp);
 				}
 			} else if (component == Long.class) {
-				long[] temp = getLongArray();
+				Long[] temp = getLongBoxArray();
 				if (temp != null) {
-					Long[] temp1 = new Long[temp.length];
-					for (int i = 0; i < temp.length; ++i) {
-						temp1[i] = temp[i];
-					}
-					field.set(this, temp1);
+					field.set(this, temp);
 				}
 			} else if (component == Float.class) {
-				float[] temp = getFloatArray();
+				Float[] temp = getFloatBoxArray();
 				if (temp != null) {
-					Float[] temp1 = new Float[temp.length];
-					for (int i = 0; i < temp.length; ++i) {
-						temp1[i] = temp[i];
-					}
-					field.set(this, temp1);
+					field.set(this, temp);
 				}
 			} else if (component == Double.class) {
-				double[] temp = getDoubleArray();
+				Double[] temp = getDoubleBoxArray();
 				if (temp != null) {
-					Double[] temp1 = new Double[temp.length];
-					for (int i = 0; i < temp.length; ++i) {
-						temp1[i] = temp[i];
-					}
-					field.set(this, temp1);
+					field.set(this, temp);
 				}
 			} else if (component == Character.class) {
-				char[] temp = getCharArray();
+				Character[] temp = getCharBoxArray();
 				if (temp != null) {
-					Character[] temp1 = new Character[temp.length];
-					for (int i = 0; i < temp.length; ++i) {
-						temp1[i] = temp[i];
-					}
-					field.set(this, temp1);
+					field.set(this, temp);
 				}
 			} else if (component == Boolean.class) {
-				boolean[] temp = getBooleanArray();
+				Boolean[] temp = getBooleanBoxArray();
 				if (temp != null) {
-					Boolean[] temp1 = new Boolean[temp.length];
-					for (int i = 0; i < temp.length; ++i) {
-						temp1[i] = temp[i];
-					}
-					field.set(this, temp1);
+					field.set(this, temp);
 				}
 			} else if (component.getSuperclass() == MessageMeta.class) {
 				field.set(this, getMessageMetaArray((Class<? extends MessageMeta>) component));
@@ -436,6 +477,16 @@ public abstract class MessageMeta {
 				field.set(this, getChar());
 			} else if (type == Boolean.class) {
 				field.set(this, getBoolean());
+			} else if (type == IntList.class) {
+				field.set(this, getInts());
+			} else if (type == LongList.class) {
+				field.set(this, getLongs());
+			} else if (type == ShortList.class) {
+				field.set(this, getShorts());
+			} else if (type == FloatList.class) {
+				field.set(this, getFloats());
+			} else if (type == DoubleList.class) {
+				field.set(this, getDoubles());
 			} else if (type.getSuperclass() == MessageMeta.class) {
 				field.set(this, getMessageMeta((Class<? extends MessageMeta>) type));
 			} else if (type == String.class) {
@@ -448,13 +499,47 @@ public abstract class MessageMeta {
 		}
 	}
 
-	private FieldAccess getFieldAccess() {
-		FieldAccess fieldAccess = messageMetaFieldCache.get(getClass());
+	/**
+	 * 清空所有编解码字段(池化消息归还前调用)，解码时null的包装类型数组不会覆盖原值。有编解码器时使用编解码器
+	 * 
+	 * @throws IllegalAccessException
+	 */
+	final void clearFields() throws IllegalAccessException {
+		MessageMetaCodec codec = messageMetaCodecCache.get(getClass());
+		if (codec != null) {
+			codec.clear(this);
+		} else {
+			clearFieldsByReflection();
+		}
+	}
+
+	/**
+	 * 反射方式清空所有编解码字段(未生成编解码器时的后备方案)
+	 * 
+	 * @throws IllegalAccessException
+	 */
+	final void clearFieldsByReflection() throws IllegalAccessException {
+		for (Field field : getFieldAccess(getClass()).getFields()) {
+			Class<?> type = field.getType();
+			if (!type.isPrimitive()) {
+				field.set(this, null);
+			} else if (type == boolean.class) {
+				field.setBoolean(this, false);
+			} else if (type == char.class) {
+				field.setChar(this, (char) 0);
+			} else {
+				field.setByte(this, (byte) 0);
+			}
+		}
+	}
+
+	static FieldAccess getFieldAccess(Class<? extends MessageMeta> clazz) {
+		FieldAccess fieldAccess = messageMetaFieldCache.get(clazz);
 		if (fieldAccess == null) {
-			fieldAccess = FieldAccess.get(getClass(), false, field -> {
+			fieldAccess = FieldAccess.get(clazz, false, field -> {
 				return !(FieldFilter.isStatic(field) || FieldFilter.isTransient(field) || FieldFilter.isFinal(field));
 			});
-			FieldAccess put = messageMetaFieldCache.putIfAbsent(getClass(), fieldAccess);
+			FieldAccess put = messageMetaFieldCache.putIfAbsent(clazz, fieldAccess);
 			if (put != null) {
 				fieldAccess = put;
 			}
@@ -462,6 +547,116 @@ public abstract class MessageMeta {
 		return fieldAccess;
 	}
 
+	/**
+	 * 每个字段的编码选项({@link #OPTION_COMPACT}、{@link #OPTION_INTERN})
+	 * 
+	 * @param clazz
+	 * @return
+	 * @see Compact
+	 * @see Intern
+	 */
+	static int[] getFieldOptions(Class<? extends MessageMeta> clazz) {
+		int[] options = messageMetaOptionCache.get(clazz);
+		if (options == null) {
+			Field[] fields = getFieldAccess(clazz).getFields();
+			options = new int[fields.length];
+			Compact classCompact = clazz.getAnnotation(Compact.class);
+			Intern classIntern = clazz.getAnnotation(Intern.class);
+			for (int i = 0; i < fields.length; ++i) {
+				Compact fieldCompact = fields[i].getAnnotation(Compact.class);
+				Intern fieldIntern = fields[i].getAnnotation(Intern.class);
+				if (fieldCompact != null ? fieldCompact.value() : classCompact != null && classCompact.value()) {
+					options[i] |= OPTION_COMPACT;
+				}
+				if (fieldIntern != null ? fieldIntern.value() : classIntern != null && classIntern.value()) {
+					options[i] |= OPTION_INTERN;
+				}
+			}
+			int[] put = messageMetaOptionCache.putIfAbsent(clazz, options);
+			if (put != null) {
+				options = put;
+			}
+		}
+		return options;
+	}
+
+	/**
+	 * 从某个字段开始(包括嵌套的元数据)是否有使用字符串字典的字段
+	 * 
+	 * @param clazz
+	 * @param from
+	 * @return
+	 */
+	static boolean hasIntern(Class<? extends MessageMeta> clazz, int from) {
+		return hasIntern(clazz, from, new HashSet<>());
+	}
+
+	private static boolean hasIntern(Class<? extends MessageMeta> clazz, int from,
+			Set<Class<? extends MessageMeta>> visited) {
+		if (!visited.add(clazz)) {
+			return false;
+		}
+		Field[] fields = getFieldAccess(clazz).getFields();
+		int[] options = getFieldOptions(clazz);
+		for (int i = from; i < fields.length; ++i) {
+			Class<?> type = fields[i].getType();
+			if (type.isArray()) {
+				type = type.getComponentType();
+			} else if (List.class.isAssignableFrom(type)) {
+				type = (Class<?>) ((ParameterizedType) fields[i].getGenericType()).getActualTypeArguments()[0];
+			}
+			if (type == String.class && (options[i] & OPTION_INTERN) != 0) {
+				return true;
+			}
+			if (type.getSuperclass() == MessageMeta.class
+					&& hasIntern((Class<? extends MessageMeta>) type, 0, visited)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 设置后续读写的编码选项
+	 * 
+	 * @param options
+	 */
+	final void options(int options) {
+		this.compact = (options & OPTION_COMPACT) != 0;
+		this.intern = (options & OPTION_INTERN) != 0;
+	}
+
+	/**
+	 * 为元数据类型(及其嵌套的元数据类型)生成编解码器，不满足生成条件的类型继续使用反射
+	 * 
+	 * @param clazz
+	 */
+	static void registerCodec(Class<? extends MessageMeta> clazz) {
+		if (messageMetaCodecCache.containsKey(clazz)) {
+			return;
+		}
+		MessageMetaCodec codec = MessageMetaCodec.get(clazz);
+		if (codec == null) {
+			return;
+		}
+		if (messageMetaCodecCache.putIfAbsent(clazz, codec) != null) {
+			return;
+		}
+		for (Class<? extends MessageMeta> nested : codec.getNestedTypes()) {
+			registerCodec(nested);
+		}
+	}
+
+	/**
+	 * 注册已生成好的编解码器
+	 * 
+	 * @param clazz
+	 * @param codec
+	 */
+	static void registerCodec(Class<? extends MessageMeta> clazz, MessageMetaCodec codec) {
+		messageMetaCodecCache.put(clazz, codec);
+	}
+
 	public void buffer(ByteBuf buffer) {
 		this.buffer = buffer;
 	}
@@ -470,6 +665,19 @@ public abstract class MessageMeta {
 		return this.buffer;
 	}
 
+	/**
+	 * 设置编解码使用的连接字符串字典，为null时{@link Intern}字段按原文编码
+	 * 
+	 * @param dictionary
+	 */
+	public void dictionary(StringDictionary dictionary) {
+		this.dictionary = dictionary;
+	}
+
+	public StringDictionary dictionary() {
+		return this.dictionary;
+	}
+
 	/**
 	 * 写入二进制元数据
 	 * 
@@ -483,6 +691,7 @@ public abstract class MessageMeta {
 		} else {
 			putByte(1);
 			meta.buffer(this.buffer);
+			meta.dictionary(this.dictionary);
 			meta.encode();
 		}
 	}
@@ -501,8 +710,10 @@ public abstract class MessageMeta {
 		}
 		T newInstance = createInstance(clazz);
 		newInstance.buffer(this.buffer);
+		newInstance.dictionary(this.dictionary);
 		newInstance.decode();
 		newInstance.buffer(null);
+		newInstance.dictionary(null);
 		return newInstance;
 	}
 
@@ -515,9 +726,9 @@ public abstract class MessageMeta {
 	 */
 	protected final <T extends MessageMeta> void putMessageMetaList(ArrayList<T> value) throws Exception {
 		if (value == null) {
-			putShort(-1);
+			putLength(-1);
 		} else {
-			putShort(value.size());
+			putLength(value.size());
 			for (MessageMeta temp : value) {
 				putMessageMeta(temp);
 			}
@@ -533,7 +744,7 @@ public abstract class MessageMeta {
 	 * @throws Exception
 	 */
 	protected final <T extends MessageMeta> ArrayList<T> getMessageMetaList(Class<T> clazz) throws Exception {
-		short len = getShort();
+		int len = getLength();
 		if (len == -1) {
 			return null;
 		} else if (len == 0) {
@@ -557,9 +768,9 @@ public abstract class MessageMeta {
 	 */
 	protected final <T extends MessageMeta> void putMessageMetaArray(T[] value) throws Exception {
 		if (value == null) {
-			putShort(-1);
+			putLength(-1);
 		} else {
-			putShort(value.length);
+			putLength(value.length);
 			for (T t : value) {
 				putMessageMeta(t);
 			}
@@ -574,7 +785,7 @@ public abstract class MessageMeta {
 	 * @throws Exception
 	 */
 	protected final <T extends MessageMeta> T[] getMessageMetaArray(Class<T> clazz) throws Exception {
-		short length = getShort();
+		int length = getLength();
 		if (length == -1) {
 			return null;
 		} else if (length == 0) {
@@ -595,13 +806,18 @@ public abstract class MessageMeta {
 	 * @param value
 	 */
 	protected final void putString(String value) {
-		if (value == null) {
-			putByteArray(null);
-		} else if ("".equals(value)) {
-			putByteArray(new byte[0]);
+		if (intern) {
+			putInternString(value);
+		} else if (value == null) {
+			putLength(-1);
+		} else if (compact) {
+			writeUtf8(value, 0, 0);
 		} else {
-			byte[] bytes = value.getBytes(CharsetUtil.UTF_8);
-			putByteArray(bytes);
+			// 先占位长度，写完后回填
+			int index = buffer.writerIndex();
+			buffer.writeShort(0);
+			int length = ByteBufUtil.writeUtf8(buffer, value);
+			buffer.setShort(index, length);
 		}
 	}
 
@@ -612,14 +828,130 @@ public abstract class MessageMeta {
 	 * @return
 	 */
 	protected final String getString() {
-		byte[] bytes = getByteArray();
-		if (bytes == null) {
+		if (intern) {
+			return getInternString();
+		}
+		int length = getLength();
+		if (length < 0) {
+			return null;
+		}
+		return readUtf8(length);
+	}
+
+	/**
+	 * 以字典方式写入String，标记为变长int：0为null，奇数为字典编号，偶数为原文((长度+1)&lt;&lt;2，第1位表示对端需要登记)
+	 * 
+	 * @param value
+	 */
+	private void putInternString(String value) {
+		if (value == null) {
+			writeRawVarint32(0);
+			return;
+		}
+		int store = 0;
+		if (dictionary != null) {
+			int id = dictionary.getWriteId(value);
+			if (id >= 0) {
+				writeRawVarint32(id << 1 | 1);
+				return;
+			}
+			if (dictionary.addWrite(value)) {
+				store = 2;
+			}
+		}
+		writeUtf8(value, 2, store);
+	}
+
+	private String getInternString() {
+		int tag = readRawVarint32();
+		if (tag == 0) {
 			return null;
-		} else if (bytes.length == 0) {
+		}
+		if ((tag & 1) != 0) {
+			if (dictionary == null) {
+				throw new CorruptedFrameException("string dictionary not enabled");
+			}
+			String value = dictionary.getRead(tag >>> 1);
+			if (value == null) {
+				throw new CorruptedFrameException("unknown string id:" + (tag >>> 1));
+			}
+			return value;
+		}
+		String value = readUtf8((tag >>> 2) - 1);
+		if ((tag & 2) != 0) {
+			if (dictionary == null) {
+				throw new CorruptedFrameException("string dictionary not enabled");
+			}
+			if (!dictionary.addRead(value)) {
+				throw new CorruptedFrameException("string dictionary overflow,capacity:" + dictionary.getCapacity());
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * 直接向buffer写入UTF-8，变长标记((字节数+1)&lt;&lt;shift|flag)使用最短编码，先占位写完后回填
+	 */
+	private void writeUtf8(String value, int shift, int flag) {
+		int width = varint32Size(((value.length() + 1) << shift) | flag);
+		// 字节数在字符数和最大字节数之间，两端宽度不同时才需要算出实际字节数
+		if (width != varint32Size(((ByteBufUtil.utf8MaxBytes(value) + 1) << shift) | flag)) {
+			width = varint32Size(((utf8Bytes(value) + 1) << shift) | flag);
+		}
+		int index = buffer.writerIndex();
+		buffer.writeZero(width);
+		int length = ByteBufUtil.writeUtf8(buffer, value);
+		int tag = ((length + 1) << shift) | flag;
+		for (int i = 0; i < width - 1; ++i) {
+			buffer.setByte(index + i, tag & 0x7F | 0x80);
+			tag >>>= 7;
+		}
+		buffer.setByte(index + width - 1, tag);
+	}
+
+	/**
+	 * 与{@link ByteBufUtil#writeUtf8(ByteBuf, CharSequence)}写出的字节数一致：高代理字符总是与下一个字符一起处理，
+	 * 不成对时两个字符各写为1个字节，单独的低代理字符写为'?'
+	 */
+	private static int utf8Bytes(String value) {
+		int bytes = 0;
+		int length = value.length();
+		for (int i = 0; i < length; ++i) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				bytes += 1;
+			} else if (c < 0x800) {
+				bytes += 2;
+			} else if (!Character.isSurrogate(c)) {
+				bytes += 3;
+			} else if (!Character.isHighSurrogate(c) || i + 1 == length) {
+				bytes += 1;
+			} else {
+				bytes += Character.isLowSurrogate(value.charAt(++i)) ? 4 : 2;
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * 直接从buffer解码UTF-8，不经过中间数组
+	 */
+	private String readUtf8(int length) {
+		if (length == 0) {
 			return "";
-		} else {
-			return new String(bytes, CharsetUtil.UTF_8);
 		}
+		String value = buffer.toString(buffer.readerIndex(), length, CharsetUtil.UTF_8);
+		buffer.skipBytes(length);
+		return value;
+	}
+
+	private static int varint32Size(int value) {
+		int size = 1;
+		while ((value & 0xFFFFFF80) != 0) {
+			value >>>= 7;
+			++size;
+		}
+		return size;
 	}
 
 	/**
@@ -630,9 +962,9 @@ public abstract class MessageMeta {
 	 */
 	protected final void putStringList(ArrayList<String> value) {
 		if (value == null) {
-			putShort(-1);
+			putLength(-1);
 		} else {
-			putShort(value.size());
+			putLength(value.size());
 			for (String temp : value) {
 				putString(temp);
 			}
@@ -646,7 +978,7 @@ public abstract class MessageMeta {
 	 * @return
 	 */
 	protected final ArrayList<String> getStringList() {
-		short len = getShort();
+		int len = getLength();
 		if (len == -1) {
 			return null;
 		} else if (len == 0) {
@@ -668,9 +1000,9 @@ public abstract class MessageMeta {
 	 */
 	protected final void putStringArray(String[] value) {
 		if (value == null) {
-			putShort(-1);
+			putLength(-1);
 		} else {
-			putShort(value.length);
+			putLength(value.length);
 			for (String temp : value) {
 				putString(temp);
 			}
@@ -684,7 +1016,7 @@ public abstract class MessageMeta {
 	 * @return
 	 */
 	protected final String[] getStringArray() {
-		short length = getShort();
+		int length = getLength();
 		if (length == -1) {
 			return null;
 		} else if (length == 0) {
@@ -705,7 +1037,11 @@ public abstract class MessageMeta {
 	 * @param value
 	 */
 	protected final void putLong(long value) {
-		buffer.writeLong(value);
+		if (compact) {
+			putVarLong(value);
+		} else {
+			buffer.writeLong(value);
+		}
 	}
 
 	/**
@@ -715,7 +1051,11 @@ public abstract class MessageMeta {
 	 * @return
 	 */
 	protected final long getLong() {
-		return buffer.readLong();
+		if (compact) {
+			return getVarLong();
+		} else {
+			return buffer.readLong();
+		}
 	}
 
 	/**
@@ -726,9 +1066,9 @@ public abstract class MessageMeta {
 	 */
 	protected final void putLongList(ArrayList<Long> value) {
 		if (value == null) {
-			putShort(-1);
+			putLength(-1);
 		} else {
-			putShort(value.size());
+			putLength(value.size());
 			for (Long temp : value) {
 				putLong(temp);
 			}
@@ -742,7 +1082,7 @@ public abstract class MessageMeta {
 	 * @return
 	 */
 	protected final ArrayList<Long> getLongList() {
-		short len = getShort();
+		int len = getLength();
 		if (len == -1) {
 			return null;
 		} else if (len == 0) {
@@ -764,12 +1104,10 @@ public abstract class MessageMeta {
 	 */
 	protected final void putLongArray(long[] value) {
 		if (value == null) {
-			putShort(-1);
+			putLength(-1);
 		} else {
-			putShort(value.length);
-			for (long temp : value) {
-				putLong(temp);
-			}
+			putLength(value.length);
+			writeLongs(value, value.length);
 		}
 	}
 
@@ -780,16 +1118,14 @@ public abstract class MessageMeta {
 	 * @return
 	 */
 	protected final long[] getLongArray() {
-		short length = getShort();
+		int length = getLength();
 		if (length == -1) {
 			return null;
 		} else if (length == 0) {
 			return new long[0];
 		} else {
 			long[] result = new long[length];
-			for (int i = 0; i < length; ++i) {
-				result[i] = getLong();
-			}
+			readLongs(result, length);
 			return result;
 		}
 	}
@@ -801,8 +1137,8 @@ public abstract class MessageMeta {
 	 * @param value
 	 */
 	protected final void putInt(int value) {
-		if (COMPRESS_INT) {
-			writeRawVarint32(value);
+		if (compact) {
+			putVarInt(value);
 		} else {
 			this.buffer.writeInt(value);
 		}
@@ -815,8 +1151,8 @@ public abstract class MessageMeta {
 	 * @return
 	 */
 	protected final int getInt() {
-		if (COMPRESS_INT) {
-			return readRawVarint32();
+		if (compact) {
+			return getVarInt();
 		} else {
 			return this.buffer.readInt();
 		}
@@ -830,9 +1166,9 @@ public abstract class MessageMeta {
 	 */
 	protected final void putIntList(ArrayList<Integer> value) {
 		if (value == null) {
-			putShort(-1);
+			putLength(-1);
 		} else {
-			putShort(value.size());
+			putLength(value.size());
 			for (Integer temp : value) {
 				putInt(temp);
 			}
@@ -846,7 +1182,7 @@ public abstract class MessageMeta {
 	 * @return
 	 */
 	protected final ArrayList<Integer> getIntList() {
-		short len = getShort();
+		int len = getLength();
 		if (len == -1) {
 			return null;
 		} else if (len == 0) {
@@ -867,7 +1203,7 @@ public abstract class MessageMeta {
 	 * @return
 	 */
 	protected final ArrayList<Byte> getByteList() {
-		short len = getShort();
+		int len = getLength();
 		if (len == -1) {
 			return null;
 		} else if (len == 0) {
@@ -889,12 +1225,10 @@ public abstract class MessageMeta {
 	 */
 	protected final void putIntArray(int[] value) {
 		if (value == null) {
-			putShort(-1);
+			putLength(-1);
 		} else {
-			putShort(value.length);
-			for (int temp : value) {
-				putInt(temp);
-			}
+			putLength(value.length);
+			writeInts(value, value.length);
 		}
 	}
 
@@ -905,16 +1239,14 @@ public abstract class MessageMeta {
 	 * @return
 	 */
 	protected final int[] getIntArray() {
-		short length = getShort();
+		int length = getLength();
 		if (length == -1) {
 			return null;
 		} else if (length == 0) {
 			return new int[0];
 		} else {
 			int[] result = new int[length];
-			for (int i = 0; i < length; ++i) {
-				result[i] = getInt();
-			}
+			readInts(result, length);
 			return result;
 		}
 	}
@@ -937,9 +1269,9 @@ public abstract class MessageMeta {
 	 */
 	protected final void putByteList(ArrayList<Byte> value) {
 		if (value == null) {
-			putShort(-1);
+			putLength(-1);
 		} else {
-			putShort(value.size());
+			putLength(value.size());
 			for (Byte temp : value) {
 				putByte(temp);
 			}
@@ -964,9 +1296,9 @@ public abstract class MessageMeta {
 	 */
 	protected final void putByteArrayList(ArrayList<byte[]> list) {
 		if (list == null) {
-			putShort(-1);
+			putLength(-1);
 		} else {
-			putShort(list.size());
+			putLength(list.size());
 			for (byte[] bt : list) {
 				putByteArray(bt);
 			}
@@ -980,7 +1312,7 @@ public abstract class MessageMeta {
 	 * @return
 	 */
 	protected final ArrayList<byte[]> getByteArrayList() {
-		short len = getShort();
+		int len = getLength();
 		if (len == -1) {
 			return null;
 		} else if (len == 0) {
@@ -1000,9 +1332,9 @@ public abstract class MessageMeta {
 	 */
 	protected final void putByteArray(byte[] bytes) {
 		if (bytes == null) {
-			putShort(-1);
+			putLength(-1);
 		} else {
-			putShort(bytes.length);
+			putLength(bytes.length);
 			buffer.writeBytes(bytes);
 		}
 	}
@@ -1014,7 +1346,7 @@ public abstract class MessageMeta {
 	 * @return
 	 */
 	protected final byte[] getByteArray() {
-		short len = getShort();
+		int len = getLength();
 		if (len == -1) {
 			return null;
 		} else if (len == 0) {
@@ -1054,9 +1386,9 @@ public abstract class MessageMeta {
 	 */
 	protected final void putBooleanList(ArrayList<Boolean> value) {
 		if (value == null) {
-			putShort(-1);
+			putLength(-1);
 		} else {
-			putShort(value.size());
+			putLength(value.size());
 			for (boolean temp : value) {
 				putBoolean(temp);
 			}
@@ -1070,7 +1402,7 @@ public abstract class MessageMeta {
 	 * @return
 	 */
 	protected final ArrayList<Boolean> getBooleanList() {
-		short len = getShort();
+		int len = getLength();
 		if (len == -1) {
 			return null;
 		} else if (len == 0) {
@@ -1092,9 +1424,9 @@ public abstract class MessageMeta {
 	 */
 	protected final void putBooleanArray(boolean[] value) {
 		if (value == null) {
-			putShort(-1);
+			putLength(-1);
 		} else {
-			putShort(value.length);
+			putLength(value.length);
 			for (boolean temp : value) {
 				putBoolean(temp);
 			}
@@ -1108,7 +1440,7 @@ public abstract class MessageMeta {
 	 * @return
 	 */
 	protected final boolean[] getBooleanArray() {
-		short length = getShort();
+		int length = getLength();
 		if (length == -1) {
 			return null;
 		} else if (length == 0) {
@@ -1150,9 +1482,9 @@ public abstract class MessageMeta {
 	 */
 	protected final void putFloatList(ArrayList<Float> value) {
 		if (value == null) {
-			putShort(-1);
+			putLength(-1);
 		} else {
-			putShort(value.size());
+			putLength(value.size());
 			for (Float temp : value) {
 				putFloat(temp);
 			}
@@ -1166,7 +1498,7 @@ public abstract class MessageMeta {
 	 * @return
 	 */
 	protected final ArrayList<Float> getFloatList() {
-		short len = getShort();
+		int len = getLength();
 		if (len == -1) {
 			return null;
 		} else if (len == 0) {
@@ -1188,12 +1520,10 @@ public abstract class MessageMeta {
 	 */
 	protected final void putFloatArray(float[] value) {
 		if (value == null) {
-			putShort(-1);
+			putLength(-1);
 		} else {
-			putShort(value.length);
-			for (float temp : value) {
-				putFloat(temp);
-			}
+			putLength(value.length);
+			writeFloats(value, value.length);
 		}
 	}
 
@@ -1204,16 +1534,14 @@ public abstract class MessageMeta {
 	 * @return
 	 */
 	protected final float[] getFloatArray() {
-		short length = getShort();
+		int length = getLength();
 		if (length == -1) {
 			return null;
 		} else if (length == 0) {
 			return new float[0];
 		} else {
 			float[] result = new float[length];
-			for (int i = 0; i < length; ++i) {
-				result[i] = getFloat();
-			}
+			readFloats(result, length);
 			return result;
 		}
 	}
@@ -1246,9 +1574,9 @@ public abstract class MessageMeta {
 	 */
 	protected final void putDoubleList(ArrayList<Double> value) {
 		if (value == null) {
-			putShort(-1);
+			putLength(-1);
 		} else {
-			putShort(value.size());
+			putLength(value.size());
 			for (Double temp : value) {
 				putDouble(temp);
 			}
@@ -1262,7 +1590,7 @@ public abstract class MessageMeta {
 	 * @return
 	 */
 	protected final ArrayList<Double> getDoubleList() {
-		short len = getShort();
+		int len = getLength();
 		if (len == -1) {
 			return null;
 		} else if (len == 0) {
@@ -1284,12 +1612,10 @@ public abstract class MessageMeta {
 	 */
 	protected final void putDoubleArray(double[] value) {
 		if (value == null) {
-			putShort(-1);
+			putLength(-1);
 		} else {
-			putShort(value.length);
-			for (double temp : value) {
-				putDouble(temp);
-			}
+			putLength(value.length);
+			writeDoubles(value, value.length);
 		}
 	}
 
@@ -1300,16 +1626,14 @@ public abstract class MessageMeta {
 	 * @return
 	 */
 	protected final double[] getDoubleArray() {
-		short length = getShort();
+		int length = getLength();
 		if (length == -1) {
 			return null;
 		} else if (length == 0) {
 			return new double[0];
 		} else {
 			double[] result = new double[length];
-			for (int i = 0; i < length; ++i) {
-				result[i] = getDouble();
-			}
+			readDoubles(result, length);
 			return result;
 		}
 	}
@@ -1321,7 +1645,11 @@ public abstract class MessageMeta {
 	 * @param value
 	 */
 	protected final void putShort(int value) {
-		buffer.writeShort(value);
+		if (compact) {
+			putVarInt((short) value);
+		} else {
+			buffer.writeShort(value);
+		}
 	}
 
 	/**
@@ -1331,7 +1659,11 @@ public abstract class MessageMeta {
 	 * @return
 	 */
 	protected final short getShort() {
-		return buffer.readShort();
+		if (compact) {
+			return (short) getVarInt();
+		} else {
+			return buffer.readShort();
+		}
 	}
 
 	/**
@@ -1342,9 +1674,9 @@ public abstract class MessageMeta {
 	 */
 	protected final void putShortList(ArrayList<Short> value) {
 		if (value == null) {
-			putShort(-1);
+			putLength(-1);
 		} else {
-			putShort(value.size());
+			putLength(value.size());
 			for (Short temp : value) {
 				putShort(temp);
 			}
@@ -1358,7 +1690,7 @@ public abstract class MessageMeta {
 	 * @return
 	 */
 	protected final ArrayList<Short> getShortList() {
-		short len = getShort();
+		int len = getLength();
 		if (len == -1) {
 			return null;
 		} else if (len == 0) {
@@ -1380,12 +1712,10 @@ public abstract class MessageMeta {
 	 */
 	protected final void putShortArray(short[] value) {
 		if (value == null) {
-			putShort(-1);
+			putLength(-1);
 		} else {
-			putShort(value.length);
-			for (short temp : value) {
-				putShort(temp);
-			}
+			putLength(value.length);
+			writeShorts(value, value.length);
 		}
 	}
 
@@ -1396,16 +1726,14 @@ public abstract class MessageMeta {
 	 * @return
 	 */
 	protected final short[] getShortArray() {
-		short length = getShort();
+		int length = getLength();
 		if (length == -1) {
 			return null;
 		} else if (length == 0) {
 			return new short[0];
 		} else {
 			short[] result = new short[length];
-			for (int i = 0; i < length; ++i) {
-				result[i] = getShort();
-			}
+			readShorts(result, length);
 			return result;
 		}
 	}
@@ -1438,9 +1766,9 @@ public abstract class MessageMeta {
 	 */
 	protected final void putCharList(ArrayList<Character> value) {
 		if (value == null) {
-			putShort(-1);
+			putLength(-1);
 		} else {
-			putShort(value.size());
+			putLength(value.size());
 			for (Character temp : value) {
 				putChar(temp);
 			}
@@ -1454,7 +1782,7 @@ public abstract class MessageMeta {
 	 * @return
 	 */
 	protected final ArrayList<Character> getCharList() {
-		short len = getShort();
+		int len = getLength();
 		if (len == -1) {
 			return null;
 		} else if (len == 0) {
@@ -1476,9 +1804,9 @@ public abstract class MessageMeta {
 	 */
 	protected final void putCharArray(char[] value) {
 		if (value == null) {
-			putShort(-1);
+			putLength(-1);
 		} else {
-			putShort(value.length);
+			putLength(value.length);
 			for (char temp : value) {
 				putChar(temp);
 			}
@@ -1492,7 +1820,7 @@ public abstract class MessageMeta {
 	 * @return
 	 */
 	protected final char[] getCharArray() {
-		short length = getShort();
+		int length = getLength();
 		if (length == -1) {
 			return null;
 		} else if (length == 0) {
@@ -1506,66 +1834,677 @@ public abstract class MessageMeta {
 		}
 	}
 
-	private void writeRawVarint32(int val) {
-		int value = val;
-		while (true) {
-			if ((value & 0xFFFFFF80) == 0) {
-				this.buffer.writeByte(value);
-				return;
+	/**
+	 * 写入byte包装类型数组(null元素按默认值写入)
+	 * 
+	 * @param value
+	 */
+	protected final void putByteBoxArray(Byte[] value) {
+		if (value == null) {
+			putLength(-1);
+		} else {
+			putLength(value.length);
+			for (Byte temp : value) {
+				putByte(temp == null ? (byte) 0 : temp);
 			}
-			this.buffer.writeByte(value & 0x7F | 0x80);
-			value >>>= 7;
 		}
 	}
 
-	private int readRawVarint32() {
-		if (!(buffer.isReadable())) {
-			return 0;
-		}
-		buffer.markReaderIndex();
-		byte tmp = buffer.readByte();
-		if (tmp >= 0) {
-			return tmp;
+	/**
+	 * 读取byte包装类型数组
+	 * 
+	 * @return
+	 */
+	protected final Byte[] getByteBoxArray() {
+		int length = getLength();
+		if (length == -1) {
+			return null;
 		}
-		int result = tmp & 0x7F;
-		if (!(buffer.isReadable())) {
-			buffer.resetReaderIndex();
-			return 0;
+		Byte[] result = new Byte[length];
+		for (int i = 0; i < length; ++i) {
+			result[i] = getByte();
 		}
-		if ((tmp = buffer.readByte()) >= 0) {
-			result |= tmp << 7;
-		} else {
-			result |= (tmp & 0x7F) << 7;
-			if (!(buffer.isReadable())) {
-				buffer.resetReaderIndex();
-				return 0;
-			}
-			if ((tmp = buffer.readByte()) >= 0) {
-				result |= tmp << 14;
-			} else {
-				result |= (tmp & 0x7F) << 14;
-				if (!(buffer.isReadable())) {
-					buffer.resetReaderIndex();
-					return 0;
-				}
-				if ((tmp = buffer.readByte()) >= 0) {
-					result |= tmp << 21;
-				} else {
-					result |= (tmp & 0x7F) << 21;
-					if (!(buffer.isReadable())) {
-						buffer.resetReaderIndex();
-						return 0;
-					}
-					result |= (tmp = buffer.readByte()) << 28;
-					if (tmp < 0) {
-						throw new CorruptedFrameException("malformed varint.");
-					}
-				}
+		return result;
+	}
+
+	/**
+	 * 写入short包装类型数组(null元素按默认值写入)
+	 * 
+	 * @param value
+	 */
+	protected final void putShortBoxArray(Short[] value) {
+		if (value == null) {
+			putLength(-1);
+		} else {
+			putLength(value.length);
+			for (Short temp : value) {
+				putShort(temp == null ? (short) 0 : temp);
+			}
+		}
+	}
+
+	/**
+	 * 读取short包装类型数组
+	 * 
+	 * @return
+	 */
+	protected final Short[] getShortBoxArray() {
+		int length = getLength();
+		if (length == -1) {
+			return null;
+		}
+		Short[] result = new Short[length];
+		for (int i = 0; i < length; ++i) {
+			result[i] = getShort();
+		}
+		return result;
+	}
+
+	/**
+	 * 写入int包装类型数组(null元素按默认值写入)
+	 * 
+	 * @param value
+	 */
+	protected final void putIntBoxArray(Integer[] value) {
+		if (value == null) {
+			putLength(-1);
+		} else {
+			putLength(value.length);
+			for (Integer temp : value) {
+				putInt(temp == null ? 0 : temp);
+			}
+		}
+	}
+
+	/**
+	 * 读取int包装类型数组
+	 * 
+	 * @return
+	 */
+	protected final Integer[] getIntBoxArray() {
+		int length = getLength();
+		if (length == -1) {
+			return null;
+		}
+		Integer[] result = new Integer[length];
+		for (int i = 0; i < length; ++i) {
+			result[i] = getInt();
+		}
+		return result;
+	}
+
+	/**
+	 * 写入long包装类型数组(null元素按默认值写入)
+	 * 
+	 * @param value
+	 */
+	protected final void putLongBoxArray(Long[] value) {
+		if (value == null) {
+			putLength(-1);
+		} else {
+			putLength(value.length);
+			for (Long temp : value) {
+				putLong(temp == null ? 0L : temp);
+			}
+		}
+	}
+
+	/**
+	 * 读取long包装类型数组
+	 * 
+	 * @return
+	 */
+	protected final Long[] getLongBoxArray() {
+		int length = getLength();
+		if (length == -1) {
+			return null;
+		}
+		Long[] result = new Long[length];
+		for (int i = 0; i < length; ++i) {
+			result[i] = getLong();
+		}
+		return result;
+	}
+
+	/**
+	 * 写入float包装类型数组(null元素按默认值写入)
+	 * 
+	 * @param value
+	 */
+	protected final void putFloatBoxArray(Float[] value) {
+		if (value == null) {
+			putLength(-1);
+		} else {
+			putLength(value.length);
+			for (Float temp : value) {
+				putFloat(temp == null ? 0F : temp);
+			}
+		}
+	}
+
+	/**
+	 * 读取float包装类型数组
+	 * 
+	 * @return
+	 */
+	protected final Float[] getFloatBoxArray() {
+		int length = getLength();
+		if (length == -1) {
+			return null;
+		}
+		Float[] result = new Float[length];
+		for (int i = 0; i < length; ++i) {
+			result[i] = getFloat();
+		}
+		return result;
+	}
+
+	/**
+	 * 写入double包装类型数组(null元素按默认值写入)
+	 * 
+	 * @param value
+	 */
+	protected final void putDoubleBoxArray(Double[] value) {
+		if (value == null) {
+			putLength(-1);
+		} else {
+			putLength(value.length);
+			for (Double temp : value) {
+				putDouble(temp == null ? 0D : temp);
+			}
+		}
+	}
+
+	/**
+	 * 读取double包装类型数组
+	 * 
+	 * @return
+	 */
+	protected final Double[] getDoubleBoxArray() {
+		int length = getLength();
+		if (length == -1) {
+			return null;
+		}
+		Double[] result = new Double[length];
+		for (int i = 0; i < length; ++i) {
+			result[i] = getDouble();
+		}
+		return result;
+	}
+
+	/**
+	 * 写入char包装类型数组(null元素按默认值写入)
+	 * 
+	 * @param value
+	 */
+	protected final void putCharBoxArray(Character[] value) {
+		if (value == null) {
+			putLength(-1);
+		} else {
+			putLength(value.length);
+			for (Character temp : value) {
+				putChar(temp == null ? (char) 0 : temp);
+			}
+		}
+	}
+
+	/**
+	 * 读取char包装类型数组
+	 * 
+	 * @return
+	 */
+	protected final Character[] getCharBoxArray() {
+		int length = getLength();
+		if (length == -1) {
+			return null;
+		}
+		Character[] result = new Character[length];
+		for (int i = 0; i < length; ++i) {
+			result[i] = getChar();
+		}
+		return result;
+	}
+
+	/**
+	 * 写入bool包装类型数组(null元素按默认值写入)
+	 * 
+	 * @param value
+	 */
+	protected final void putBooleanBoxArray(Boolean[] value) {
+		if (value == null) {
+			putLength(-1);
+		} else {
+			putLength(value.length);
+			for (Boolean temp : value) {
+				putBoolean(temp == null ? false : temp);
 			}
 		}
+	}
+
+	/**
+	 * 读取bool包装类型数组
+	 * 
+	 * @return
+	 */
+	protected final Boolean[] getBooleanBoxArray() {
+		int length = getLength();
+		if (length == -1) {
+			return null;
+		}
+		Boolean[] result = new Boolean[length];
+		for (int i = 0; i < length; ++i) {
+			result[i] = getBoolean();
+		}
 		return result;
 	}
 
+	/**
+	 * 写入int列表
+	 * 
+	 * @param value
+	 */
+	protected final void putInts(IntList value) {
+		if (value == null) {
+			putLength(-1);
+		} else {
+			putLength(value.size());
+			writeInts(value.array(), value.size());
+		}
+	}
+
+	/**
+	 * 读取int列表
+	 * 
+	 * @return
+	 */
+	protected final IntList getInts() {
+		int length = getLength();
+		if (length == -1) {
+			return null;
+		}
+		int[] result = new int[length];
+		readInts(result, length);
+		return IntList.wrap(result);
+	}
+
+	private void writeInts(int[] value, int length) {
+		if (compact) {
+			for (int i = 0; i < length; ++i) {
+				putInt(value[i]);
+			}
+			return;
+		}
+		int bytes = length << 2;
+		buffer.ensureWritable(bytes);
+		int index = buffer.writerIndex();
+		ByteBuffer region = heapRegion(index, bytes);
+		if (region != null) {
+			region.asIntBuffer().put(value, 0, length);
+		} else {
+			for (int i = 0; i < length; ++i) {
+				buffer.setInt(index + (i << 2), value[i]);
+			}
+		}
+		buffer.writerIndex(index + bytes);
+	}
+
+	/**
+	 * 数组批量写入的目标区域：heap buffer直接包装底层数组，其他buffer的nioBuffer不保证共享内存，返回null逐个写入
+	 */
+	private ByteBuffer heapRegion(int index, int bytes) {
+		if (!buffer.hasArray()) {
+			return null;
+		}
+		return ByteBuffer.wrap(buffer.array(), buffer.arrayOffset() + index, bytes);
+	}
+
+	private void readInts(int[] result, int length) {
+		if (compact) {
+			for (int i = 0; i < length; ++i) {
+				result[i] = getInt();
+			}
+			return;
+		}
+		int bytes = length << 2;
+		int index = buffer.readerIndex();
+		buffer.skipBytes(bytes);
+		buffer.nioBuffer(index, bytes).order(ByteOrder.BIG_ENDIAN).asIntBuffer().get(result, 0, length);
+	}
+
+	/**
+	 * 写入long列表
+	 * 
+	 * @param value
+	 */
+	protected final void putLongs(LongList value) {
+		if (value == null) {
+			putLength(-1);
+		} else {
+			putLength(value.size());
+			writeLongs(value.array(), value.size());
+		}
+	}
+
+	/**
+	 * 读取long列表
+	 * 
+	 * @return
+	 */
+	protected final LongList getLongs() {
+		int length = getLength();
+		if (length == -1) {
+			return null;
+		}
+		long[] result = new long[length];
+		readLongs(result, length);
+		return LongList.wrap(result);
+	}
+
+	private void writeLongs(long[] value, int length) {
+		if (compact) {
+			for (int i = 0; i < length; ++i) {
+				putLong(value[i]);
+			}
+			return;
+		}
+		int bytes = length << 3;
+		buffer.ensureWritable(bytes);
+		int index = buffer.writerIndex();
+		ByteBuffer region = heapRegion(index, bytes);
+		if (region != null) {
+			region.asLongBuffer().put(value, 0, length);
+		} else {
+			for (int i = 0; i < length; ++i) {
+				buffer.setLong(index + (i << 3), value[i]);
+			}
+		}
+		buffer.writerIndex(index + bytes);
+	}
+
+	private void readLongs(long[] result, int length) {
+		if (compact) {
+			for (int i = 0; i < length; ++i) {
+				result[i] = getLong();
+			}
+			return;
+		}
+		int bytes = length << 3;
+		int index = buffer.readerIndex();
+		buffer.skipBytes(bytes);
+		buffer.nioBuffer(index, bytes).order(ByteOrder.BIG_ENDIAN).asLongBuffer().get(result, 0, length);
+	}
+
+	/**
+	 * 写入short列表
+	 * 
+	 * @param value
+	 */
+	protected final void putShorts(ShortList value) {
+		if (value == null) {
+			putLength(-1);
+		} else {
+			putLength(value.size());
+			writeShorts(value.array(), value.size());
+		}
+	}
+
+	/**
+	 * 读取short列表
+	 * 
+	 * @return
+	 */
+	protected final ShortList getShorts() {
+		int length = getLength();
+		if (length == -1) {
+			return null;
+		}
+		short[] result = new short[length];
+		readShorts(result, length);
+		return ShortList.wrap(result);
+	}
+
+	private void writeShorts(short[] value, int length) {
+		if (compact) {
+			for (int i = 0; i < length; ++i) {
+				putShort(value[i]);
+			}
+			return;
+		}
+		int bytes = length << 1;
+		buffer.ensureWritable(bytes);
+		int index = buffer.writerIndex();
+		ByteBuffer region = heapRegion(index, bytes);
+		if (region != null) {
+			region.asShortBuffer().put(value, 0, length);
+		} else {
+			for (int i = 0; i < length; ++i) {
+				buffer.setShort(index + (i << 1), value[i]);
+			}
+		}
+		buffer.writerIndex(index + bytes);
+	}
+
+	private void readShorts(short[] result, int length) {
+		if (compact) {
+			for (int i = 0; i < length; ++i) {
+				result[i] = getShort();
+			}
+			return;
+		}
+		int bytes = length << 1;
+		int index = buffer.readerIndex();
+		buffer.skipBytes(bytes);
+		buffer.nioBuffer(index, bytes).order(ByteOrder.BIG_ENDIAN).asShortBuffer().get(result, 0, length);
+	}
+
+	/**
+	 * 写入float列表
+	 * 
+	 * @param value
+	 */
+	protected final void putFloats(FloatList value) {
+		if (value == null) {
+			putLength(-1);
+		} else {
+			putLength(value.size());
+			writeFloats(value.array(), value.size());
+		}
+	}
+
+	/**
+	 * 读取float列表
+	 * 
+	 * @return
+	 */
+	protected final FloatList getFloats() {
+		int length = getLength();
+		if (length == -1) {
+			return null;
+		}
+		float[] result = new float[length];
+		readFloats(result, length);
+		return FloatList.wrap(result);
+	}
+
+	private void writeFloats(float[] value, int length) {
+		int bytes = length << 2;
+		buffer.ensureWritable(bytes);
+		int index = buffer.writerIndex();
+		ByteBuffer region = heapRegion(index, bytes);
+		if (region != null) {
+			region.asFloatBuffer().put(value, 0, length);
+		} else {
+			for (int i = 0; i < length; ++i) {
+				buffer.setFloat(index + (i << 2), value[i]);
+			}
+		}
+		buffer.writerIndex(index + bytes);
+	}
+
+	private void readFloats(float[] result, int length) {
+		int bytes = length << 2;
+		int index = buffer.readerIndex();
+		buffer.skipBytes(bytes);
+		buffer.nioBuffer(index, bytes).order(ByteOrder.BIG_ENDIAN).asFloatBuffer().get(result, 0, length);
+	}
+
+	/**
+	 * 写入double列表
+	 * 
+	 * @param value
+	 */
+	protected final void putDoubles(DoubleList value) {
+		if (value == null) {
+			putLength(-1);
+		} else {
+			putLength(value.size());
+			writeDoubles(value.array(), value.size());
+		}
+	}
+
+	/**
+	 * 读取double列表
+	 * 
+	 * @return
+	 */
+	protected final DoubleList getDoubles() {
+		int length = getLength();
+		if (length == -1) {
+			return null;
+		}
+		double[] result = new double[length];
+		readDoubles(result, length);
+		return DoubleList.wrap(result);
+	}
+
+	private void writeDoubles(double[] value, int length) {
+		int bytes = length << 3;
+		buffer.ensureWritable(bytes);
+		int index = buffer.writerIndex();
+		ByteBuffer region = heapRegion(index, bytes);
+		if (region != null) {
+			region.asDoubleBuffer().put(value, 0, length);
+		} else {
+			for (int i = 0; i < length; ++i) {
+				buffer.setDouble(index + (i << 3), value[i]);
+			}
+		}
+		buffer.writerIndex(index + bytes);
+	}
+
+	private void readDoubles(double[] result, int length) {
+		int bytes = length << 3;
+		int index = buffer.readerIndex();
+		buffer.skipBytes(bytes);
+		buffer.nioBuffer(index, bytes).order(ByteOrder.BIG_ENDIAN).asDoubleBuffer().get(result, 0, length);
+	}
+
+	/**
+	 * 写入长度(数组、列表、字符串)，null写入-1
+	 * 
+	 * @param length
+	 */
+	protected final void putLength(int length) {
+		if (compact) {
+			writeRawVarint32(length + 1);
+		} else {
+			buffer.writeShort(length);
+		}
+	}
+
+	/**
+	 * 读取长度(数组、列表、字符串)，null返回-1
+	 * 
+	 * @return
+	 */
+	protected final int getLength() {
+		int length;
+		if (compact) {
+			length = readRawVarint32() - 1;
+		} else {
+			length = buffer.readShort();
+		}
+		// 每个元素至少占一个字节，超过剩余字节数的长度一定是错误数据，避免按错误长度分配内存
+		if (length > buffer.readableBytes()) {
+			throw new CorruptedFrameException("length " + length + " exceeds readable bytes " + buffer.readableBytes());
+		}
+		return length;
+	}
+
+	/**
+	 * 写入zigzag编码的变长int
+	 * 
+	 * @param value
+	 */
+	protected final void putVarInt(int value) {
+		writeRawVarint32((value << 1) ^ (value >> 31));
+	}
+
+	/**
+	 * 读取zigzag编码的变长int
+	 * 
+	 * @return
+	 */
+	protected final int getVarInt() {
+		int raw = readRawVarint32();
+		return (raw >>> 1) ^ -(raw & 1);
+	}
+
+	/**
+	 * 写入zigzag编码的变长long
+	 * 
+	 * @param value
+	 */
+	protected final void putVarLong(long value) {
+		long raw = (value << 1) ^ (value >> 63);
+		while ((raw & ~0x7FL) != 0) {
+			buffer.writeByte((int) (raw & 0x7F) | 0x80);
+			raw >>>= 7;
+		}
+		buffer.writeByte((int) raw);
+	}
+
+	/**
+	 * 读取zigzag编码的变长long
+	 * 
+	 * @return
+	 */
+	protected final long getVarLong() {
+		long raw = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte tmp = buffer.readByte();
+			raw |= (long) (tmp & 0x7F) << shift;
+			if (tmp >= 0) {
+				return (raw >>> 1) ^ -(raw & 1);
+			}
+		}
+		throw new CorruptedFrameException("malformed varint.");
+	}
+
+	private void writeRawVarint32(int val) {
+		int value = val;
+		while (true) {
+			if ((value & 0xFFFFFF80) == 0) {
+				this.buffer.writeByte(value);
+				return;
+			}
+			this.buffer.writeByte(value & 0x7F | 0x80);
+			value >>>= 7;
+		}
+	}
+
+	private int readRawVarint32() {
+		int result = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte tmp = buffer.readByte();
+			result |= (tmp & 0x7F) << shift;
+			if (tmp >= 0) {
+				return result;
+			}
+		}
+		throw new CorruptedFrameException("malformed varint.");
+	}
+
 	private <T extends MessageMeta> T createInstance(Class<T> clazz) {
 		ConstructorAccess constructorAccess = messageMetaCache.get(clazz);
 		if (constructorAccess == null) {
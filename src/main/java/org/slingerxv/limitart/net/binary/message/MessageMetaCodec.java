@@ -0,0 +1,894 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary.message;
+
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.DCONST_0;
+import static org.objectweb.asm.Opcodes.FCONST_0;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.IF_ICMPGE;
+import static org.objectweb.asm.Opcodes.IF_ICMPGT;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.LCONST_0;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_5;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slingerxv.limitart.collections.DoubleList;
+import org.slingerxv.limitart.collections.FloatList;
+import org.slingerxv.limitart.collections.IntList;
+import org.slingerxv.limitart.collections.LongList;
+import org.slingerxv.limitart.collections.ShortList;
+import org.slingerxv.limitart.reflectasm.AccessClassLoader;
+
+/**
+ * 二进制元数据编解码器
+ * <p>
+ * 注册消息时为每个元数据类型生成一个直接读写字段的编解码类，避免每次编解码时反射遍历字段。生成的编码结果与反射方式逐字节一致，
+ * 不满足生成条件(非public类或字段、不支持的字段类型等)的类型继续使用反射方式
+ *
+ * @author hank
+ *
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public abstract class MessageMetaCodec {
+	private static Logger log = LoggerFactory.getLogger(MessageMetaCodec.class);
+	private static final String[] PRIMITIVE_NAMES = { "Byte", "Short", "Int", "Long", "Float", "Double", "Char",
+			"Boolean" };
+	private static final Class<?>[] PRIMITIVES = { byte.class, short.class, int.class, long.class, float.class,
+			double.class, char.class, boolean.class };
+	private static final Class<?>[] BOXES = { Byte.class, Short.class, Integer.class, Long.class, Float.class,
+			Double.class, Character.class, Boolean.class };
+	private static final Class<?>[] PRIMITIVE_LISTS = { IntList.class, LongList.class, ShortList.class,
+			FloatList.class, DoubleList.class };
+	private static final String[] PRIMITIVE_LIST_NAMES = { "Ints", "Longs", "Shorts", "Floats", "Doubles" };
+	private List<Class<? extends MessageMeta>> nestedTypes = Collections.emptyList();
+
+	public abstract void encode(MessageMeta meta) throws Exception;
+
+	public abstract void decode(MessageMeta meta) throws Exception;
+
+	/**
+	 * 解码部分字段(延迟解码)，字段下标与{@link MessageMeta}反射编解码的字段顺序一致
+	 * 
+	 * @param meta
+	 * @param from
+	 *            起始字段下标
+	 * @param to
+	 *            结束字段下标(不包含)，超出字段数量时解码到最后
+	 * @throws Exception
+	 */
+	public abstract void decode(MessageMeta meta, int from, int to) throws Exception;
+
+	/**
+	 * 清空所有编解码字段(池化消息归还前调用)，引用置为null，基本类型置为0或false
+	 * 
+	 * @param meta
+	 */
+	public abstract void clear(MessageMeta meta);
+
+	/**
+	 * 字段中引用到的其他元数据类型
+	 *
+	 * @return
+	 */
+	public List<Class<? extends MessageMeta>> getNestedTypes() {
+		return nestedTypes;
+	}
+
+	/**
+	 * 生成编解码器
+	 *
+	 * @param type
+	 * @return 不满足生成条件时返回null
+	 */
+	public static MessageMetaCodec get(Class<? extends MessageMeta> type) {
+		if (!isPublic(type)) {
+			log.debug("{} is not public,use reflection codec", type.getName());
+			return null;
+		}
+		Field[] fields = MessageMeta.getFieldAccess(type).getFields();
+		Method[] encoders = new Method[fields.length];
+		Method[] decoders = new Method[fields.length];
+		Class<?>[] metaTypes = new Class<?>[fields.length];
+		List<Class<? extends MessageMeta>> nestedTypes = new ArrayList<>();
+		for (int i = 0; i < fields.length; ++i) {
+			Field field = fields[i];
+			if (!Modifier.isPublic(field.getModifiers())) {
+				log.debug("{}.{} is not public,use reflection codec", type.getName(), field.getName());
+				return null;
+			}
+			metaTypes[i] = resolve(field, encoders, decoders, i);
+			if (encoders[i] == null || decoders[i] == null) {
+				log.debug("{}.{} type not support,use reflection codec", type.getName(), field.getName());
+				return null;
+			}
+			if (metaTypes[i] != null) {
+				if (!isPublic(metaTypes[i])) {
+					log.debug("{} is not public,use reflection codec", metaTypes[i].getName());
+					return null;
+				}
+				nestedTypes.add((Class<? extends MessageMeta>) metaTypes[i]);
+			}
+		}
+		String className = type.getName();
+		String accessClassName = className + "MessageMetaCodec";
+		Class accessClass;
+		AccessClassLoader loader = AccessClassLoader.get(type);
+		try {
+			accessClass = loader.loadClass(accessClassName);
+		} catch (ClassNotFoundException ignored) {
+			synchronized (loader) {
+				try {
+					accessClass = loader.loadClass(accessClassName);
+				} catch (ClassNotFoundException ignored2) {
+					String accessClassNameInternal = accessClassName.replace('.', '/');
+					String classNameInternal = className.replace('.', '/');
+					String superClassNameInternal = org.objectweb.asm.Type.getInternalName(MessageMetaCodec.class);
+					ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+					cw.visit(V1_5, ACC_PUBLIC + ACC_SUPER, accessClassNameInternal, null, superClassNameInternal,
+							null);
+					insertConstructor(cw, superClassNameInternal);
+					int[] options = MessageMeta.getFieldOptions(type);
+					insertEncode(cw, classNameInternal, fields, encoders, options);
+					insertDecode(cw, classNameInternal, fields, decoders, metaTypes, options);
+					insertDecodeRange(cw, classNameInternal, fields, decoders, metaTypes, options);
+					insertClear(cw, classNameInternal, fields);
+					cw.visitEnd();
+					try {
+						accessClass = loader.defineClass(accessClassName, cw.toByteArray());
+					} catch (Throwable e) {
+						log.warn("generate codec for " + className + " failed,use reflection codec", e);
+						return null;
+					}
+				}
+			}
+		}
+		try {
+			MessageMetaCodec codec = (MessageMetaCodec) accessClass.newInstance();
+			codec.nestedTypes = nestedTypes;
+			return codec;
+		} catch (Throwable e) {
+			log.warn("construct codec for " + className + " failed,use reflection codec", e);
+			return null;
+		}
+	}
+
+	/**
+	 * 按照{@link MessageMeta}反射编解码的规则查找字段对应的读写方法
+	 *
+	 * @return 字段引用到的元数据类型
+	 */
+	private static Class<?> resolve(Field field, Method[] encoders, Method[] decoders, int index) {
+		Class<?> type = field.getType();
+		try {
+			if (type.isPrimitive()) {
+				int i = indexOf(PRIMITIVES, type);
+				encoders[index] = helper("put" + PRIMITIVE_NAMES[i], type);
+				decoders[index] = helper("get" + PRIMITIVE_NAMES[i]);
+			} else if (type.isArray()) {
+				Class<?> component = type.getComponentType();
+				int i = indexOf(PRIMITIVES, component);
+				int j = indexOf(BOXES, component);
+				if (i >= 0) {
+					encoders[index] = helper("put" + PRIMITIVE_NAMES[i] + "Array", type);
+					decoders[index] = helper("get" + PRIMITIVE_NAMES[i] + "Array");
+				} else if (j >= 0) {
+					encoders[index] = helper("put" + PRIMITIVE_NAMES[j] + "BoxArray", type);
+					decoders[index] = helper("get" + PRIMITIVE_NAMES[j] + "BoxArray", type);
+				} else if (component.getSuperclass() == MessageMeta.class) {
+					encoders[index] = helper("putMessageMetaArray", MessageMeta[].class);
+					decoders[index] = helper("getMessageMetaArray", Class.class);
+					return component;
+				} else if (component == String.class) {
+					encoders[index] = helper("putStringArray", type);
+					decoders[index] = helper("getStringArray");
+				}
+			} else if (List.class.isAssignableFrom(type)) {
+				// 反射方式按ArrayList读写，这里只接受能直接赋值ArrayList的声明类型
+				if (!type.isAssignableFrom(ArrayList.class)) {
+					return null;
+				}
+				Type genericType = field.getGenericType();
+				if (!(genericType instanceof ParameterizedType)) {
+					return null;
+				}
+				Type argument = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+				if (!(argument instanceof Class)) {
+					return null;
+				}
+				Class<?> component = (Class<?>) argument;
+				int j = indexOf(BOXES, component);
+				if (j >= 0) {
+					encoders[index] = helper("put" + PRIMITIVE_NAMES[j] + "List", ArrayList.class);
+					decoders[index] = helper("get" + PRIMITIVE_NAMES[j] + "List");
+				} else if (component.getSuperclass() == MessageMeta.class) {
+					encoders[index] = helper("putMessageMetaList", ArrayList.class);
+					decoders[index] = helper("getMessageMetaList", Class.class);
+					return component;
+				} else if (component == String.class) {
+					encoders[index] = helper("putStringList", ArrayList.class);
+					decoders[index] = helper("getStringList");
+				}
+			} else {
+				int j = indexOf(BOXES, type);
+				if (j >= 0) {
+					encoders[index] = helper("put" + PRIMITIVE_NAMES[j] + "Box", type);
+					decoders[index] = helper("get" + PRIMITIVE_NAMES[j] + "Box");
+				} else if ((j = indexOf(PRIMITIVE_LISTS, type)) >= 0) {
+					encoders[index] = helper("put" + PRIMITIVE_LIST_NAMES[j], type);
+					decoders[index] = helper("get" + PRIMITIVE_LIST_NAMES[j]);
+				} else if (type.getSuperclass() == MessageMeta.class) {
+					encoders[index] = helper("putMessageMeta", MessageMeta.class);
+					decoders[index] = helper("getMessageMeta", Class.class);
+					return type;
+				} else if (type == String.class) {
+					encoders[index] = helper("putString", type);
+					decoders[index] = helper("getString");
+				}
+			}
+		} catch (NoSuchMethodException e) {
+			encoders[index] = null;
+			decoders[index] = null;
+		}
+		return null;
+	}
+
+	private static Method helper(String name, Class<?>... params) throws NoSuchMethodException {
+		Class<?>[] types = new Class<?>[params.length + 1];
+		types[0] = MessageMeta.class;
+		System.arraycopy(params, 0, types, 1, params.length);
+		return MessageMetaCodec.class.getDeclaredMethod(name, types);
+	}
+
+	private static int indexOf(Class<?>[] array, Class<?> type) {
+		for (int i = 0; i < array.length; ++i) {
+			if (array[i] == type) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isPublic(Class<?> type) {
+		for (Class<?> next = type; next != null; next = next.getEnclosingClass()) {
+			if (!Modifier.isPublic(next.getModifiers())) {
+				return false;
+			}
+			if (next.isMemberClass() && !Modifier.isStatic(next.getModifiers())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void insertConstructor(ClassWriter cw, String superClassNameInternal) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, superClassNameInternal, "<init>", "()V", false);
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	private static void insertEncode(ClassWriter cw, String classNameInternal, Field[] fields, Method[] encoders,
+			int[] options) {
+		String metaDesc = org.objectweb.asm.Type.getDescriptor(MessageMeta.class);
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "encode", "(" + metaDesc + ")V", null,
+				new String[] { "java/lang/Exception" });
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitTypeInsn(CHECKCAST, classNameInternal);
+		mv.visitVarInsn(ASTORE, 2);
+		for (int i = 0; i < fields.length; ++i) {
+			Field field = fields[i];
+			Method encoder = encoders[i];
+			insertOptions(mv, options, i);
+			mv.visitVarInsn(ALOAD, 1);
+			mv.visitVarInsn(ALOAD, 2);
+			mv.visitFieldInsn(GETFIELD, classNameInternal, field.getName(),
+					org.objectweb.asm.Type.getDescriptor(field.getType()));
+			Class<?> param = encoder.getParameterTypes()[1];
+			if (!param.isAssignableFrom(field.getType())) {
+				mv.visitTypeInsn(CHECKCAST, org.objectweb.asm.Type.getInternalName(param));
+			}
+			mv.visitMethodInsn(INVOKESTATIC, org.objectweb.asm.Type.getInternalName(MessageMetaCodec.class),
+					encoder.getName(), org.objectweb.asm.Type.getMethodDescriptor(encoder), false);
+		}
+		insertOptions(mv, options, options.length);
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	private static void insertDecode(ClassWriter cw, String classNameInternal, Field[] fields, Method[] decoders,
+			Class<?>[] metaTypes, int[] options) {
+		String metaDesc = org.objectweb.asm.Type.getDescriptor(MessageMeta.class);
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "decode", "(" + metaDesc + ")V", null,
+				new String[] { "java/lang/Exception" });
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitTypeInsn(CHECKCAST, classNameInternal);
+		mv.visitVarInsn(ASTORE, 2);
+		for (int i = 0; i < fields.length; ++i) {
+			insertOptions(mv, options, i);
+			insertDecodeField(mv, classNameInternal, fields[i], decoders[i], metaTypes[i], 2);
+		}
+		insertOptions(mv, options, options.length);
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	/**
+	 * 每个字段前判断下标范围，编码选项按字段设置(跳过的字段可能改变了上一个选项)
+	 */
+	private static void insertDecodeRange(ClassWriter cw, String classNameInternal, Field[] fields,
+			Method[] decoders, Class<?>[] metaTypes, int[] options) {
+		String metaDesc = org.objectweb.asm.Type.getDescriptor(MessageMeta.class);
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "decode", "(" + metaDesc + "II)V", null,
+				new String[] { "java/lang/Exception" });
+		boolean hasOptions = false;
+		for (int option : options) {
+			hasOptions |= option != 0;
+		}
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitTypeInsn(CHECKCAST, classNameInternal);
+		mv.visitVarInsn(ASTORE, 4);
+		for (int i = 0; i < fields.length; ++i) {
+			Label skip = new Label();
+			mv.visitVarInsn(ILOAD, 2);
+			mv.visitLdcInsn(i);
+			mv.visitJumpInsn(IF_ICMPGT, skip);
+			mv.visitLdcInsn(i);
+			mv.visitVarInsn(ILOAD, 3);
+			mv.visitJumpInsn(IF_ICMPGE, skip);
+			if (hasOptions) {
+				mv.visitVarInsn(ALOAD, 1);
+				mv.visitInsn(ICONST_0 + options[i]);
+				mv.visitMethodInsn(INVOKESTATIC, org.objectweb.asm.Type.getInternalName(MessageMetaCodec.class),
+						"options", "(" + metaDesc + "I)V", false);
+			}
+			insertDecodeField(mv, classNameInternal, fields[i], decoders[i], metaTypes[i], 4);
+			mv.visitLabel(skip);
+		}
+		if (hasOptions) {
+			mv.visitVarInsn(ALOAD, 1);
+			mv.visitInsn(ICONST_0);
+			mv.visitMethodInsn(INVOKESTATIC, org.objectweb.asm.Type.getInternalName(MessageMetaCodec.class),
+					"options", "(" + metaDesc + "I)V", false);
+		}
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	/**
+	 * 读取一个字段并写回转换后的元数据(局部变量local)
+	 */
+	private static void insertDecodeField(MethodVisitor mv, String classNameInternal, Field field, Method decoder,
+			Class<?> metaType, int local) {
+		String fieldDesc = org.objectweb.asm.Type.getDescriptor(field.getType());
+		mv.visitVarInsn(ALOAD, local);
+		mv.visitVarInsn(ALOAD, 1);
+		Class<?>[] params = decoder.getParameterTypes();
+		if (params.length > 1) {
+			if (params[1] == Class.class) {
+				mv.visitLdcInsn(org.objectweb.asm.Type.getType(metaType));
+			} else {
+				// 包装类型数组读到null时保留原值
+				mv.visitVarInsn(ALOAD, local);
+				mv.visitFieldInsn(GETFIELD, classNameInternal, field.getName(), fieldDesc);
+			}
+		}
+		mv.visitMethodInsn(INVOKESTATIC, org.objectweb.asm.Type.getInternalName(MessageMetaCodec.class),
+				decoder.getName(), org.objectweb.asm.Type.getMethodDescriptor(decoder), false);
+		if (!field.getType().isAssignableFrom(decoder.getReturnType())) {
+			mv.visitTypeInsn(CHECKCAST, org.objectweb.asm.Type.getInternalName(field.getType()));
+		}
+		mv.visitFieldInsn(PUTFIELD, classNameInternal, field.getName(), fieldDesc);
+	}
+
+	private static void insertClear(ClassWriter cw, String classNameInternal, Field[] fields) {
+		String metaDesc = org.objectweb.asm.Type.getDescriptor(MessageMeta.class);
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "clear", "(" + metaDesc + ")V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitTypeInsn(CHECKCAST, classNameInternal);
+		mv.visitVarInsn(ASTORE, 2);
+		for (Field field : fields) {
+			Class<?> type = field.getType();
+			mv.visitVarInsn(ALOAD, 2);
+			if (!type.isPrimitive()) {
+				mv.visitInsn(ACONST_NULL);
+			} else if (type == long.class) {
+				mv.visitInsn(LCONST_0);
+			} else if (type == float.class) {
+				mv.visitInsn(FCONST_0);
+			} else if (type == double.class) {
+				mv.visitInsn(DCONST_0);
+			} else {
+				mv.visitInsn(ICONST_0);
+			}
+			mv.visitFieldInsn(PUTFIELD, classNameInternal, field.getName(),
+					org.objectweb.asm.Type.getDescriptor(type));
+		}
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	/**
+	 * 编码选项与上一个字段不同时切换，最后恢复为0
+	 */
+	private static void insertOptions(MethodVisitor mv, int[] options, int index) {
+		int previous = index > 0 ? options[index - 1] : 0;
+		int current = index < options.length ? options[index] : 0;
+		if (previous == current) {
+			return;
+		}
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitInsn(ICONST_0 + current);
+		mv.visitMethodInsn(INVOKESTATIC, org.objectweb.asm.Type.getInternalName(MessageMetaCodec.class), "options",
+				"(" + org.objectweb.asm.Type.getDescriptor(MessageMeta.class) + "I)V", false);
+	}
+
+	// ----生成代码调用的读写方法，与MessageMeta反射编解码的规则保持一致
+
+	protected static void options(MessageMeta meta, int options) {
+		meta.options(options);
+	}
+
+	protected static void putByte(MessageMeta meta, byte value) {
+		meta.putByte(value);
+	}
+
+	protected static byte getByte(MessageMeta meta) {
+		return meta.getByte();
+	}
+
+	protected static void putShort(MessageMeta meta, short value) {
+		meta.putShort(value);
+	}
+
+	protected static short getShort(MessageMeta meta) {
+		return meta.getShort();
+	}
+
+	protected static void putInt(MessageMeta meta, int value) {
+		meta.putInt(value);
+	}
+
+	protected static int getInt(MessageMeta meta) {
+		return meta.getInt();
+	}
+
+	protected static void putLong(MessageMeta meta, long value) {
+		meta.putLong(value);
+	}
+
+	protected static long getLong(MessageMeta meta) {
+		return meta.getLong();
+	}
+
+	protected static void putFloat(MessageMeta meta, float value) {
+		meta.putFloat(value);
+	}
+
+	protected static float getFloat(MessageMeta meta) {
+		return meta.getFloat();
+	}
+
+	protected static void putDouble(MessageMeta meta, double value) {
+		meta.putDouble(value);
+	}
+
+	protected static double getDouble(MessageMeta meta) {
+		return meta.getDouble();
+	}
+
+	protected static void putChar(MessageMeta meta, char value) {
+		meta.putChar(value);
+	}
+
+	protected static char getChar(MessageMeta meta) {
+		return meta.getChar();
+	}
+
+	protected static void putBoolean(MessageMeta meta, boolean value) {
+		meta.putBoolean(value);
+	}
+
+	protected static boolean getBoolean(MessageMeta meta) {
+		return meta.getBoolean();
+	}
+
+	protected static void putByteBox(MessageMeta meta, Byte value) {
+		meta.putByte(value == null ? 0 : value);
+	}
+
+	protected static Byte getByteBox(MessageMeta meta) {
+		return meta.getByte();
+	}
+
+	protected static void putShortBox(MessageMeta meta, Short value) {
+		meta.putShort(value == null ? 0 : value);
+	}
+
+	protected static Short getShortBox(MessageMeta meta) {
+		return meta.getShort();
+	}
+
+	protected static void putIntBox(MessageMeta meta, Integer value) {
+		meta.putInt(value == null ? 0 : value);
+	}
+
+	protected static Integer getIntBox(MessageMeta meta) {
+		return meta.getInt();
+	}
+
+	protected static void putLongBox(MessageMeta meta, Long value) {
+		meta.putLong(value == null ? 0L : value);
+	}
+
+	protected static Long getLongBox(MessageMeta meta) {
+		return meta.getLong();
+	}
+
+	protected static void putFloatBox(MessageMeta meta, Float value) {
+		meta.putFloat(value == null ? 0F : value);
+	}
+
+	protected static Float getFloatBox(MessageMeta meta) {
+		return meta.getFloat();
+	}
+
+	protected static void putDoubleBox(MessageMeta meta, Double value) {
+		meta.putDouble(value == null ? 0D : value);
+	}
+
+	protected static Double getDoubleBox(MessageMeta meta) {
+		return meta.getDouble();
+	}
+
+	protected static void putCharBox(MessageMeta meta, Character value) {
+		meta.putChar(value == null ? 0 : value);
+	}
+
+	protected static Character getCharBox(MessageMeta meta) {
+		return meta.getChar();
+	}
+
+	protected static void putBooleanBox(MessageMeta meta, Boolean value) {
+		meta.putBoolean(value == null ? false : value);
+	}
+
+	protected static Boolean getBooleanBox(MessageMeta meta) {
+		return meta.getBoolean();
+	}
+
+	protected static void putByteArray(MessageMeta meta, byte[] value) {
+		meta.putByteArray(value);
+	}
+
+	protected static byte[] getByteArray(MessageMeta meta) {
+		return meta.getByteArray();
+	}
+
+	protected static void putShortArray(MessageMeta meta, short[] value) {
+		meta.putShortArray(value);
+	}
+
+	protected static short[] getShortArray(MessageMeta meta) {
+		return meta.getShortArray();
+	}
+
+	protected static void putIntArray(MessageMeta meta, int[] value) {
+		meta.putIntArray(value);
+	}
+
+	protected static int[] getIntArray(MessageMeta meta) {
+		return meta.getIntArray();
+	}
+
+	protected static void putLongArray(MessageMeta meta, long[] value) {
+		meta.putLongArray(value);
+	}
+
+	protected static long[] getLongArray(MessageMeta meta) {
+		return meta.getLongArray();
+	}
+
+	protected static void putFloatArray(MessageMeta meta, float[] value) {
+		meta.putFloatArray(value);
+	}
+
+	protected static float[] getFloatArray(MessageMeta meta) {
+		return meta.getFloatArray();
+	}
+
+	protected static void putDoubleArray(MessageMeta meta, double[] value) {
+		meta.putDoubleArray(value);
+	}
+
+	protected static double[] getDoubleArray(MessageMeta meta) {
+		return meta.getDoubleArray();
+	}
+
+	protected static void putCharArray(MessageMeta meta, char[] value) {
+		meta.putCharArray(value);
+	}
+
+	protected static char[] getCharArray(MessageMeta meta) {
+		return meta.getCharArray();
+	}
+
+	protected static void putBooleanArray(MessageMeta meta, boolean[] value) {
+		meta.putBooleanArray(value);
+	}
+
+	protected static boolean[] getBooleanArray(MessageMeta meta) {
+		return meta.getBooleanArray();
+	}
+
+	protected static void putByteBoxArray(MessageMeta meta, Byte[] value) {
+		meta.putByteBoxArray(value);
+	}
+
+	protected static Byte[] getByteBoxArray(MessageMeta meta, Byte[] current) {
+		Byte[] value = meta.getByteBoxArray();
+		return value == null ? current : value;
+	}
+
+	protected static void putShortBoxArray(MessageMeta meta, Short[] value) {
+		meta.putShortBoxArray(value);
+	}
+
+	protected static Short[] getShortBoxArray(MessageMeta meta, Short[] current) {
+		Short[] value = meta.getShortBoxArray();
+		return value == null ? current : value;
+	}
+
+	protected static void putIntBoxArray(MessageMeta meta, Integer[] value) {
+		meta.putIntBoxArray(value);
+	}
+
+	protected static Integer[] getIntBoxArray(MessageMeta meta, Integer[] current) {
+		Integer[] value = meta.getIntBoxArray();
+		return value == null ? current : value;
+	}
+
+	protected static void putLongBoxArray(MessageMeta meta, Long[] value) {
+		meta.putLongBoxArray(value);
+	}
+
+	protected static Long[] getLongBoxArray(MessageMeta meta, Long[] current) {
+		Long[] value = meta.getLongBoxArray();
+		return value == null ? current : value;
+	}
+
+	protected static void putFloatBoxArray(MessageMeta meta, Float[] value) {
+		meta.putFloatBoxArray(value);
+	}
+
+	protected static Float[] getFloatBoxArray(MessageMeta meta, Float[] current) {
+		Float[] value = meta.getFloatBoxArray();
+		return value == null ? current : value;
+	}
+
+	protected static void putDoubleBoxArray(MessageMeta meta, Double[] value) {
+		meta.putDoubleBoxArray(value);
+	}
+
+	protected static Double[] getDoubleBoxArray(MessageMeta meta, Double[] current) {
+		Double[] value = meta.getDoubleBoxArray();
+		return value == null ? current : value;
+	}
+
+	protected static void putCharBoxArray(MessageMeta meta, Character[] value) {
+		meta.putCharBoxArray(value);
+	}
+
+	protected static Character[] getCharBoxArray(MessageMeta meta, Character[] current) {
+		Character[] value = meta.getCharBoxArray();
+		return value == null ? current : value;
+	}
+
+	protected static void putBooleanBoxArray(MessageMeta meta, Boolean[] value) {
+		meta.putBooleanBoxArray(value);
+	}
+
+	protected static Boolean[] getBooleanBoxArray(MessageMeta meta, Boolean[] current) {
+		Boolean[] value = meta.getBooleanBoxArray();
+		return value == null ? current : value;
+	}
+
+	protected static void putByteList(MessageMeta meta, ArrayList<Byte> value) {
+		meta.putByteList(value);
+	}
+
+	protected static ArrayList<Byte> getByteList(MessageMeta meta) {
+		return meta.getByteList();
+	}
+
+	protected static void putShortList(MessageMeta meta, ArrayList<Short> value) {
+		meta.putShortList(value);
+	}
+
+	protected static ArrayList<Short> getShortList(MessageMeta meta) {
+		return meta.getShortList();
+	}
+
+	protected static void putIntList(MessageMeta meta, ArrayList<Integer> value) {
+		meta.putIntList(value);
+	}
+
+	protected static ArrayList<Integer> getIntList(MessageMeta meta) {
+		return meta.getIntList();
+	}
+
+	protected static void putLongList(MessageMeta meta, ArrayList<Long> value) {
+		meta.putLongList(value);
+	}
+
+	protected static ArrayList<Long> getLongList(MessageMeta meta) {
+		return meta.getLongList();
+	}
+
+	protected static void putFloatList(MessageMeta meta, ArrayList<Float> value) {
+		meta.putFloatList(value);
+	}
+
+	protected static ArrayList<Float> getFloatList(MessageMeta meta) {
+		return meta.getFloatList();
+	}
+
+	protected static void putDoubleList(MessageMeta meta, ArrayList<Double> value) {
+		meta.putDoubleList(value);
+	}
+
+	protected static ArrayList<Double> getDoubleList(MessageMeta meta) {
+		return meta.getDoubleList();
+	}
+
+	protected static void putCharList(MessageMeta meta, ArrayList<Character> value) {
+		meta.putCharList(value);
+	}
+
+	protected static ArrayList<Character> getCharList(MessageMeta meta) {
+		return meta.getCharList();
+	}
+
+	protected static void putBooleanList(MessageMeta meta, ArrayList<Boolean> value) {
+		meta.putBooleanList(value);
+	}
+
+	protected static ArrayList<Boolean> getBooleanList(MessageMeta meta) {
+		return meta.getBooleanList();
+	}
+
+	protected static void putString(MessageMeta meta, String value) {
+		meta.putString(value);
+	}
+
+	protected static String getString(MessageMeta meta) {
+		return meta.getString();
+	}
+
+	protected static void putStringArray(MessageMeta meta, String[] value) {
+		meta.putStringArray(value);
+	}
+
+	protected static String[] getStringArray(MessageMeta meta) {
+		return meta.getStringArray();
+	}
+
+	protected static void putInts(MessageMeta meta, IntList value) {
+		meta.putInts(value);
+	}
+
+	protected static IntList getInts(MessageMeta meta) {
+		return meta.getInts();
+	}
+
+	protected static void putLongs(MessageMeta meta, LongList value) {
+		meta.putLongs(value);
+	}
+
+	protected static LongList getLongs(MessageMeta meta) {
+		return meta.getLongs();
+	}
+
+	protected static void putShorts(MessageMeta meta, ShortList value) {
+		meta.putShorts(value);
+	}
+
+	protected static ShortList getShorts(MessageMeta meta) {
+		return meta.getShorts();
+	}
+
+	protected static void putFloats(MessageMeta meta, FloatList value) {
+		meta.putFloats(value);
+	}
+
+	protected static FloatList getFloats(MessageMeta meta) {
+		return meta.getFloats();
+	}
+
+	protected static void putDoubles(MessageMeta meta, DoubleList value) {
+		meta.putDoubles(value);
+	}
+
+	protected static DoubleList getDoubles(MessageMeta meta) {
+		return meta.getDoubles();
+	}
+
+	protected static void putStringList(MessageMeta meta, ArrayList<String> value) {
+		meta.putStringList(value);
+	}
+
+	protected static ArrayList<String> getStringList(MessageMeta meta) {
+		return meta.getStringList();
+	}
+
+	protected static void putMessageMeta(MessageMeta meta, MessageMeta value) throws Exception {
+		meta.putMessageMeta(value);
+	}
+
+	protected static MessageMeta getMessageMeta(MessageMeta meta, Class clazz) throws Exception {
+		return meta.getMessageMeta(clazz);
+	}
+
+	protected static void putMessageMetaArray(MessageMeta meta, MessageMeta[] value) throws Exception {
+		meta.putMessageMetaArray(value);
+	}
+
+	protected static MessageMeta[] getMessageMetaArray(MessageMeta meta, Class clazz) throws Exception {
+		return meta.getMessageMetaArray(clazz);
+	}
+
+	protected static void putMessageMetaList(MessageMeta meta, ArrayList value) throws Exception {
+		meta.putMessageMetaList(value);
+	}
+
+	protected static ArrayList getMessageMetaList(MessageMeta meta, Class clazz) throws Exception {
+		return meta.getMessageMetaList(clazz);
+	}
+}
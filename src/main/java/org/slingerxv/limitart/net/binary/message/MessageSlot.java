@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary.message;
+
+import org.slingerxv.limitart.funcs.Func;
+import org.slingerxv.limitart.net.binary.handler.IHandler;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 消息分发表中的一项，一次查找得到消息的构造、解码器和handler
+ *
+ * @author hank
+ *
+ */
+public final class MessageSlot {
+	private final short messageId;
+	private final Class<? extends Message> messageClass;
+	private final Func<? extends Message> constructor;
+	private final MessageMetaCodec codec;
+	private final IHandler<? extends Message> handler;
+	// 延迟解码时立即解码的字段数量，-1为不延迟
+	private final int lazyHeader;
+
+	MessageSlot(short messageId, Class<? extends Message> messageClass, Func<? extends Message> constructor,
+			MessageMetaCodec codec, IHandler<? extends Message> handler, int lazyHeader) {
+		this.messageId = messageId;
+		this.messageClass = messageClass;
+		this.constructor = constructor;
+		this.codec = codec;
+		this.handler = handler;
+		this.lazyHeader = lazyHeader;
+	}
+
+	/**
+	 * 创建(或从池中取出)消息
+	 * 
+	 * @return
+	 */
+	public Message newMessage() {
+		return constructor.run();
+	}
+
+	/**
+	 * 解码消息，注册时已确定编解码器的直接使用，否则走{@link MessageMeta#decode()}。延迟解码的消息只解码头部字段，剩余字节retain后保留在消息中
+	 * 
+	 * @param msg
+	 * @throws Exception
+	 */
+	public void decode(Message msg) throws Exception {
+		if (lazyHeader >= 0) {
+			if (lazyHeader > 0 && codec != null) {
+				msg.decode(codec, 0, lazyHeader);
+			} else if (lazyHeader > 0) {
+				msg.decodeByReflection(0, lazyHeader);
+			}
+			ByteBuf buffer = msg.buffer();
+			msg.lazy(buffer.readRetainedSlice(buffer.readableBytes()), lazyHeader);
+		} else if (codec != null) {
+			msg.decode(codec);
+		} else {
+			msg.decode();
+		}
+	}
+
+	public short getMessageId() {
+		return messageId;
+	}
+
+	public Class<? extends Message> getMessageClass() {
+		return messageClass;
+	}
+
+	public IHandler<? extends Message> getHandler() {
+		return handler;
+	}
+
+	/**
+	 * 是否延迟解码
+	 * 
+	 * @return
+	 */
+	public boolean isLazy() {
+		return lazyHeader >= 0;
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary.message;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * 连接级字符串字典
+ * <p>
+ * 标注了{@link org.slingerxv.limitart.net.binary.message.annotation.Intern}的字符串第一次发送时带上原文并登记编号，之后只发送编号。
+ * 每个连接一个实例，收发两个方向各自维护一张表；发送方的登记顺序必须与实际写出顺序一致，由调用方保证同一连接的编码与写出串行执行
+ *
+ * @author hank
+ *
+ */
+public class StringDictionary {
+	public static final int DEFAULT_MAX_STRING_LENGTH = 256;
+	private final int capacity;
+	private final int maxStringLength;
+	// 发送方向
+	private HashMap<String, Integer> writeIds = new HashMap<>();
+	private ArrayList<String> writeStrings = new ArrayList<>();
+	private int writeMark;
+	// 接收方向
+	private ArrayList<String> readStrings = new ArrayList<>();
+
+	public StringDictionary(int capacity) {
+		this(capacity, DEFAULT_MAX_STRING_LENGTH);
+	}
+
+	/**
+	 * @param capacity
+	 *            每个方向最多登记的字符串数量
+	 * @param maxStringLength
+	 *            超过此长度的字符串不登记
+	 */
+	public StringDictionary(int capacity, int maxStringLength) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		this.capacity = capacity;
+		this.maxStringLength = maxStringLength;
+	}
+
+	/**
+	 * 查找已登记的编号
+	 * 
+	 * @param value
+	 * @return 未登记返回-1
+	 */
+	int getWriteId(String value) {
+		Integer id = writeIds.get(value);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * 登记一个待发送的字符串
+	 * 
+	 * @param value
+	 * @return 字典已满、空串或字符串过长返回false
+	 */
+	boolean addWrite(String value) {
+		if (writeStrings.size() >= capacity || value.isEmpty() || value.length() > maxStringLength) {
+			return false;
+		}
+		writeIds.put(value, writeStrings.size());
+		writeStrings.add(value);
+		return true;
+	}
+
+	/**
+	 * 记录发送表当前位置，编码失败时用{@link #rollback()}撤销本条消息登记的字符串
+	 */
+	public void mark() {
+		writeMark = writeStrings.size();
+	}
+
+	/**
+	 * 撤销{@link #mark()}之后登记的字符串
+	 */
+	public void rollback() {
+		for (int i = writeStrings.size() - 1; i >= writeMark; --i) {
+			writeIds.remove(writeStrings.remove(i));
+		}
+	}
+
+	/**
+	 * 按编号读取对端登记的字符串
+	 * 
+	 * @param id
+	 * @return 编号不存在返回null
+	 */
+	String getRead(int id) {
+		if (id < 0 || id >= readStrings.size()) {
+			return null;
+		}
+		return readStrings.get(id);
+	}
+
+	/**
+	 * 登记对端发来的字符串
+	 * 
+	 * @param value
+	 * @return 字典已满返回false
+	 */
+	boolean addRead(String value) {
+		if (readStrings.size() >= capacity) {
+			return false;
+		}
+		readStrings.add(value);
+		return true;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public int getWriteSize() {
+		return writeStrings.size();
+	}
+
+	public int getReadSize() {
+		return readStrings.size();
+	}
+}
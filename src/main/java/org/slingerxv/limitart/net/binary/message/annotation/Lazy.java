@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary.message.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 延迟解码消息
+ * <p>
+ * IO线程只解码前{@link #header()}个字段，其余字节保留在消息中，第一次调用
+ * {@link org.slingerxv.limitart.net.binary.message.Message#decodeLazy()}时才解码，也可以通过
+ * {@link org.slingerxv.limitart.net.binary.message.Message#undecoded()}原样转发。适合只按少量头部字段路由的网关和转发服务器
+ * <p>
+ * 保留的字节在handler(或dispatchMessage)执行完后释放，需要在其他线程继续使用时与{@link Poolable}一样先调用
+ * {@link org.slingerxv.limitart.net.binary.message.Message#retain()}。延迟部分包含{@link Intern}字段(字典必须按接收顺序更新)
+ * 或重写了decode的消息会在注册时退回为立即解码
+ *
+ * @author hank
+ *
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Lazy {
+	/**
+	 * 在IO线程立即解码的字段数量(按声明顺序)
+	 * 
+	 * @return
+	 */
+	int header() default 0;
+}
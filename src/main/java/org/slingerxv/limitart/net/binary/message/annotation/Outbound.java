@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary.message.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 消息在连接发送队列中的处理方式(服务器开启了发送队列时生效)
+ *
+ * @author hank
+ * @see org.slingerxv.limitart.net.binary.util.OutboundQueue
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Outbound {
+	/**
+	 * 是否进入高优先级队列(断线通知、充值结果等关键消息)，高优先级消息先发送，丢弃时最后丢弃。开启连接字典的连接上不生效
+	 * 
+	 * @return
+	 */
+	boolean urgent() default false;
+
+	/**
+	 * 队列中只保留这个消息id最新的一条(状态同步等可以覆盖的消息)
+	 * 
+	 * @return
+	 */
+	boolean latestOnly() default false;
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary.message.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 池化消息
+ * <p>
+ * 接收时从线程本地池中取出，handler(或dispatchMessage)执行完后自动归还。需要在其他线程继续使用时先调用
+ * {@link org.slingerxv.limitart.net.binary.message.Message#retain()}，用完后调用
+ * {@link org.slingerxv.limitart.net.binary.message.Message#release()}
+ *
+ * @author hank
+ *
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Poolable {
+	/**
+	 * 每个线程最多缓存的消息数量
+	 * 
+	 * @return
+	 */
+	int maxCapacityPerThread() default 256;
+}
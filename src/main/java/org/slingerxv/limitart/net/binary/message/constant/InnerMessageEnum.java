@@ -42,7 +42,16 @@ public enum InnerMessageEnum {
 	/**
 	 * 服务器回复心跳
 	 */
-	HeartServerMessage((short)5),;
+	HeartServerMessage((short)5),
+	/**
+	 * 客户端请求恢复会话
+	 */
+	SessionResumeClientMessage((short)6),
+	/**
+	 * 服务器回复会话恢复结果
+	 */
+	SessionResumeServerMessage((short)7),;
+	private static final InnerMessageEnum[] VALUES = values();
 	private short messageId;
 
 	InnerMessageEnum(short messageId) {
@@ -54,7 +63,7 @@ public enum InnerMessageEnum {
 	}
 
 	public static InnerMessageEnum getTypeByValue(short value) {
-		for (InnerMessageEnum type : InnerMessageEnum.values()) {
+		for (InnerMessageEnum type : VALUES) {
 			if (type.getValue() == value) {
 				return type;
 			}
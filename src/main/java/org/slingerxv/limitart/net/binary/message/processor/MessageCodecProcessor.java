@@ -0,0 +1,617 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary.message.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.JavaFileObject;
+
+/**
+ * 编译期生成消息编解码器和消息注册表
+ * <p>
+ * 为本次编译中的每个{@code MessageMeta}子类生成{@code 类名MessageMetaCodec}，并把所有{@code IHandler}实现和
+ * {@code @Controller}方法汇总成一个{@code IMessageRegistry}实现，服务器启动时通过
+ * {@code MessageFactory.createByRegistry}加载，不再扫描包、检查消息、在运行时生成字节码
+ * <p>
+ * 默认不启用，需要在编译参数中指定{@code -processor}，注册表类名通过{@code -Alimitart.registry=xxx}指定
+ *
+ * @author hank
+ *
+ */
+@SupportedAnnotationTypes("*")
+@SupportedOptions({ MessageCodecProcessor.OPTION_REGISTRY })
+public class MessageCodecProcessor extends AbstractProcessor {
+	public static final String OPTION_REGISTRY = "limitart.registry";
+	public static final String DEFAULT_REGISTRY = "limitart.GeneratedMessageRegistry";
+	private static final String MESSAGE_PACKAGE = "org.slingerxv.limitart.net.binary.message";
+	private static final String MESSAGE_META = MESSAGE_PACKAGE + ".MessageMeta";
+	private static final String MESSAGE = MESSAGE_PACKAGE + ".Message";
+	private static final String CODEC = MESSAGE_PACKAGE + ".MessageMetaCodec";
+	private static final String REGISTRY = MESSAGE_PACKAGE + ".IMessageRegistry";
+	private static final String FACTORY = MESSAGE_PACKAGE + ".MessageFactory";
+	private static final String HANDLER = "org.slingerxv.limitart.net.binary.handler.IHandler";
+	private static final String CONTROLLER = "org.slingerxv.limitart.net.binary.handler.annotation.Controller";
+	private static final String HANDLER_ANNOTATION = "org.slingerxv.limitart.net.binary.handler.annotation.Handler";
+	private static final String COMPACT = MESSAGE_PACKAGE + ".annotation.Compact";
+	private static final String INTERN = MESSAGE_PACKAGE + ".annotation.Intern";
+	// 与MessageMeta.OPTION_COMPACT、MessageMeta.OPTION_INTERN一致
+	private static final int OPTION_COMPACT = 1;
+	private static final int OPTION_INTERN = 2;
+	private static final String[] BOXES = { "java.lang.Byte", "java.lang.Short", "java.lang.Integer",
+			"java.lang.Long", "java.lang.Float", "java.lang.Double", "java.lang.Character", "java.lang.Boolean" };
+	private static final String[] NAMES = { "Byte", "Short", "Int", "Long", "Float", "Double", "Char", "Boolean" };
+	private static final String COLLECTIONS_PACKAGE = "org.slingerxv.limitart.collections.";
+	private static final String[] PRIMITIVE_LISTS = { "IntList", "LongList", "ShortList", "FloatList", "DoubleList" };
+	private static final String[] PRIMITIVE_LIST_HELPERS = { "Ints", "Longs", "Shorts", "Floats", "Doubles" };
+	private boolean processed;
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		if (processed || roundEnv.processingOver()
+				|| processingEnv.getElementUtils().getTypeElement(MESSAGE_META) == null) {
+			return false;
+		}
+		processed = true;
+		List<TypeElement> types = new ArrayList<>();
+		for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+			collectTypes(type, types);
+		}
+		// 编解码器的元数据类型->编解码器类名
+		Map<TypeElement, String> codecs = new LinkedHashMap<>();
+		StringBuilder registrations = new StringBuilder();
+		List<Element> origins = new ArrayList<>();
+		int controllerIndex = 0;
+		for (TypeElement type : types) {
+			if (isSubtype(type, MESSAGE_META) && !type.getModifiers().contains(Modifier.ABSTRACT)) {
+				String codec = writeCodec(type);
+				if (codec != null) {
+					codecs.put(type, codec);
+					origins.add(type);
+				}
+			}
+			if (hasAnnotation(type, CONTROLLER)) {
+				if (writeController(type, controllerIndex, registrations)) {
+					++controllerIndex;
+					origins.add(type);
+				}
+			} else if (!type.getModifiers().contains(Modifier.ABSTRACT) && isSubtype(type, HANDLER)) {
+				if (writeHandler(type, registrations)) {
+					origins.add(type);
+				}
+			}
+		}
+		if (!origins.isEmpty()) {
+			writeRegistry(codecs, registrations, origins);
+		}
+		return false;
+	}
+
+	private void collectTypes(TypeElement type, List<TypeElement> types) {
+		if (type.getKind() != ElementKind.CLASS) {
+			return;
+		}
+		types.add(type);
+		for (TypeElement inner : ElementFilter.typesIn(type.getEnclosedElements())) {
+			if (inner.getModifiers().contains(Modifier.STATIC)) {
+				collectTypes(inner, types);
+			}
+		}
+	}
+
+	/**
+	 * 生成元数据编解码器，字段规则与MessageMeta反射编解码一致
+	 *
+	 * @return 编解码器全名，不满足生成条件返回null
+	 */
+	private String writeCodec(TypeElement type) {
+		if (!isPublic(type)) {
+			note(type, "not public,use runtime codec");
+			return null;
+		}
+		String typeName = type.getQualifiedName().toString();
+		StringBuilder encode = new StringBuilder();
+		StringBuilder decode = new StringBuilder();
+		StringBuilder clear = new StringBuilder();
+		Boolean classCompact = booleanValue(type, COMPACT);
+		Boolean classIntern = booleanValue(type, INTERN);
+		int options = 0;
+		// 部分解码按字段下标判断范围，每个字段单独设置编码选项
+		List<String> fieldDecodes = new ArrayList<>();
+		List<Integer> fieldOptions = new ArrayList<>();
+		boolean hasOptions = false;
+		for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+			Set<Modifier> modifiers = field.getModifiers();
+			if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)
+					|| modifiers.contains(Modifier.FINAL)) {
+				continue;
+			}
+			if (modifiers.contains(Modifier.PRIVATE)) {
+				note(type, "field " + field.getSimpleName() + " is private,use runtime codec");
+				return null;
+			}
+			Boolean fieldCompact = booleanValue(field, COMPACT);
+			Boolean fieldIntern = booleanValue(field, INTERN);
+			int current = 0;
+			if (fieldCompact != null ? fieldCompact : classCompact != null && classCompact) {
+				current |= OPTION_COMPACT;
+			}
+			if (fieldIntern != null ? fieldIntern : classIntern != null && classIntern) {
+				current |= OPTION_INTERN;
+			}
+			if (current != options) {
+				options = current;
+				encode.append("\t\toptions(meta, ").append(options).append(");\n");
+				decode.append("\t\toptions(meta, ").append(options).append(");\n");
+			}
+			int start = decode.length();
+			if (!writeField(field, encode, decode)) {
+				note(type, "field " + field.getSimpleName() + " type not support,use runtime codec");
+				return null;
+			}
+			clear.append("\t\tm.").append(field.getSimpleName()).append(" = ").append(defaultValue(field.asType()))
+					.append(";\n");
+			fieldDecodes.add(decode.substring(start));
+			fieldOptions.add(current);
+			hasOptions |= current != 0;
+		}
+		StringBuilder decodeRange = new StringBuilder();
+		for (int i = 0; i < fieldDecodes.size(); ++i) {
+			decodeRange.append("\t\tif (from <= ").append(i).append(" && ").append(i).append(" < to) {\n");
+			if (hasOptions) {
+				decodeRange.append("\t\t\toptions(meta, ").append(fieldOptions.get(i)).append(");\n");
+			}
+			decodeRange.append("\t").append(fieldDecodes.get(i));
+			decodeRange.append("\t\t}\n");
+		}
+		if (hasOptions) {
+			decodeRange.append("\t\toptions(meta, 0);\n");
+		}
+		if (options != 0) {
+			encode.append("\t\toptions(meta, 0);\n");
+			decode.append("\t\toptions(meta, 0);\n");
+		}
+		String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+		String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+		String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+				+ "MessageMetaCodec";
+		StringBuilder sb = new StringBuilder();
+		if (!packageName.isEmpty()) {
+			sb.append("package ").append(packageName).append(";\n\n");
+		}
+		sb.append("// Generated by ").append(getClass().getName()).append(". Do not edit.\n");
+		sb.append("@SuppressWarnings({ \"rawtypes\", \"unchecked\" })\n");
+		sb.append("public final class ").append(simpleName).append(" extends ").append(CODEC).append(" {\n");
+		sb.append("\t@Override\n");
+		sb.append("\tpublic void encode(").append(MESSAGE_META).append(" meta) throws Exception {\n");
+		sb.append("\t\t").append(typeName).append(" m = (").append(typeName).append(") meta;\n");
+		sb.append(encode);
+		sb.append("\t}\n\n");
+		sb.append("\t@Override\n");
+		sb.append("\tpublic void decode(").append(MESSAGE_META).append(" meta) throws Exception {\n");
+		sb.append("\t\t").append(typeName).append(" m = (").append(typeName).append(") meta;\n");
+		sb.append(decode);
+		sb.append("\t}\n\n");
+		sb.append("\t@Override\n");
+		sb.append("\tpublic void decode(").append(MESSAGE_META)
+				.append(" meta, int from, int to) throws Exception {\n");
+		sb.append("\t\t").append(typeName).append(" m = (").append(typeName).append(") meta;\n");
+		sb.append(decodeRange);
+		sb.append("\t}\n\n");
+		sb.append("\t@Override\n");
+		sb.append("\tpublic void clear(").append(MESSAGE_META).append(" meta) {\n");
+		sb.append("\t\t").append(typeName).append(" m = (").append(typeName).append(") meta;\n");
+		sb.append(clear);
+		sb.append("\t}\n");
+		sb.append("}\n");
+		String codecName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+		if (!write(codecName, sb, type)) {
+			return null;
+		}
+		return codecName;
+	}
+
+	private static String defaultValue(TypeMirror type) {
+		if (type.getKind() == TypeKind.BOOLEAN) {
+			return "false";
+		}
+		return type.getKind().isPrimitive() ? "0" : "null";
+	}
+
+	private boolean writeField(VariableElement field, StringBuilder encode, StringBuilder decode) {
+		String name = "m." + field.getSimpleName();
+		TypeMirror type = field.asType();
+		if (type.getKind().isPrimitive()) {
+			String helper = NAMES[primitiveIndex(type.getKind())];
+			encode.append("\t\tput").append(helper).append("(meta, ").append(name).append(");\n");
+			decode.append("\t\t").append(name).append(" = get").append(helper).append("(meta);\n");
+			return true;
+		}
+		if (type.getKind() == TypeKind.ARRAY) {
+			TypeMirror component = ((ArrayType) type).getComponentType();
+			if (component.getKind().isPrimitive()) {
+				String helper = NAMES[primitiveIndex(component.getKind())];
+				encode.append("\t\tput").append(helper).append("Array(meta, ").append(name).append(");\n");
+				decode.append("\t\t").append(name).append(" = get").append(helper).append("Array(meta);\n");
+				return true;
+			}
+			String componentName = qualifiedName(component);
+			int box = boxIndex(componentName);
+			if (box >= 0) {
+				encode.append("\t\tput").append(NAMES[box]).append("BoxArray(meta, ").append(name).append(");\n");
+				decode.append("\t\t").append(name).append(" = get").append(NAMES[box]).append("BoxArray(meta, ")
+						.append(name).append(");\n");
+				return true;
+			}
+			if ("java.lang.String".equals(componentName)) {
+				encode.append("\t\tputStringArray(meta, ").append(name).append(");\n");
+				decode.append("\t\t").append(name).append(" = getStringArray(meta);\n");
+				return true;
+			}
+			if (isDirectMeta(component)) {
+				encode.append("\t\tputMessageMetaArray(meta, ").append(name).append(");\n");
+				decode.append("\t\t").append(name).append(" = (").append(componentName)
+						.append("[]) getMessageMetaArray(meta, ").append(componentName).append(".class);\n");
+				return true;
+			}
+			return false;
+		}
+		if (type.getKind() != TypeKind.DECLARED) {
+			return false;
+		}
+		String typeName = qualifiedName(type);
+		int box = boxIndex(typeName);
+		if (box >= 0) {
+			encode.append("\t\tput").append(NAMES[box]).append("Box(meta, ").append(name).append(");\n");
+			decode.append("\t\t").append(name).append(" = get").append(NAMES[box]).append("Box(meta);\n");
+			return true;
+		}
+		if (typeName.startsWith(COLLECTIONS_PACKAGE)) {
+			int list = primitiveListIndex(typeName.substring(COLLECTIONS_PACKAGE.length()));
+			if (list < 0) {
+				return false;
+			}
+			String helper = PRIMITIVE_LIST_HELPERS[list];
+			encode.append("\t\tput").append(helper).append("(meta, ").append(name).append(");\n");
+			decode.append("\t\t").append(name).append(" = get").append(helper).append("(meta);\n");
+			return true;
+		}
+		if ("java.lang.String".equals(typeName)) {
+			encode.append("\t\tputString(meta, ").append(name).append(");\n");
+			decode.append("\t\t").append(name).append(" = getString(meta);\n");
+			return true;
+		}
+		if (isDirectMeta(type)) {
+			encode.append("\t\tputMessageMeta(meta, ").append(name).append(");\n");
+			decode.append("\t\t").append(name).append(" = (").append(typeName).append(") getMessageMeta(meta, ")
+					.append(typeName).append(".class);\n");
+			return true;
+		}
+		if (isList(type)) {
+			List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+			if (arguments.size() != 1 || arguments.get(0).getKind() != TypeKind.DECLARED) {
+				return false;
+			}
+			TypeMirror component = arguments.get(0);
+			String componentName = qualifiedName(component);
+			String helper;
+			String extra = "";
+			int componentBox = boxIndex(componentName);
+			if (componentBox >= 0) {
+				helper = NAMES[componentBox] + "List";
+			} else if ("java.lang.String".equals(componentName)) {
+				helper = "StringList";
+			} else if (isDirectMeta(component)) {
+				helper = "MessageMetaList";
+				extra = ", " + componentName + ".class";
+			} else {
+				return false;
+			}
+			encode.append("\t\tput").append(helper).append("(meta, (java.util.ArrayList) ").append(name)
+					.append(");\n");
+			decode.append("\t\t").append(name).append(" = get").append(helper).append("(meta").append(extra)
+					.append(");\n");
+			return true;
+		}
+		return false;
+	}
+
+	private boolean writeHandler(TypeElement type, StringBuilder registrations) {
+		TypeMirror message = null;
+		for (TypeMirror temp : type.getInterfaces()) {
+			if (qualifiedName(processingEnv.getTypeUtils().erasure(temp)).equals(HANDLER)) {
+				List<? extends TypeMirror> arguments = ((DeclaredType) temp).getTypeArguments();
+				if (arguments.size() == 1 && arguments.get(0).getKind() == TypeKind.DECLARED) {
+					message = arguments.get(0);
+				}
+			}
+		}
+		if (message == null) {
+			return false;
+		}
+		if (type.getNestingKind() != NestingKind.TOP_LEVEL && type.getNestingKind() != NestingKind.MEMBER
+				|| !isPublic(type) || !hasPublicConstructor(type)) {
+			warn(type, "handler is not public or has no public constructor,will not be registerd");
+			return false;
+		}
+		if (!isConstructable(message)) {
+			warn(type, "message " + message + " is not public or has no public constructor,will not be registerd");
+			return false;
+		}
+		String messageName = qualifiedName(message);
+		registrations.append("\t\tfactory.registerMsg(").append(messageName).append(".class, ").append(messageName)
+				.append("::new, new ").append(type.getQualifiedName()).append("());\n");
+		return true;
+	}
+
+	private boolean writeController(TypeElement type, int index, StringBuilder registrations) {
+		if (!isPublic(type)) {
+			warn(type, "controller is not public,will not be registerd");
+			return false;
+		}
+		String controllerName = type.getQualifiedName().toString();
+		String variable = "controller" + index;
+		StringBuilder sb = new StringBuilder();
+		for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+			TypeMirror message = handlerValue(method);
+			if (message == null) {
+				continue;
+			}
+			if (!method.getModifiers().contains(Modifier.PUBLIC) || method.getModifiers().contains(Modifier.STATIC)
+					|| method.getParameters().size() != 1 || !isConstructable(message)) {
+				warn(method, "handler method must be public,non-static with one message param,will not be registerd");
+				continue;
+			}
+			String messageName = qualifiedName(message);
+			sb.append("\t\tfactory.registerMsg(").append(messageName).append(".class, ").append(messageName)
+					.append("::new, (").append(HANDLER).append("<").append(messageName).append(">) msg -> ")
+					.append(variable).append(".").append(method.getSimpleName()).append("(msg));\n");
+		}
+		if (sb.length() == 0) {
+			return false;
+		}
+		registrations.append("\t\t").append(controllerName).append(" ").append(variable).append(" = (")
+				.append(controllerName).append(") confirmInstance.run(").append(controllerName).append(".class);\n");
+		registrations.append(sb);
+		return true;
+	}
+
+	private void writeRegistry(Map<TypeElement, String> codecs, StringBuilder registrations, List<Element> origins) {
+		String registryName = processingEnv.getOptions().getOrDefault(OPTION_REGISTRY, DEFAULT_REGISTRY);
+		int dot = registryName.lastIndexOf('.');
+		StringBuilder sb = new StringBuilder();
+		if (dot > 0) {
+			sb.append("package ").append(registryName.substring(0, dot)).append(";\n\n");
+		}
+		sb.append("// Generated by ").append(getClass().getName()).append(". Do not edit.\n");
+		sb.append("public final class ").append(registryName.substring(dot + 1)).append(" implements ")
+				.append(REGISTRY).append(" {\n");
+		sb.append("\t@Override\n");
+		sb.append("\tpublic void register(").append(FACTORY).append(" factory,\n");
+		sb.append("\t\t\torg.slingerxv.limitart.funcs.Func1<Class<?>, Object> confirmInstance) throws Exception {\n");
+		for (Map.Entry<TypeElement, String> entry : codecs.entrySet()) {
+			sb.append("\t\tfactory.registerCodec(").append(entry.getKey().getQualifiedName()).append(".class, new ")
+					.append(entry.getValue()).append("());\n");
+		}
+		sb.append(registrations);
+		sb.append("\t}\n");
+		sb.append("}\n");
+		write(registryName, sb, origins.toArray(new Element[0]));
+	}
+
+	private boolean write(String className, StringBuilder source, Element... origins) {
+		try {
+			JavaFileObject file = processingEnv.getFiler().createSourceFile(className, origins);
+			try (Writer writer = file.openWriter()) {
+				writer.write(source.toString());
+			}
+			return true;
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Kind.ERROR, "write " + className + " failed:" + e);
+			return false;
+		}
+	}
+
+	private boolean hasAnnotation(Element element, String annotationName) {
+		for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+			if (qualifiedName(annotation.getAnnotationType()).equals(annotationName)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private TypeMirror handlerValue(ExecutableElement method) {
+		for (AnnotationMirror annotation : method.getAnnotationMirrors()) {
+			if (!qualifiedName(annotation.getAnnotationType()).equals(HANDLER_ANNOTATION)) {
+				continue;
+			}
+			for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation
+					.getElementValues().entrySet()) {
+				if (entry.getKey().getSimpleName().contentEquals("value")) {
+					return (TypeMirror) entry.getValue().getValue();
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 读取Compact、Intern这类布尔注解的值
+	 *
+	 * @return 未标注返回null
+	 */
+	private Boolean booleanValue(Element element, String annotationName) {
+		for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+			if (!qualifiedName(annotation.getAnnotationType()).equals(annotationName)) {
+				continue;
+			}
+			for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation
+					.getElementValues().entrySet()) {
+				if (entry.getKey().getSimpleName().contentEquals("value")) {
+					return (Boolean) entry.getValue().getValue();
+				}
+			}
+			return true;
+		}
+		return null;
+	}
+
+	private boolean isConstructable(TypeMirror type) {
+		if (type.getKind() != TypeKind.DECLARED) {
+			return false;
+		}
+		TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+		return isPublic(element) && !element.getModifiers().contains(Modifier.ABSTRACT)
+				&& hasPublicConstructor(element) && isSubtype(element, MESSAGE);
+	}
+
+	private boolean hasPublicConstructor(TypeElement type) {
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+			if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isPublic(TypeElement type) {
+		Element next = type;
+		while (next instanceof TypeElement) {
+			if (!next.getModifiers().contains(Modifier.PUBLIC)) {
+				return false;
+			}
+			if (((TypeElement) next).getNestingKind() == NestingKind.MEMBER
+					&& !next.getModifiers().contains(Modifier.STATIC)) {
+				return false;
+			}
+			next = next.getEnclosingElement();
+		}
+		return true;
+	}
+
+	private boolean isSubtype(TypeElement type, String superName) {
+		TypeElement superType = processingEnv.getElementUtils().getTypeElement(superName);
+		return processingEnv.getTypeUtils().isSubtype(processingEnv.getTypeUtils().erasure(type.asType()),
+				processingEnv.getTypeUtils().erasure(superType.asType()));
+	}
+
+	/**
+	 * 与反射编解码一致，只有直接继承MessageMeta的类型才作为嵌套元数据
+	 */
+	private boolean isDirectMeta(TypeMirror type) {
+		if (type.getKind() != TypeKind.DECLARED) {
+			return false;
+		}
+		TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+		TypeMirror superClass = element.getSuperclass();
+		return superClass.getKind() == TypeKind.DECLARED && qualifiedName(superClass).equals(MESSAGE_META);
+	}
+
+	private boolean isList(TypeMirror type) {
+		TypeMirror erasure = processingEnv.getTypeUtils().erasure(type);
+		TypeMirror list = processingEnv.getTypeUtils()
+				.erasure(processingEnv.getElementUtils().getTypeElement("java.util.List").asType());
+		TypeMirror arrayList = processingEnv.getTypeUtils()
+				.erasure(processingEnv.getElementUtils().getTypeElement("java.util.ArrayList").asType());
+		return processingEnv.getTypeUtils().isAssignable(erasure, list)
+				&& processingEnv.getTypeUtils().isAssignable(arrayList, erasure);
+	}
+
+	private String qualifiedName(TypeMirror type) {
+		if (type.getKind() != TypeKind.DECLARED) {
+			return type.toString();
+		}
+		return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+	}
+
+	private static int boxIndex(String typeName) {
+		for (int i = 0; i < BOXES.length; ++i) {
+			if (BOXES[i].equals(typeName)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int primitiveListIndex(String simpleName) {
+		for (int i = 0; i < PRIMITIVE_LISTS.length; ++i) {
+			if (PRIMITIVE_LISTS[i].equals(simpleName)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int primitiveIndex(TypeKind kind) {
+		switch (kind) {
+		case BYTE:
+			return 0;
+		case SHORT:
+			return 1;
+		case INT:
+			return 2;
+		case LONG:
+			return 3;
+		case FLOAT:
+			return 4;
+		case DOUBLE:
+			return 5;
+		case CHAR:
+			return 6;
+		default:
+			return 7;
+		}
+	}
+
+	private void note(Element element, String message) {
+		processingEnv.getMessager().printMessage(Kind.NOTE, message, element);
+	}
+
+	private void warn(Element element, String message) {
+		processingEnv.getMessager().printMessage(Kind.WARNING, message, element);
+	}
+}
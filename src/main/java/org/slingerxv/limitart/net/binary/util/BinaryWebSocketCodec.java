@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary.util;
+
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageCodec;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+
+/**
+ * WebSocket二进制帧与TCP帧互转：一个WebSocket消息对应一个完整的帧(包括长度头)，编解码与TCP连接相同
+ * <p>
+ * 握手完成后才向后传递channelActive，握手前断开的连接不通知channelInactive。文本帧视为非法，关闭连接
+ * 
+ * @author hank
+ *
+ */
+public class BinaryWebSocketCodec extends MessageToMessageCodec<WebSocketFrame, ByteBuf> {
+	private boolean handshakeComplete;
+
+	@Override
+	public void channelActive(ChannelHandlerContext ctx) throws Exception {
+		// 等待握手完成
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		if (handshakeComplete) {
+			ctx.fireChannelInactive();
+		}
+	}
+
+	@Override
+	public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+		if (evt instanceof WebSocketServerProtocolHandler.HandshakeComplete) {
+			handshakeComplete = true;
+			ctx.fireChannelActive();
+			return;
+		}
+		ctx.fireUserEventTriggered(evt);
+	}
+
+	@Override
+	protected void encode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) throws Exception {
+		out.add(new BinaryWebSocketFrame(msg.retain()));
+	}
+
+	@Override
+	protected void decode(ChannelHandlerContext ctx, WebSocketFrame msg, List<Object> out) throws Exception {
+		if (!(msg instanceof BinaryWebSocketFrame)) {
+			ctx.close();
+			return;
+		}
+		out.add(msg.content().retain());
+	}
+
+	public boolean isHandshakeComplete() {
+		return handshakeComplete;
+	}
+}
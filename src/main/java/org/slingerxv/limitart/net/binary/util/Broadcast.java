@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary.util;
+
+import java.io.IOException;
+
+import org.slingerxv.limitart.funcs.Proc3;
+import org.slingerxv.limitart.funcs.Procs;
+import org.slingerxv.limitart.net.binary.message.Message;
+import org.slingerxv.limitart.net.binary.message.StringDictionary;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+
+/**
+ * 编码一次的广播消息，每个连接发送的是同一个buffer的切片，用完后需要{@link #release()}
+ * 
+ * @author hank
+ * @see SendMessageUtil#broadcast(org.slingerxv.limitart.net.binary.codec.AbstractBinaryEncoder,
+ *      io.netty.buffer.ByteBufAllocator, Message, Proc3)
+ */
+public final class Broadcast {
+	private final Message msg;
+	private final ByteBuf buffer;
+	private final Proc3<Boolean, Throwable, Channel> listener;
+	private int sent;
+
+	Broadcast(Message msg, ByteBuf buffer, Proc3<Boolean, Throwable, Channel> listener) {
+		this.msg = msg;
+		this.buffer = buffer;
+		this.listener = listener;
+	}
+
+	/**
+	 * 发送给一个连接
+	 * 
+	 * @param channel
+	 */
+	public void sendTo(Channel channel) {
+		OutboundQueue queue = channel.attr(SendMessageUtil.OUTBOUND_QUEUE).get();
+		if (queue == null && !channel.isWritable()) {
+			Procs.invoke(listener, false, new IOException(" channel " + channel.remoteAddress() + " is unwritable"),
+					channel);
+			return;
+		}
+		ByteBuf retainedSlice = buffer.retainedSlice();
+		SendMessageUtil.flow(msg.getClass(), retainedSlice);
+		StringDictionary dictionary = channel.attr(SendMessageUtil.STRING_DICTIONARY).get();
+		if (dictionary == null) {
+			SendMessageUtil.write(channel, queue, msg, retainedSlice, 0, listener);
+		} else {
+			// 与连接上使用字典的消息保持调用顺序
+			SendMessageUtil.writeInOrder(channel, dictionary,
+					() -> SendMessageUtil.write(channel, queue, msg, retainedSlice, 0, listener));
+		}
+		++sent;
+	}
+
+	/**
+	 * 已发送的连接数
+	 * 
+	 * @return
+	 */
+	public int getSent() {
+		return sent;
+	}
+
+	/**
+	 * 释放编码的buffer(已发出的切片不受影响)
+	 */
+	public void release() {
+		buffer.release();
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary.util;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 进程内同时进行中的连接尝试(从发起连接到验证通过或失败)数量限制，超出的按顺序排队，有名额释放时再发起，避免服务器重启后所有客户端同时握手
+ * 
+ * @author hank
+ *
+ */
+public final class ConnectGate {
+	private static volatile int maxConcurrent = 64;
+	private static final AtomicInteger inFlight = new AtomicInteger();
+	private static final ConcurrentLinkedQueue<Runnable> waiters = new ConcurrentLinkedQueue<>();
+
+	private ConnectGate() {
+	}
+
+	/**
+	 * 取得名额后执行连接，没有名额时排队(不阻塞)，执行的连接结束后必须调用{@link #release()}
+	 * 
+	 * @param connect
+	 */
+	public static void acquire(Runnable connect) {
+		if (tryAcquire()) {
+			connect.run();
+			return;
+		}
+		waiters.offer(connect);
+		// 入队期间可能有名额释放
+		drain();
+	}
+
+	/**
+	 * 连接尝试结束，释放名额并唤醒排队的连接
+	 */
+	public static void release() {
+		inFlight.decrementAndGet();
+		drain();
+	}
+
+	private static void drain() {
+		while (!waiters.isEmpty() && tryAcquire()) {
+			Runnable connect = waiters.poll();
+			if (connect == null) {
+				inFlight.decrementAndGet();
+				continue;
+			}
+			connect.run();
+		}
+	}
+
+	private static boolean tryAcquire() {
+		for (;;) {
+			int current = inFlight.get();
+			if (current >= maxConcurrent) {
+				return false;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * 同时进行中的连接尝试上限
+	 * 
+	 * @param maxConcurrent
+	 */
+	public static void setMaxConcurrent(int maxConcurrent) {
+		if (maxConcurrent <= 0) {
+			throw new IllegalArgumentException("maxConcurrent must greater than 0");
+		}
+		ConnectGate.maxConcurrent = maxConcurrent;
+		drain();
+	}
+
+	public static int getMaxConcurrent() {
+		return maxConcurrent;
+	}
+
+	/**
+	 * 进行中的连接尝试数量
+	 * 
+	 * @return
+	 */
+	public static int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * 排队等待的连接数量
+	 * 
+	 * @return
+	 */
+	public static int getWaiting() {
+		return waiters.size();
+	}
+}
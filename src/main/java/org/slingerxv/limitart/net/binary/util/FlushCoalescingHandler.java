@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary.util;
+
+import java.util.concurrent.TimeUnit;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * 合并flush
+ * <p>
+ * 读事件处理期间(handler在IO线程执行时)的flush只记录不执行，读完成后统一flush一次；其他线程发送的消息在EventLoop本轮任务执行完后(或等待一个时间窗口)统一flush。
+ * 累计的flush请求达到批量大小时立即flush。每个连接一个实例
+ * 
+ * @author hank
+ *
+ */
+public class FlushCoalescingHandler extends ChannelDuplexHandler {
+	private final int batchSize;
+	private final long windowMills;
+	private final FlushCounter counter;
+	private ChannelHandlerContext ctx;
+	private int pendingFlushes;
+	private boolean readInProgress;
+	private boolean scheduled;
+	private final Runnable flushTask = () -> {
+		scheduled = false;
+		flushIfNeeded();
+	};
+
+	/**
+	 * 构造
+	 * 
+	 * @param batchSize
+	 *            最多合并多少次flush
+	 * @param windowMills
+	 *            非读事件期间的flush等待多久，0为EventLoop本轮任务执行完后
+	 * @param counter
+	 *            统计，可以多个连接共享
+	 */
+	public FlushCoalescingHandler(int batchSize, long windowMills, FlushCounter counter) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("batchSize:" + batchSize);
+		}
+		this.batchSize = batchSize;
+		this.windowMills = Math.max(0, windowMills);
+		this.counter = counter;
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+		this.ctx = ctx;
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+		flushIfNeeded();
+	}
+
+	@Override
+	public void flush(ChannelHandlerContext ctx) throws Exception {
+		if (counter != null) {
+			counter.request();
+		}
+		if (++pendingFlushes >= batchSize) {
+			flushNow();
+		} else if (!readInProgress) {
+			scheduleFlush();
+		}
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		readInProgress = true;
+		ctx.fireChannelRead(msg);
+	}
+
+	@Override
+	public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+		readInProgress = false;
+		if (pendingFlushes > 0) {
+			if (windowMills > 0) {
+				scheduleFlush();
+			} else {
+				flushNow();
+			}
+		}
+		ctx.fireChannelReadComplete();
+	}
+
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+		// 不可写时尽快把缓冲的数据写出去
+		if (!ctx.channel().isWritable()) {
+			flushIfNeeded();
+		}
+		ctx.fireChannelWritabilityChanged();
+	}
+
+	@Override
+	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+		flushIfNeeded();
+		ctx.fireExceptionCaught(cause);
+	}
+
+	@Override
+	public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+		flushIfNeeded();
+		ctx.disconnect(promise);
+	}
+
+	@Override
+	public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+		flushIfNeeded();
+		ctx.close(promise);
+	}
+
+	private void scheduleFlush() {
+		if (scheduled) {
+			return;
+		}
+		scheduled = true;
+		if (windowMills > 0) {
+			ctx.executor().schedule(flushTask, windowMills, TimeUnit.MILLISECONDS);
+		} else {
+			ctx.executor().execute(flushTask);
+		}
+	}
+
+	private void flushIfNeeded() {
+		if (pendingFlushes > 0) {
+			flushNow();
+		}
+	}
+
+	private void flushNow() {
+		pendingFlushes = 0;
+		if (counter != null) {
+			counter.flush();
+		}
+		ctx.flush();
+	}
+}
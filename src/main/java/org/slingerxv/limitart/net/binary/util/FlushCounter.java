@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 合并flush的统计
+ * 
+ * @author hank
+ *
+ */
+public class FlushCounter {
+	private final LongAdder requested = new LongAdder();
+	private final LongAdder flushed = new LongAdder();
+
+	void request() {
+		requested.increment();
+	}
+
+	void flush() {
+		flushed.increment();
+	}
+
+	/**
+	 * 请求flush的次数
+	 * 
+	 * @return
+	 */
+	public long getRequested() {
+		return requested.sum();
+	}
+
+	/**
+	 * 实际flush的次数
+	 * 
+	 * @return
+	 */
+	public long getFlushed() {
+		return flushed.sum();
+	}
+
+	/**
+	 * 合并掉的flush次数
+	 * 
+	 * @return
+	 */
+	public long getSaved() {
+		return getRequested() - getFlushed();
+	}
+
+	@Override
+	public String toString() {
+		return "requested:" + getRequested() + ",flushed:" + getFlushed() + ",saved:" + getSaved();
+	}
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary.util;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slingerxv.limitart.funcs.Proc3;
+import org.slingerxv.limitart.funcs.Procs;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.WriteBufferWaterMark;
+
+/**
+ * 连接的有界发送队列
+ * <p>
+ * 连接可写时直接写出，不可写(Netty缓冲超过高水位)时进入队列，回到低水位以下后按高优先级、普通的顺序继续写出。
+ * 开启了连接字典时接收端按到达顺序给新字符串编号，所有消息都按入队顺序写出，忽略高优先级。
+ * 队列字节数超过上限时按溢出策略处理，登记了连接字典新字符串的消息不会被丢弃，无法降到上限以下时断开连接。所有队列操作都在连接的EventLoop中执行，每个连接一个实例
+ * 
+ * @author hank
+ * @see org.slingerxv.limitart.net.binary.message.annotation.Outbound
+ */
+public class OutboundQueue extends ChannelInboundHandlerAdapter {
+	private static Logger log = LoggerFactory.getLogger(OutboundQueue.class);
+	/**
+	 * 高优先级
+	 */
+	public static final int URGENT = 1;
+	/**
+	 * 同一消息id只保留最新的一条
+	 */
+	public static final int LATEST_ONLY = 2;
+	/**
+	 * 不能丢弃(登记了连接字典的新字符串，丢弃后两端字典会不一致)
+	 */
+	public static final int PINNED = 4;
+
+	/**
+	 * 溢出策略
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * 丢弃最早入队的消息
+		 */
+		DROP_OLDEST,
+		/**
+		 * 先丢弃普通消息(从最早的开始)，没有普通消息时再丢弃高优先级消息
+		 */
+		DROP_LOWEST_PRIORITY,
+		/**
+		 * 断开连接
+		 */
+		DISCONNECT
+	}
+
+	private final int maxQueuedBytes;
+	private final OverflowPolicy policy;
+	private final int lowWaterMark;
+	private final int highWaterMark;
+	private final ArrayDeque<Entry> urgent = new ArrayDeque<>();
+	private final ArrayDeque<Entry> normal = new ArrayDeque<>();
+	private Channel channel;
+	private long sequence;
+	private volatile int queuedBytes;
+	private volatile int queuedCount;
+	private volatile long dropped;
+
+	/**
+	 * 构造
+	 * 
+	 * @param maxQueuedBytes
+	 *            队列最多缓存的字节数
+	 * @param policy
+	 *            溢出策略
+	 * @param lowWaterMark
+	 *            连接恢复可写的低水位，与高水位都大于0时生效
+	 * @param highWaterMark
+	 *            连接变为不可写的高水位
+	 */
+	public OutboundQueue(int maxQueuedBytes, OverflowPolicy policy, int lowWaterMark, int highWaterMark) {
+		if (maxQueuedBytes <= 0) {
+			throw new IllegalArgumentException("maxQueuedBytes:" + maxQueuedBytes);
+		}
+		this.maxQueuedBytes = maxQueuedBytes;
+		this.policy = policy == null ? OverflowPolicy.DROP_LOWEST_PRIORITY : policy;
+		this.lowWaterMark = lowWaterMark;
+		this.highWaterMark = highWaterMark;
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+		this.channel = ctx.channel();
+		if (lowWaterMark > 0 && highWaterMark >= lowWaterMark) {
+			channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(lowWaterMark, highWaterMark));
+		}
+		channel.attr(SendMessageUtil.OUTBOUND_QUEUE).set(this);
+	}
+
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+		if (ctx.channel().isWritable()) {
+			drain();
+		}
+		ctx.fireChannelWritabilityChanged();
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		clear(new ClosedChannelException());
+		ctx.fireChannelInactive();
+	}
+
+	/**
+	 * 发送编码好的消息
+	 * 
+	 * @param messageId
+	 * @param flags
+	 *            {@link #URGENT}、{@link #LATEST_ONLY}、{@link #PINNED}
+	 * @param frame
+	 *            由队列负责释放
+	 * @param listener
+	 */
+	public void offer(short messageId, int flags, ByteBuf frame, Proc3<Boolean, Throwable, Channel> listener) {
+		if (channel.eventLoop().inEventLoop()) {
+			offer0(messageId, flags, frame, listener);
+		} else {
+			channel.eventLoop().execute(() -> offer0(messageId, flags, frame, listener));
+		}
+	}
+
+	private void offer0(short messageId, int flags, ByteBuf frame, Proc3<Boolean, Throwable, Channel> listener) {
+		if (!channel.isActive()) {
+			frame.release();
+			Procs.invoke(listener, false, new ClosedChannelException(), channel);
+			return;
+		}
+		if (urgent.isEmpty() && normal.isEmpty() && channel.isWritable()) {
+			channel.writeAndFlush(frame).addListener((ChannelFutureListener) arg0 -> {
+				Procs.invoke(listener, arg0.isSuccess(), arg0.cause(), arg0.channel());
+			});
+			return;
+		}
+		// 插队会打乱字典的登记顺序
+		boolean isUrgent = (flags & URGENT) != 0 && channel.attr(SendMessageUtil.STRING_DICTIONARY).get() == null;
+		ArrayDeque<Entry> lane = isUrgent ? urgent : normal;
+		if ((flags & LATEST_ONLY) != 0) {
+			Iterator<Entry> iterator = lane.iterator();
+			while (iterator.hasNext()) {
+				Entry old = iterator.next();
+				if (old.latestOnly && !old.pinned && old.messageId == messageId) {
+					iterator.remove();
+					discard(old, new IOException("replaced by newer message:" + messageId));
+					break;
+				}
+			}
+		}
+		Entry entry = new Entry(messageId, flags, frame, listener, sequence++);
+		lane.add(entry);
+		queuedBytes += entry.size;
+		++queuedCount;
+		if (queuedBytes > maxQueuedBytes) {
+			overflow();
+		}
+		if (channel.isWritable()) {
+			drain();
+		}
+	}
+
+	private void overflow() {
+		if (policy != OverflowPolicy.DISCONNECT) {
+			while (queuedBytes > maxQueuedBytes) {
+				Entry urgentHead = droppable(urgent);
+				Entry normalHead = droppable(normal);
+				Entry entry;
+				if (normalHead == null) {
+					entry = urgentHead;
+				} else if (urgentHead == null || policy == OverflowPolicy.DROP_LOWEST_PRIORITY) {
+					entry = normalHead;
+				} else {
+					entry = urgentHead.sequence < normalHead.sequence ? urgentHead : normalHead;
+				}
+				if (entry == null) {
+					break;
+				}
+				(entry == urgentHead ? urgent : normal).remove(entry);
+				discard(entry, new IOException("outbound queue overflow"));
+			}
+			if (queuedBytes <= maxQueuedBytes) {
+				return;
+			}
+		}
+		log.error("channel " + channel + " outbound queue overflow(" + queuedBytes + " bytes),close");
+		clear(new IOException("outbound queue overflow"));
+		channel.close();
+	}
+
+	/**
+	 * 队列中最早的可丢弃消息
+	 */
+	private static Entry droppable(ArrayDeque<Entry> lane) {
+		for (Entry entry : lane) {
+			if (!entry.pinned) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	private void drain() {
+		boolean written = false;
+		while (channel.isWritable()) {
+			Entry entry = urgent.poll();
+			if (entry == null) {
+				entry = normal.poll();
+			}
+			if (entry == null) {
+				break;
+			}
+			dequeue(entry);
+			Proc3<Boolean, Throwable, Channel> listener = entry.listener;
+			channel.write(entry.frame).addListener((ChannelFutureListener) arg0 -> {
+				Procs.invoke(listener, arg0.isSuccess(), arg0.cause(), arg0.channel());
+			});
+			written = true;
+		}
+		if (written) {
+			channel.flush();
+		}
+	}
+
+	private void clear(Throwable cause) {
+		Entry entry;
+		while ((entry = urgent.poll()) != null) {
+			discard(entry, cause);
+		}
+		while ((entry = normal.poll()) != null) {
+			discard(entry, cause);
+		}
+	}
+
+	private void discard(Entry entry, Throwable cause) {
+		dequeue(entry);
+		++dropped;
+		entry.frame.release();
+		Procs.invoke(entry.listener, false, cause, channel);
+	}
+
+	private void dequeue(Entry entry) {
+		queuedBytes -= entry.size;
+		--queuedCount;
+	}
+
+	/**
+	 * 队列中的字节数
+	 * 
+	 * @return
+	 */
+	public int getQueuedBytes() {
+		return queuedBytes;
+	}
+
+	/**
+	 * 队列中的消息数
+	 * 
+	 * @return
+	 */
+	public int getQueuedCount() {
+		return queuedCount;
+	}
+
+	/**
+	 * 被丢弃(溢出、覆盖、断线)的消息数
+	 * 
+	 * @return
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+
+	private static class Entry {
+		private final short messageId;
+		private final boolean latestOnly;
+		private final boolean pinned;
+		private final ByteBuf frame;
+		private final Proc3<Boolean, Throwable, Channel> listener;
+		private final long sequence;
+		private final int size;
+
+		private Entry(short messageId, int flags, ByteBuf frame, Proc3<Boolean, Throwable, Channel> listener,
+				long sequence) {
+			this.messageId = messageId;
+			this.latestOnly = (flags & LATEST_ONLY) != 0;
+			this.pinned = (flags & PINNED) != 0;
+			this.frame = frame;
+			this.listener = listener;
+			this.sequence = sequence;
+			this.size = frame.readableBytes();
+		}
+	}
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 令牌桶限流配置，所有连接共享，每个连接只保存每个桶的一个long状态(GCRA理论到达时间)。<br>
+ * 连接级规则限制所有消息，指定消息id的规则替代连接级规则
+ * 
+ * @author hank
+ *
+ */
+public class RateLimiter {
+	private static final int PAGE_BITS = 8;
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+	private final Rule[] rules;
+	// 状态的时间起点，保证状态初始值0不晚于任何时刻
+	private final long origin = System.nanoTime();
+	// 消息id->规则下标+1，0为使用连接级规则
+	private final short[][] indexes = new short[PAGE_SIZE][];
+
+	private RateLimiter(RateLimiterBuilder builder) {
+		List<Rule> list = new ArrayList<>();
+		list.add(builder.channelRule);
+		for (int i = 0; i < builder.messageIds.size(); ++i) {
+			short messageId = builder.messageIds.get(i);
+			int pageIndex = (messageId >> PAGE_BITS) & (PAGE_SIZE - 1);
+			if (indexes[pageIndex] == null) {
+				indexes[pageIndex] = new short[PAGE_SIZE];
+			}
+			indexes[pageIndex][messageId & (PAGE_SIZE - 1)] = (short) (list.size() + 1);
+			list.add(builder.messageRules.get(i));
+		}
+		this.rules = list.toArray(new Rule[0]);
+	}
+
+	/**
+	 * 每个连接需要保存的状态数量
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return rules.length;
+	}
+
+	/**
+	 * 消息使用的规则下标
+	 * 
+	 * @param messageId
+	 * @return 没有限制时返回-1
+	 */
+	public int ruleIndex(short messageId) {
+		short[] page = indexes[(messageId >> PAGE_BITS) & (PAGE_SIZE - 1)];
+		if (page != null) {
+			int index = page[messageId & (PAGE_SIZE - 1)];
+			if (index > 0) {
+				return index - 1;
+			}
+		}
+		return rules[0] == null ? -1 : 0;
+	}
+
+	public Rule getRule(int index) {
+		return rules[index];
+	}
+
+	/**
+	 * 获取一个令牌
+	 * 
+	 * @param states
+	 *            连接的限流状态
+	 * @param index
+	 *            规则下标
+	 * @param now
+	 *            {@link System#nanoTime()}
+	 * @return 距离有令牌的纳秒数，小于等于0为通过。DELAY规则超限时仍然消耗令牌
+	 */
+	public long acquire(long[] states, int index, long now) {
+		Rule rule = rules[index];
+		long time = now - origin;
+		long tat = Math.max(states[index], time);
+		long wait = tat - rule.tolerance - time;
+		if (wait <= 0 || rule.action == OverflowAction.DELAY) {
+			states[index] = tat + rule.interval;
+		}
+		if (wait > 0) {
+			rule.hits.increment();
+		}
+		return wait;
+	}
+
+	/**
+	 * 超出限制时的处理
+	 * 
+	 * @author hank
+	 *
+	 */
+	public enum OverflowAction {
+		/**
+		 * 丢弃消息
+		 */
+		DROP,
+		/**
+		 * 处理消息，暂停读取直到恢复令牌
+		 */
+		DELAY,
+		/**
+		 * 断开连接
+		 */
+		DISCONNECT
+	}
+
+	/**
+	 * 限流规则
+	 * 
+	 * @author hank
+	 *
+	 */
+	public static class Rule {
+		private final double rate;
+		private final int burst;
+		private final OverflowAction action;
+		private final long interval;
+		private final long tolerance;
+		private final LongAdder hits = new LongAdder();
+
+		private Rule(double rate, int burst, OverflowAction action) {
+			if (rate <= 0) {
+				throw new IllegalArgumentException("rate must greater than 0");
+			}
+			if (burst <= 0) {
+				throw new IllegalArgumentException("burst must greater than 0");
+			}
+			this.rate = rate;
+			this.burst = burst;
+			this.action = action == null ? OverflowAction.DROP : action;
+			this.interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+			this.tolerance = interval * (burst - 1);
+		}
+
+		/**
+		 * 每秒令牌数
+		 * 
+		 * @return
+		 */
+		public double getRate() {
+			return rate;
+		}
+
+		/**
+		 * 桶容量(允许的突发数量)
+		 * 
+		 * @return
+		 */
+		public int getBurst() {
+			return burst;
+		}
+
+		public OverflowAction getAction() {
+			return action;
+		}
+
+		/**
+		 * 触发限制的次数
+		 * 
+		 * @return
+		 */
+		public long getHits() {
+			return hits.sum();
+		}
+	}
+
+	public static class RateLimiterBuilder {
+		private Rule channelRule;
+		private List<Short> messageIds = new ArrayList<>();
+		private List<Rule> messageRules = new ArrayList<>();
+
+		public RateLimiter build() {
+			return new RateLimiter(this);
+		}
+
+		/**
+		 * 连接级规则，限制所有没有单独规则的消息
+		 * 
+		 * @param rate
+		 *            每秒令牌数
+		 * @param burst
+		 *            桶容量
+		 * @param action
+		 * @return
+		 */
+		public RateLimiterBuilder channel(double rate, int burst, OverflowAction action) {
+			this.channelRule = new Rule(rate, burst, action);
+			return this;
+		}
+
+		/**
+		 * 指定消息的规则，替代连接级规则
+		 * 
+		 * @param messageId
+		 * @param rate
+		 *            每秒令牌数
+		 * @param burst
+		 *            桶容量
+		 * @param action
+		 * @return
+		 */
+		public RateLimiterBuilder message(short messageId, double rate, int burst, OverflowAction action) {
+			if (messageIds.contains(messageId)) {
+				throw new IllegalArgumentException("message id duplicated:" + messageId);
+			}
+			messageIds.add(messageId);
+			messageRules.add(new Rule(rate, burst, action));
+			return this;
+		}
+	}
+}
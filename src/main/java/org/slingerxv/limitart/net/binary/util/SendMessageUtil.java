@@ -16,6 +16,8 @@
 package org.slingerxv.limitart.net.binary.util;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
@@ -26,21 +28,42 @@ import org.slingerxv.limitart.funcs.Proc3;
 import org.slingerxv.limitart.funcs.Procs;
 import org.slingerxv.limitart.net.binary.codec.AbstractBinaryEncoder;
 import org.slingerxv.limitart.net.binary.message.Message;
+import org.slingerxv.limitart.net.binary.message.StringDictionary;
+import org.slingerxv.limitart.net.binary.message.annotation.Outbound;
 import org.slingerxv.limitart.net.binary.message.exception.MessageCodecException;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.handler.codec.string.LineSeparator;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
 
 public final class SendMessageUtil {
+	/**
+	 * 连接的字符串字典，为空时不使用字典
+	 */
+	public static final AttributeKey<StringDictionary> STRING_DICTIONARY = AttributeKey
+			.newInstance("STRING_DICTIONARY");
+	/**
+	 * 连接的发送队列，为空时不可写的连接直接丢弃消息
+	 */
+	public static final AttributeKey<OutboundQueue> OUTBOUND_QUEUE = AttributeKey.newInstance("OUTBOUND_QUEUE");
+	// 使用字典的连接上等待EventLoop写出的消息
+	private static final AttributeKey<ArrayDeque<Runnable>> PENDING_WRITES = AttributeKey
+			.newInstance("PENDING_WRITES");
 	public static boolean IS_FLOW = true;
 	private static FlowComparator COMPARATOR = new FlowComparator();
 	private static ConcurrentHashMap<Class<? extends Message>, Integer> FLOW_MIN = new ConcurrentHashMap<>();
 	private static ConcurrentHashMap<Class<? extends Message>, Integer> FLOW_MAX = new ConcurrentHashMap<>();
 	private static ConcurrentHashMap<Class<? extends Message>, Integer> FLOW_COUNT = new ConcurrentHashMap<>();
 	private static ConcurrentHashMap<Class<? extends Message>, Long> FLOW_SIZE = new ConcurrentHashMap<>();
+	private static final int DEFAULT_SIZE_ESTIMATE = 64;
+	private static final int DEFAULT_FRAME_HEADER_SIZE = 8;
+	private static ConcurrentHashMap<Class<? extends Message>, Integer> SIZE_ESTIMATE = new ConcurrentHashMap<>();
+	private static ConcurrentHashMap<Class<? extends Message>, Integer> OUTBOUND_FLAGS = new ConcurrentHashMap<>();
 
 	private SendMessageUtil() {
 	}
@@ -51,25 +74,73 @@ public final class SendMessageUtil {
 			Procs.invoke(listener, false, new NullPointerException("channel"), null);
 			return;
 		}
-		if (!channel.isWritable()) {
+		OutboundQueue queue = channel.attr(OUTBOUND_QUEUE).get();
+		if (queue == null && !channel.isWritable()) {
 			Procs.invoke(listener, false, new IOException(" channel " + channel.remoteAddress() + " is unwritable"),
 					channel);
 			return;
 		}
-		ByteBuf buffer = Unpooled.buffer();
-		encoder.beforeWriteBody(buffer, msg.getMessageId());
-		msg.buffer(buffer);
-		try {
-			msg.encode();
-		} catch (Exception e) {
-			throw new MessageCodecException(e);
+		StringDictionary dictionary = channel.attr(STRING_DICTIONARY).get();
+		if (dictionary == null) {
+			ByteBuf buffer = encode(encoder, channel.alloc(), msg, null);
+			flow(msg.getClass(), buffer);
+			write(channel, queue, msg, buffer, 0, listener);
+			return;
+		}
+		// 字典的登记顺序必须与写出顺序一致，编码和写出排队在同一把锁内完成
+		synchronized (dictionary) {
+			dictionary.mark();
+			int dictionarySize = dictionary.getWriteSize();
+			ByteBuf buffer;
+			try {
+				buffer = encode(encoder, channel.alloc(), msg, dictionary);
+			} catch (MessageCodecException e) {
+				dictionary.rollback();
+				throw e;
+			}
+			flow(msg.getClass(), buffer);
+			// 登记了新字符串的消息不能被发送队列丢弃
+			int pinned = dictionary.getWriteSize() > dictionarySize ? OutboundQueue.PINNED : 0;
+			writeInOrder(channel, dictionary, () -> write(channel, queue, msg, buffer, pinned, listener));
+		}
+	}
+
+	/**
+	 * 写出到使用字典的连接：在字典锁内按调用顺序排队，EventLoop线程内直接写出，其他线程由EventLoop统一写出
+	 * 
+	 * @param channel
+	 * @param dictionary
+	 *            连接的字典
+	 * @param write
+	 */
+	static void writeInOrder(Channel channel, StringDictionary dictionary, Runnable write) {
+		synchronized (dictionary) {
+			Attribute<ArrayDeque<Runnable>> attr = channel.attr(PENDING_WRITES);
+			ArrayDeque<Runnable> pending = attr.get();
+			if (pending == null) {
+				pending = new ArrayDeque<>();
+				attr.set(pending);
+			}
+			boolean idle = pending.isEmpty();
+			pending.add(write);
+			if (channel.eventLoop().inEventLoop()) {
+				writePending(pending);
+			} else if (idle) {
+				ArrayDeque<Runnable> writes = pending;
+				channel.eventLoop().execute(() -> {
+					synchronized (dictionary) {
+						writePending(writes);
+					}
+				});
+			}
+		}
+	}
+
+	private static void writePending(ArrayDeque<Runnable> pending) {
+		Runnable write;
+		while ((write = pending.poll()) != null) {
+			write.run();
 		}
-		msg.buffer(null);
-		encoder.afterWriteBody(buffer);
-		flow(msg.getClass(), buffer);
-		channel.writeAndFlush(buffer).addListener((ChannelFutureListener) arg0 -> {
-			Procs.invoke(listener, arg0.isSuccess(), arg0.cause(), arg0.channel());
-		});
 	}
 
 	public static void sendMessage(AbstractBinaryEncoder encoder, List<Channel> channels, Message msg,
@@ -78,31 +149,181 @@ public final class SendMessageUtil {
 			Procs.invoke(listener, false, new IOException(" channel list  is null"), null);
 			return;
 		}
-		ByteBuf buffer = Unpooled.buffer();
+		Broadcast broadcast = broadcast(encoder, channels.get(0).alloc(), msg, listener);
+		try {
+			for (int i = 0; i < channels.size(); ++i) {
+				broadcast.sendTo(channels.get(i));
+			}
+		} finally {
+			broadcast.release();
+		}
+	}
+
+	public static void sendMessage(AbstractBinaryEncoder encoder, Iterable<Channel> channels, Message msg,
+			Proc3<Boolean, Throwable, Channel> listener) throws MessageCodecException {
+		Iterator<Channel> iterator = channels == null ? null : channels.iterator();
+		if (iterator == null || !iterator.hasNext()) {
+			Procs.invoke(listener, false, new IOException(" channel list  is null"), null);
+			return;
+		}
+		Channel first = iterator.next();
+		Broadcast broadcast = broadcast(encoder, first.alloc(), msg, listener);
+		try {
+			broadcast.sendTo(first);
+			while (iterator.hasNext()) {
+				broadcast.sendTo(iterator.next());
+			}
+		} finally {
+			broadcast.release();
+		}
+	}
+
+	/**
+	 * 编码一次用于发给多个连接(不使用连接字典)，发送完后需要release
+	 * 
+	 * @param encoder
+	 * @param allocator
+	 * @param msg
+	 * @param listener
+	 *            每个连接的发送结果
+	 * @return
+	 * @throws MessageCodecException
+	 */
+	public static Broadcast broadcast(AbstractBinaryEncoder encoder, ByteBufAllocator allocator, Message msg,
+			Proc3<Boolean, Throwable, Channel> listener) throws MessageCodecException {
+		return new Broadcast(msg, encode(encoder, allocator, msg, null), listener);
+	}
+
+	/**
+	 * 不解码直接转发收到的消息体：只按编码器重新生成消息头，消息体以切片方式引用原buffer，不做拷贝
+	 * <p>
+	 * 编码器的afterWriteBody如果会改写消息体(如加密)，会同时改写原buffer，这种情况不能使用转发
+	 * <p>
+	 * 使用字符串字典时消息体中的@Intern字段只是所在连接的字典引用，换一条连接就无法还原，所以收发两端的连接都不能开启字典，
+	 * 目标连接开启了字典时直接以失败通知listener
+	 * 
+	 * @param encoder
+	 * @param channel
+	 *            目标连接
+	 * @param messageId
+	 *            写出的消息id，可以与收到的不同
+	 * @param body
+	 *            消息id之后的消息体，方法内部会retain，调用方仍按原来的方式释放
+	 * @param listener
+	 */
+	public static void forward(AbstractBinaryEncoder encoder, Channel channel, short messageId, ByteBuf body,
+			Proc3<Boolean, Throwable, Channel> listener) {
+		if (channel == null) {
+			Procs.invoke(listener, false, new NullPointerException("channel"), null);
+			return;
+		}
+		OutboundQueue queue = channel.attr(OUTBOUND_QUEUE).get();
+		if (queue == null && !channel.isWritable()) {
+			Procs.invoke(listener, false, new IOException(" channel " + channel.remoteAddress() + " is unwritable"),
+					channel);
+			return;
+		}
+		if (channel.attr(STRING_DICTIONARY).get() != null) {
+			Procs.invoke(listener, false, new IllegalStateException(
+					" channel " + channel.remoteAddress() + " uses string dictionary,can not forward"), channel);
+			return;
+		}
+		ByteBuf header = channel.alloc().ioBuffer(DEFAULT_FRAME_HEADER_SIZE);
+		encoder.beforeWriteBody(header, messageId);
+		CompositeByteBuf frame = channel.alloc().compositeBuffer(2);
+		frame.addComponents(true, header, body.retainedSlice());
+		encoder.afterWriteBody(frame);
+		if (queue != null) {
+			queue.offer(messageId, 0, frame, listener);
+			return;
+		}
+		channel.writeAndFlush(frame).addListener((ChannelFutureListener) arg0 -> {
+			Procs.invoke(listener, arg0.isSuccess(), arg0.cause(), arg0.channel());
+		});
+	}
+
+	static void write(Channel channel, OutboundQueue queue, Message msg, ByteBuf buffer, int flags,
+			Proc3<Boolean, Throwable, Channel> listener) {
+		if (queue != null) {
+			queue.offer(msg.getMessageId(), outboundFlags(msg.getClass()) | flags, buffer, listener);
+			return;
+		}
+		channel.writeAndFlush(buffer).addListener((ChannelFutureListener) arg0 -> {
+			Procs.invoke(listener, arg0.isSuccess(), arg0.cause(), arg0.channel());
+		});
+	}
+
+	/**
+	 * 消息在发送队列中的处理方式
+	 * 
+	 * @see Outbound
+	 */
+	private static int outboundFlags(Class<? extends Message> clazz) {
+		Integer flags = OUTBOUND_FLAGS.get(clazz);
+		if (flags == null) {
+			Outbound outbound = clazz.getAnnotation(Outbound.class);
+			int value = 0;
+			if (outbound != null) {
+				if (outbound.urgent()) {
+					value |= OutboundQueue.URGENT;
+				}
+				if (outbound.latestOnly()) {
+					value |= OutboundQueue.LATEST_ONLY;
+				}
+			}
+			flags = value;
+			OUTBOUND_FLAGS.put(clazz, flags);
+		}
+		return flags;
+	}
+
+	/**
+	 * 从连接的分配器申请(优先直接内存)按预估大小分配的buffer并编码
+	 */
+	private static ByteBuf encode(AbstractBinaryEncoder encoder, ByteBufAllocator allocator, Message msg,
+			StringDictionary dictionary) throws MessageCodecException {
+		ByteBuf buffer = allocator.ioBuffer(estimateSize(msg.getClass()));
 		encoder.beforeWriteBody(buffer, msg.getMessageId());
 		msg.buffer(buffer);
+		msg.dictionary(dictionary);
 		try {
 			msg.encode();
 		} catch (Exception e) {
+			buffer.release();
 			throw new MessageCodecException(e);
+		} finally {
+			msg.buffer(null);
+			msg.dictionary(null);
 		}
-		msg.buffer(null);
 		encoder.afterWriteBody(buffer);
-		for (int i = 0; i < channels.size(); ++i) {
-			Channel channel = channels.get(i);
-			if (!channel.isWritable()) {
-				Procs.invoke(listener, false, new IOException(" channel " + channel.remoteAddress() + " is unwritable"),
-						channel);
-				continue;
-			}
-			ByteBuf retainedSlice = buffer.retainedSlice();
-			flow(msg.getClass(), retainedSlice);
-			channel.writeAndFlush(retainedSlice).addListener((ChannelFutureListener) arg0 -> {
-				Procs.invoke(listener, arg0.isSuccess(), arg0.cause(), arg0.channel());
-			});
-			if (i == channels.size() - 1) {
-				buffer.release();
-			}
+		updateSize(msg.getClass(), buffer.readableBytes());
+		return buffer;
+	}
+
+	/**
+	 * 消息编码后的预估大小
+	 * 
+	 * @param clazz
+	 * @return
+	 */
+	public static int estimateSize(Class<? extends Message> clazz) {
+		Integer size = SIZE_ESTIMATE.get(clazz);
+		return size == null ? DEFAULT_SIZE_ESTIMATE : size;
+	}
+
+	/**
+	 * 按衰减的最大值记录编码大小：超过预估立即取新值，否则每次向实际大小回落1/16，偶发的大消息不会让预估一直偏大
+	 */
+	private static void updateSize(Class<? extends Message> clazz, int size) {
+		Integer old = SIZE_ESTIMATE.get(clazz);
+		int estimate;
+		if (old == null || size >= old) {
+			estimate = size;
+		} else {
+			estimate = old - ((old - size) >> 4);
+		}
+		if (old == null || estimate != old) {
+			SIZE_ESTIMATE.put(clazz, estimate);
 		}
 	}
 
@@ -112,7 +333,7 @@ public final class SendMessageUtil {
 	 * @param class1
 	 * @param retainedSlice
 	 */
-	private static void flow(Class<? extends Message> clazz, ByteBuf buf) {
+	static void flow(Class<? extends Message> clazz, ByteBuf buf) {
 		if (!IS_FLOW) {
 			return;
 		}
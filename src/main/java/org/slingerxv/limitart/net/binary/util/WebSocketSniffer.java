@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.binary.util;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slingerxv.limitart.funcs.Func;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * 同一端口区分WebSocket和原生TCP连接：首包以HTTP GET开头的在本handler后插入WebSocket的handler，否则按原生连接处理
+ * <p>
+ * 原生客户端连接后等待服务器先发消息，所以超时没收到数据也按原生连接处理，判断完成前不向后传递channelActive(原生连接的验证消息延迟该时间)。
+ * 判断完成后移除自己
+ * 
+ * @author hank
+ *
+ */
+public class WebSocketSniffer extends ChannelInboundHandlerAdapter {
+	private static final byte[] PREFIX = "GET /".getBytes(CharsetUtil.US_ASCII);
+	private final long timeoutMills;
+	private final Func<ChannelHandler[]> webSocketHandlers;
+	private ScheduledFuture<?> timeout;
+	private ByteBuf cumulation;
+	private boolean decided;
+
+	/**
+	 * 构造
+	 * 
+	 * @param timeoutMills
+	 *            等待首包多久
+	 * @param webSocketHandlers
+	 *            判断为WebSocket连接时插入的handler
+	 */
+	public WebSocketSniffer(long timeoutMills, Func<ChannelHandler[]> webSocketHandlers) {
+		this.timeoutMills = timeoutMills;
+		this.webSocketHandlers = webSocketHandlers;
+	}
+
+	@Override
+	public void channelActive(ChannelHandlerContext ctx) throws Exception {
+		timeout = ctx.executor().schedule(() -> {
+			decide(ctx, false);
+		}, timeoutMills, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		if (decided || !(msg instanceof ByteBuf)) {
+			ctx.fireChannelRead(msg);
+			return;
+		}
+		ByteBuf buf = (ByteBuf) msg;
+		if (cumulation == null) {
+			cumulation = buf;
+		} else {
+			ByteBuf merged = ctx.alloc().buffer(cumulation.readableBytes() + buf.readableBytes());
+			merged.writeBytes(cumulation).writeBytes(buf);
+			cumulation.release();
+			buf.release();
+			cumulation = merged;
+		}
+		int length = Math.min(PREFIX.length, cumulation.readableBytes());
+		for (int i = 0; i < length; ++i) {
+			if (cumulation.getByte(cumulation.readerIndex() + i) != PREFIX[i]) {
+				decide(ctx, false);
+				return;
+			}
+		}
+		if (length == PREFIX.length) {
+			decide(ctx, true);
+		}
+	}
+
+	@Override
+	public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+		if (decided) {
+			ctx.fireChannelReadComplete();
+		}
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		if (decided) {
+			ctx.fireChannelInactive();
+			return;
+		}
+		// 后面的handler没有收到过channelActive
+		decided = true;
+		if (timeout != null) {
+			timeout.cancel(false);
+		}
+		ReferenceCountUtil.release(cumulation);
+		cumulation = null;
+	}
+
+	private void decide(ChannelHandlerContext ctx, boolean webSocket) {
+		if (decided) {
+			return;
+		}
+		decided = true;
+		if (timeout != null) {
+			timeout.cancel(false);
+		}
+		if (webSocket) {
+			ChannelHandler[] handlers = webSocketHandlers.run();
+			for (int i = handlers.length - 1; i >= 0; --i) {
+				ctx.pipeline().addAfter(ctx.name(), null, handlers[i]);
+			}
+		}
+		ByteBuf buf = cumulation;
+		cumulation = null;
+		ctx.fireChannelActive();
+		if (buf != null) {
+			ctx.fireChannelRead(buf);
+		}
+		ctx.pipeline().remove(this);
+	}
+}
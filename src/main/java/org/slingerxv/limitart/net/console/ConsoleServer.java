@@ -29,6 +29,7 @@ import org.slingerxv.limitart.funcs.Proc3;
 import org.slingerxv.limitart.funcs.Proc4;
 import org.slingerxv.limitart.funcs.Procs;
 import org.slingerxv.limitart.net.define.AbstractNettyServer;
+import org.slingerxv.limitart.net.define.EventLoopGroups;
 import org.slingerxv.limitart.net.define.IServer;
 import org.slingerxv.limitart.util.Beta;
 import org.slingerxv.limitart.util.SecurityUtil;
@@ -73,7 +74,8 @@ public class ConsoleServer extends AbstractNettyServer implements IServer {
 	private Proc4<ConsoleUser, String, String[], Proc3<ConsoleUser, String, String[]>> dispatchMessage;
 
 	private ConsoleServer(ConsoleServerBuilder builder) {
-		super(builder.serverName);
+		super(builder.serverName, builder.dedicatedBossThreads > 0 ? EventLoopGroups.dedicated(builder.serverName,
+				builder.dedicatedBossThreads, builder.dedicatedWorkerThreads) : builder.eventLoopGroups);
 		this.serverName = builder.serverName;
 		this.port = builder.port;
 		this.users = builder.users;
@@ -233,6 +235,9 @@ public class ConsoleServer extends AbstractNettyServer implements IServer {
 
 	public static class ConsoleServerBuilder {
 		private String serverName;
+		private EventLoopGroups eventLoopGroups;
+		private int dedicatedBossThreads;
+		private int dedicatedWorkerThreads;
 		private int port;
 		private HashSet<String> whiteList = new HashSet<>();
 		private ConcurrentHashMap<String, ConsoleUser> users = new ConcurrentHashMap<>();
@@ -339,5 +344,33 @@ public class ConsoleServer extends AbstractNettyServer implements IServer {
 			this.onUserLogout = onUserLogout;
 			return this;
 		}
+
+		/**
+		 * 指定线程组，可与其他服务器共享(不指定则使用全局共享线程组)
+		 * 
+		 * @param eventLoopGroups
+		 * @return
+		 */
+		public ConsoleServerBuilder eventLoopGroups(EventLoopGroups eventLoopGroups) {
+			this.eventLoopGroups = eventLoopGroups;
+			return this;
+		}
+
+		/**
+		 * 使用独占线程组，线程以服务器名称命名，停止服务器时关闭
+		 * 
+		 * @param bossThreads
+		 * @param workerThreads
+		 *            0为Netty默认值
+		 * @return
+		 */
+		public ConsoleServerBuilder dedicatedEventLoop(int bossThreads, int workerThreads) {
+			if (bossThreads <= 0) {
+				throw new IllegalArgumentException("bossThreads must greater than 0");
+			}
+			this.dedicatedBossThreads = bossThreads;
+			this.dedicatedWorkerThreads = Math.max(0, workerThreads);
+			return this;
+		}
 	}
 }
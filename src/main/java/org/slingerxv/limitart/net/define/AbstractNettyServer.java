@@ -15,13 +15,20 @@
  */
 package org.slingerxv.limitart.net.define;
 
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slingerxv.limitart.funcs.Proc1;
 import org.slingerxv.limitart.funcs.Procs;
 
+import io.netty.bootstrap.AbstractBootstrap;
+import io.netty.bootstrap.Bootstrap;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
@@ -30,12 +37,10 @@ import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.epoll.Epoll;
-import io.netty.channel.epoll.EpollEventLoopGroup;
-import io.netty.channel.epoll.EpollServerSocketChannel;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutor;
 
 /**
  * 抽象Netty服务器
@@ -45,36 +50,38 @@ import io.netty.channel.socket.nio.NioServerSocketChannel;
  */
 public abstract class AbstractNettyServer {
 	private static Logger log = LoggerFactory.getLogger(AbstractNettyServer.class);
-	protected static EventLoopGroup bossGroup;
-	protected static EventLoopGroup workerGroup;
+	private static AttributeKey<AtomicInteger> ACCEPTOR_COUNTER = AttributeKey.newInstance("ACCEPTOR_COUNTER");
 	private ServerBootstrap bootstrap;
 	private Channel channel;
+	private List<Channel> acceptors = new CopyOnWriteArrayList<>();
+	// 没有监听通道的连接(如测试通道)
+	private AtomicInteger detachedCount = new AtomicInteger(0);
 	private String serverName;
-	static {
-		if (bossGroup == null || workerGroup == null) {
-			if (Epoll.isAvailable()) {
-				bossGroup = new EpollEventLoopGroup(1);
-				workerGroup = new EpollEventLoopGroup();
-			} else {
-				bossGroup = new NioEventLoopGroup(1);
-				workerGroup = new NioEventLoopGroup();
-			}
-		}
-	}
+	private EventLoopGroups eventLoopGroups;
 
 	protected AbstractNettyServer(String serverName) {
+		this(serverName, null);
+	}
+
+	/**
+	 * @param serverName
+	 * @param eventLoopGroups
+	 *            为null时使用共享线程组
+	 */
+	protected AbstractNettyServer(String serverName, EventLoopGroups eventLoopGroups) {
 		this.serverName = Objects.requireNonNull(serverName, "server name");
+		this.eventLoopGroups = eventLoopGroups == null ? EventLoopGroups.shared() : eventLoopGroups;
 		bootstrap = new ServerBootstrap();
-		if (Epoll.isAvailable()) {
-			bootstrap.option(ChannelOption.SO_BACKLOG, 1024).channel(EpollServerSocketChannel.class)
-					.childOption(ChannelOption.SO_LINGER, 0).childOption(ChannelOption.SO_REUSEADDR, true)
-					.childOption(ChannelOption.SO_KEEPALIVE, true);
-			log.info(serverName + " epoll init");
+		bootstrap.channel(this.eventLoopGroups.serverChannelClass());
+		if (this.eventLoopGroups.isEpoll()) {
+			bootstrap.option(ChannelOption.SO_BACKLOG, 1024).childOption(ChannelOption.SO_LINGER, 0)
+					.childOption(ChannelOption.SO_REUSEADDR, true).childOption(ChannelOption.SO_KEEPALIVE, true);
+			log.info(serverName + " epoll init with " + this.eventLoopGroups.getName() + " event loop");
 		} else {
-			bootstrap.channel(NioServerSocketChannel.class);
-			log.info(serverName + " nio init");
+			log.info(serverName + " nio init with " + this.eventLoopGroups.getName() + " event loop");
 		}
-		bootstrap.group(bossGroup, workerGroup).option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+		bootstrap.group(this.eventLoopGroups.getBossGroup(), this.eventLoopGroups.getWorkerGroup())
+				.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
 				.childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
 				.childOption(ChannelOption.TCP_NODELAY, true).childHandler(new ChannelInitializer<SocketChannel>() {
 
@@ -88,28 +95,245 @@ public abstract class AbstractNettyServer {
 	protected abstract void initPipeline(ChannelPipeline pipeline);
 
 	protected void bind(int port, Proc1<Channel> listener) {
+		bind(port, 1, listener);
+	}
+
+	/**
+	 * 绑定端口，epoll下可用SO_REUSEPORT绑定多个监听通道，由内核把accept分散到多个boss线程
+	 * 
+	 * @param port
+	 * @param acceptorCount
+	 *            监听通道数量，非epoll时只绑定一个
+	 * @param listener
+	 *            所有监听通道绑定成功后回调一次
+	 */
+	protected void bind(int port, int acceptorCount, Proc1<Channel> listener) {
+		bind0(bootstrap, port, acceptorCount(bootstrap, acceptorCount), channel -> {
+			this.channel = channel;
+			Procs.invoke(listener, channel);
+		});
+	}
+
+	/**
+	 * 用另外的pipeline初始化绑定端口(如同一服务器的WebSocket端口)，线程组和连接参数与主端口相同，连接计入该端口的监听通道
+	 * 
+	 * @param port
+	 * @param acceptorCount
+	 * @param initializer
+	 *            连接的pipeline初始化
+	 * @param listener
+	 *            所有监听通道绑定成功后回调一次
+	 */
+	protected void bind(int port, int acceptorCount, Proc1<ChannelPipeline> initializer, Proc1<Channel> listener) {
+		ServerBootstrap other = bootstrap.clone().childHandler(new ChannelInitializer<SocketChannel>() {
+
+			@Override
+			protected void initChannel(SocketChannel ch) throws Exception {
+				initializer.run(ch.pipeline());
+			}
+		});
+		bind0(other, port, acceptorCount(other, acceptorCount), listener);
+	}
+
+	private int acceptorCount(ServerBootstrap bootstrap, int acceptorCount) {
+		int count = Math.max(1, acceptorCount);
+		if (count > 1) {
+			if (!eventLoopGroups.isEpoll()) {
+				log.warn(serverName + " SO_REUSEPORT requires epoll, bind single acceptor");
+				count = 1;
+			} else {
+				bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+				int bossThreads = executorCount(eventLoopGroups.getBossGroup());
+				if (bossThreads < count) {
+					log.warn(serverName + " " + count + " acceptors share " + bossThreads + " boss threads");
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * 绑定UDP端口，epoll下可用SO_REUSEPORT绑定多个UDP通道(内核按远端地址分散到多个worker线程)，
+	 * 以UDP通道为父通道的连接(如可靠UDP连接)计入该通道的连接数
+	 * 
+	 * @param port
+	 * @param channelCount
+	 *            UDP通道数量，非epoll时只绑定一个
+	 * @param initializer
+	 *            UDP通道的pipeline初始化
+	 * @param listener
+	 *            所有UDP通道绑定成功后回调一次
+	 */
+	protected void bindDatagram(int port, int channelCount, Proc1<Channel> initializer, Proc1<Channel> listener) {
+		int count = Math.max(1, channelCount);
+		EventLoopGroup group = eventLoopGroups.getWorkerGroup();
+		Bootstrap datagram = new Bootstrap();
+		datagram.group(group).channel(EventLoopGroups.datagramChannelClass(group))
+				.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+				.handler(new ChannelInitializer<Channel>() {
+
+					@Override
+					protected void initChannel(Channel ch) throws Exception {
+						initializer.run(ch);
+					}
+				});
+		if (count > 1) {
+			if (!eventLoopGroups.isEpoll()) {
+				log.warn(serverName + " SO_REUSEPORT requires epoll, bind single datagram channel");
+				count = 1;
+			} else {
+				datagram.option(EpollChannelOption.SO_REUSEPORT, true);
+			}
+		}
+		bind0(datagram, port, count, channel -> {
+			this.channel = channel;
+			Procs.invoke(listener, channel);
+		});
+	}
+
+	private void bind0(AbstractBootstrap<?, ?> bootstrap, int port, int count, Proc1<Channel> listener) {
+		int acceptorSize = count;
 		new Thread(() -> {
+			// 只处理本次绑定的通道，其他端口的绑定在各自的线程中进行
+			List<Channel> bound = new ArrayList<>(acceptorSize);
 			try {
-				bootstrap.bind(port).addListener((ChannelFuture arg0) -> {
-					if (arg0.isSuccess()) {
-						log.info(serverName + " bind at port:" + port);
-						channel = arg0.channel();
-						Procs.invoke(listener, arg0.channel());
-					}
-				}).sync().channel().closeFuture().sync();
-			} catch (InterruptedException e) {
+				for (int i = 0; i < acceptorSize; ++i) {
+					Channel acceptor = bootstrap.register().sync().channel();
+					// 开始接收连接前挂上计数
+					acceptor.attr(ACCEPTOR_COUNTER).set(new AtomicInteger(0));
+					bound.add(acceptor);
+					acceptors.add(acceptor);
+					acceptor.bind(new InetSocketAddress(port)).sync();
+				}
+				log.info(serverName + " bind at port:" + port + " acceptors:" + acceptorSize);
+				Procs.invoke(listener, bound.get(0));
+				for (Channel acceptor : bound) {
+					acceptor.closeFuture().sync();
+				}
+			} catch (Exception e) {
 				log.error(e.getMessage(), e);
+				for (Channel acceptor : bound) {
+					acceptor.close();
+				}
+				acceptors.removeAll(bound);
 			}
 		}, serverName + "-Binder").start();
 	}
 
 	protected void unbind() {
-		if (channel != null) {
-			channel.close();
+		if (acceptors.isEmpty()) {
+			eventLoopGroups.shutdownGracefully();
+			return;
+		}
+		AtomicInteger remain = new AtomicInteger(acceptors.size());
+		for (Channel acceptor : acceptors) {
+			acceptor.close().addListener((ChannelFuture future) -> {
+				if (remain.decrementAndGet() == 0) {
+					eventLoopGroups.shutdownGracefully();
+				}
+			});
+		}
+		acceptors.clear();
+	}
+
+	/**
+	 * 把连接计入接收它的监听通道
+	 * 
+	 * @param channel
+	 */
+	protected void increaseConnection(Channel channel) {
+		AtomicInteger counter = acceptorCounter(channel.parent());
+		if (channel.attr(ACCEPTOR_COUNTER).setIfAbsent(counter) == null) {
+			counter.incrementAndGet();
+		}
+	}
+
+	/**
+	 * 从监听通道计数中移除连接，未计入的连接不做处理
+	 * 
+	 * @param channel
+	 */
+	protected void decreaseConnection(Channel channel) {
+		AtomicInteger counter = channel.attr(ACCEPTOR_COUNTER).getAndSet(null);
+		if (counter != null) {
+			counter.decrementAndGet();
+		}
+	}
+
+	/**
+	 * 所有监听通道的连接数之和
+	 * 
+	 * @return
+	 */
+	public int getConnectionCount() {
+		int count = detachedCount.get();
+		for (Channel acceptor : acceptors) {
+			count += acceptor.attr(ACCEPTOR_COUNTER).get().get();
+		}
+		return count;
+	}
+
+	/**
+	 * 各监听通道的连接数
+	 * 
+	 * @return
+	 */
+	public int[] getAcceptorConnectionCounts() {
+		int[] counts = new int[acceptors.size()];
+		for (int i = 0; i < counts.length; ++i) {
+			counts[i] = acceptors.get(i).attr(ACCEPTOR_COUNTER).get().get();
 		}
+		return counts;
+	}
+
+	private AtomicInteger acceptorCounter(Channel acceptor) {
+		if (acceptor == null) {
+			return detachedCount;
+		}
+		AtomicInteger counter = acceptor.attr(ACCEPTOR_COUNTER).get();
+		return counter == null ? detachedCount : counter;
+	}
+
+	private static int executorCount(EventLoopGroup group) {
+		int count = 0;
+		for (@SuppressWarnings("unused")
+		EventExecutor executor : group) {
+			++count;
+		}
+		return count;
+	}
+
+	public EventLoopGroups eventLoopGroups() {
+		return eventLoopGroups;
+	}
+
+	/**
+	 * 共享线程组的boss线程组(原bossGroup字段)
+	 * 
+	 * @return
+	 * @deprecated 服务器可以使用独立的线程组，改用{@link #eventLoopGroups()}
+	 */
+	@Deprecated
+	protected static EventLoopGroup bossGroup() {
+		return EventLoopGroups.shared().getBossGroup();
+	}
+
+	/**
+	 * 共享线程组的worker线程组(原workerGroup字段)
+	 * 
+	 * @return
+	 * @deprecated 服务器可以使用独立的线程组，改用{@link #eventLoopGroups()}
+	 */
+	@Deprecated
+	protected static EventLoopGroup workerGroup() {
+		return EventLoopGroups.shared().getWorkerGroup();
 	}
 
 	public Channel channel() {
 		return channel;
 	}
+
+	public List<Channel> acceptors() {
+		return acceptors;
+	}
 }
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2016-present The Limitart Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.limitart.net.define;
+
+import java.util.Objects;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+/**
+ * 服务器使用的boss/worker线程组
+ * 
+ * @author hank
+ *
+ */
+public final class EventLoopGroups {
+	private static volatile EventLoopGroups shared;
+	private final String name;
+	private final EventLoopGroup bossGroup;
+	private final EventLoopGroup workerGroup;
+	private final boolean epoll;
+	private final boolean dedicated;
+
+	private EventLoopGroups(String name, EventLoopGroup bossGroup, EventLoopGroup workerGroup, boolean dedicated) {
+		this.name = name;
+		this.bossGroup = bossGroup;
+		this.workerGroup = workerGroup;
+		boolean bossEpoll = bossGroup instanceof EpollEventLoopGroup;
+		if (bossEpoll != workerGroup instanceof EpollEventLoopGroup) {
+			throw new IllegalArgumentException("boss and worker must use the same transport");
+		}
+		this.epoll = bossEpoll;
+		this.dedicated = dedicated;
+	}
+
+	/**
+	 * 所有未指定线程组的服务器共享的线程组(boss一个线程，worker默认线程数)
+	 * 
+	 * @return
+	 */
+	public static EventLoopGroups shared() {
+		if (shared == null) {
+			synchronized (EventLoopGroups.class) {
+				if (shared == null) {
+					shared = new EventLoopGroups("Shared", newEventLoopGroup("Shared-Boss", 1),
+							newEventLoopGroup("Shared-Worker", 0), false);
+				}
+			}
+		}
+		return shared;
+	}
+
+	/**
+	 * 创建服务器独占的线程组，服务器停止时一并关闭
+	 * 
+	 * @param name
+	 *            线程名前缀
+	 * @param bossThreads
+	 *            boss线程数
+	 * @param workerThreads
+	 *            worker线程数(0为Netty默认值)
+	 * @return
+	 */
+	public static EventLoopGroups dedicated(String name, int bossThreads, int workerThreads) {
+		Objects.requireNonNull(name, "name");
+		if (bossThreads <= 0) {
+			throw new IllegalArgumentException("bossThreads must greater than 0");
+		}
+		if (workerThreads < 0) {
+			throw new IllegalArgumentException("workerThreads must not less than 0");
+		}
+		return new EventLoopGroups(name, newEventLoopGroup(name + "-Boss", bossThreads),
+				newEventLoopGroup(name + "-Worker", workerThreads), true);
+	}
+
+	/**
+	 * 使用外部创建的线程组，生命周期由调用者管理，可在多个服务器间共享
+	 * 
+	 * @param bossGroup
+	 * @param workerGroup
+	 * @return
+	 */
+	public static EventLoopGroups of(EventLoopGroup bossGroup, EventLoopGroup workerGroup) {
+		return new EventLoopGroups("External", Objects.requireNonNull(bossGroup, "bossGroup"),
+				Objects.requireNonNull(workerGroup, "workerGroup"), false);
+	}
+
+	/**
+	 * 创建线程组，epoll可用时使用epoll
+	 * 
+	 * @param threadName
+	 *            线程名前缀
+	 * @param threads
+	 *            线程数(0为Netty默认值)
+	 * @return
+	 */
+	public static EventLoopGroup newEventLoopGroup(String threadName, int threads) {
+		DefaultThreadFactory threadFactory = new DefaultThreadFactory(threadName);
+		if (Epoll.isAvailable()) {
+			return new EpollEventLoopGroup(threads, threadFactory);
+		}
+		return new NioEventLoopGroup(threads, threadFactory);
+	}
+
+	/**
+	 * 与线程组匹配的客户端通道类型
+	 * 
+	 * @param group
+	 * @return
+	 */
+	public static Class<? extends SocketChannel> socketChannelClass(EventLoopGroup group) {
+		return group instanceof EpollEventLoopGroup ? EpollSocketChannel.class : NioSocketChannel.class;
+	}
+
+	/**
+	 * 与线程组匹配的UDP通道类型
+	 * 
+	 * @param group
+	 * @return
+	 */
+	public static Class<? extends DatagramChannel> datagramChannelClass(EventLoopGroup group) {
+		return group instanceof EpollEventLoopGroup ? EpollDatagramChannel.class : NioDatagramChannel.class;
+	}
+
+	/**
+	 * 与线程组匹配的服务器通道类型
+	 * 
+	 * @return
+	 */
+	public Class<? extends ServerChannel> serverChannelClass() {
+		return epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+	}
+
+	/**
+	 * 关闭独占线程组，共享或外部线程组不做处理
+	 */
+	public void shutdownGracefully() {
+		if (!dedicated) {
+			return;
+		}
+		bossGroup.shutdownGracefully();
+		workerGroup.shutdownGracefully();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public EventLoopGroup getBossGroup() {
+		return bossGroup;
+	}
+
+	public EventLoopGroup getWorkerGroup() {
+		return workerGroup;
+	}
+
+	public boolean isEpoll() {
+		return epoll;
+	}
+
+	public boolean isDedicated() {
+		return dedicated;
+	}
+}
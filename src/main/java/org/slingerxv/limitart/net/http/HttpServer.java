@@ -30,6 +30,7 @@ import org.slingerxv.limitart.funcs.Proc1;
 import org.slingerxv.limitart.funcs.Proc2;
 import org.slingerxv.limitart.funcs.Procs;
 import org.slingerxv.limitart.net.define.AbstractNettyServer;
+import org.slingerxv.limitart.net.define.EventLoopGroups;
 import org.slingerxv.limitart.net.define.IServer;
 import org.slingerxv.limitart.net.http.codec.QueryStringDecoderV2;
 import org.slingerxv.limitart.net.http.constant.QueryMethod;
@@ -80,7 +81,8 @@ public class HttpServer extends AbstractNettyServer implements IServer {
 	private Proc2<Channel, Throwable> onExceptionCaught;
 
 	private HttpServer(HttpServerBuilder builder) {
-		super(builder.serverName);
+		super(builder.serverName, builder.dedicatedBossThreads > 0 ? EventLoopGroups.dedicated(builder.serverName,
+				builder.dedicatedBossThreads, builder.dedicatedWorkerThreads) : builder.eventLoopGroups);
 		this.port = builder.port;
 		this.httpObjectAggregatorMax = builder.httpObjectAggregatorMax;
 		this.serverName = builder.serverName;
@@ -268,6 +270,9 @@ public class HttpServer extends AbstractNettyServer implements IServer {
 
 	public static class HttpServerBuilder {
 		private String serverName;
+		private EventLoopGroups eventLoopGroups;
+		private int dedicatedBossThreads;
+		private int dedicatedWorkerThreads;
 		private int port;
 		private int httpObjectAggregatorMax;
 		private UrlMessageFactory facotry;
@@ -348,5 +353,33 @@ public class HttpServer extends AbstractNettyServer implements IServer {
 			this.onExceptionCaught = onExceptionCaught;
 			return this;
 		}
+
+		/**
+		 * 指定线程组，可与其他服务器共享(不指定则使用全局共享线程组)
+		 * 
+		 * @param eventLoopGroups
+		 * @return
+		 */
+		public HttpServerBuilder eventLoopGroups(EventLoopGroups eventLoopGroups) {
+			this.eventLoopGroups = eventLoopGroups;
+			return this;
+		}
+
+		/**
+		 * 使用独占线程组，线程以服务器名称命名，停止服务器时关闭
+		 * 
+		 * @param bossThreads
+		 * @param workerThreads
+		 *            0为Netty默认值
+		 * @return
+		 */
+		public HttpServerBuilder dedicatedEventLoop(int bossThreads, int workerThreads) {
+			if (bossThreads <= 0) {
+				throw new IllegalArgumentException("bossThreads must greater than 0");
+			}
+			this.dedicatedBossThreads = bossThreads;
+			this.dedicatedWorkerThreads = Math.max(0, workerThreads);
+			return this;
+		}
 	}
 }
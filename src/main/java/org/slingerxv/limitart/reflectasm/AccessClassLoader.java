@@ -5,7 +5,7 @@ import java.lang.reflect.Method;
 import java.security.ProtectionDomain;
 import java.util.WeakHashMap;
 
-class AccessClassLoader extends ClassLoader {
+public class AccessClassLoader extends ClassLoader {
 	// Weak-references to class loaders, to avoid perm gen memory leaks, for example
 	// in app servers/web containters if the
 	// reflectasm library (including this class) is loaded outside the deployed
@@ -78,7 +78,8 @@ public class ProviderX {
 		factory.registerMsg(new RpcExecuteClientHandler());
 		factory.registerMsg(new DirectFetchProverServicesHandler());
 		server = new BinaryServer.BinaryServerBuilder().addressPair(new AddressPair(config.getMyPort()))
-				.serverName("RPC-Provider").factory(factory).dispatchMessage((message, handler) -> {
+				.serverName("RPC-Provider").eventLoopGroups(config.getEventLoopGroups()).factory(factory)
+				.dispatchMessage((message, handler) -> {
 					message.setExtra(this);
 					try {
 						handler.handle(message);
@@ -19,6 +19,8 @@ import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
 
+import org.slingerxv.limitart.net.define.EventLoopGroups;
+
 /**
  * RPC服务提供者配置
  * 
@@ -33,6 +35,7 @@ public final class ProviderXConfig {
 	private int providerUID;
 	private String[] servicePackages;
 	private String serviceImplPackages;
+	private EventLoopGroups eventLoopGroups;
 
 	private ProviderXConfig(ProviderXConfigBuilder builder) {
 		this.myIp = builder.myIp;
@@ -45,6 +48,7 @@ public final class ProviderXConfig {
 		this.providerUID = builder.providerUID;
 		this.servicePackages = builder.servicePackage.toArray(new String[0]);
 		this.serviceImplPackages = builder.serviceImplPackages;
+		this.eventLoopGroups = builder.eventLoopGroups;
 	}
 
 	public int getProviderUID() {
@@ -75,6 +79,10 @@ public final class ProviderXConfig {
 		return serviceImplPackages;
 	}
 
+	public EventLoopGroups getEventLoopGroups() {
+		return eventLoopGroups;
+	}
+
 	public static class ProviderXConfigBuilder {
 		private String myIp;
 		private int myPort;
@@ -83,6 +91,7 @@ public final class ProviderXConfig {
 		private int providerUID;
 		private Set<String> servicePackage = new HashSet<>();
 		private String serviceImplPackages;
+		private EventLoopGroups eventLoopGroups;
 
 		public ProviderXConfig build() {
 			return new ProviderXConfig(this);
@@ -133,5 +142,16 @@ public final class ProviderXConfig {
 			this.serviceImplPackages = Objects.requireNonNull(serviceImplPackage, "serviceImplPackage");
 			return this;
 		}
+
+		/**
+		 * RPC服务器使用的线程组，不指定则使用全局共享线程组
+		 * 
+		 * @param eventLoopGroups
+		 * @return
+		 */
+		public ProviderXConfigBuilder eventLoopGroups(EventLoopGroups eventLoopGroups) {
+			this.eventLoopGroups = eventLoopGroups;
+			return this;
+		}
 	}
 }
@@ -0,0 +1,38 @@
+package org.slingerxv.limitart.collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IntListTest {
+
+	@Test
+	public void test() {
+		IntList list = new IntList();
+		Assert.assertTrue(list.isEmpty());
+		for (int i = 0; i < 100; ++i) {
+			list.add(i);
+		}
+		Assert.assertEquals(100, list.size());
+		Assert.assertEquals(99, list.get(99));
+		Assert.assertEquals(5, list.set(5, 500));
+		Assert.assertEquals(500, list.get(5));
+		Assert.assertEquals(500, list.removeAt(5));
+		Assert.assertEquals(99, list.size());
+		Assert.assertEquals(6, list.get(5));
+		Assert.assertEquals(-1, list.indexOf(500));
+		Assert.assertTrue(list.contains(98));
+		list.addAll(new int[] { 1, 2, 3 });
+		Assert.assertEquals(102, list.size());
+		Assert.assertEquals(3, list.toArray()[101]);
+		Assert.assertEquals(IntList.wrap(list.toArray()), list);
+		Assert.assertEquals(IntList.wrap(list.toArray()).hashCode(), list.hashCode());
+		list.clear();
+		Assert.assertEquals(0, list.size());
+		Assert.assertEquals("[1, 2]", IntList.wrap(1, 2).toString());
+		try {
+			list.get(0);
+			Assert.fail();
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+}
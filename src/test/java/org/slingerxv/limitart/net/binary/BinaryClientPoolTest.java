@@ -0,0 +1,77 @@
+package org.slingerxv.limitart.net.binary;
+
+import java.net.ServerSocket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slingerxv.limitart.net.binary.BinaryClientPool.LogicalClient;
+import org.slingerxv.limitart.net.binary.handler.MessageCase;
+import org.slingerxv.limitart.net.binary.handler.MessageCaseHandler;
+import org.slingerxv.limitart.net.binary.message.MessageFactory;
+import org.slingerxv.limitart.net.define.EventLoopGroups;
+import org.slingerxv.limitart.net.struct.AddressPair;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+
+public class BinaryClientPoolTest {
+
+	@Test
+	public void pool() throws Exception {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		CountDownLatch bind = new CountDownLatch(1);
+		CountDownLatch received = new CountDownLatch(5);
+		Set<Channel> channels = ConcurrentHashMap.newKeySet();
+		BinaryServer server = new BinaryServer.BinaryServerBuilder().addressPair(new AddressPair(port))
+				.factory(new MessageFactory().registerMsg(new MessageCaseHandler())).dedicatedEventLoop(1, 1)
+				.dispatchMessage((message, handler) -> {
+					channels.add(message.getChannel());
+					received.countDown();
+				}).onServerBind(channel -> bind.countDown()).build();
+		server.startServer();
+		Assert.assertTrue(bind.await(5, TimeUnit.SECONDS));
+		EventLoopGroup group = EventLoopGroups.newEventLoopGroup("Pool-Test", 1);
+		CountDownLatch effective = new CountDownLatch(2);
+		BinaryClientPool pool = new BinaryClient.BinaryClientBuilder().remoteAddress(new AddressPair("127.0.0.1", port))
+				.eventLoopGroup(group).onConnectionEffective(client -> effective.countDown()).buildPool(2);
+		try {
+			Assert.assertSame(group, pool.getClient(1).eventLoopGroup());
+			LogicalClient[] logicals = new LogicalClient[5];
+			for (int i = 0; i < logicals.length; ++i) {
+				logicals[i] = pool.lease();
+			}
+			Assert.assertArrayEquals(new int[] { 3, 2 }, pool.getLeaseCounts());
+			pool.connect();
+			Assert.assertTrue(effective.await(5, TimeUnit.SECONDS));
+			Assert.assertTrue(pool.getClient(0).isValidated());
+			Assert.assertTrue(pool.getClient(1).isValidated());
+			for (LogicalClient logical : logicals) {
+				MessageCase msg = new MessageCase();
+				msg.info = "pool";
+				logical.sendMessage(msg);
+			}
+			Assert.assertTrue(received.await(5, TimeUnit.SECONDS));
+			Assert.assertEquals(2, channels.size());
+			// 连接断开后改用其他连接
+			LogicalClient first = logicals[0];
+			Assert.assertEquals(0, first.getIndex());
+			pool.getClient(0).disConnect();
+			Assert.assertFalse(pool.getClient(0).isValidated());
+			Assert.assertSame(pool.getClient(1), first.physical());
+			first.release();
+			first.release();
+			Assert.assertArrayEquals(new int[] { 2, 2 }, pool.getLeaseCounts());
+		} finally {
+			pool.disConnect();
+			server.stopServer();
+			group.shutdownGracefully();
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package org.slingerxv.limitart.net.binary;
+
+import java.net.ServerSocket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slingerxv.limitart.net.binary.message.MessageFactory;
+import org.slingerxv.limitart.net.binary.util.ConnectGate;
+import org.slingerxv.limitart.net.struct.AddressPair;
+
+public class BinaryClientTest {
+
+	@Test
+	public void reconnectDelay() {
+		for (int attempt = 0; attempt < 40; ++attempt) {
+			long ceiling = Math.min(30000L, 1000L << Math.min(attempt, 30));
+			for (int i = 0; i < 100; ++i) {
+				long delay = BinaryClient.reconnectDelayMills(1000, 30000, attempt);
+				Assert.assertTrue(delay >= 0 && delay <= ceiling);
+			}
+		}
+	}
+
+	@Test
+	public void reconnect() throws Exception {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		CountDownLatch effective = new CountDownLatch(1);
+		BinaryClient client = new BinaryClient.BinaryClientBuilder().remoteAddress(new AddressPair("127.0.0.1", port))
+				.autoReconnect(1).reconnectMaxDelaySec(1).onConnectionEffective(c -> effective.countDown()).build();
+		BinaryServer server = null;
+		try {
+			// 不阻塞，服务器未启动时按退避重试
+			client.connect();
+			long deadline = System.currentTimeMillis() + 5000;
+			while (client.getReconnectAttempts() < 2 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			Assert.assertTrue(client.getReconnectAttempts() >= 2);
+			CountDownLatch bind = new CountDownLatch(1);
+			server = new BinaryServer.BinaryServerBuilder().addressPair(new AddressPair(port))
+					.factory(new MessageFactory()).dedicatedEventLoop(1, 1).onServerBind(channel -> bind.countDown())
+					.build();
+			server.startServer();
+			Assert.assertTrue(bind.await(5, TimeUnit.SECONDS));
+			Assert.assertTrue(effective.await(5, TimeUnit.SECONDS));
+			Assert.assertEquals(0, client.getReconnectAttempts());
+			Assert.assertEquals(0, ConnectGate.getInFlight());
+			// 主动断开后不再重连
+			client.disConnect();
+			Thread.sleep(1500);
+			Assert.assertEquals(0, server.getConnectionCount());
+		} finally {
+			client.disConnect();
+			if (server != null) {
+				server.stopServer();
+			}
+		}
+	}
+}
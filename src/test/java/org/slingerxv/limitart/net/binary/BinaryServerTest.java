@@ -0,0 +1,439 @@
+package org.slingerxv.limitart.net.binary;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slingerxv.limitart.funcs.Func;
+import org.slingerxv.limitart.funcs.Proc1;
+import org.slingerxv.limitart.net.binary.BinaryClient.BinaryClientBuilder;
+import org.slingerxv.limitart.net.binary.BinaryServer.BinaryServerBuilder;
+import org.slingerxv.limitart.net.binary.handler.MessageCase;
+import org.slingerxv.limitart.net.binary.handler.MessageCaseHandler;
+import org.slingerxv.limitart.net.binary.codec.AbstractBinaryEncoder;
+import org.slingerxv.limitart.net.binary.message.MessageFactory;
+import org.slingerxv.limitart.net.binary.message.constant.InnerMessageEnum;
+import org.slingerxv.limitart.net.binary.message.exception.HeartNotAnswerException;
+import org.slingerxv.limitart.net.binary.message.impl.validate.ConnectionValidateClientMessage;
+import org.slingerxv.limitart.net.binary.message.impl.validate.ConnectionValidateServerMessage;
+import org.slingerxv.limitart.net.binary.util.RateLimiter;
+import org.slingerxv.limitart.net.binary.util.RateLimiter.OverflowAction;
+import org.slingerxv.limitart.net.binary.util.SendMessageUtil;
+import org.slingerxv.limitart.net.struct.AddressPair;
+import org.slingerxv.limitart.util.SymmetricEncryptionUtil;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.MessageToMessageEncoder;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketClientProtocolHandler;
+import io.netty.handler.codec.http.websocketx.WebSocketClientProtocolHandler.ClientHandshakeStateEvent;
+import io.netty.handler.codec.http.websocketx.WebSocketVersion;
+import io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketClientCompressionHandler;
+import io.netty.util.CharsetUtil;
+
+public class BinaryServerTest {
+
+	private List<BinaryServer> servers = new ArrayList<>();
+	private List<BinaryClient> clients = new ArrayList<>();
+
+	@After
+	public void after() {
+		for (BinaryClient client : clients) {
+			client.disConnect();
+		}
+		for (BinaryServer server : servers) {
+			server.stopServer();
+		}
+	}
+
+	@Test
+	public void acceptors() throws Exception {
+		int port = freePort();
+		BinaryServer server = startServer(port, new MessageFactory(),
+				builder -> builder.acceptorCount(2).maxConnection(6));
+		int acceptors = server.eventLoopGroups().isEpoll() ? 2 : 1;
+		Assert.assertEquals(acceptors, server.acceptors().size());
+		List<Socket> sockets = new ArrayList<>();
+		try {
+			for (int i = 0; i < 8; ++i) {
+				sockets.add(new Socket("127.0.0.1", port));
+			}
+			awaitConnectionCount(server, 6);
+			int sum = 0;
+			for (int count : server.getAcceptorConnectionCounts()) {
+				sum += count;
+			}
+			Assert.assertEquals(6, sum);
+			// 超过上限的连接被关闭且不计数
+			Set<Socket> closed = new HashSet<>();
+			awaitCondition(() -> {
+				for (Socket socket : sockets) {
+					if (!closed.contains(socket) && isClosedByServer(socket)) {
+						closed.add(socket);
+					}
+				}
+				return closed.size() >= 2;
+			});
+			Assert.assertEquals(2, closed.size());
+			Assert.assertEquals(6, server.getConnectionCount());
+			for (Socket socket : sockets) {
+				socket.close();
+			}
+			awaitConnectionCount(server, 0);
+		} finally {
+			for (Socket socket : sockets) {
+				socket.close();
+			}
+		}
+	}
+
+	@Test
+	public void heartbeat() throws Exception {
+		int port = freePort();
+		CountDownLatch timeout = new CountDownLatch(1);
+		Set<Channel> closed = ConcurrentHashMap.newKeySet();
+		BinaryServer server = startServer(port, new MessageFactory(),
+				builder -> builder.heartIntervalSec(1).onExceptionCaught((channel, cause) -> {
+					if (cause instanceof HeartNotAnswerException) {
+						closed.add(channel);
+						timeout.countDown();
+					}
+				}));
+		CountDownLatch effective = new CountDownLatch(2);
+		BinaryClient silent = client(clientBuilder(port, effective));
+		BinaryClient beating = client(clientBuilder(port, effective).heartIntervalSec(1));
+		silent.connect();
+		beating.connect();
+		Assert.assertTrue(effective.await(5, TimeUnit.SECONDS));
+		// 3个周期没有心跳的连接被时间轮断开，正常心跳的连接保留
+		Assert.assertTrue(timeout.await(6, TimeUnit.SECONDS));
+		awaitConnectionCount(server, 1);
+		Assert.assertEquals(1, closed.size());
+		Assert.assertTrue(beating.channel().isActive());
+		Session session = Session.get(closed.iterator().next());
+		Assert.assertEquals(0, session.getHeartCount());
+	}
+
+	@Test
+	public void session() throws Exception {
+		int port = freePort();
+		CountDownLatch received = new CountDownLatch(1);
+		Set<Channel> channels = ConcurrentHashMap.newKeySet();
+		MessageFactory factory = new MessageFactory().registerMsg(new MessageCaseHandler());
+		BinaryServer server = startServer(port, factory,
+				builder -> builder.connectionValidateTimeInSec(1).dispatchMessage((message, handler) -> {
+							channels.add(message.getChannel());
+							received.countDown();
+						}));
+		CountDownLatch effective = new CountDownLatch(1);
+		BinaryClient client = client(clientBuilder(port, effective));
+		try (Socket unvalidated = new Socket("127.0.0.1", port)) {
+			client.connect();
+			Assert.assertTrue(effective.await(5, TimeUnit.SECONDS));
+			MessageCase msg = new MessageCase();
+			msg.info = "session";
+			client.sendMessage(msg);
+			Assert.assertTrue(received.await(5, TimeUnit.SECONDS));
+			Session session = Session.get(channels.iterator().next());
+			Assert.assertTrue(session.isValidated());
+			// 验证消息和业务消息
+			Assert.assertEquals(2, session.getReceivedMessages());
+			Assert.assertTrue(session.getReceivedBytes() > 0);
+			Assert.assertFalse(session.isUserBound());
+			session.bindUser(10086);
+			Assert.assertEquals(10086, session.getUserId());
+			// 未验证的连接超时后断开
+			awaitConnectionCount(server, 1);
+		}
+	}
+
+	@Test
+	public void rateLimit() throws Exception {
+		int port = freePort();
+		AtomicInteger received = new AtomicInteger();
+		RateLimiter limiter = new RateLimiter.RateLimiterBuilder().channel(1, 2, OverflowAction.DROP).build();
+		MessageFactory factory = new MessageFactory().registerMsg(new MessageCaseHandler());
+		BinaryServer server = startServer(port, factory,
+				builder -> builder.rateLimiter(limiter)
+						.dispatchMessage((message, handler) -> received.incrementAndGet()));
+		CountDownLatch effective = new CountDownLatch(1);
+		BinaryClient client = client(clientBuilder(port, effective));
+		client.connect();
+		Assert.assertTrue(effective.await(5, TimeUnit.SECONDS));
+		for (int i = 0; i < 5; ++i) {
+			MessageCase msg = new MessageCase();
+			msg.info = "flood";
+			client.sendMessage(msg);
+		}
+		awaitCondition(() -> limiter.getRule(0).getHits() >= 3);
+		// 突发2个之外的被丢弃，连接保留
+		Assert.assertEquals(3, server.getRateLimiter().getRule(0).getHits());
+		Assert.assertEquals(2, received.get());
+		Assert.assertTrue(client.channel().isActive());
+	}
+
+	@Test
+	public void sessionResume() throws Exception {
+		int port = freePort();
+		List<Channel> effectiveChannels = new CopyOnWriteArrayList<>();
+		CountDownLatch serverResumed = new CountDownLatch(1);
+		BinaryServer server = startServer(port, new MessageFactory(),
+				builder -> builder.sessionResume(5, 4, 1024).onConnectionEffective(effectiveChannels::add)
+						.onSessionResumed((old, channel) -> serverResumed.countDown()));
+		List<String> received = new CopyOnWriteArrayList<>();
+		CountDownLatch effective = new CountDownLatch(1);
+		CountDownLatch clientResumed = new CountDownLatch(1);
+		BinaryClient client = client(clientBuilder(port, effective)
+				.factory(new MessageFactory().registerMsg(new MessageCaseHandler())).sessionResume(true)
+				.dispatchMessage((message, handler) -> received.add(((MessageCase) message).info))
+				.onSessionResumed(c -> clientResumed.countDown()));
+		client.connect();
+		Assert.assertTrue(effective.await(5, TimeUnit.SECONDS));
+		Assert.assertTrue(client.getSessionId() > 0);
+		// 服务器在发出应答后才通知生效
+		awaitCondition(() -> !effectiveChannels.isEmpty());
+		Channel first = effectiveChannels.get(0);
+		for (int i = 0; i < 5; ++i) {
+			MessageCase msg = new MessageCase();
+			msg.info = "frame" + i;
+			server.sendMessage(first, msg);
+		}
+		awaitCondition(() -> received.size() >= 5);
+		Assert.assertEquals(5, client.getReceivedFrames());
+		// 只缓存最近4帧
+		Assert.assertEquals(4, Session.get(first).getReplayFrames());
+		client.channel().close().sync();
+		awaitConnectionCount(server, 0);
+		Assert.assertEquals(1, server.getResumableSessionCount());
+		// 假设断线时最后3帧没有收到
+		received.clear();
+		client.receivedFrames = 2;
+		client.connect();
+		Assert.assertTrue(clientResumed.await(5, TimeUnit.SECONDS));
+		Assert.assertTrue(serverResumed.await(5, TimeUnit.SECONDS));
+		awaitCondition(() -> received.size() >= 3);
+		Assert.assertEquals(Arrays.asList("frame2", "frame3", "frame4"), received);
+		Assert.assertEquals(5, client.getReceivedFrames());
+		Assert.assertEquals(1, effectiveChannels.size());
+		Assert.assertEquals(0, server.getResumableSessionCount());
+		// 超出缓存范围时建立新会话
+		long sessionId = client.getSessionId();
+		client.channel().close().sync();
+		awaitConnectionCount(server, 0);
+		client.receivedFrames = 0;
+		client.connect();
+		// 服务器通知生效时客户端可能还没收到新会话的应答
+		awaitCondition(() -> effectiveChannels.size() >= 2 && client.getSessionId() != sessionId);
+		Assert.assertEquals(2, effectiveChannels.size());
+		Assert.assertNotEquals(sessionId, client.getSessionId());
+		Assert.assertEquals(0, client.getReceivedFrames());
+	}
+
+	@Test
+	public void webSocket() throws Exception {
+		int port = freePort();
+		int webSocketPort = freePort();
+		// 同端口开启压缩，单独端口不压缩
+		webSocket(port, port, true);
+		webSocket(port, webSocketPort, false);
+	}
+
+	private void webSocket(int port, int webSocketPort, boolean deflate) throws Exception {
+		List<String> received = new CopyOnWriteArrayList<>();
+		List<Channel> channels = new CopyOnWriteArrayList<>();
+		MessageFactory factory = new MessageFactory().registerMsg(new MessageCaseHandler());
+		BinaryServer server = startServer(port, factory,
+				builder -> builder.webSocket(webSocketPort, "/ws", deflate).dispatchMessage((message, handler) -> {
+							channels.add(message.getChannel());
+							received.add(((MessageCase) message).info);
+						}));
+		EventLoopGroup group = new NioEventLoopGroup(1);
+		BlockingQueue<ByteBuf> frames = new LinkedBlockingQueue<>();
+		CountDownLatch handshake = new CountDownLatch(1);
+		CountDownLatch effective = new CountDownLatch(1);
+		BinaryClient client = client(clientBuilder(port, effective));
+		try {
+			URI uri = new URI("ws://127.0.0.1:" + webSocketPort + "/ws");
+			Channel channel = new Bootstrap().group(group).channel(NioSocketChannel.class)
+					.handler(new ChannelInitializer<SocketChannel>() {
+
+						@Override
+						protected void initChannel(SocketChannel ch) throws Exception {
+							ch.pipeline().addLast(new HttpClientCodec(), new HttpObjectAggregator(8192));
+							if (deflate) {
+								ch.pipeline().addLast(WebSocketClientCompressionHandler.INSTANCE);
+							}
+							ch.pipeline()
+									.addLast(new WebSocketClientProtocolHandler(uri, WebSocketVersion.V13, null,
+											deflate, EmptyHttpHeaders.INSTANCE, 65536))
+									.addLast(new SimpleChannelInboundHandler<BinaryWebSocketFrame>() {
+
+										@Override
+										protected void channelRead0(ChannelHandlerContext ctx, BinaryWebSocketFrame msg)
+												throws Exception {
+											frames.add(msg.content().copy());
+										}
+
+										@Override
+										public void userEventTriggered(ChannelHandlerContext ctx, Object evt)
+												throws Exception {
+											if (evt == ClientHandshakeStateEvent.HANDSHAKE_COMPLETE) {
+												handshake.countDown();
+											}
+											super.userEventTriggered(ctx, evt);
+										}
+									}).addLast(new MessageToMessageEncoder<ByteBuf>() {
+
+										@Override
+										protected void encode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out)
+												throws Exception {
+											out.add(new BinaryWebSocketFrame(msg.retain()));
+										}
+									});
+						}
+					}).connect("127.0.0.1", webSocketPort).sync().channel();
+			Assert.assertTrue(handshake.await(5, TimeUnit.SECONDS));
+			// 握手后与原生客户端一样验证，帧格式与TCP相同
+			ByteBuf frame = frames.poll(5, TimeUnit.SECONDS);
+			Assert.assertNotNull(frame);
+			Assert.assertEquals(frame.readableBytes() - Short.BYTES, frame.readShort());
+			Assert.assertEquals(InnerMessageEnum.ConnectionValidateServerMessage.getValue(), frame.readShort());
+			ConnectionValidateServerMessage validate = new ConnectionValidateServerMessage();
+			validate.buffer(frame);
+			validate.decode();
+			validate.buffer(null);
+			frame.release();
+			ConnectionValidateClientMessage answer = new ConnectionValidateClientMessage();
+			answer.validateRandom = Integer.parseInt(SymmetricEncryptionUtil
+					.getDecodeInstance(new AddressPair(port).getPass()).decode(validate.validateStr));
+			SendMessageUtil.sendMessage(AbstractBinaryEncoder.DEFAULT_ENCODER, channel, answer, null);
+			frame = frames.poll(5, TimeUnit.SECONDS);
+			Assert.assertNotNull(frame);
+			frame.skipBytes(Short.BYTES);
+			Assert.assertEquals(InnerMessageEnum.ConnectionValidateSuccessServerMessage.getValue(), frame.readShort());
+			frame.release();
+			for (int i = 0; i < 3; ++i) {
+				MessageCase msg = new MessageCase();
+				msg.info = "ws" + i;
+				SendMessageUtil.sendMessage(AbstractBinaryEncoder.DEFAULT_ENCODER, channel, msg, null);
+			}
+			awaitCondition(() -> received.size() >= 3);
+			Assert.assertEquals(Arrays.asList("ws0", "ws1", "ws2"), received);
+			// 协商了permessage-deflate时服务器加入压缩的handler
+			Assert.assertEquals(deflate, channels.get(0).pipeline().names().toString().contains("Deflate"));
+			MessageCase reply = new MessageCase();
+			reply.info = "pong";
+			server.sendMessage(channels.get(0), reply);
+			frame = frames.poll(5, TimeUnit.SECONDS);
+			Assert.assertNotNull(frame);
+			frame.skipBytes(Short.BYTES);
+			Assert.assertEquals(reply.getMessageId(), frame.readShort());
+			Assert.assertEquals("pong", frame.readCharSequence(frame.readShort(), CharsetUtil.UTF_8).toString());
+			frame.release();
+			// 原生客户端同时可用
+			client.connect();
+			Assert.assertTrue(effective.await(5, TimeUnit.SECONDS));
+			awaitConnectionCount(server, 2);
+			channel.close().sync();
+			awaitConnectionCount(server, 1);
+		} finally {
+			// 两次调用使用相同端口，先停掉本次的服务器
+			client.disConnect();
+			group.shutdownGracefully();
+			server.stopServer();
+		}
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	/**
+	 * 用单线程的独立线程组启动服务器并等待绑定完成，停止由after统一处理
+	 */
+	private BinaryServer startServer(int port, MessageFactory factory, Proc1<BinaryServerBuilder> config)
+			throws Exception {
+		CountDownLatch bind = new CountDownLatch(1);
+		BinaryServerBuilder builder = new BinaryServerBuilder().addressPair(new AddressPair(port)).factory(factory)
+				.dedicatedEventLoop(1, 1);
+		config.run(builder);
+		BinaryServer server = builder.onServerBind(channel -> bind.countDown()).build();
+		servers.add(server);
+		server.startServer();
+		Assert.assertTrue(bind.await(5, TimeUnit.SECONDS));
+		return server;
+	}
+
+	private static BinaryClientBuilder clientBuilder(int port, CountDownLatch effective) {
+		return new BinaryClientBuilder().remoteAddress(new AddressPair("127.0.0.1", port))
+				.onConnectionEffective(c -> effective.countDown());
+	}
+
+	private BinaryClient client(BinaryClientBuilder builder) throws Exception {
+		BinaryClient client = builder.build();
+		clients.add(client);
+		return client;
+	}
+
+	private static void awaitCondition(Func<Boolean> condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!condition.run() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+
+	private static void awaitConnectionCount(BinaryServer server, int expected) throws InterruptedException {
+		awaitCondition(() -> server.getConnectionCount() == expected);
+		Assert.assertEquals(expected, server.getConnectionCount());
+	}
+
+	/**
+	 * 读掉服务器已发来的数据，读到流结束或连接被重置说明连接已被服务器关闭
+	 */
+	private static boolean isClosedByServer(Socket socket) {
+		byte[] buffer = new byte[256];
+		try {
+			socket.setSoTimeout(1);
+			while (true) {
+				if (socket.getInputStream().read(buffer) < 0) {
+					return true;
+				}
+			}
+		} catch (SocketTimeoutException e) {
+			return false;
+		} catch (IOException e) {
+			return true;
+		}
+	}
+}
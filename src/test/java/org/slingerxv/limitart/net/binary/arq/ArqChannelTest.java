@@ -0,0 +1,78 @@
+package org.slingerxv.limitart.net.binary.arq;
+
+import java.net.DatagramSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slingerxv.limitart.net.binary.BinaryClient;
+import org.slingerxv.limitart.net.binary.BinaryServer;
+import org.slingerxv.limitart.net.binary.handler.MessageCase;
+import org.slingerxv.limitart.net.binary.handler.MessageCaseHandler;
+import org.slingerxv.limitart.net.binary.message.MessageFactory;
+import org.slingerxv.limitart.net.struct.AddressPair;
+
+import io.netty.channel.Channel;
+
+public class ArqChannelTest {
+
+	@Test
+	public void lossyLoopback() throws Exception {
+		int port;
+		try (DatagramSocket socket = new DatagramSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		// 双向各丢20%的包，关闭通知丢失时靠空闲超时断开
+		ArqConfig config = new ArqConfig.ArqConfigBuilder().packetLoss(0.2).idleTimeoutMills(2000).build();
+		CountDownLatch bind = new CountDownLatch(1);
+		List<String> received = new CopyOnWriteArrayList<>();
+		List<Channel> channels = new CopyOnWriteArrayList<>();
+		BinaryServer server = new BinaryServer.BinaryServerBuilder().addressPair(new AddressPair(port))
+				.factory(new MessageFactory().registerMsg(new MessageCaseHandler())).dedicatedEventLoop(1, 1)
+				.udp(config).dispatchMessage((message, handler) -> {
+					channels.add(message.getChannel());
+					received.add(((MessageCase) message).info);
+				}).onServerBind(channel -> bind.countDown()).build();
+		server.startServer();
+		Assert.assertTrue(bind.await(5, TimeUnit.SECONDS));
+		CountDownLatch effective = new CountDownLatch(1);
+		BinaryClient client = new BinaryClient.BinaryClientBuilder().remoteAddress(new AddressPair("127.0.0.1", port))
+				.udp(config).onConnectionEffective(c -> effective.countDown()).build();
+		try {
+			client.connect();
+			// 验证握手也经过丢包
+			Assert.assertTrue(effective.await(10, TimeUnit.SECONDS));
+			Assert.assertTrue(client.channel() instanceof ArqChannel);
+			List<String> sent = new ArrayList<>();
+			for (int i = 0; i < 200; ++i) {
+				MessageCase msg = new MessageCase();
+				msg.info = "udp" + i;
+				sent.add(msg.info);
+				client.sendMessage(msg);
+			}
+			long deadline = System.currentTimeMillis() + 10000;
+			while (received.size() < sent.size() && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			// 可靠有序
+			Assert.assertEquals(sent, received);
+			Assert.assertEquals(1, server.getConnectionCount());
+			ArqChannel channel = (ArqChannel) client.channel();
+			Assert.assertTrue(channel.getRetransmits() + channel.getFastRetransmits() > 0);
+			// 客户端关闭后服务器收到通知断开
+			client.disConnect();
+			deadline = System.currentTimeMillis() + 5000;
+			while (channels.get(0).isActive() && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			Assert.assertFalse(channels.get(0).isActive());
+		} finally {
+			client.disConnect();
+			server.stopServer();
+		}
+	}
+}
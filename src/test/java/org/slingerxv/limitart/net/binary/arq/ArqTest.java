@@ -0,0 +1,141 @@
+package org.slingerxv.limitart.net.binary.arq;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+
+public class ArqTest {
+	private final ByteBufAllocator allocator = ByteBufAllocator.DEFAULT;
+
+	@Test
+	public void reliable() {
+		ArqConfig config = new ArqConfig.ArqConfigBuilder().mtu(200).window(32, 32).build();
+		Link link = new Link(config, 0.2);
+		List<byte[]> sent = new ArrayList<>();
+		Random random = new Random(1);
+		for (int i = 0; i < 300; ++i) {
+			// 部分消息超过一个包需要分片
+			byte[] bytes = new byte[1 + random.nextInt(i % 10 == 0 ? 1500 : 150)];
+			random.nextBytes(bytes);
+			sent.add(bytes);
+			ByteBuf frame = Unpooled.wrappedBuffer(bytes);
+			link.a.send(frame);
+			frame.release();
+		}
+		link.run(2000);
+		Assert.assertEquals(sent.size(), link.received.size());
+		for (int i = 0; i < sent.size(); ++i) {
+			Assert.assertArrayEquals(sent.get(i), link.received.get(i));
+		}
+		Assert.assertEquals(0, link.a.waitSnd());
+		Assert.assertTrue(link.a.getFastRetransmits() > 0);
+		Assert.assertFalse(link.a.isDead());
+		link.release();
+	}
+
+	@Test
+	public void unreliable() {
+		ArqConfig config = new ArqConfig.ArqConfigBuilder().build();
+		Link link = new Link(config, 0.3);
+		for (int i = 0; i < 200; ++i) {
+			ByteBuf frame = Unpooled.wrappedBuffer(new byte[] { (byte) i });
+			link.a.sendUnreliable(frame);
+			frame.release();
+			// 每次单独成包
+			link.step();
+		}
+		link.run(200);
+		// 丢失的不重传
+		Assert.assertTrue(link.received.size() > 100 && link.received.size() < 200);
+		Assert.assertEquals(0, link.a.getRetransmits());
+		link.release();
+	}
+
+	@Test
+	public void deadLink() {
+		ArqConfig config = new ArqConfig.ArqConfigBuilder().deadLink(5).build();
+		Link link = new Link(config, 1);
+		ByteBuf frame = Unpooled.wrappedBuffer(new byte[] { 1 });
+		link.a.send(frame);
+		frame.release();
+		link.run(1000);
+		Assert.assertTrue(link.a.isDead());
+		link.release();
+	}
+
+	/**
+	 * 两端直连，按比例随机丢包，时间由测试推进
+	 */
+	private class Link {
+		private final Random random = new Random(7);
+		private final double loss;
+		private final List<ByteBuf> toB = new ArrayList<>();
+		private final List<ByteBuf> toA = new ArrayList<>();
+		private final List<byte[]> received = new ArrayList<>();
+		private final Arq a;
+		private final Arq b;
+		private int now;
+
+		private Link(ArqConfig config, double loss) {
+			this.loss = loss;
+			this.a = new Arq(1, config, allocator, datagram -> transfer(toB, datagram));
+			this.b = new Arq(1, config, allocator, datagram -> transfer(toA, datagram));
+		}
+
+		private void transfer(List<ByteBuf> queue, ByteBuf datagram) {
+			if (random.nextDouble() < loss) {
+				datagram.release();
+				return;
+			}
+			queue.add(datagram);
+		}
+
+		private void step() {
+			now += 10;
+			a.flush(now);
+			deliver(toB, b, true);
+			b.flush(now);
+			deliver(toA, a, false);
+		}
+
+		private void run(int steps) {
+			for (int i = 0; i < steps; ++i) {
+				step();
+			}
+		}
+
+		private void deliver(List<ByteBuf> queue, Arq arq, boolean record) {
+			List<ByteBuf> datagrams = new ArrayList<>(queue);
+			queue.clear();
+			for (ByteBuf datagram : datagrams) {
+				arq.input(datagram, now, frame -> {
+					if (record) {
+						byte[] bytes = new byte[frame.readableBytes()];
+						frame.readBytes(bytes);
+						received.add(bytes);
+					}
+					frame.release();
+				});
+				datagram.release();
+			}
+		}
+
+		private void release() {
+			a.release();
+			b.release();
+			for (ByteBuf datagram : toA) {
+				datagram.release();
+			}
+			for (ByteBuf datagram : toB) {
+				datagram.release();
+			}
+		}
+	}
+}
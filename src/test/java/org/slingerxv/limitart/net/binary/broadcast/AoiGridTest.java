@@ -0,0 +1,74 @@
+package org.slingerxv.limitart.net.binary.broadcast;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slingerxv.limitart.net.binary.codec.AbstractBinaryEncoder;
+import org.slingerxv.limitart.net.binary.handler.MessageCase;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class AoiGridTest {
+
+	@Test
+	public void broadcast() throws Exception {
+		AoiGrid grid = new AoiGrid(AbstractBinaryEncoder.DEFAULT_ENCODER, 100, 100, 10, 1);
+		EmbeddedChannel a = new EmbeddedChannel();
+		EmbeddedChannel b = new EmbeddedChannel();
+		EmbeddedChannel c = new EmbeddedChannel();
+		grid.enter(1, a, 5, 5);
+		grid.enter(2, b, 15, 15);
+		grid.enter(3, c, 50, 50);
+		Assert.assertEquals(3, grid.size());
+		MessageCase msg = new MessageCase();
+		msg.info = "aoi";
+		// 九宫格内的a和b
+		Assert.assertEquals(2, grid.broadcast(8, 8, msg, null));
+		Assert.assertEquals(1, grid.broadcastAround(1, false, msg, null));
+		Assert.assertEquals(2, grid.countVisible(8, 8));
+		// 相邻格子之外
+		Assert.assertEquals(1, grid.broadcast(55, 55, msg, null));
+		Assert.assertEquals(0, grid.broadcast(95, 5, msg, null));
+		Assert.assertEquals(1, a.outboundMessages().size());
+		Assert.assertEquals(2, b.outboundMessages().size());
+		Assert.assertEquals(1, c.outboundMessages().size());
+		// 移动到c附近，超出范围的坐标按边缘格子处理
+		Assert.assertTrue(grid.move(1, 45, 45));
+		Assert.assertFalse(grid.move(1, 46, 46));
+		Assert.assertEquals(2, grid.broadcastAround(3, true, msg, null));
+		Assert.assertTrue(grid.leave(2));
+		Assert.assertFalse(grid.leave(2));
+		grid.enter(4, b, 1000, -5);
+		Assert.assertEquals(1, grid.countVisible(99, 0));
+		ByteBuf buffer = a.readOutbound();
+		Assert.assertEquals(buffer.readableBytes() - Short.BYTES, buffer.readShort());
+		Assert.assertEquals(-1, buffer.readShort());
+		buffer.release();
+		a.finishAndReleaseAll();
+		b.finishAndReleaseAll();
+		c.finishAndReleaseAll();
+	}
+
+	@Test
+	public void groups() throws Exception {
+		ChannelGroups groups = new ChannelGroups(AbstractBinaryEncoder.DEFAULT_ENCODER);
+		EmbeddedChannel a = new EmbeddedChannel(DefaultChannelId.newInstance());
+		EmbeddedChannel b = new EmbeddedChannel(DefaultChannelId.newInstance());
+		Assert.assertTrue(groups.join("guild", a));
+		Assert.assertTrue(groups.join("guild", b));
+		Assert.assertFalse(groups.join("guild", b));
+		MessageCase msg = new MessageCase();
+		msg.info = "group";
+		Assert.assertEquals(2, groups.broadcast("guild", msg, null));
+		Assert.assertEquals(0, groups.broadcast("none", msg, null));
+		Assert.assertTrue(groups.leave("guild", b));
+		Assert.assertEquals(1, groups.size("guild"));
+		a.close();
+		Assert.assertEquals(0, groups.size("guild"));
+		Assert.assertEquals(1, a.outboundMessages().size());
+		Assert.assertEquals(1, b.outboundMessages().size());
+		a.finishAndReleaseAll();
+		b.finishAndReleaseAll();
+	}
+}
@@ -0,0 +1,136 @@
+package org.slingerxv.limitart.net.binary.handler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slingerxv.limitart.net.binary.message.Message;
+
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class AffinityDispatcherTest {
+
+	@Test
+	public void ordering() throws Exception {
+		AffinityDispatcher dispatcher = new AffinityDispatcher.AffinityDispatcherBuilder().threadName("Affinity-Test")
+				.affinityKey(msg -> msg.getExtra()).entityCountPerThread(2).coreThreadCount(1).initThreadCount(1)
+				.maxThreadCount(3).build();
+		int keys = 6;
+		int perKey = 200;
+		CountDownLatch done = new CountDownLatch(keys * perKey);
+		Map<Object, List<Integer>> orders = new ConcurrentHashMap<>();
+		Map<Object, String> threads = new ConcurrentHashMap<>();
+		AtomicBoolean moved = new AtomicBoolean();
+		IHandler<Message> handler = msg -> {
+			MessageCase message = (MessageCase) msg;
+			orders.computeIfAbsent(msg.getExtra(), k -> new ArrayList<>()).add(Integer.parseInt(message.info));
+			String thread = threads.putIfAbsent(msg.getExtra(), Thread.currentThread().getName());
+			if (thread != null && !thread.equals(Thread.currentThread().getName())) {
+				moved.set(true);
+			}
+			done.countDown();
+		};
+		for (int i = 0; i < perKey; ++i) {
+			for (int key = 0; key < keys; ++key) {
+				MessageCase msg = new MessageCase();
+				msg.info = String.valueOf(i);
+				msg.setExtra(key);
+				dispatcher.run(msg, handler);
+			}
+		}
+		Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+		Assert.assertFalse(moved.get());
+		for (int key = 0; key < keys; ++key) {
+			List<Integer> order = orders.get(key);
+			Assert.assertEquals(perKey, order.size());
+			for (int i = 0; i < perKey; ++i) {
+				Assert.assertEquals(i, order.get(i).intValue());
+			}
+		}
+		// 每个队列2个键，共3个队列
+		Assert.assertEquals(3, threads.values().stream().distinct().count());
+		Assert.assertEquals(keys * perKey, dispatcher.getExecuted());
+		Assert.assertEquals(0, dispatcher.getQueueDepth());
+		Assert.assertTrue(dispatcher.getMaxLatencyNanos() >= dispatcher.getAverageLatencyNanos());
+		int index = dispatcher.getThreadIndex(0);
+		Assert.assertTrue(index > 0);
+		dispatcher.release(0);
+		Assert.assertEquals(0, dispatcher.getThreadIndex(0));
+	}
+
+	@Test
+	public void rekey() throws Exception {
+		// 每个队列一个键，连接和用户在不同的线程
+		AtomicReference<Object> user = new AtomicReference<>();
+		AffinityDispatcher dispatcher = new AffinityDispatcher.AffinityDispatcherBuilder().threadName("Rekey-Test")
+				.affinityKey(msg -> user.get()).entityCountPerThread(1).coreThreadCount(2).initThreadCount(2)
+				.maxThreadCount(2).build();
+		EmbeddedChannel channel = new EmbeddedChannel(DefaultChannelId.newInstance());
+		int count = 100;
+		CountDownLatch done = new CountDownLatch(count);
+		List<Integer> order = new CopyOnWriteArrayList<>();
+		AtomicInteger running = new AtomicInteger();
+		AtomicBoolean concurrent = new AtomicBoolean();
+		IHandler<Message> handler = msg -> {
+			if (running.incrementAndGet() > 1) {
+				concurrent.set(true);
+			}
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+			}
+			order.add(Integer.parseInt(((MessageCase) msg).info));
+			running.decrementAndGet();
+			done.countDown();
+		};
+		for (int i = 0; i < count; ++i) {
+			if (i == count / 2) {
+				// 处理中途绑定用户
+				user.set("user");
+			}
+			MessageCase msg = new MessageCase();
+			msg.info = String.valueOf(i);
+			msg.setChannel(channel);
+			dispatcher.run(msg, handler);
+		}
+		Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+		Assert.assertFalse(concurrent.get());
+		for (int i = 0; i < count; ++i) {
+			Assert.assertEquals(i, order.get(i).intValue());
+		}
+		// 连接上的消息执行完后切换到用户，释放连接
+		CountDownLatch last = new CountDownLatch(1);
+		MessageCase msg = new MessageCase();
+		msg.setChannel(channel);
+		dispatcher.run(msg, m -> last.countDown());
+		Assert.assertTrue(last.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals(0, dispatcher.getThreadIndex(channel));
+		Assert.assertTrue(dispatcher.getThreadIndex("user") > 0);
+	}
+
+	@Test
+	public void channel() throws Exception {
+		AffinityDispatcher dispatcher = new AffinityDispatcher.AffinityDispatcherBuilder().threadName("Channel-Test")
+				.build();
+		EmbeddedChannel channel = new EmbeddedChannel(DefaultChannelId.newInstance());
+		CountDownLatch done = new CountDownLatch(1);
+		MessageCase msg = new MessageCase();
+		msg.setChannel(channel);
+		dispatcher.run(msg, m -> done.countDown());
+		Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+		Assert.assertTrue(dispatcher.getThreadIndex(channel) > 0);
+		// 连接关闭后自动释放
+		channel.close();
+		Assert.assertEquals(0, dispatcher.getThreadIndex(channel));
+	}
+}
@@ -0,0 +1,43 @@
+package org.slingerxv.limitart.net.binary.handler;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slingerxv.limitart.net.binary.handler.annotation.Controller;
+import org.slingerxv.limitart.net.binary.handler.annotation.Handler;
+import org.slingerxv.limitart.net.binary.message.MessageFactory;
+
+public class ControllerHandlerTest {
+
+	@Test
+	public void generated() throws Exception {
+		int[] created = new int[1];
+		MessageFactory factory = new MessageFactory().registerController(PublicController.class, (clzz) -> {
+			++created[0];
+			return new PublicController();
+		});
+		Assert.assertEquals(1, created[0]);
+		ControllerHandler handler = (ControllerHandler) factory.getHandler((short) -1);
+		Assert.assertNotNull(handler);
+		Assert.assertEquals(PublicController.class.getName() + "ControllerHandler$onMessage$"
+				+ MessageCase.class.getName().replace('.', '_'), handler.getClass().getName());
+		PublicController controller = (PublicController) handler.getController();
+		MessageCase msg = new MessageCase();
+		msg.info = "test";
+		handler.handle(msg);
+		handler.handle(msg);
+		Assert.assertEquals(2, controller.count);
+		Assert.assertEquals("test", controller.last);
+	}
+
+	@Controller
+	public static class PublicController {
+		int count;
+		String last;
+
+		@Handler(MessageCase.class)
+		public long onMessage(MessageCase msg) {
+			last = msg.info;
+			return ++count;
+		}
+	}
+}
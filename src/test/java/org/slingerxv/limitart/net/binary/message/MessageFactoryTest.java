@@ -2,9 +2,19 @@ package org.slingerxv.limitart.net.binary.message;
 
 import org.junit.After;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
+import org.slingerxv.limitart.net.binary.handler.MessageCase;
 import org.slingerxv.limitart.net.binary.handler.MessageCaseHandler;
+import org.slingerxv.limitart.net.binary.message.annotation.Intern;
+import org.slingerxv.limitart.net.binary.message.annotation.Lazy;
+import org.slingerxv.limitart.net.binary.message.annotation.Poolable;
+import org.slingerxv.limitart.net.binary.message.exception.MessageIDDuplicatedException;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.IllegalReferenceCountException;
 
 public class MessageFactoryTest {
 	private MessageFactory messageFactory;
@@ -38,4 +48,225 @@ public class MessageFactoryTest {
 		}
 	}
 
+	@Test
+	public void slot() throws Exception {
+		messageFactory.registerMsg(new MessageCaseHandler());
+		messageFactory.registerMsg(PooledMessage.class, PooledMessage::new, (PooledMessage msg) -> {
+		});
+		MessageSlot slot = messageFactory.getSlot((short) -1);
+		Assert.assertNotNull(slot);
+		Assert.assertEquals(MessageCase.class, slot.getMessageClass());
+		Assert.assertTrue(slot.getHandler() instanceof MessageCaseHandler);
+		Assert.assertTrue(slot.newMessage() instanceof MessageCase);
+		Assert.assertEquals(PooledMessage.class, messageFactory.getSlot((short) -2).getMessageClass());
+		Assert.assertNull(messageFactory.getSlot((short) 0xFF));
+		Assert.assertNull(messageFactory.getSlot((short) 1));
+		Assert.assertNull(messageFactory.getMessage((short) 1));
+		Assert.assertNull(messageFactory.getHandler((short) 1));
+		try {
+			messageFactory.registerMsg(MessageCase2.class, MessageCase2::new, (MessageCase2 msg) -> {
+			});
+			Assert.fail();
+		} catch (MessageIDDuplicatedException e) {
+		}
+	}
+
+	@Test
+	public void pooled() throws Exception {
+		messageFactory.registerMsg(PooledMessage.class, PooledMessage::new, (PooledMessage msg) -> {
+		});
+		Message msg = messageFactory.getMessage((short) -2);
+		Assert.assertTrue(msg.isPooled());
+		msg.setExtra("extra");
+		msg.retain();
+		Assert.assertFalse(msg.release());
+		Assert.assertTrue(msg.release());
+		Assert.assertNull(msg.getExtra());
+		Assert.assertEquals(1, ((PooledMessage) msg).resetCount);
+		try {
+			msg.release();
+			Assert.fail();
+		} catch (IllegalReferenceCountException e) {
+		}
+		Assert.assertSame(msg, messageFactory.getMessage((short) -2));
+		Assert.assertNotSame(msg, messageFactory.getMessage((short) -2));
+		Assert.assertNull(messageFactory.getMessage((short) -1));
+	}
+
+	@Test
+	public void pooledDebug() throws Exception {
+		// 调试模式由pom中surefire的系统属性开启
+		Assume.assumeTrue(Boolean.getBoolean("limitart.message.poolDebug"));
+		messageFactory.registerMsg(PooledMessage.class, PooledMessage::new, (PooledMessage msg) -> {
+		});
+		Message msg = messageFactory.getMessage((short) -2);
+		msg.getChannel();
+		msg.release();
+		try {
+			msg.getChannel();
+			Assert.fail();
+		} catch (IllegalReferenceCountException e) {
+		}
+	}
+
+	@Test
+	public void pooledNullArray() throws Exception {
+		messageFactory.registerMsg(PooledArrayMessage.class, PooledArrayMessage::new, (PooledArrayMessage msg) -> {
+		});
+		MessageSlot slot = messageFactory.getSlot((short) -5);
+		PooledArrayMessage withArray = new PooledArrayMessage();
+		withArray.values = new Integer[] { 1, 2 };
+		PooledArrayMessage withNull = new PooledArrayMessage();
+		for (int i = 0; i < 2; ++i) {
+			PooledArrayMessage msg = (PooledArrayMessage) messageFactory.getMessage((short) -5);
+			decodePooled(slot, msg, withArray, i == 0);
+			Assert.assertArrayEquals(withArray.values, msg.values);
+			Assert.assertTrue(msg.release());
+			// 同一个池化对象解码null数组时不能拿到上一条消息的数据
+			PooledArrayMessage next = (PooledArrayMessage) messageFactory.getMessage((short) -5);
+			Assert.assertSame(msg, next);
+			decodePooled(slot, next, withNull, i == 0);
+			Assert.assertNull(next.values);
+			next.release();
+		}
+	}
+
+	private static void decodePooled(MessageSlot slot, Message msg, Message source, boolean codec) throws Exception {
+		ByteBuf buffer = Unpooled.buffer();
+		source.buffer(buffer);
+		source.encode();
+		source.buffer(null);
+		msg.buffer(buffer);
+		if (codec) {
+			slot.decode(msg);
+		} else {
+			msg.decodeByReflection();
+		}
+		msg.buffer(null);
+		buffer.release();
+	}
+
+	@Test
+	public void lazy() throws Exception {
+		messageFactory.registerMsg(LazyMessage.class, LazyMessage::new, (LazyMessage msg) -> {
+		});
+		messageFactory.registerMsg(LazyInternMessage.class, LazyInternMessage::new, (LazyInternMessage msg) -> {
+		});
+		Assert.assertFalse(messageFactory.getSlot((short) -4).isLazy());
+		MessageSlot slot = messageFactory.getSlot((short) -3);
+		Assert.assertTrue(slot.isLazy());
+		LazyMessage source = new LazyMessage();
+		source.route = 7;
+		source.payload = "payload";
+		source.values = new int[] { 1, 2, 3 };
+		ByteBuf buffer = Unpooled.buffer();
+		source.buffer(buffer);
+		source.encode();
+		source.buffer(null);
+		int bodySize = buffer.readableBytes() - 4;
+		LazyMessage msg = (LazyMessage) slot.newMessage();
+		msg.buffer(buffer);
+		slot.decode(msg);
+		msg.buffer(null);
+		buffer.release();
+		// 只解码了头部
+		Assert.assertEquals(7, msg.route);
+		Assert.assertNull(msg.payload);
+		Assert.assertFalse(msg.isDecoded());
+		Assert.assertEquals(bodySize, msg.undecoded().readableBytes());
+		msg.retain();
+		Assert.assertFalse(msg.release());
+		msg.decodeLazy();
+		Assert.assertTrue(msg.isDecoded());
+		Assert.assertEquals("payload", msg.payload);
+		Assert.assertArrayEquals(source.values, msg.values);
+		Assert.assertEquals(0, buffer.refCnt());
+		msg.release();
+		// 未解码直接释放
+		buffer = Unpooled.buffer();
+		source.buffer(buffer);
+		source.encode();
+		source.buffer(null);
+		msg = (LazyMessage) slot.newMessage();
+		msg.buffer(buffer);
+		slot.decode(msg);
+		msg.buffer(null);
+		buffer.release();
+		Assert.assertEquals(1, buffer.refCnt());
+		msg.release();
+		Assert.assertEquals(0, buffer.refCnt());
+		Assert.assertNull(msg.undecoded());
+		// 最后一次release之后不能再retain
+		try {
+			msg.retain();
+			Assert.fail();
+		} catch (IllegalReferenceCountException e) {
+		}
+		try {
+			msg.release();
+			Assert.fail();
+		} catch (IllegalReferenceCountException e) {
+		}
+		// 非延迟解码的非池化消息仍然无操作
+		MessageCase2 plain = new MessageCase2();
+		Assert.assertSame(plain, plain.retain());
+		Assert.assertFalse(plain.release());
+		Assert.assertFalse(plain.release());
+	}
+
+	public static class MessageCase2 extends Message {
+		@Override
+		public short getMessageId() {
+			return -1;
+		}
+	}
+
+	@Lazy(header = 1)
+	public static class LazyMessage extends Message {
+		public int route;
+		public String payload;
+		public int[] values;
+
+		@Override
+		public short getMessageId() {
+			return -3;
+		}
+	}
+
+	@Lazy
+	public static class LazyInternMessage extends Message {
+		@Intern
+		public String name;
+
+		@Override
+		public short getMessageId() {
+			return -4;
+		}
+	}
+
+	@Poolable
+	public static class PooledArrayMessage extends Message {
+		public Integer[] values;
+
+		@Override
+		public short getMessageId() {
+			return -5;
+		}
+	}
+
+	@Poolable
+	public static class PooledMessage extends Message {
+		public int value;
+		private transient int resetCount;
+
+		@Override
+		public short getMessageId() {
+			return -2;
+		}
+
+		@Override
+		protected void reset() {
+			++resetCount;
+		}
+	}
 }
@@ -0,0 +1,274 @@
+package org.slingerxv.limitart.net.binary.message;
+
+import java.util.ArrayList;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+
+/**
+ * 生成的编解码器与反射编解码一致性测试
+ *
+ * @author hank
+ *
+ */
+public class MessageMetaCodecTest {
+	private MessageMetaEntity meta;
+	private ByteBuf reflectBuffer;
+	private ByteBuf codecBuffer;
+
+	@Before
+	public void setUp() throws Exception {
+		meta = new MessageMetaEntity();
+		meta.init();
+		reflectBuffer = Unpooled.buffer();
+		codecBuffer = Unpooled.buffer();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		reflectBuffer.release();
+		codecBuffer.release();
+	}
+
+	@Test
+	public void codec() throws Exception {
+		MessageMetaCodec codec = MessageMetaCodec.get(MessageMetaEntity.class);
+		Assert.assertNotNull(codec);
+		Assert.assertTrue(codec.getNestedTypes().contains(MessageMetaBeanEntity.class));
+		meta.buffer(reflectBuffer);
+		meta.encodeByReflection();
+		meta.buffer(codecBuffer);
+		codec.encode(meta);
+		meta.buffer(null);
+		Assert.assertTrue(ByteBufUtil.equals(reflectBuffer, codecBuffer));
+		MessageMetaEntity empty = new MessageMetaEntity();
+		empty.buffer(codecBuffer);
+		codec.decode(empty);
+		empty.buffer(null);
+		Assert.assertEquals(meta, empty);
+		Assert.assertFalse(codecBuffer.isReadable());
+	}
+
+	@Test
+	public void compact() throws Exception {
+		MessageMetaCompactEntity compact = new MessageMetaCompactEntity();
+		compact.init();
+		MessageMetaCodec codec = MessageMetaCodec.get(MessageMetaCompactEntity.class);
+		Assert.assertNotNull(codec);
+		compact.buffer(reflectBuffer);
+		compact.encodeByReflection();
+		compact.buffer(codecBuffer);
+		codec.encode(compact);
+		compact.buffer(null);
+		Assert.assertTrue(ByteBufUtil.equals(reflectBuffer, codecBuffer));
+		// int(1) long(2) short(1) int[](1+3) null(1) 非紧凑int(4) list(1+10+10) null(1)
+		Assert.assertEquals(35, codecBuffer.readableBytes());
+		MessageMetaCompactEntity empty = new MessageMetaCompactEntity();
+		empty.buffer(reflectBuffer);
+		empty.decodeByReflection();
+		empty.buffer(null);
+		Assert.assertEquals(compact, empty);
+		empty = new MessageMetaCompactEntity();
+		empty.buffer(codecBuffer);
+		codec.decode(empty);
+		empty.buffer(null);
+		Assert.assertEquals(compact, empty);
+		Assert.assertFalse(codecBuffer.isReadable());
+	}
+
+	@Test
+	public void decodeRange() throws Exception {
+		MessageMetaCompactEntity compact = new MessageMetaCompactEntity();
+		compact.init();
+		MessageMetaCodec codec = MessageMetaCodec.get(MessageMetaCompactEntity.class);
+		compact.buffer(codecBuffer);
+		codec.encode(compact);
+		compact.buffer(null);
+		int count = MessageMeta.getFieldAccess(MessageMetaCompactEntity.class).getFields().length;
+		// 任意位置分两段解码，结果与完整解码一致，选项不受跳过的字段影响
+		for (int header = 0; header <= count; ++header) {
+			ByteBuf buffer = codecBuffer.duplicate();
+			MessageMetaCompactEntity empty = new MessageMetaCompactEntity();
+			empty.buffer(buffer);
+			codec.decode(empty, 0, header);
+			codec.decode(empty, header, Integer.MAX_VALUE);
+			empty.buffer(null);
+			Assert.assertEquals(compact, empty);
+			Assert.assertFalse(buffer.isReadable());
+			buffer = codecBuffer.duplicate();
+			MessageMetaCompactEntity reflect = new MessageMetaCompactEntity();
+			reflect.buffer(buffer);
+			reflect.decodeByReflection(0, header);
+			codec.decode(reflect, header, Integer.MAX_VALUE);
+			reflect.buffer(null);
+			Assert.assertEquals(compact, reflect);
+		}
+	}
+
+	@Test
+	public void clear() throws Exception {
+		MessageMetaCodec codec = MessageMetaCodec.get(MessageMetaEntity.class);
+		MessageMetaEntity reflect = new MessageMetaEntity();
+		reflect.init();
+		reflect.clearFieldsByReflection();
+		codec.clear(meta);
+		Assert.assertEquals(reflect, meta);
+	}
+
+	@Test
+	public void compactString() throws Exception {
+		MessageMetaCodec codec = MessageMetaCodec.get(MessageMetaCompactEntity.class);
+		StringBuilder ascii = new StringBuilder();
+		StringBuilder broken = new StringBuilder();
+		for (int i = 0; i < 60; ++i) {
+			ascii.append('a');
+			// 不成对的代理字符
+			broken.append(i % 2 == 0 ? '\uD800' : '中');
+		}
+		// 长度标记按实际字节数取最短编码
+		for (String value : new String[] { ascii.toString(), broken.toString() }) {
+			reflectBuffer.clear();
+			codecBuffer.clear();
+			MessageMetaCompactEntity compact = new MessageMetaCompactEntity();
+			compact.init();
+			compact.strVal = value;
+			compact.buffer(reflectBuffer);
+			compact.encodeByReflection();
+			compact.buffer(codecBuffer);
+			codec.encode(compact);
+			compact.buffer(null);
+			Assert.assertTrue(ByteBufUtil.equals(reflectBuffer, codecBuffer));
+			Assert.assertEquals(35 - 1 + 1 + value.length(), codecBuffer.readableBytes());
+			MessageMetaCompactEntity empty = new MessageMetaCompactEntity();
+			empty.buffer(codecBuffer);
+			codec.decode(empty);
+			empty.buffer(null);
+			Assert.assertEquals(value.length(), empty.strVal.length());
+			Assert.assertFalse(codecBuffer.isReadable());
+		}
+	}
+
+	@Test
+	public void intern() throws Exception {
+		MessageMetaInternEntity intern = new MessageMetaInternEntity();
+		intern.init();
+		MessageMetaCodec codec = MessageMetaCodec.get(MessageMetaInternEntity.class);
+		Assert.assertNotNull(codec);
+		StringDictionary reflectDictionary = new StringDictionary(16);
+		StringDictionary codecDictionary = new StringDictionary(16);
+		StringDictionary readDictionary = new StringDictionary(16);
+		int[] sizes = new int[2];
+		for (int i = 0; i < sizes.length; ++i) {
+			reflectBuffer.clear();
+			codecBuffer.clear();
+			intern.buffer(reflectBuffer);
+			intern.dictionary(reflectDictionary);
+			intern.encodeByReflection();
+			intern.buffer(codecBuffer);
+			intern.dictionary(codecDictionary);
+			codec.encode(intern);
+			Assert.assertTrue(ByteBufUtil.equals(reflectBuffer, codecBuffer));
+			sizes[i] = codecBuffer.readableBytes();
+			MessageMetaInternEntity empty = new MessageMetaInternEntity();
+			empty.buffer(codecBuffer);
+			empty.dictionary(readDictionary);
+			codec.decode(empty);
+			Assert.assertEquals(intern, empty);
+			Assert.assertFalse(codecBuffer.isReadable());
+		}
+		// 第二次只发送字典编号
+		Assert.assertTrue(sizes[1] < sizes[0]);
+		Assert.assertEquals(3, readDictionary.getReadSize());
+		// 未开启字典时发送原文
+		reflectBuffer.clear();
+		intern.buffer(reflectBuffer);
+		intern.dictionary(null);
+		intern.encodeByReflection();
+		MessageMetaInternEntity empty = new MessageMetaInternEntity();
+		empty.buffer(reflectBuffer);
+		empty.decodeByReflection();
+		Assert.assertEquals(intern, empty);
+	}
+
+	@Test
+	public void utf8() throws Exception {
+		String value = "hello 世界 \uD83D\uDE00";
+		MessageMetaBeanEntity bean = new MessageMetaBeanEntity();
+		bean.strVal = value;
+		bean.buffer(reflectBuffer);
+		bean.encodeByReflection();
+		byte[] bytes = value.getBytes(CharsetUtil.UTF_8);
+		ByteBuf expected = Unpooled.buffer();
+		expected.writeBytes(new byte[reflectBuffer.readableBytes() - bytes.length - 2]);
+		expected.writeShort(bytes.length);
+		expected.writeBytes(bytes);
+		Assert.assertTrue(ByteBufUtil.equals(expected, reflectBuffer));
+		expected.release();
+	}
+
+	@Test
+	public void primitiveList() throws Exception {
+		MessageMetaPrimitiveListEntity lists = new MessageMetaPrimitiveListEntity();
+		lists.init();
+		MessageMetaCodec codec = MessageMetaCodec.get(MessageMetaPrimitiveListEntity.class);
+		Assert.assertNotNull(codec);
+		lists.buffer(reflectBuffer);
+		lists.encodeByReflection();
+		lists.buffer(codecBuffer);
+		codec.encode(lists);
+		lists.buffer(null);
+		Assert.assertTrue(ByteBufUtil.equals(reflectBuffer, codecBuffer));
+		MessageMetaPrimitiveListEntity empty = new MessageMetaPrimitiveListEntity();
+		empty.buffer(reflectBuffer);
+		empty.decodeByReflection();
+		Assert.assertEquals(lists, empty);
+		empty = new MessageMetaPrimitiveListEntity();
+		empty.buffer(codecBuffer);
+		codec.decode(empty);
+		Assert.assertEquals(lists, empty);
+		Assert.assertFalse(codecBuffer.isReadable());
+		// 非heap的buffer逐个写入，结果相同
+		for (ByteBuf direct : new ByteBuf[] { Unpooled.directBuffer(), PooledByteBufAllocator.DEFAULT.directBuffer() }) {
+			lists.buffer(direct);
+			codec.encode(lists);
+			lists.buffer(null);
+			reflectBuffer.readerIndex(0);
+			Assert.assertTrue(ByteBufUtil.equals(reflectBuffer, direct));
+			empty = new MessageMetaPrimitiveListEntity();
+			empty.buffer(direct);
+			codec.decode(empty);
+			empty.buffer(null);
+			Assert.assertEquals(lists, empty);
+			direct.release();
+		}
+		// 与int数组、Integer列表的编码一致
+		MessageMetaEntity entity = new MessageMetaEntity();
+		ByteBuf listBuffer = Unpooled.buffer();
+		ByteBuf arrayBuffer = Unpooled.buffer();
+		ByteBuf boxBuffer = Unpooled.buffer();
+		entity.buffer(listBuffer);
+		entity.putInts(lists.ints);
+		entity.buffer(arrayBuffer);
+		entity.putIntArray(lists.ints.toArray());
+		entity.buffer(boxBuffer);
+		ArrayList<Integer> boxes = new java.util.ArrayList<>();
+		for (int value : lists.ints.toArray()) {
+			boxes.add(value);
+		}
+		entity.putIntList(boxes);
+		entity.buffer(null);
+		Assert.assertTrue(ByteBufUtil.equals(listBuffer, arrayBuffer));
+		Assert.assertTrue(ByteBufUtil.equals(listBuffer, boxBuffer));
+		listBuffer.release();
+		arrayBuffer.release();
+		boxBuffer.release();
+	}
+}
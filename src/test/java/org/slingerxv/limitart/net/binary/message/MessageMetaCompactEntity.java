@@ -0,0 +1,52 @@
+package org.slingerxv.limitart.net.binary.message;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.slingerxv.limitart.net.binary.message.annotation.Compact;
+
+@Compact
+public class MessageMetaCompactEntity extends MessageMeta {
+	public int intVal;
+	public long longVal;
+	public short shortVal;
+	public int[] intArray;
+	public String strVal;
+	@Compact(false)
+	public int rawVal;
+	public ArrayList<Long> longList;
+	public MessageMetaBeanEntity bean;
+
+	public void init() {
+		intVal = -1;
+		longVal = 300;
+		shortVal = 5;
+		intArray = new int[] { 1, 2, 3 };
+		strVal = null;
+		rawVal = 7;
+		longList = new ArrayList<>();
+		longList.add(Long.MIN_VALUE);
+		longList.add(Long.MAX_VALUE);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(intVal, longVal, shortVal, Arrays.hashCode(intArray), strVal, rawVal, longList, bean);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		MessageMetaCompactEntity other = (MessageMetaCompactEntity) obj;
+		return intVal == other.intVal && longVal == other.longVal && shortVal == other.shortVal
+				&& Arrays.equals(intArray, other.intArray) && Objects.equals(strVal, other.strVal)
+				&& rawVal == other.rawVal && Objects.equals(longList, other.longList)
+				&& Objects.equals(bean, other.bean);
+	}
+}
@@ -0,0 +1,50 @@
+package org.slingerxv.limitart.net.binary.message;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.slingerxv.limitart.net.binary.message.annotation.Compact;
+import org.slingerxv.limitart.net.binary.message.annotation.Intern;
+
+public class MessageMetaInternEntity extends MessageMeta {
+	@Intern
+	public String itemName;
+	@Intern
+	public String[] mapIds;
+	@Intern
+	@Compact
+	public ArrayList<String> tags;
+	public String chat;
+	@Compact
+	public String compactChat;
+
+	public void init() {
+		itemName = "屠龙宝刀";
+		mapIds = new String[] { "map_1001", "map_1001", null, "" };
+		tags = new ArrayList<>();
+		tags.add("vip");
+		tags.add("屠龙宝刀");
+		chat = "hello 世界 😀";
+		compactChat = "";
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(itemName, Arrays.hashCode(mapIds), tags, chat, compactChat);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		MessageMetaInternEntity other = (MessageMetaInternEntity) obj;
+		return Objects.equals(itemName, other.itemName) && Arrays.equals(mapIds, other.mapIds)
+				&& Objects.equals(tags, other.tags) && Objects.equals(chat, other.chat)
+				&& Objects.equals(compactChat, other.compactChat);
+	}
+}
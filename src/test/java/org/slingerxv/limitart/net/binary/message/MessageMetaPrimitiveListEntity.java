@@ -0,0 +1,60 @@
+package org.slingerxv.limitart.net.binary.message;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.slingerxv.limitart.collections.DoubleList;
+import org.slingerxv.limitart.collections.FloatList;
+import org.slingerxv.limitart.collections.IntList;
+import org.slingerxv.limitart.collections.LongList;
+import org.slingerxv.limitart.collections.ShortList;
+import org.slingerxv.limitart.net.binary.message.annotation.Compact;
+
+public class MessageMetaPrimitiveListEntity extends MessageMeta {
+	public IntList ints;
+	public LongList longs;
+	public ShortList shorts;
+	public FloatList floats;
+	public DoubleList doubles;
+	public IntList nullInts;
+	@Compact
+	public IntList compactInts;
+	public int[] intArray;
+	public long[] longArray;
+
+	public void init() {
+		ints = new IntList();
+		for (int i = 0; i < 1000; ++i) {
+			ints.add(i * 31);
+		}
+		longs = LongList.wrap(Long.MIN_VALUE, 0, Long.MAX_VALUE);
+		shorts = ShortList.wrap((short) -1, (short) 2);
+		floats = FloatList.wrap(1.5f, Float.NaN);
+		doubles = new DoubleList();
+		compactInts = IntList.wrap(-1, 0, 1, 300);
+		intArray = new int[] { 1, -2, 3 };
+		longArray = new long[] { 4L, -5L };
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(ints, longs, shorts, floats, doubles, nullInts, compactInts, Arrays.hashCode(intArray),
+				Arrays.hashCode(longArray));
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		MessageMetaPrimitiveListEntity other = (MessageMetaPrimitiveListEntity) obj;
+		return Objects.equals(ints, other.ints) && Objects.equals(longs, other.longs)
+				&& Objects.equals(shorts, other.shorts) && Objects.equals(floats, other.floats)
+				&& Objects.equals(doubles, other.doubles) && Objects.equals(nullInts, other.nullInts)
+				&& Objects.equals(compactInts, other.compactInts) && Arrays.equals(intArray, other.intArray)
+				&& Arrays.equals(longArray, other.longArray);
+	}
+}
@@ -0,0 +1,164 @@
+package org.slingerxv.limitart.net.binary.message.processor;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slingerxv.limitart.net.binary.handler.MessageCase;
+import org.slingerxv.limitart.net.binary.message.IMessageRegistry;
+import org.slingerxv.limitart.net.binary.message.Message;
+import org.slingerxv.limitart.net.binary.message.MessageFactory;
+import org.slingerxv.limitart.net.binary.message.MessageMeta;
+import org.slingerxv.limitart.net.binary.message.MessageMetaCodec;
+import org.slingerxv.limitart.net.binary.message.MessageMetaEntity;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+public class MessageCodecProcessorTest {
+
+	@Test
+	public void process() throws Exception {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		Assert.assertNotNull(compiler);
+		Path output = Files.createTempDirectory("limitart-processor");
+		String testSource = new File("src/test/java/org/slingerxv/limitart/net/binary").getAbsolutePath();
+		List<File> sources = Arrays.asList(new File(testSource, "handler/MessageCase.java"),
+				new File(testSource, "handler/MessageCaseHandler.java"),
+				new File(testSource, "message/MessageMetaEntity.java"),
+				new File(testSource, "message/MessageMetaBeanEntity.java"),
+				new File(testSource, "message/MessageMetaCompactEntity.java"),
+				new File(testSource, "message/MessageMetaInternEntity.java"),
+				new File(testSource, "message/MessageMetaPrimitiveListEntity.java"));
+		List<String> options = new ArrayList<>();
+		options.add("-classpath");
+		options.add(location(MessageMeta.class) + File.pathSeparator + location(ByteBuf.class) + File.pathSeparator
+				+ location(Logger.class));
+		options.add("-d");
+		options.add(output.toString());
+		options.add("-s");
+		options.add(output.toString());
+		options.add("-processor");
+		options.add(MessageCodecProcessor.class.getName());
+		options.add("-A" + MessageCodecProcessor.OPTION_REGISTRY + "=limitart.test.TestMessageRegistry");
+		try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null)) {
+			Boolean success = compiler
+					.getTask(null, fileManager, null, options, null, fileManager.getJavaFileObjectsFromFiles(sources))
+					.call();
+			Assert.assertTrue(success);
+		}
+		Assert.assertTrue(Files.exists(output.resolve(
+				"org/slingerxv/limitart/net/binary/message/MessageMetaEntityMessageMetaCodec.java")));
+		// 重新加载编译出的消息类，生成的编解码器注册到这些类上，不影响其他测试使用的全局编解码器缓存
+		try (URLClassLoader loader = new IsolatedClassLoader(output)) {
+			Class<?> entityClass = loader.loadClass("org.slingerxv.limitart.net.binary.message.MessageMetaEntity");
+			Class<?> compactClass = loader
+					.loadClass("org.slingerxv.limitart.net.binary.message.MessageMetaCompactEntity");
+			Assert.assertNotSame(MessageMetaEntity.class, entityClass);
+			// 注册前按反射编码
+			MessageMeta entity = newMeta(entityClass);
+			MessageMeta compact = newMeta(compactClass);
+			ByteBuf entityReflect = encode(entity);
+			ByteBuf compactReflect = encode(compact);
+			IMessageRegistry registry = (IMessageRegistry) loader.loadClass("limitart.test.TestMessageRegistry")
+					.newInstance();
+			MessageFactory factory = MessageFactory.createByRegistry(registry);
+			Message message = factory.getMessage((short) -1);
+			Assert.assertEquals(MessageCase.class.getName(), message.getClass().getName());
+			Assert.assertNotNull(factory.getHandler((short) -1));
+			// 编译期生成的编解码器与反射编码结果一致，且能还原
+			assertCodec(loader, entity, entityReflect);
+			assertCodec(loader, compact, compactReflect);
+		}
+	}
+
+	private static MessageMeta newMeta(Class<?> clazz) throws Exception {
+		MessageMeta meta = (MessageMeta) clazz.newInstance();
+		clazz.getMethod("init").invoke(meta);
+		return meta;
+	}
+
+	private static ByteBuf encode(MessageMeta meta) throws Exception {
+		ByteBuf buffer = Unpooled.buffer();
+		meta.buffer(buffer);
+		meta.encode();
+		meta.buffer(null);
+		return buffer;
+	}
+
+	private static void assertCodec(ClassLoader loader, MessageMeta meta, ByteBuf reflect) throws Exception {
+		MessageMetaCodec codec = (MessageMetaCodec) loader
+				.loadClass(meta.getClass().getName() + MessageMetaCodec.class.getSimpleName()).newInstance();
+		ByteBuf direct = Unpooled.buffer();
+		meta.buffer(direct);
+		codec.encode(meta);
+		meta.buffer(null);
+		Assert.assertTrue(ByteBufUtil.equals(reflect, direct));
+		direct.release();
+		// 注册后encode使用生成的编解码器
+		ByteBuf generated = encode(meta);
+		Assert.assertTrue(ByteBufUtil.equals(reflect, generated));
+		MessageMeta decoded = meta.getClass().newInstance();
+		decoded.buffer(generated);
+		decoded.decode();
+		decoded.buffer(null);
+		Assert.assertEquals(meta, decoded);
+		Assert.assertFalse(generated.isReadable());
+		// 分段解码(延迟解码)
+		generated.readerIndex(0);
+		decoded = meta.getClass().newInstance();
+		decoded.buffer(generated);
+		codec.decode(decoded, 0, 1);
+		codec.decode(decoded, 1, Integer.MAX_VALUE);
+		decoded.buffer(null);
+		Assert.assertEquals(meta, decoded);
+		Assert.assertFalse(generated.isReadable());
+		reflect.release();
+		generated.release();
+	}
+
+	private static String location(Class<?> clazz) throws Exception {
+		return new File(clazz.getProtectionDomain().getCodeSource().getLocation().toURI()).getAbsolutePath();
+	}
+
+	/**
+	 * 优先从编译输出目录加载类
+	 */
+	private static class IsolatedClassLoader extends URLClassLoader {
+
+		private IsolatedClassLoader(Path output) throws Exception {
+			super(new URL[] { output.toUri().toURL() }, MessageCodecProcessorTest.class.getClassLoader());
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			synchronized (getClassLoadingLock(name)) {
+				Class<?> clazz = findLoadedClass(name);
+				if (clazz == null) {
+					try {
+						clazz = findClass(name);
+					} catch (ClassNotFoundException e) {
+						clazz = super.loadClass(name, false);
+					}
+				}
+				if (resolve) {
+					resolveClass(clazz);
+				}
+				return clazz;
+			}
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package org.slingerxv.limitart.net.binary.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConnectGateTest {
+
+	@Test
+	public void queue() {
+		int max = ConnectGate.getMaxConcurrent();
+		AtomicInteger started = new AtomicInteger();
+		try {
+			ConnectGate.setMaxConcurrent(1);
+			ConnectGate.acquire(started::incrementAndGet);
+			ConnectGate.acquire(started::incrementAndGet);
+			ConnectGate.acquire(started::incrementAndGet);
+			// 超出名额的排队
+			Assert.assertEquals(1, started.get());
+			Assert.assertEquals(1, ConnectGate.getInFlight());
+			Assert.assertEquals(2, ConnectGate.getWaiting());
+			ConnectGate.release();
+			Assert.assertEquals(2, started.get());
+			Assert.assertEquals(1, ConnectGate.getWaiting());
+			// 提高上限后排队的立即执行
+			ConnectGate.setMaxConcurrent(2);
+			Assert.assertEquals(3, started.get());
+			Assert.assertEquals(2, ConnectGate.getInFlight());
+			ConnectGate.release();
+			ConnectGate.release();
+			Assert.assertEquals(0, ConnectGate.getInFlight());
+			Assert.assertEquals(0, ConnectGate.getWaiting());
+		} finally {
+			ConnectGate.setMaxConcurrent(max);
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package org.slingerxv.limitart.net.binary.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+
+public class FlushCoalescingHandlerTest {
+
+	@Test
+	public void coalesce() throws Exception {
+		int[] flushes = new int[1];
+		FlushCounter counter = new FlushCounter();
+		EmbeddedChannel channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+			@Override
+			public void flush(ChannelHandlerContext ctx) throws Exception {
+				++flushes[0];
+				ctx.flush();
+			}
+		}, new FlushCoalescingHandler(4, 0, counter), new ChannelInboundHandlerAdapter() {
+			@Override
+			public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+				ReferenceCountUtil.release(msg);
+				for (int i = 0; i < 10; ++i) {
+					ctx.channel().writeAndFlush(Unpooled.wrappedBuffer(new byte[] { (byte) i }));
+				}
+			}
+		});
+		// 处理消息期间每4次flush一次，读完成后再flush剩下的
+		channel.writeInbound(Unpooled.buffer(1).writeByte(0));
+		Assert.assertEquals(3, flushes[0]);
+		Assert.assertEquals(10, channel.outboundMessages().size());
+		// 非读事件期间的flush在EventLoop本轮任务执行完后合并
+		for (int i = 0; i < 3; ++i) {
+			channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[] { (byte) i }));
+		}
+		Assert.assertEquals(3, flushes[0]);
+		channel.runPendingTasks();
+		Assert.assertEquals(4, flushes[0]);
+		Assert.assertEquals(13, counter.getRequested());
+		Assert.assertEquals(4, counter.getFlushed());
+		Assert.assertEquals(9, counter.getSaved());
+		channel.finishAndReleaseAll();
+	}
+}
@@ -0,0 +1,92 @@
+package org.slingerxv.limitart.net.binary.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slingerxv.limitart.net.binary.message.StringDictionary;
+import org.slingerxv.limitart.net.binary.util.OutboundQueue.OverflowPolicy;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class OutboundQueueTest {
+
+	@Test
+	public void queue() throws Exception {
+		OutboundQueue queue = new OutboundQueue(100, OverflowPolicy.DROP_LOWEST_PRIORITY, 8, 16);
+		EmbeddedChannel channel = new EmbeddedChannel(queue);
+		Assert.assertSame(queue, channel.attr(SendMessageUtil.OUTBOUND_QUEUE).get());
+		// 超过高水位
+		channel.write(Unpooled.buffer().writeZero(32));
+		Assert.assertFalse(channel.isWritable());
+		boolean[] replaced = new boolean[] { true };
+		queue.offer((short) 1, OutboundQueue.LATEST_ONLY, frame(1, 10),
+				(isSuccess, cause, channel1) -> replaced[0] = isSuccess);
+		queue.offer((short) 1, OutboundQueue.LATEST_ONLY, frame(1, 10), null);
+		Assert.assertFalse(replaced[0]);
+		Assert.assertEquals(1, queue.getQueuedCount());
+		queue.offer((short) 2, OutboundQueue.URGENT, frame(2, 10), null);
+		// 溢出时先丢弃普通消息
+		queue.offer((short) 3, 0, frame(3, 90), null);
+		Assert.assertEquals(2, queue.getQueuedCount());
+		Assert.assertEquals(100, queue.getQueuedBytes());
+		Assert.assertEquals(2, queue.getDropped());
+		// 恢复可写后高优先级先发
+		channel.flush();
+		Assert.assertEquals(0, queue.getQueuedCount());
+		Assert.assertEquals(0, queue.getQueuedBytes());
+		ByteBuf buffer = channel.readOutbound();
+		Assert.assertEquals(32, buffer.readableBytes());
+		buffer.release();
+		buffer = channel.readOutbound();
+		Assert.assertEquals(2, buffer.getByte(0));
+		buffer.release();
+		buffer = channel.readOutbound();
+		Assert.assertEquals(3, buffer.getByte(0));
+		buffer.release();
+		Assert.assertNull(channel.readOutbound());
+		channel.finish();
+	}
+
+	@Test
+	public void disconnect() throws Exception {
+		OutboundQueue queue = new OutboundQueue(20, OverflowPolicy.DROP_OLDEST, 8, 16);
+		EmbeddedChannel channel = new EmbeddedChannel(queue);
+		channel.write(Unpooled.buffer().writeZero(32));
+		// 不能丢弃的消息超出上限时断开
+		queue.offer((short) 1, OutboundQueue.PINNED, frame(1, 15), null);
+		Assert.assertTrue(channel.isOpen());
+		queue.offer((short) 2, OutboundQueue.PINNED, frame(2, 15), null);
+		Assert.assertFalse(channel.isOpen());
+		Assert.assertEquals(0, queue.getQueuedBytes());
+		Assert.assertEquals(2, queue.getDropped());
+		channel.finishAndReleaseAll();
+	}
+
+	@Test
+	public void dictionary() throws Exception {
+		OutboundQueue queue = new OutboundQueue(100, OverflowPolicy.DROP_LOWEST_PRIORITY, 8, 16);
+		EmbeddedChannel channel = new EmbeddedChannel(queue);
+		channel.attr(SendMessageUtil.STRING_DICTIONARY).set(new StringDictionary(16));
+		channel.write(Unpooled.buffer().writeZero(32));
+		// 登记新字符串的消息之后的高优先级消息不能插队
+		queue.offer((short) 1, OutboundQueue.PINNED, frame(1, 10), null);
+		queue.offer((short) 2, OutboundQueue.URGENT, frame(2, 10), null);
+		queue.offer((short) 3, OutboundQueue.URGENT | OutboundQueue.PINNED, frame(3, 10), null);
+		channel.flush();
+		ByteBuf buffer = channel.readOutbound();
+		Assert.assertEquals(32, buffer.readableBytes());
+		buffer.release();
+		for (int i = 1; i <= 3; ++i) {
+			buffer = channel.readOutbound();
+			Assert.assertEquals(i, buffer.getByte(0));
+			buffer.release();
+		}
+		Assert.assertNull(channel.readOutbound());
+		channel.finish();
+	}
+
+	private static ByteBuf frame(int tag, int size) {
+		return Unpooled.buffer(size).writeByte(tag).writeZero(size - 1);
+	}
+}
@@ -0,0 +1,48 @@
+package org.slingerxv.limitart.net.binary.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slingerxv.limitart.net.binary.util.RateLimiter.OverflowAction;
+
+public class RateLimiterTest {
+
+	@Test
+	public void channel() {
+		RateLimiter limiter = new RateLimiter.RateLimiterBuilder().channel(10, 3, OverflowAction.DROP).build();
+		long[] states = new long[limiter.size()];
+		long now = System.nanoTime();
+		int index = limiter.ruleIndex((short) 1);
+		Assert.assertEquals(0, index);
+		// 突发3个
+		for (int i = 0; i < 3; ++i) {
+			Assert.assertTrue(limiter.acquire(states, index, now) <= 0);
+		}
+		long wait = limiter.acquire(states, index, now);
+		Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(100), wait);
+		// 丢弃不消耗令牌
+		Assert.assertEquals(wait, limiter.acquire(states, index, now));
+		Assert.assertEquals(2, limiter.getRule(index).getHits());
+		// 100ms后恢复一个
+		now += TimeUnit.MILLISECONDS.toNanos(100);
+		Assert.assertTrue(limiter.acquire(states, index, now) <= 0);
+		Assert.assertTrue(limiter.acquire(states, index, now) > 0);
+	}
+
+	@Test
+	public void message() {
+		RateLimiter limiter = new RateLimiter.RateLimiterBuilder()
+				.message((short) 5, 1000, 1, OverflowAction.DELAY).build();
+		Assert.assertEquals(-1, limiter.ruleIndex((short) 1));
+		int index = limiter.ruleIndex((short) 5);
+		Assert.assertEquals(1, index);
+		long[] states = new long[limiter.size()];
+		long now = System.nanoTime();
+		Assert.assertTrue(limiter.acquire(states, index, now) <= 0);
+		// 延迟规则超限时仍然消耗令牌，等待时间累加
+		Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(1), limiter.acquire(states, index, now));
+		Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(2), limiter.acquire(states, index, now));
+		Assert.assertEquals(2, limiter.getRule(index).getHits());
+	}
+}
@@ -0,0 +1,111 @@
+package org.slingerxv.limitart.net.binary.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slingerxv.limitart.net.binary.codec.AbstractBinaryEncoder;
+import org.slingerxv.limitart.net.binary.handler.MessageCase;
+import org.slingerxv.limitart.net.binary.message.StringDictionary;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+
+public class SendMessageUtilTest {
+
+	@Test
+	public void sendMessage() throws Exception {
+		EmbeddedChannel channel = new EmbeddedChannel();
+		MessageCase msg = new MessageCase();
+		msg.info = "hello";
+		SendMessageUtil.sendMessage(AbstractBinaryEncoder.DEFAULT_ENCODER, channel, msg, null);
+		ByteBuf buffer = channel.readOutbound();
+		Assert.assertNotNull(buffer);
+		Assert.assertEquals(buffer.readableBytes(), SendMessageUtil.estimateSize(MessageCase.class));
+		Assert.assertEquals(buffer.readableBytes() - Short.BYTES, buffer.readShort());
+		Assert.assertEquals(-1, buffer.readShort());
+		buffer.release();
+		// 小消息之后预估逐渐回落，不会低于实际大小
+		msg.info = "";
+		int large = SendMessageUtil.estimateSize(MessageCase.class);
+		SendMessageUtil.sendMessage(AbstractBinaryEncoder.DEFAULT_ENCODER, channel, msg, null);
+		buffer = channel.readOutbound();
+		int estimate = SendMessageUtil.estimateSize(MessageCase.class);
+		Assert.assertTrue(estimate <= large);
+		Assert.assertTrue(estimate >= buffer.readableBytes());
+		buffer.release();
+		channel.finish();
+	}
+
+	@Test
+	public void dictionaryOrder() throws Exception {
+		EmbeddedChannel channel = new EmbeddedChannel();
+		channel.attr(SendMessageUtil.STRING_DICTIONARY).set(new StringDictionary(16));
+		// 与sendMessage用例的字符串等长，不影响大小预估
+		MessageCase first = new MessageCase();
+		first.info = "alpha";
+		SendMessageUtil.sendMessage(AbstractBinaryEncoder.DEFAULT_ENCODER, channel, first, null);
+		MessageCase second = new MessageCase();
+		second.info = "omega";
+		Broadcast broadcast = SendMessageUtil.broadcast(AbstractBinaryEncoder.DEFAULT_ENCODER, channel.alloc(),
+				second, null);
+		broadcast.sendTo(channel);
+		broadcast.release();
+		// EventLoop线程内直接按调用顺序写出
+		for (String info : new String[] { "alpha", "omega" }) {
+			ByteBuf buffer = channel.readOutbound();
+			Assert.assertNotNull(buffer);
+			buffer.skipBytes(Short.BYTES * 2);
+			Assert.assertEquals(info, buffer.readCharSequence(buffer.readShort(), CharsetUtil.UTF_8).toString());
+			buffer.release();
+		}
+		Assert.assertNull(channel.readOutbound());
+		channel.finish();
+	}
+
+	@Test
+	public void forward() throws Exception {
+		EmbeddedChannel channel = new EmbeddedChannel();
+		ByteBuf inbound = Unpooled.buffer();
+		inbound.writeShort(-1);
+		inbound.writeBytes("forward".getBytes(CharsetUtil.UTF_8));
+		// 模拟解码器读出消息id后的消息体
+		Assert.assertEquals(-1, inbound.readShort());
+		boolean[] success = new boolean[1];
+		SendMessageUtil.forward(AbstractBinaryEncoder.DEFAULT_ENCODER, channel, (short) 100, inbound,
+				(isSuccess, cause, channel1) -> success[0] = isSuccess);
+		Assert.assertTrue(success[0]);
+		ByteBuf frame = channel.readOutbound();
+		Assert.assertEquals(2, inbound.refCnt());
+		Assert.assertEquals(frame.readableBytes() - Short.BYTES, frame.readShort());
+		Assert.assertEquals(100, frame.readShort());
+		Assert.assertTrue(ByteBufUtil.equals(inbound, frame));
+		frame.release();
+		Assert.assertEquals(1, inbound.refCnt());
+		inbound.release();
+		channel.finish();
+	}
+
+	@Test
+	public void forwardWithDictionary() throws Exception {
+		EmbeddedChannel channel = new EmbeddedChannel();
+		channel.attr(SendMessageUtil.STRING_DICTIONARY).set(new StringDictionary(16));
+		ByteBuf inbound = Unpooled.buffer();
+		inbound.writeBytes("forward".getBytes(CharsetUtil.UTF_8));
+		boolean[] success = new boolean[] { true };
+		Throwable[] error = new Throwable[1];
+		SendMessageUtil.forward(AbstractBinaryEncoder.DEFAULT_ENCODER, channel, (short) 100, inbound,
+				(isSuccess, cause, channel1) -> {
+					success[0] = isSuccess;
+					error[0] = cause;
+				});
+		// 字典引用换连接后无法还原，拒绝转发
+		Assert.assertFalse(success[0]);
+		Assert.assertTrue(error[0] instanceof IllegalStateException);
+		Assert.assertNull(channel.readOutbound());
+		Assert.assertEquals(1, inbound.refCnt());
+		inbound.release();
+		channel.finish();
+	}
+}
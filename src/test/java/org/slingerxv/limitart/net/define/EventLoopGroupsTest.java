@@ -0,0 +1,57 @@
+package org.slingerxv.limitart.net.define;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slingerxv.limitart.net.binary.BinaryServer;
+import org.slingerxv.limitart.net.binary.message.MessageFactory;
+import org.slingerxv.limitart.net.http.HttpServer;
+import org.slingerxv.limitart.net.http.message.UrlMessageFactory;
+
+import io.netty.channel.nio.NioEventLoopGroup;
+
+public class EventLoopGroupsTest {
+
+	@Test
+	public void shared() throws Exception {
+		BinaryServer binary = new BinaryServer.BinaryServerBuilder()
+				.factory(new MessageFactory()).build();
+		HttpServer http = new HttpServer.HttpServerBuilder()
+				.factory(new UrlMessageFactory()).build();
+		Assert.assertSame(EventLoopGroups.shared(), binary.eventLoopGroups());
+		Assert.assertSame(binary.eventLoopGroups(), http.eventLoopGroups());
+		Assert.assertFalse(binary.eventLoopGroups().isDedicated());
+		http.stopServer();
+		Assert.assertFalse(EventLoopGroups.shared().getWorkerGroup().isShuttingDown());
+	}
+
+	@Test
+	public void dedicated() throws Exception {
+		HttpServer http = new HttpServer.HttpServerBuilder().serverName("Admin-Http")
+				.factory(new UrlMessageFactory()).dedicatedEventLoop(1, 2)
+				.build();
+		EventLoopGroups groups = http.eventLoopGroups();
+		Assert.assertTrue(groups.isDedicated());
+		Assert.assertNotSame(EventLoopGroups.shared(), groups);
+		String name = groups.getWorkerGroup().submit(() -> Thread.currentThread().getName()).get();
+		Assert.assertTrue(name, name.startsWith("Admin-Http-Worker"));
+		http.stopServer();
+		Assert.assertTrue(groups.getBossGroup().isShuttingDown());
+		Assert.assertTrue(groups.getWorkerGroup().isShuttingDown());
+	}
+
+	@Test
+	public void external() throws Exception {
+		NioEventLoopGroup boss = new NioEventLoopGroup(1);
+		NioEventLoopGroup worker = new NioEventLoopGroup(1);
+		EventLoopGroups groups = EventLoopGroups.of(boss, worker);
+		Assert.assertFalse(groups.isEpoll());
+		HttpServer http = new HttpServer.HttpServerBuilder().eventLoopGroups(groups).factory(new UrlMessageFactory())
+				.build();
+		Assert.assertSame(worker, http.eventLoopGroups().getWorkerGroup());
+		http.stopServer();
+		// 外部线程组由调用者关闭
+		Assert.assertFalse(worker.isShuttingDown());
+		boss.shutdownGracefully();
+		worker.shutdownGracefully();
+	}
+}